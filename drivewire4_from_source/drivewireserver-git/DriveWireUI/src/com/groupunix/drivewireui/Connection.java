@@ -6,6 +6,7 @@ import java.io.InputStreamReader;
 import java.io.StringReader;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -22,6 +23,10 @@ public class Connection
 
 	private BufferedReader in;
 	
+	// shared pipelined channel, null when talking to a server without sessions
+	private UISession session;
+	private boolean open = false;
+	
 	
 	public Connection(String host, int port, int instance)
 	{
@@ -34,12 +39,34 @@ public class Connection
 	public void Connect() throws UnknownHostException, IOException
 	{
 		MainWin.setConStatusConnect();
+		
+		this.session = UISession.getSession(this.host, this.port);
+		
+		if (this.session == null)
+			openSocket();
+		
+		this.open = true;
+	}
+	
+	
+	// old servers answer one command per connection
+	private void openSocket() throws UnknownHostException, IOException
+	{
 		this.sock = new Socket(this.host, this.port);
 		this.sock.setSoTimeout(MainWin.config.getInt("TCPTimeout",MainWin.default_TCPTimeout));
 		this.in = new BufferedReader(new InputStreamReader(sock.getInputStream()));
 	}
 	
 	
+	private Socket getSocket() throws UnknownHostException, IOException
+	{
+		if ((this.sock == null) || this.sock.isClosed())
+			openSocket();
+		
+		return this.sock;
+	}
+	
+	
 	public void setPort(int port) {
 		this.port = port;
 	}
@@ -56,13 +83,20 @@ public class Connection
 
 	public void close() throws IOException 
 	{
-		this.sock.close();
+		// the session is shared, it stays up for the next Connection
+		this.open = false;
+		
+		if (this.sock != null)
+			this.sock.close();
 	}
 
 
 	public boolean connected() 
 	{
-		if (this.sock.isClosed())
+		if (this.session != null)
+			return this.open && !this.session.isClosed();
+		
+		if ((this.sock == null) || this.sock.isClosed())
 		{
 			return false;
 		}
@@ -123,12 +157,30 @@ public class Connection
 	
 	public StringReader loadReader(int instance, String arg) throws IOException, DWUIOperationFailedException 
 	{
+		return(new StringReader(request(instance, arg)));
+	}
+
+	
+	private String request(int instance, String arg) throws IOException, DWUIOperationFailedException
+	{
+		if (this.session != null)
+			return this.session.request(instance, arg);
+		
+		Socket s = getSocket();
 		
-		sock.getOutputStream().write((instance + "").getBytes());
-		sock.getOutputStream().write(0);
-		sock.getOutputStream().write((arg + "\n").getBytes());
+		s.getOutputStream().write((instance + "").getBytes());
+		s.getOutputStream().write(0);
+		s.getOutputStream().write((arg + "\n").getBytes());
 		
-		return(new StringReader(getResponse()));
+		try
+		{
+			return getResponse();
+		}
+		finally
+		{
+			// server hangs up after each answer
+			s.close();
+		}
 	}
 
 	
@@ -173,12 +225,34 @@ public class Connection
 
 	public List<String> loadList(int instance, String arg) throws IOException, DWUIOperationFailedException 
 	{
+		List<String> res = Arrays.asList(request(instance, arg).split("\n"));
+		
+		return res;
+	}
+
+
+	// several commands at once: on a session they all go out before the first answer comes back
+	public List<List<String>> loadLists(int instance, List<String> args) throws IOException, DWUIOperationFailedException 
+	{
+		List<List<String>> res = new ArrayList<List<String>>(args.size());
+		
+		if (this.session == null)
+		{
+			for (String arg : args)
+				res.add(loadList(instance, arg));
+			
+			return res;
+		}
+		
+		List<UISession.Reply> replies = new ArrayList<UISession.Reply>(args.size());
+		
+		for (String arg : args)
+			replies.add(this.session.send(instance, arg));
 		
-		sock.getOutputStream().write((instance + "").getBytes());
-		sock.getOutputStream().write(0);
-		sock.getOutputStream().write((arg + "\n").getBytes());
+		int timeout = MainWin.config.getInt("TCPTimeout",MainWin.default_TCPTimeout);
 		
-		List<String> res = Arrays.asList(getResponse().split("\n"));
+		for (UISession.Reply r : replies)
+			res.add(Arrays.asList(r.await(timeout).split("\n")));
 		
 		return res;
 	}
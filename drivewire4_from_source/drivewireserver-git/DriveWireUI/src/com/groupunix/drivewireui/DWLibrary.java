@@ -37,6 +37,7 @@ import swing2swt.layout.BorderLayout;
 import com.groupunix.drivewireserver.dwdisk.filesystem.DWDECBFileSystemDirEntry;
 import com.groupunix.drivewireserver.dwexceptions.DWDiskInvalidSectorNumber;
 import com.groupunix.drivewireserver.dwexceptions.DWFileSystemInvalidDirectoryException;
+import com.groupunix.drivewireserver.dwexceptions.DWFileSystemInvalidFATException;
 import com.groupunix.drivewireui.configeditor.SortTreeListener;
 import com.groupunix.drivewireui.library.AddFolderLibraryItemDialog;
 import com.groupunix.drivewireui.library.AddPathLibraryItemDialog;
@@ -666,14 +667,33 @@ public class DWLibrary extends Composite
 			
 		
 			FileViewer bestv = null;
-					
-			bestv = getBestViewer(decbitem.getEntry(), decbitem.getData());
+			byte[] data = null;
+			
+			try
+			{
+				data = decbitem.getData();
+			}
+			catch (IOException e)
+			{
+				MainWin.showError("Error reading file", decbitem.getTitle() + ": " + e.getMessage(), "", false);
+			}
+			catch (DWDiskInvalidSectorNumber e)
+			{
+				MainWin.showError("Error reading file", decbitem.getTitle() + ": " + e.getMessage(), "", false);
+			}
+			catch (DWFileSystemInvalidFATException e)
+			{
+				MainWin.showError("Error reading file", decbitem.getTitle() + ": " + e.getMessage(), "", false);
+			}
+			
+			if (data != null)
+				bestv = getBestViewer(decbitem.getEntry(), data);
 				
 			if (bestv != null)
 			{
 				
 				compositeFileView.setContent(bestv);
-				bestv.viewFile(decbitem.getEntry(), decbitem.getData());
+				bestv.viewFile(decbitem.getEntry(), data);
 				compositeFileView.layout();
 					
 				ourtab.setText(decbitem.getEntry().getFileName().trim() + "." + decbitem.getEntry().getFileExt() + " ");
@@ -39,7 +39,6 @@ public class DiskTableUpdateThread implements Runnable
 				// no more updates, apply to table 
 				if (this.updates.size() == 0)
 				{
-					System.out.println("Processing " + this.colval.size() + " disk updates...");
 					for (Entry<Integer, Hashtable<String, Object>> diskentry :this.colval.entrySet())
 					{
 						for (Entry<String, Object> param : diskentry.getValue().entrySet())
@@ -49,8 +48,6 @@ public class DiskTableUpdateThread implements Runnable
 							final String key = param.getKey();
 							final Object value = param.getValue();
 							
-							System.out.println("Processing update: disk=" + disk + ", key=" + key + ", value=" + value);
-							
 							// Use reflection to avoid compile-time dependency on JavaFX
 							try {
 								Class<?> platformUtilsClass = Class.forName("com.groupunix.drivewireui.PlatformUtils");
@@ -59,7 +56,6 @@ public class DiskTableUpdateThread implements Runnable
 								final String finalKey = key;
 								final Object finalValue = value;
 								runMethod.invoke(null, (Runnable)() -> {
-									System.out.println("Calling updateDiskTableItem: disk=" + finalDisk + ", key=" + finalKey);
 									MainWin.updateDiskTableItem(finalDisk, finalKey, finalValue);
 								});
 							} catch (Exception e) {
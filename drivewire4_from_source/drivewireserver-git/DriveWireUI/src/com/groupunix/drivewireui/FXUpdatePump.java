@@ -0,0 +1,101 @@
+package com.groupunix.drivewireui;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * Frame paced updater for the disk table and log view.
+ * The sync thread only records what changed: the latest value of each key per drive,
+ * and the log items in order. Once per pulse the FX thread applies whatever has built up,
+ * so a busy drive costs one set of row property changes per frame instead of a
+ * runnable per event.
+ */
+public class FXUpdatePump extends AnimationTimer implements UIUpdateSink {
+
+    private final MainWindowController controller;
+
+    // per drive, latest value for each key in the order the keys last changed
+    private final ConcurrentHashMap<Integer, LinkedHashMap<String, Object>> disks = new ConcurrentHashMap<Integer, LinkedHashMap<String, Object>>();
+    private final AtomicBoolean disksDirty = new AtomicBoolean(false);
+
+    private final ConcurrentLinkedQueue<LogItem> logs = new ConcurrentLinkedQueue<LogItem>();
+
+    // reused each pulse, only touched on the FX thread
+    private final ArrayList<Map.Entry<String, Object>> batch = new ArrayList<Map.Entry<String, Object>>();
+    private final StringBuilder logText = new StringBuilder();
+
+    public FXUpdatePump(MainWindowController controller) {
+        this.controller = controller;
+    }
+
+    public void diskUpdate(int disk, String key, Object value) {
+        LinkedHashMap<String, Object> delta = disks.get(disk);
+
+        if (delta == null) {
+            delta = new LinkedHashMap<String, Object>();
+            LinkedHashMap<String, Object> had = disks.putIfAbsent(disk, delta);
+            if (had != null) {
+                delta = had;
+            }
+        }
+
+        synchronized (delta) {
+            // move the key to the end so *insert/*eject stay ordered against the counters
+            delta.remove(key);
+            delta.put(key, value);
+        }
+
+        disksDirty.set(true);
+    }
+
+    public void logUpdate(LogItem item) {
+        logs.add(item);
+    }
+
+    @Override
+    public void handle(long now) {
+        if (disksDirty.getAndSet(false)) {
+            for (Map.Entry<Integer, LinkedHashMap<String, Object>> entry : disks.entrySet()) {
+                LinkedHashMap<String, Object> delta = entry.getValue();
+
+                synchronized (delta) {
+                    if (delta.isEmpty()) {
+                        continue;
+                    }
+
+                    for (Map.Entry<String, Object> change : delta.entrySet()) {
+                        batch.add(new AbstractMap.SimpleImmutableEntry<String, Object>(change));
+                    }
+                    delta.clear();
+                }
+
+                for (int i = 0; i < batch.size(); i++) {
+                    controller.applyDiskTableEntry(entry.getKey(), batch.get(i).getKey(), batch.get(i).getValue());
+                }
+                batch.clear();
+            }
+        }
+
+        LogItem item = logs.poll();
+
+        if (item != null) {
+            synchronized (MainWin.logItems) {
+                while (item != null) {
+                    MainWin.logItems.add(item);
+                    logText.append(item.toString()).append('\n');
+                    item = logs.poll();
+                }
+            }
+
+            controller.appendLogText(logText);
+            logText.setLength(0);
+        }
+    }
+}
@@ -74,10 +74,11 @@ public class LogItem
 	{
 		LogItem res = new LogItem();
 		
-		res.setLevel(new String(level));
-		res.setMessage(new String(message));
-		res.setSource(new String(source));
-		res.setThread(new String(thread));
+		// strings don't change, sharing them is fine
+		res.setLevel(level);
+		res.setMessage(message);
+		res.setSource(source);
+		res.setThread(thread);
 		res.setTimestamp(timestamp);
 	
 		return res;
@@ -235,6 +235,7 @@ public class MainWin {
     protected static Image diskBigLEDdark;
 
     static DiskTableUpdateThread diskTableUpdater; // Package-private for JavaFX access
+    static volatile UIUpdateSink fxUpdates; // set by MainWindowController, frame paced table/log updates
     protected static boolean safeshutdown = false;
 
     private static ServerConfigWin serverconfigwin;
@@ -3426,8 +3427,6 @@ public class MainWin {
     }
 
     public static void submitDiskEvent(final int disk, final String key, final String val) {
-        System.out.println("submitDiskEvent: disk=" + disk + ", key=" + key + ", val=" + val);
-
         // local display items
         if (disks[disk] == null) {
             debug("NULL disk in submitevent: " + disk);
@@ -3436,50 +3435,30 @@ public class MainWin {
 
         disks[disk].setParam(key, val);
 
-        if (key.startsWith("*")) {
+        // JavaFX: the pump coalesces these and applies them once per frame
+        UIUpdateSink sink = MainWin.fxUpdates;
+
+        if (key.startsWith("*") && (sink == null)) {
             if (key.equals("*insert")) {
-                System.out.println("Disk insert event for disk " + disk + ": " + val);
                 clearDiskTableEntry(disk);
 
                 setDiskTableEntryFile(disk, val);
 
             } else if (key.equals("*eject")) {
-                System.out.println("Disk eject event for disk " + disk);
                 clearDiskTableEntry(disk);
             }
         }
 
         // update disk table - this is the main update path
         // ALWAYS update the table, even if value is "0" - this ensures reads/writes are always displayed
-        if (MainWin.diskTableUpdater != null) {
-            MainWin.diskTableUpdater.addUpdate(disk, key, val);
-            System.out.println("submitDiskEvent: Added update to diskTableUpdater: disk=" + disk + ", key=" + key + ", val=" + val);
-        } else {
-            System.err.println("ERROR: diskTableUpdater is null! Cannot update disk table for disk=" + disk + ", key=" + key);
-        }
+        submitDiskTableUpdate(sink, disk, key, val);
 
         // Update LED based on reads/writes activity (original behavior)
-        if (key.equals("_reads")) {
-            try {
-                int readsValue = Integer.parseInt(val);
-                if (readsValue > 0) {
-                    // LED state: 1 = green for read activity
-                    if (MainWin.diskTableUpdater != null) {
-                        MainWin.diskTableUpdater.addUpdate(disk, "LED", Integer.valueOf(1));
-                    }
-                    MainWin.driveactivity = true;
-                }
-            } catch (NumberFormatException e) {
-                // Ignore invalid values
-            }
-        } else if (key.equals("_writes")) {
+        if (key.equals("_reads") || key.equals("_writes")) {
             try {
-                int writesValue = Integer.parseInt(val);
-                if (writesValue > 0) {
-                    // LED state: 2 = red for write activity
-                    if (MainWin.diskTableUpdater != null) {
-                        MainWin.diskTableUpdater.addUpdate(disk, "LED", Integer.valueOf(2));
-                    }
+                if (Integer.parseInt(val) > 0) {
+                    // LED state: 1 = green for read activity, 2 = red for write activity
+                    submitDiskTableUpdate(sink, disk, "LED", Integer.valueOf(key.equals("_reads") ? 1 : 2));
                     MainWin.driveactivity = true;
                 }
             } catch (NumberFormatException e) {
@@ -3487,13 +3466,23 @@ public class MainWin {
             }
         } else if (key.equals("*insert") || key.equals("*eject")) {
             // Reset LED to dark (0) when disk is inserted or ejected
-            if (MainWin.diskTableUpdater != null) {
-                MainWin.diskTableUpdater.addUpdate(disk, "LED", Integer.valueOf(0));
-            }
+            submitDiskTableUpdate(sink, disk, "LED", Integer.valueOf(0));
         }
 
     }
 
+    private static void submitDiskTableUpdate(UIUpdateSink sink, int disk, String key, Object val) {
+        if (sink != null) {
+            sink.diskUpdate(disk, key, val);
+        } else if (MainWin.diskTableUpdater != null) {
+            if (val instanceof Integer) {
+                MainWin.diskTableUpdater.addUpdate(disk, key, (Integer) val);
+            } else {
+                MainWin.diskTableUpdater.addUpdate(disk, key, (String) val);
+            }
+        }
+    }
+
     private static void setDiskTableEntryFile(final int disk, final String val) {
         // Use helper method for thread-safe UI updates
         doDisplayExec(new Runnable() {
@@ -3767,7 +3756,10 @@ public class MainWin {
             // Check if we're in JavaFX mode
             boolean isJavaFXMode = System.getProperty("drivewire.ui.mode") != null;
             
-            if (isJavaFXMode) {
+            if (isJavaFXMode && (MainWin.fxUpdates != null)) {
+                // batched into the log view on the next frame
+                MainWin.fxUpdates.logUpdate(litem);
+            } else if (isJavaFXMode) {
                 // Use JavaFX Platform.runLater() for JavaFX mode
                 try {
                     Class<?> platformClass = Class.forName("javafx.application.Platform");
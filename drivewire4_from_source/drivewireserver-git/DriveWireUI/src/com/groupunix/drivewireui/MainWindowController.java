@@ -303,13 +303,10 @@ public class MainWindowController {
         // Load existing log items into the log text area
         loadExistingLogs();
         
-        // Start disk table updater thread
-        if (MainWin.diskTableUpdater == null) {
-            MainWin.diskTableUpdater = new DiskTableUpdateThread();
-            Thread dtuThread = new Thread(MainWin.diskTableUpdater);
-            dtuThread.setDaemon(true);
-            dtuThread.start();
-        }
+        // Disk table and log updates are applied once per frame
+        FXUpdatePump pump = new FXUpdatePump(this);
+        pump.start();
+        MainWin.fxUpdates = pump;
         
         // Start JavaFX grapher thread if canvases are available
         if (canvasMemUse != null && canvasDiskOps != null && canvasVSerialOps != null) {
@@ -705,146 +702,98 @@ public class MainWindowController {
      * Update a specific disk table entry.
      */
     public void updateDiskTableEntry(int disk, String key, Object value) {
-        Platform.runLater(() -> {
-            if (disk >= 0 && disk < diskTableData.size()) {
-                DiskTableItem item = diskTableData.get(disk);
-                if (item == null) {
-                    System.err.println("Warning: DiskTableItem is null for disk " + disk);
-                    return;
-                }
-                
-                try {
-                    if (key.equals("LED")) {
-                        // LED is handled via integer state (0=dark, 1=green, 2=red)
-                        // The cell factory will handle the image display
-                        if (value instanceof Integer) {
-                            item.setLed((Integer)value);
-                        } else if (value != null) {
-                            // Try to determine LED state from value
-                            String valStr = value.toString();
-                            if (valStr.contains("green") || valStr.equals("1")) {
-                                item.setLed(1);
-                            } else if (valStr.contains("red") || valStr.equals("2")) {
-                                item.setLed(2);
-                            } else {
-                                item.setLed(0);
-                            }
-                        }
-                        // Force table refresh to show updated LED state
-                        diskTable.refresh();
-                    } else if (key.equals("_reads")) {
-                        try {
-                            int readsValue = Integer.parseInt(value.toString());
-                            item.setReads(readsValue);
-                            System.out.println("MainWindowController: Updated disk " + disk + " reads to " + readsValue);
-                            // Force table refresh to show updated read count
-                            diskTable.refresh();
-                        } catch (NumberFormatException e) {
-                            System.err.println("MainWindowController: Error parsing _reads value: " + value);
-                        }
-                    } else if (key.equals("_writes")) {
-                        try {
-                            int writesValue = Integer.parseInt(value.toString());
-                            item.setWrites(writesValue);
-                            System.out.println("MainWindowController: Updated disk " + disk + " writes to " + writesValue);
-                            // Force table refresh to show updated write count
-                            diskTable.refresh();
-                        } catch (NumberFormatException e) {
-                            System.err.println("MainWindowController: Error parsing _writes value: " + value);
-                        }
-                    } else if (key.equals("*insert")) {
-                        // Extract filename from URI/path
-                        String filePath = value.toString();
-                        String filename = UIUtils.getFilenameFromURI(filePath);
-                        
-                        // Ensure drive number is set (should already be set, but ensure it)
-                        item.setDrive(disk);
-                        
-                        // Set the filename - this is the main visual indicator
-                        item.setFile(filename);
-                        
-                        // Reset reads/writes when disk is inserted
-                        item.setReads(0);
-                        item.setWrites(0);
-                        
-                        // LED will be set to 0 by the separate LED update, but set it here too for immediate feedback
-                        item.setLed(0);
-                        
-                        System.out.println("Disk " + disk + " inserted: filename=" + filename + ", fullPath=" + filePath);
-                        System.out.println("  -> Drive: " + item.getDrive() + ", File (stored): " + item.getFile() + ", Reads: " + item.getReads() + ", Writes: " + item.getWrites() + ", LED: " + item.getLed());
-                        
-                        // Update path label if this disk is currently selected
-                        DiskTableItem selected = diskTable.getSelectionModel().getSelectedItem();
-                        if (selected != null && selected.getDrive() == disk) {
-                            diskPathLabel.setText(filePath);
-                        }
-                        
-                        // Force table refresh to ensure UI updates immediately
-                        diskTable.refresh();
-                    } else if (key.equals("*eject")) {
-                        item.setFile("");
-                        item.setReads(0);
-                        item.setWrites(0);
-                        item.setLed(0);
-                        System.out.println("Disk " + disk + " ejected");
-                        
-                        // Clear path label if this disk is currently selected
-                        DiskTableItem selected = diskTable.getSelectionModel().getSelectedItem();
-                        if (selected != null && selected.getDrive() == disk) {
-                            diskPathLabel.setText("");
-                        }
-                        
-                        // Force table refresh to ensure UI updates
-                        diskTable.refresh();
-                    } else if (key.equals("File")) {
-                        // Direct file name update (may come after *insert)
-                        String filePath = value.toString();
-                        String filename = UIUtils.getFilenameFromURI(filePath);
-                        item.setFile(filename);
-                        System.out.println("Disk " + disk + " file updated: " + filename);
-                        
-                        // Update path label if this disk is currently selected
-                        DiskTableItem selected = diskTable.getSelectionModel().getSelectedItem();
-                        if (selected != null && selected.getDrive() == disk) {
-                            diskPathLabel.setText(filePath);
-                        }
-                        
-                        // Force table refresh to ensure UI updates
-                        diskTable.refresh();
-                    } else if (key.equals("Drive")) {
-                        // Drive number update
-                        try {
-                            item.setDrive(Integer.parseInt(value.toString()));
-                        } catch (NumberFormatException e) {
-                            // Ignore
-                        }
-                    } else if (key.equals("_path") || key.equals("path")) {
-                        // Path parameter - extract filename for File column, store full path for label
-                        String filePath = value.toString();
-                        String filename = UIUtils.getFilenameFromURI(filePath);
-                        item.setFile(filename);
-                        System.out.println("Disk " + disk + " path updated: " + filename + " (full path: " + filePath + ")");
-                        
-                        // Update path label if this disk is currently selected
-                        DiskTableItem selected = diskTable.getSelectionModel().getSelectedItem();
-                        if (selected != null && selected.getDrive() == disk) {
-                            diskPathLabel.setText(filePath);
-                        }
-                        
-                        // Force table refresh to ensure UI updates
-                        diskTable.refresh();
-                    } else if (key.equals("Location")) {
-                        // Location update - we don't display this in the table, but log it
-                        System.out.println("Disk " + disk + " location: " + value.toString());
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error updating disk table entry for disk " + disk + ", key " + key + ": " + e.getMessage());
-                    e.printStackTrace();
+        Platform.runLater(() -> applyDiskTableEntry(disk, key, value));
+    }
+    
+    /**
+     * Apply one disk change to its row, on the FX thread.
+     * The row properties are bound to the cells, so only the changed ones repaint.
+     */
+    void applyDiskTableEntry(int disk, String key, Object value) {
+        if (disk < 0 || disk >= diskTableData.size()) {
+            return;
+        }
+        
+        DiskTableItem item = diskTableData.get(disk);
+        if (item == null) {
+            return;
+        }
+        
+        if (key.equals("LED")) {
+            // LED is handled via integer state (0=dark, 1=green, 2=red)
+            if (value instanceof Integer) {
+                item.setLed((Integer)value);
+            } else if (value != null) {
+                String valStr = value.toString();
+                if (valStr.contains("green") || valStr.equals("1")) {
+                    item.setLed(1);
+                } else if (valStr.contains("red") || valStr.equals("2")) {
+                    item.setLed(2);
+                } else {
+                    item.setLed(0);
                 }
-            } else {
-                System.err.println("Warning: Invalid disk number " + disk + " (valid range: 0-" + (diskTableData.size() - 1) + ")");
             }
-        });
+        } else if (key.equals("_reads")) {
+            try {
+                item.setReads(Integer.parseInt(value.toString()));
+            } catch (NumberFormatException e) {
+                // Ignore invalid values
+            }
+        } else if (key.equals("_writes")) {
+            try {
+                item.setWrites(Integer.parseInt(value.toString()));
+            } catch (NumberFormatException e) {
+                // Ignore invalid values
+            }
+        } else if (key.equals("*insert")) {
+            String filePath = value.toString();
+            
+            item.setDrive(disk);
+            item.setFile(UIUtils.getFilenameFromURI(filePath));
+            
+            // Reset reads/writes when disk is inserted
+            item.setReads(0);
+            item.setWrites(0);
+            item.setLed(0);
+            
+            updateSelectedPath(disk, filePath);
+        } else if (key.equals("*eject")) {
+            item.setFile("");
+            item.setReads(0);
+            item.setWrites(0);
+            item.setLed(0);
+            
+            updateSelectedPath(disk, "");
+        } else if (key.equals("File") || key.equals("_path") || key.equals("path")) {
+            // full path goes to the label, the File column only shows the name
+            String filePath = value.toString();
+            item.setFile(UIUtils.getFilenameFromURI(filePath));
+            
+            updateSelectedPath(disk, filePath);
+        } else if (key.equals("Drive")) {
+            try {
+                item.setDrive(Integer.parseInt(value.toString()));
+            } catch (NumberFormatException e) {
+                // Ignore
+            }
+        }
+    }
+    
+    private void updateSelectedPath(int disk, String filePath) {
+        DiskTableItem selected = diskTable.getSelectionModel().getSelectedItem();
+        if (selected != null && selected.getDrive() == disk) {
+            diskPathLabel.setText(filePath);
+        }
+    }
+    
+    /**
+     * Append a batch of already formatted log lines, on the FX thread.
+     */
+    void appendLogText(CharSequence text) {
+        if (logTextArea != null) {
+            logTextArea.appendText(text.toString());
+            logTextArea.setScrollTop(Double.MAX_VALUE);
+        }
     }
     
     /**
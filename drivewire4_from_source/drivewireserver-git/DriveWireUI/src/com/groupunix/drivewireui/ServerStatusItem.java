@@ -13,6 +13,10 @@ public class ServerStatusItem
 	private int threads = 0;
 	private int uiclients = 0;
 	private long magic = 0;
+	private long bytesin = 0;
+	private long bytesout = 0;
+	private long disklatency = 0;
+	private long crcerrors = 0;
 	
 	
 	public void setInterval(int interval)
@@ -94,6 +98,7 @@ public class ServerStatusItem
 		
 		res = "Interval: " + this.interval + "  MemTot: " + this.memtotal + "  MemFree: " + this.memfree + "  Ops: " + this.ops + "  DiskOps: " + this.diskops;
 		res += "  VSOps: " + this.vserialops + "  Instances: " + this.instances + "  InstAlive: " + this.instancesalive + "  Threads: " + this.threads + "  UIClients: " + this.uiclients;
+		res += "  BytesIn: " + this.bytesin + "  BytesOut: " + this.bytesout + "  DiskLat99: " + this.disklatency + "  CRCErrors: " + this.crcerrors;
 				
 		return res;
 	}
@@ -115,6 +120,39 @@ public class ServerStatusItem
 	{
 		return this.magic;
 	}
+	public void setBytesIn(long bytesin)
+	{
+		this.bytesin = bytesin;
+	}
+	public long getBytesIn()
+	{
+		return this.bytesin;
+	}
+	public void setBytesOut(long bytesout)
+	{
+		this.bytesout = bytesout;
+	}
+	public long getBytesOut()
+	{
+		return this.bytesout;
+	}
+	// p99 disk lookup in us, worst instance
+	public void setDiskLatency(long disklatency)
+	{
+		this.disklatency = disklatency;
+	}
+	public long getDiskLatency()
+	{
+		return this.disklatency;
+	}
+	public void setCRCErrors(long crcerrors)
+	{
+		this.crcerrors = crcerrors;
+	}
+	public long getCRCErrors()
+	{
+		return this.crcerrors;
+	}
 
 
 }
@@ -0,0 +1,13 @@
+package com.groupunix.drivewireui;
+
+public interface SyncEventParams 
+{
+	// the params of the sync event being handled, keyed by their one character name
+	
+	public boolean has(char key);
+	
+	// null for a param sent without a value
+	public String get(char key);
+	
+	public long getLong(char key) throws NumberFormatException;
+}
@@ -0,0 +1,178 @@
+package com.groupunix.drivewireui;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.groupunix.drivewireserver.DWDefs;
+
+public class SyncFrameDecoder 
+{
+	// reads the binary "ui sync 2" stream, see DWDefs for the layout
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private DataInputStream in;
+	private ArrayList<String> strings = new ArrayList<String>();
+	private byte[] frame = new byte[1024];
+	private int pos;
+	private int end;
+	private long bytes = 0;
+	
+	public SyncFrameDecoder(DataInputStream in)
+	{
+		this.in = in;
+	}
+	
+	
+	// blocks for the next event, fills params with all of its values and returns its type
+	public byte readEvent(HashMap<String, String> params) throws IOException
+	{
+		while (true)
+		{
+			int len = readStreamVarInt();
+			
+			if ((len < 1) || (len > 0x1000000))
+				throw new IOException("Bad sync frame length " + len);
+			
+			if (len > this.frame.length)
+				this.frame = new byte[Math.max(len, this.frame.length * 2)];
+			
+			this.in.readFully(this.frame, 0, len);
+			this.bytes += len;
+			this.pos = 0;
+			this.end = len;
+			
+			byte type = this.frame[this.pos++];
+			
+			if (type == DWDefs.UI_SYNC_FRAME_STRING)
+			{
+				int id = readVarInt();
+				int slen = readVarInt();
+				
+				String s = readString(slen);
+				
+				while (this.strings.size() <= id)
+					this.strings.add(null);
+				
+				this.strings.set(id, s);
+				continue;
+			}
+			
+			int count = readVarInt();
+			
+			for (int i = 0;i < count;i++)
+			{
+				String key = this.strings.get(readVarInt());
+				byte tag = (byte) readByte();
+				String val;
+				
+				if (tag == DWDefs.UI_SYNC_VAL_NULL)
+					val = null;
+				else if (tag == DWDefs.UI_SYNC_VAL_NUMBER)
+					val = Long.toString(readVarLong());
+				else if (tag == DWDefs.UI_SYNC_VAL_INTERNED)
+					val = this.strings.get(readVarInt());
+				else if (tag == DWDefs.UI_SYNC_VAL_STRING)
+					val = readString(readVarInt());
+				else
+					throw new IOException("Bad sync value tag " + tag);
+				
+				params.put(key, val);
+			}
+			
+			return type;
+		}
+	}
+	
+	
+	// frame bytes taken off the socket so far
+	public long getByteCount()
+	{
+		return this.bytes;
+	}
+	
+	
+	private void need(int n) throws IOException
+	{
+		if (this.end - this.pos < n)
+			throw new IOException("Short sync frame");
+	}
+	
+	private int readByte() throws IOException
+	{
+		need(1);
+		return this.frame[this.pos++] & 0xFF;
+	}
+	
+	private int readVarInt() throws IOException
+	{
+		int v = 0;
+		int shift = 0;
+		int b;
+		
+		do
+		{
+			if (shift > 28)
+				throw new IOException("Bad sync varint");
+			
+			b = readByte();
+			v |= (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while ((b & 0x80) != 0);
+		
+		return v;
+	}
+	
+	// frame lengths come straight off the socket
+	private int readStreamVarInt() throws IOException
+	{
+		int v = 0;
+		int shift = 0;
+		int b;
+		
+		do
+		{
+			if (shift > 28)
+				throw new IOException("Bad sync frame length");
+			
+			b = this.in.readUnsignedByte();
+			v |= (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while ((b & 0x80) != 0);
+		
+		return v;
+	}
+	
+	private String readString(int len) throws IOException
+	{
+		if (len < 0)
+			throw new IOException("Bad sync string length " + len);
+		
+		need(len);
+		String s = new String(this.frame, this.pos, len, UTF8);
+		this.pos += len;
+		return s;
+	}
+	
+	private long readVarLong() throws IOException
+	{
+		long z = 0;
+		int shift = 0;
+		int b;
+		
+		do
+		{
+			b = readByte();
+			z |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while ((b & 0x80) != 0);
+		
+		return (z >>> 1) ^ -(z & 1);
+	}
+}
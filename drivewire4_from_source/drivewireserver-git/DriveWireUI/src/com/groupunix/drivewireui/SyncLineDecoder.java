@@ -0,0 +1,204 @@
+package com.groupunix.drivewireui;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+public class SyncLineDecoder implements SyncEventParams
+{
+	// reads the text "ui sync" stream straight off the socket bytes.
+	// "k:value" CR sets a param, a single character line CR ends an event of that type.
+	// the server only sends params that changed, so values stay put from one event to the next.
+	// values are kept as bytes in a slot per key; numbers are parsed from there and
+	// strings are only made when asked for, and then only once per new value.
+	
+	private static final int READ_BUFFER_SIZE = 4096;
+	private static final int MAX_LINE = 0x100000;
+	private static final int KEYS = 128;
+	private static final byte CR = 13;
+	
+	private InputStream in;
+	private Charset charset;
+	private ByteBuffer buf = ByteBuffer.allocate(READ_BUFFER_SIZE);
+	
+	private byte[][] vals = new byte[KEYS][];
+	// -1 never sent, 0 sent without a value
+	private int[] lens = new int[KEYS];
+	private String[] strs = new String[KEYS];
+	
+	private long bytes = 0;
+	
+	
+	public SyncLineDecoder(InputStream in, Charset charset)
+	{
+		this.in = in;
+		this.charset = charset;
+		
+		for (int i = 0;i < KEYS;i++)
+			this.lens[i] = -1;
+		
+		// nothing read yet
+		this.buf.flip();
+	}
+	
+	
+	// blocks for the next event and returns its type, -1 at end of stream
+	public int readEvent() throws IOException
+	{
+		byte[] b = this.buf.array();
+		
+		while (true)
+		{
+			int start = this.buf.position();
+			int end = this.buf.limit();
+			int i = start;
+			
+			while ((i < end) && (b[i] != CR))
+				i++;
+			
+			if (i == end)
+			{
+				// partial line, keep it and read more behind it
+				if (!fill())
+					return -1;
+				
+				b = this.buf.array();
+				continue;
+			}
+			
+			this.buf.position(i + 1);
+			
+			int len = i - start;
+			
+			if (len == 1)
+				return b[start] & 0xFF;
+			
+			if ((len > 1) && (b[start + 1] == ':') && (b[start] >= 0))
+				setParam(b[start], b, start + 2, len - 2);
+		}
+	}
+	
+	
+	private boolean fill() throws IOException
+	{
+		this.buf.compact();
+		
+		if (!this.buf.hasRemaining())
+		{
+			if (this.buf.capacity() >= MAX_LINE)
+				throw new IOException("Sync line too long");
+			
+			ByteBuffer bigger = ByteBuffer.allocate(this.buf.capacity() * 2);
+			this.buf.flip();
+			bigger.put(this.buf);
+			this.buf = bigger;
+		}
+		
+		int got = this.in.read(this.buf.array(), this.buf.arrayOffset() + this.buf.position(), this.buf.remaining());
+		
+		if (got > 0)
+		{
+			this.buf.position(this.buf.position() + got);
+			this.bytes += got;
+		}
+		
+		this.buf.flip();
+		
+		return got > 0;
+	}
+	
+	
+	private void setParam(int key, byte[] src, int off, int len)
+	{
+		byte[] v = this.vals[key];
+		
+		if (len > 0)
+		{
+			// same bytes as before keeps the String we already made
+			if ((v != null) && (this.lens[key] == len) && sameBytes(v, src, off, len))
+				return;
+			
+			if ((v == null) || (v.length < len))
+				v = this.vals[key] = new byte[Math.max(len, 32)];
+			
+			System.arraycopy(src, off, v, 0, len);
+		}
+		
+		this.lens[key] = len;
+		this.strs[key] = null;
+	}
+	
+	
+	private static boolean sameBytes(byte[] a, byte[] b, int off, int len)
+	{
+		for (int i = 0;i < len;i++)
+		{
+			if (a[i] != b[off + i])
+				return false;
+		}
+		
+		return true;
+	}
+	
+	
+	public boolean has(char key)
+	{
+		return (key < KEYS) && (this.lens[key] > -1);
+	}
+	
+	
+	public String get(char key)
+	{
+		if (!has(key) || (this.lens[key] == 0))
+			return null;
+		
+		if (this.strs[key] == null)
+			this.strs[key] = new String(this.vals[key], 0, this.lens[key], this.charset);
+		
+		return this.strs[key];
+	}
+	
+	
+	public long getLong(char key) throws NumberFormatException
+	{
+		int len = has(key) ? this.lens[key] : 0;
+		
+		if (len == 0)
+			throw new NumberFormatException("No value for " + key);
+		
+		byte[] v = this.vals[key];
+		int i = 0;
+		boolean neg = false;
+		long res = 0;
+		
+		if ((v[0] == '-') || (v[0] == '+'))
+		{
+			neg = (v[0] == '-');
+			i++;
+			
+			if (len == 1)
+				throw new NumberFormatException("Bad number for " + key);
+		}
+		
+		for (;i < len;i++)
+		{
+			int d = v[i] - '0';
+			
+			if ((d < 0) || (d > 9) || (res > (Long.MAX_VALUE - d) / 10))
+				throw new NumberFormatException("Bad number for " + key);
+			
+			res = res * 10 + d;
+		}
+		
+		return neg ? -res : res;
+	}
+	
+	
+	// bytes taken off the socket so far
+	public long getByteCount()
+	{
+		return this.bytes;
+	}
+	
+}
@@ -1,27 +1,35 @@
 package com.groupunix.drivewireui;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.charset.Charset;
 import java.util.HashMap;
 
+import com.groupunix.drivewireserver.DWDefs;
+
 
 public class SyncThread implements Runnable 
 {
-	private static final int READ_BUFFER_SIZE = 2048;
-	private static final String LINE_END = Character.toString((char) 13);
 	private String host =  new String();
 	private int port = -1;
 	private Socket sock = null;
 	private boolean wanttodie = false;
 	private OutputStream out;
-	private BufferedReader in;
+	// one or the other, depending on what the server answered
+	private SyncFrameDecoder decoder = null;
+	private SyncLineDecoder lines = null;
 	
 	private HashMap<String, String> params = new HashMap<String, String>();
-	private StringBuilder buffer = new StringBuilder(READ_BUFFER_SIZE * 2);
+	private SyncEventParams mapParams = new MapParams();
 	private LogItem logbuf = new LogItem();
+	
+	// since the current connection, to see how far behind the UI falls under load
+	private volatile long events = 0;
+	private volatile long busyNanos = 0;
+	private volatile long connectedAt = 0;
 	private ServerStatusItem ssbuf = new ServerStatusItem();
 	
 	public SyncThread()
@@ -36,8 +44,6 @@ public class SyncThread implements Runnable
 		System.out.println("=== SyncThread.run() STARTED ===");
 		System.err.println("=== SyncThread.run() STARTED ===");
 		
-		char[] cbuf = new char[READ_BUFFER_SIZE];
-		
 		// initial sleep
 		System.out.println("=== SyncThread: Waiting for MainWin to be ready... (ready=" + MainWin.isReady() + ") ===");
 		System.err.println("=== SyncThread: Waiting for MainWin to be ready... (ready=" + MainWin.isReady() + ") ===");
@@ -88,8 +94,6 @@ public class SyncThread implements Runnable
 			                        (currentPort != normalizedThisPort) || 
 			                        (this.sock == null);
 			
-			System.out.println("SyncThread: Connection check - currentHost=" + currentHost + ", this.host=" + this.host + ", currentPort=" + currentPort + ", this.port=" + this.port + ", sock=" + (this.sock == null ? "null" : "connected") + ", needConnection=" + needConnection);
-			System.err.println("SyncThread: Connection check - currentHost=" + currentHost + ", this.host=" + this.host + ", currentPort=" + currentPort + ", this.port=" + this.port + ", sock=" + (this.sock == null ? "null" : "connected") + ", needConnection=" + needConnection);
 			
 			if (!wanttodie && needConnection)
 			{
@@ -174,18 +178,38 @@ public class SyncThread implements Runnable
 				    
 					// Set up input/output streams FIRST
 					this.out = sock.getOutputStream();
-				    this.in = new BufferedReader(new InputStreamReader(sock.getInputStream()));
 				    
-				    // Send sync command immediately to start the sync feed
+				    // Send sync command immediately to start the sync feed, asking for binary frames
 				    System.out.println("SyncThread: Sending 'ui sync' command for instance " + MainWin.getInstance());
 				    System.err.println("SyncThread: Sending 'ui sync' command for instance " + MainWin.getInstance());
 				    this.out.write(( MainWin.getInstance()+"").getBytes());
 				    this.out.write((byte) 0);
-				    this.out.write("ui sync\n".getBytes());
+				    this.out.write(("ui sync " + DWDefs.UI_SYNC_PROTO_BINARY + "\n").getBytes());
 				    this.out.flush();
 				    System.out.println("SyncThread: 'ui sync' command sent successfully");
 				    System.err.println("SyncThread: 'ui sync' command sent successfully");
 				    
+				    // a server that knows the binary stream starts with the magic byte, older ones with CR
+				    BufferedInputStream bin = new BufferedInputStream(sock.getInputStream());
+				    
+				    if (bin.read() == (DWDefs.UI_SYNC_MAGIC & 0xFF))
+				    {
+				    	bin.read();
+				    	this.decoder = new SyncFrameDecoder(new DataInputStream(bin));
+				    	this.lines = null;
+				    }
+				    else
+				    {
+				    	this.decoder = null;
+				    	this.lines = new SyncLineDecoder(bin, Charset.defaultCharset());
+				    }
+				    
+				    this.params.clear();
+				    this.events = 0;
+				    this.busyNanos = 0;
+				    this.connectedAt = System.currentTimeMillis();
+				    MainWin.debug("Sync: stream is " + (this.decoder == null ? "text" : "binary"));
+				    
 				    // Update connection status
 				    MainWin.setConStatusConnect();
 				    MainWin.debug("Sync: Connected.");
@@ -277,11 +301,25 @@ public class SyncThread implements Runnable
 
 				try 
 				{
-					int thisread = in.read(cbuf,0,READ_BUFFER_SIZE);
+					int type;
+					SyncEventParams p;
+					
+					if (this.decoder != null)
+					{
+						// one event per frame, carrying all of its params
+						this.params.clear();
+						type = this.decoder.readEvent(this.params) & 0xFF;
+						p = this.mapParams;
+					}
+					else
+					{
+						type = this.lines.readEvent();
+						p = this.lines;
+					}
 					
-					if (thisread < 0)
+					if (type < 0)
 					{
-						System.out.println("SyncThread: Read returned -1, connection closed");
+						MainWin.debug("Sync: connection closed, " + getStats());
 						try 
 						{
 							sock.close();
@@ -295,12 +333,11 @@ public class SyncThread implements Runnable
 					}
 					else
 					{
-						System.out.println("SyncThread: Read " + thisread + " bytes from server");
-						buffer.append(cbuf, 0, thisread);
-						eatData(buffer);
+						long t = System.nanoTime();
+						processEvent((char) type, p);
+						this.busyNanos += System.nanoTime() - t;
+						this.events++;
 					}
-					
-					
 				
 				} 
 				catch (IOException e) 
@@ -328,258 +365,239 @@ public class SyncThread implements Runnable
 	
 	
 	
-	private void eatData(StringBuilder buf) 
-	{
-		int le = buf.indexOf(LINE_END);
-		
-		while (le > -1)
-		{
-			if (le > 0)
-			{
-				String line = buf.substring(0, le);
-				// Log all lines being processed for debugging
-				if (line.length() > 0 && (line.length() <= 2 || line.charAt(1) == ':')) {
-					System.out.println("SyncThread: Processing line: '" + line + "' (length=" + line.length() + ")");
-				}
-				processLine(line);
-			}
-			
-			buf.delete(0, le+1);
-			le = buf.indexOf(LINE_END);
-		}
-		
-		// Log remaining buffer if it's getting large (might indicate missing line endings)
-		if (buf.length() > 100) {
-			System.out.println("SyncThread: WARNING - Large buffer remaining (" + buf.length() + " chars), first 100 chars: '" + buf.substring(0, Math.min(100, buf.length())) + "'");
-		}
-	}
-
-	
-	private void processLine(String line) 
+	private void processEvent(char type, SyncEventParams p) 
 	{
 		// drives
-		if (line.equals("D"))
+		if (type == 'D')
 		{
-			System.out.println("SyncThread: Received disk event line 'D'");
-			System.out.println("SyncThread: params d=" + this.params.get("d") + ", k=" + this.params.get("k") + ", v=" + this.params.get("v"));
-			
-			if (this.params.containsKey("d") && (this.params.get("d") != null))
+			if (p.get('d') != null)
 			{
 				try
 				{
-					int diskNum = Integer.parseInt(this.params.get("d"));
-					String key = this.params.get("k");
-					String val = this.params.get("v");
-					System.out.println("SyncThread: Calling submitDiskEvent(disk=" + diskNum + ", key=" + key + ", val=" + val + ")");
-					MainWin.submitDiskEvent(diskNum, key, val);
-					// Clear params after processing disk event
-					this.params.clear();
+					int diskNum = (int) p.getLong('d');
+					String key = p.get('k');
+					MainWin.submitDiskEvent(diskNum, key, p.get('v'));
+					// coalesced sector telemetry carries the counters alongside _lsn
+					if ("_lsn".equals(key))
+					{
+						if (p.has('R'))
+							MainWin.submitDiskEvent(diskNum, "_reads", p.get('R'));
+						if (p.has('W'))
+							MainWin.submitDiskEvent(diskNum, "_writes", p.get('W'));
+					}
 				}
 				catch (NumberFormatException e)
 				{
-					System.err.println("SyncThread: Error parsing disk number: " + e.getMessage());
-					this.params.clear();
+					MainWin.debug("Sync: bad disk number in disk event");
 				}
-				
-			} else {
-				System.err.println("SyncThread: Missing 'd' parameter in disk event");
-				this.params.clear();
 			}
 		}
 		// server status
-		else if (line.equals("@"))
+		else if (type == '@')
 		{
 			try
 			{
-				if (this.params.containsKey("0"))
-				{
-					this.ssbuf.setInterval(Integer.parseInt(params.get("0")));
-				}
+				if (p.has('0'))
+					this.ssbuf.setInterval((int) p.getLong('0'));
 				
-				if (this.params.containsKey("1"))
-				{
-					this.ssbuf.setMemtotal(Long.parseLong(params.get("1")));
-				}
+				if (p.has('1'))
+					this.ssbuf.setMemtotal(p.getLong('1'));
 				
-				if (this.params.containsKey("2"))
-				{
-					this.ssbuf.setMemfree(Long.parseLong(params.get("2")));
-				}
+				if (p.has('2'))
+					this.ssbuf.setMemfree(p.getLong('2'));
 				
-				if (this.params.containsKey("3"))
-				{
-					this.ssbuf.setOps(Long.parseLong(params.get("3")));
-				}
+				if (p.has('3'))
+					this.ssbuf.setOps(p.getLong('3'));
 				
-				if (this.params.containsKey("4"))
-				{
-					this.ssbuf.setDiskops(Long.parseLong(params.get("4")));
-				}
+				if (p.has('4'))
+					this.ssbuf.setDiskops(p.getLong('4'));
 				
-				if (this.params.containsKey("5"))
-				{
-					this.ssbuf.setVserialops(Long.parseLong(params.get("5")));
-				}
+				if (p.has('5'))
+					this.ssbuf.setVserialops(p.getLong('5'));
 				
-				if (this.params.containsKey("6"))
-				{
-					this.ssbuf.setInstances(Integer.parseInt(params.get("6")));
-				}
+				if (p.has('6'))
+					this.ssbuf.setInstances((int) p.getLong('6'));
 				
-				if (this.params.containsKey("7"))
-				{
-					this.ssbuf.setInstancesalive(Integer.parseInt(params.get("7")));
-				}
+				if (p.has('7'))
+					this.ssbuf.setInstancesalive((int) p.getLong('7'));
 				
-				if (this.params.containsKey("8"))
-				{
-					this.ssbuf.setThreads(Integer.parseInt(params.get("8")));
-				}
+				if (p.has('8'))
+					this.ssbuf.setThreads((int) p.getLong('8'));
 				
-				if (this.params.containsKey("9"))
-				{
-					this.ssbuf.setUIClients(Integer.parseInt(params.get("9")));
-				}
+				if (p.has('9'))
+					this.ssbuf.setUIClients((int) p.getLong('9'));
 				
-				if (this.params.containsKey("!"))
-				{
-					this.ssbuf.setMagic(Long.parseLong(params.get("!")));
-				}
+				if (p.has('!'))
+					this.ssbuf.setMagic(p.getLong('!'));
+				
+				if (p.has('<'))
+					this.ssbuf.setBytesIn(p.getLong('<'));
+				
+				if (p.has('>'))
+					this.ssbuf.setBytesOut(p.getLong('>'));
+				
+				if (p.has('#'))
+					this.ssbuf.setDiskLatency(p.getLong('#'));
+				
+				if (p.has('x'))
+					this.ssbuf.setCRCErrors(p.getLong('x'));
 				
 				MainWin.submitServerStatusEvent(ssbuf);
-				// Clear params after processing server status event
-				this.params.clear();
 			}
 			catch (NumberFormatException e)
 			{
-				this.params.clear();
+				// skip the update, the next one will do
 			}
 			
 		}
 		// logging
-		else if (line.equals("L"))
+		else if (type == 'L')
 		{
-			if (this.params.containsKey("l"))
-				logbuf.setLevel(this.params.get("l"));
+			if (p.has('l'))
+				logbuf.setLevel(p.get('l'));
 			
-			if (this.params.containsKey("t"))
-				logbuf.setTimestamp(Long.valueOf(this.params.get("t")));
+			if (p.has('t'))
+			{
+				try
+				{
+					logbuf.setTimestamp(p.getLong('t'));
+				}
+				catch (NumberFormatException e)
+				{
+					logbuf.setTimestamp(System.currentTimeMillis());
+				}
+			}
 			
-			if (this.params.containsKey("m"))
-				logbuf.setMessage(this.params.get("m"));
+			if (p.has('m'))
+				logbuf.setMessage(p.get('m'));
 			
-			if (this.params.containsKey("r"))
-				logbuf.setThread(this.params.get("r"));
+			if (p.has('r'))
+				logbuf.setThread(p.get('r'));
 			
-			if (this.params.containsKey("s"))
-				logbuf.setSource(this.params.get("s"));
+			if (p.has('s'))
+				logbuf.setSource(p.get('s'));
 			
 			MainWin.addToServerLog(logbuf.clone());
-			// Clear params after processing log event
-			this.params.clear();
-				
 		}
 		// instance config
-		else if (line.equals("I"))
+		else if (type == 'I')
 		{
-			//System.out.println("I" + ": " + this.params.get("k") + " = " + this.params.get("v"));
-			
-			if (this.params.containsKey("k") && (this.params.get("k") != null))
+			if (p.get('k') != null)
 			{
-				if (this.params.containsKey("v"))
+				if (p.has('v'))
 				{
-					if (this.params.get("v") == null)
+					if (p.get('v') == null)
 					{
-						MainWin.getInstanceConfig().clearProperty(this.params.get("k"));
+						MainWin.getInstanceConfig().clearProperty(p.get('k'));
 					}
 					else
 					{
-						MainWin.getInstanceConfig().setProperty(this.params.get("k"), this.params.get("v"));
+						MainWin.getInstanceConfig().setProperty(p.get('k'), p.get('v'));
 					}
-					
-					
 				}
-					
 			}
-			// Clear params after processing instance config event
-			this.params.clear();
 		}
 		// server config
-		else if (line.equals("C"))
+		else if (type == 'C')
 		{
-			//System.out.println("C" + ": " + this.params.get("k") + " = " + this.params.get("v"));
-			
-			
-			if (this.params.containsKey("k") && (this.params.get("k") != null))
+			if ((p.get('k') != null) && p.has('v'))
 			{
-				if (this.params.containsKey("v"))
-				{
-					MainWin.submitServerConfigEvent(this.params.get("k"), this.params.get("v"));
-				}
-					
+				MainWin.submitServerConfigEvent(p.get('k'), p.get('v'));
 			}
-			// Clear params after processing server config event
-			this.params.clear();
 		}
 		// MIDI
-		else if (line.equals("M"))
+		else if (type == 'M')
 		{
-
-			if (this.params.containsKey("k") && (this.params.get("k") != null))
+			String key = p.get('k');
+			
+			if (key != null)
 			{
-				if (this.params.get("k").equals("device") )
+				if (key.equals("device"))
 				{
-					MainWin.getMidiStatus().setCurrentDevice(this.params.get("v"));
+					MainWin.getMidiStatus().setCurrentDevice(p.get('v'));
 				}
-				else if (this.params.get("k").equals("profile") )
+				else if (key.equals("profile"))
 				{
-					MainWin.getMidiStatus().setCurrentProfile(this.params.get("v"));
+					MainWin.getMidiStatus().setCurrentProfile(p.get('v'));
 				}
-				else if (this.params.get("k").equals("soundbank") )
+				else if (key.equals("voicelock"))
 				{
-					
-				}
-				else if (this.params.get("k").equals("voicelock") )
-				{
-					MainWin.getMidiStatus().setVoiceLock(Boolean.valueOf(this.params.get("v")));
+					MainWin.getMidiStatus().setVoiceLock(Boolean.valueOf(p.get('v')));
 				}
 				
-				
 				MainWin.applyMIDIStatus();
 			}
-			// Clear params after processing MIDI event
-			this.params.clear();
 		}
+	}
+	
+	
+	// events handled, bytes read and time spent applying them, since the current connection
+	public long getEventCount()
+	{
+		return this.events;
+	}
+	
+	public long getByteCount()
+	{
+		if (this.lines != null)
+			return this.lines.getByteCount();
 		
+		if (this.decoder != null)
+			return this.decoder.getByteCount();
 		
+		return 0;
+	}
+	
+	public long getBusyNanos()
+	{
+		return this.busyNanos;
+	}
+	
+	public String getStats()
+	{
+		long secs = Math.max(1, (System.currentTimeMillis() - this.connectedAt) / 1000);
+		long evts = this.events;
 		
+		return evts + " events (" + (evts / secs) + "/s), " + getByteCount() + " bytes, " 
+			+ (evts == 0 ? 0 : this.busyNanos / evts / 1000) + " us/event handling";
+	}
+	
+	
+	// the binary stream hands over a full map per event
+	private class MapParams implements SyncEventParams
+	{
+		private String[] names = new String[128];
 		
-		// params
-		if (line.length()>1)
+		private String name(char key)
 		{
-			if (line.charAt(1) == ':') 
-			{
-				String val = null;
-				if (line.length() > 2)
-				{
-					val = line.substring(2);
-				}
-
-				String paramKey = line.substring(0,1);
-				this.params.put(paramKey, val);
-				
-				// Debug logging for disk-related params
-				if (paramKey.equals("d") || paramKey.equals("k") || paramKey.equals("v")) {
-					System.out.println("SyncThread: Parsed param " + paramKey + "=" + val + " (current params: d=" + this.params.get("d") + ", k=" + this.params.get("k") + ", v=" + this.params.get("v") + ")");
-				}
-			}
-		} else {
-			// Log non-param lines for debugging (including event type lines)
-			if (line.length() > 0) {
-				System.out.println("SyncThread: Received event type line: '" + line + "' (current params: d=" + this.params.get("d") + ", k=" + this.params.get("k") + ", v=" + this.params.get("v") + ")");
-			}
+			if (key >= names.length)
+				return String.valueOf(key);
+			
+			if (names[key] == null)
+				names[key] = String.valueOf(key);
+			
+			return names[key];
+		}
+		
+		public boolean has(char key)
+		{
+			return params.containsKey(name(key));
 		}
 		
+		public String get(char key)
+		{
+			return params.get(name(key));
+		}
+		
+		public long getLong(char key) throws NumberFormatException
+		{
+			String v = params.get(name(key));
+			
+			if (v == null)
+				throw new NumberFormatException("No value for " + key);
+			
+			return Long.parseLong(v);
+		}
 	}
 
 	public void die()
@@ -0,0 +1,324 @@
+package com.groupunix.drivewireui;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.apache.log4j.Logger;
+
+import com.groupunix.drivewireserver.DWDefs;
+
+public class UISession implements Runnable
+{
+	// one long lived "ui session" connection to the server shared by every Connection.
+	// requests carry ids, so any number of threads can have commands in flight at once
+	// and a reader thread hands each response to whoever is waiting on it.
+	// see DWDefs for the framing.
+
+	private static final Logger logger = Logger.getLogger(UISession.class);
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	// after an old server turns us down, don't ask again on every command
+	private static final long LEGACY_RETRY = 60000;
+
+	private static UISession session = null;
+	private static String legacyhost = null;
+	private static int legacyport = -1;
+	private static long legacyuntil = 0;
+
+	private String host;
+	private int port;
+	private Socket sock;
+	private DataInputStream in;
+	private DataOutputStream out;
+
+	private int nextid = 1;
+	private HashMap<Integer, Reply> pending = new HashMap<Integer, Reply>();
+	private volatile boolean closed = false;
+
+
+	public static class Reply
+	{
+		private byte rc;
+		private byte[] data = null;
+		private IOException error = null;
+		private boolean done = false;
+		private UISession session;
+		private int id;
+
+		Reply(UISession session)
+		{
+			this.session = session;
+		}
+
+		synchronized void complete(byte rc, byte[] data)
+		{
+			this.rc = rc;
+			this.data = data;
+			this.done = true;
+			notifyAll();
+		}
+
+		synchronized void fail(IOException e)
+		{
+			this.error = e;
+			this.done = true;
+			notifyAll();
+		}
+
+		// response text, or the server's error as an exception, same as the one shot protocol
+		public synchronized String await(long timeout) throws IOException, DWUIOperationFailedException
+		{
+			long deadline = System.currentTimeMillis() + timeout;
+			long left;
+
+			while (!this.done && ((left = deadline - System.currentTimeMillis()) > 0))
+			{
+				try
+				{
+					wait(left);
+				}
+				catch (InterruptedException e)
+				{
+					this.session.forget(this.id);
+					throw new IOException("Interrupted waiting for server");
+				}
+			}
+
+			if (!this.done)
+			{
+				// nobody will be waiting when the answer turns up
+				this.session.forget(this.id);
+				throw new IOException("Timed out waiting for server");
+			}
+
+			if (this.error != null)
+				throw this.error;
+
+			String txt = new String(this.data, UTF8);
+
+			if (this.rc != 0)
+				throw new DWUIOperationFailedException(this.rc, txt);
+
+			return txt;
+		}
+	}
+
+
+	// the session for host:port, opened if need be.  null if the server doesn't do sessions.
+	public static synchronized UISession getSession(String host, int port) throws IOException
+	{
+		if ((session != null) && (session.closed || !session.host.equals(host) || (session.port != port)))
+		{
+			session.close();
+			session = null;
+		}
+
+		if (session != null)
+			return session;
+
+		if (host.equals(legacyhost) && (port == legacyport) && (System.currentTimeMillis() < legacyuntil))
+			return null;
+
+		UISession s = new UISession(host, port);
+
+		if (!s.open())
+		{
+			logger.info("server at " + host + ":" + port + " has no UI sessions, using a connection per command");
+			legacyhost = host;
+			legacyport = port;
+			legacyuntil = System.currentTimeMillis() + LEGACY_RETRY;
+			return null;
+		}
+
+		Thread t = new Thread(s, "uisession-" + host + ":" + port);
+		t.setDaemon(true);
+		t.start();
+
+		session = s;
+		return s;
+	}
+
+
+	private UISession(String host, int port)
+	{
+		this.host = host;
+		this.port = port;
+	}
+
+
+	private boolean open() throws IOException
+	{
+		int timeout = MainWin.config.getInt("TCPTimeout", MainWin.default_TCPTimeout);
+
+		this.sock = new Socket();
+		this.sock.connect(new InetSocketAddress(this.host, this.port), timeout);
+		this.sock.setTcpNoDelay(true);
+		this.sock.setSoTimeout(timeout);
+
+		this.in = new DataInputStream(new BufferedInputStream(this.sock.getInputStream()));
+		this.out = new DataOutputStream(new BufferedOutputStream(this.sock.getOutputStream()));
+
+		// asked the old way, so an old server just says it doesn't know the command
+		this.out.write("-1".getBytes());
+		this.out.write(0);
+		this.out.write(("ui session " + DWDefs.UI_SESSION_PROTO + "\n").getBytes());
+		this.out.flush();
+
+		if ((this.in.read() != (DWDefs.UI_SESSION_MAGIC & 0xFF)) || (this.in.read() != DWDefs.UI_SESSION_PROTO))
+		{
+			this.sock.close();
+			return false;
+		}
+
+		// from here the reader waits as long as it takes, callers have their own timeouts
+		this.sock.setSoTimeout(0);
+
+		return true;
+	}
+
+
+	// queue a command, the reply fills in when the server gets to it
+	public Reply send(int instance, String cmd) throws IOException
+	{
+		Reply r = new Reply(this);
+		byte[] buf = cmd.getBytes(UTF8);
+
+		synchronized(this.out)
+		{
+			if (this.closed)
+				throw new IOException("UI session is closed");
+
+			int id = this.nextid++;
+
+			r.id = id;
+
+			synchronized(this.pending)
+			{
+				this.pending.put(id, r);
+			}
+
+			try
+			{
+				this.out.writeInt(id);
+				this.out.writeInt(instance);
+				this.out.writeInt(buf.length);
+				this.out.write(buf);
+				this.out.flush();
+			}
+			catch (IOException e)
+			{
+				close();
+				throw e;
+			}
+		}
+
+		return r;
+	}
+
+
+	public String request(int instance, String cmd) throws IOException, DWUIOperationFailedException
+	{
+		return send(instance, cmd).await(MainWin.config.getInt("TCPTimeout", MainWin.default_TCPTimeout));
+	}
+
+
+	public void run()
+	{
+		IOException err = null;
+
+		try
+		{
+			while (!this.closed)
+			{
+				int id = this.in.readInt();
+				byte rc = this.in.readByte();
+				int len = this.in.readInt();
+
+				if (len < 0)
+					throw new IOException("Bad UI session response length " + len);
+
+				byte[] data = new byte[len];
+				this.in.readFully(data);
+
+				Reply r;
+
+				synchronized(this.pending)
+				{
+					r = this.pending.remove(id);
+				}
+
+				if (r != null)
+					r.complete(rc, data);
+			}
+		}
+		catch (IOException e)
+		{
+			err = e;
+		}
+
+		close();
+
+		// nobody is going to answer these now.  failed outside the lock, a timed out
+		// await holds its reply while it takes the lock to forget itself
+		ArrayList<Reply> left;
+
+		synchronized(this.pending)
+		{
+			left = new ArrayList<Reply>(this.pending.values());
+			this.pending.clear();
+		}
+
+		for (Reply r : left)
+			r.fail(new IOException("UI session closed" + (err == null ? "" : ": " + err.getMessage())));
+	}
+
+
+	private void forget(int id)
+	{
+		synchronized(this.pending)
+		{
+			this.pending.remove(id);
+		}
+	}
+
+
+	public boolean isClosed()
+	{
+		return this.closed;
+	}
+
+
+	public void close()
+	{
+		this.closed = true;
+
+		try
+		{
+			this.sock.close();
+		}
+		catch (IOException e)
+		{
+		}
+	}
+
+
+	// drop the shared session, next command reconnects.  for host/port changes and shutdown.
+	public static synchronized void closeSession()
+	{
+		if (session != null)
+		{
+			session.close();
+			session = null;
+		}
+
+		legacyhost = null;
+	}
+
+}
@@ -0,0 +1,14 @@
+package com.groupunix.drivewireui;
+
+/**
+ * Where sync events go when the JavaFX window is up.
+ * Kept free of JavaFX types so MainWin can call it directly.
+ * Both methods are called from the sync thread and must not block.
+ */
+public interface UIUpdateSink {
+
+    public void diskUpdate(int disk, String key, Object value);
+
+    public void logUpdate(LogItem item);
+
+}
@@ -105,11 +105,15 @@ public class UIUtils {
 		
 		
 		
+		ArrayList<String> cmds = new ArrayList<String>(settings.size());
+		
 		for (int i = 0;i<settings.size();i++)
-		{
-			List<String> res = conn.loadList(-1, "ui server config show " + settings.get(i));
-			values.put(settings.get(i), res.get(0));
-		}
+			cmds.add("ui server config show " + settings.get(i));
+		
+		List<List<String>> res = conn.loadLists(-1, cmds);
+		
+		for (int i = 0;i<settings.size();i++)
+			values.put(settings.get(i), res.get(i).get(0));
 		
 		conn.close();
 		
@@ -229,12 +233,15 @@ public class UIUtils {
 		conn.Connect();
 		
 		
+		ArrayList<String> cmds = new ArrayList<String>(settings.size());
+		
 		for (int i = 0;i<settings.size();i++)
-		{
-			List<String> res = conn.loadList(instance, "ui instance config show " + settings.get(i));
-			values.put(settings.get(i), res.get(0));
+			cmds.add("ui instance config show " + settings.get(i));
 		
-		}
+		List<List<String>> res = conn.loadLists(instance, cmds);
+		
+		for (int i = 0;i<settings.size();i++)
+			values.put(settings.get(i), res.get(i).get(0));
 		
 		conn.close();
 		
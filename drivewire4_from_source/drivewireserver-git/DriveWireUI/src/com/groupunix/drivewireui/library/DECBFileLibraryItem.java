@@ -1,8 +1,13 @@
 package com.groupunix.drivewireui.library;
 
+import java.io.IOException;
+
 import org.eclipse.swt.graphics.Image;
 
+import com.groupunix.drivewireserver.dwdisk.filesystem.DWDECBFileSystem;
 import com.groupunix.drivewireserver.dwdisk.filesystem.DWDECBFileSystemDirEntry;
+import com.groupunix.drivewireserver.dwexceptions.DWDiskInvalidSectorNumber;
+import com.groupunix.drivewireserver.dwexceptions.DWFileSystemInvalidFATException;
 import com.groupunix.drivewireui.DWLibrary;
 import com.groupunix.drivewireui.plugins.FileTypeDetector;
 
@@ -11,6 +16,7 @@ public class DECBFileLibraryItem extends LibraryItem
 	private byte[] data;
 	private Image icon;
 	private DWDECBFileSystemDirEntry entry;
+	private DWDECBFileSystem decbfs;
 	
 	public DECBFileLibraryItem(DWDECBFileSystemDirEntry entry, byte[] data)
 	{
@@ -22,6 +28,18 @@ public class DECBFileLibraryItem extends LibraryItem
 		this.type = DWLibrary.TYPE_DECB_FILE;
 		
 	}
+	
+	// contents are read from the disk when the file is opened
+	public DECBFileLibraryItem(DWDECBFileSystemDirEntry entry, DWDECBFileSystem decbfs)
+	{
+		super(entry.getFileName() + "." + entry.getFileExt() );
+		
+		this.setEntry(entry);
+		this.decbfs = decbfs;
+		this.icon = FileTypeDetector.getFileIcon(FileTypeDetector.getDECBFileType(entry, decbfs));
+		this.type = DWLibrary.TYPE_DECB_FILE;
+		
+	}
 
 	
 	public Image getIcon()
@@ -36,8 +54,14 @@ public class DECBFileLibraryItem extends LibraryItem
 	}
 
 
-	public byte[] getData()
+	// read off the disk the first time the file is opened, then kept
+	public byte[] getData() throws IOException, DWDiskInvalidSectorNumber, DWFileSystemInvalidFATException
 	{
+		if ((this.data == null) && (this.decbfs != null))
+		{
+			this.data = this.decbfs.getFileContents(this.entry);
+		}
+		
 		return data;
 	}
 
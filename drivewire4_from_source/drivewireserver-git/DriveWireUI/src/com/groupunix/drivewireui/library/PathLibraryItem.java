@@ -217,7 +217,7 @@ public class PathLibraryItem extends LibraryItem
 							
 							if (((DWDECBFileSystemDirEntry) entry).isUsed() && !((DWDECBFileSystemDirEntry) entry).isKilled())
 							{
-								this.children.add(new DECBFileLibraryItem((DWDECBFileSystemDirEntry) entry, decbfs.getFileContents(entry.getFileName().trim() + "." + entry.getFileExt() ) ));
+								this.children.add(new DECBFileLibraryItem((DWDECBFileSystemDirEntry) entry, decbfs));
 							}
 						}
 					
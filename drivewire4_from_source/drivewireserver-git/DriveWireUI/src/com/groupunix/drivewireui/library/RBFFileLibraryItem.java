@@ -72,7 +72,7 @@ public class RBFFileLibraryItem extends LibraryItem
 		{
 			try
 			{
-				ArrayList<DWRBFFileSystemDirEntry> dir = this.rbffs.getDirectoryFromFD(this.entry.getFD());
+				ArrayList<DWRBFFileSystemDirEntry> dir = this.rbffs.getDirectoryFromFD(this.entry.getFDLSN());
 				
 				for (DWRBFFileSystemDirEntry e : dir)
 				{
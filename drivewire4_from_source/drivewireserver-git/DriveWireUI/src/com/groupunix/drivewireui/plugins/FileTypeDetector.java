@@ -1,11 +1,14 @@
 package com.groupunix.drivewireui.plugins;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.eclipse.swt.graphics.Image;
 
 import com.groupunix.drivewireserver.DECBDefs;
+import com.groupunix.drivewireserver.dwdisk.filesystem.DWDECBFileSystem;
 import com.groupunix.drivewireserver.dwdisk.filesystem.DWDECBFileSystemDirEntry;
+import com.groupunix.drivewireserver.dwdisk.filesystem.DWFileSystemInputStream;
 import com.groupunix.drivewireserver.dwdisk.filesystem.DWRBFFileSystem;
 import com.groupunix.drivewireserver.dwdisk.filesystem.DWRBFFileSystemDirEntry;
 import com.groupunix.drivewireserver.dwexceptions.DWDiskInvalidSectorNumber;
@@ -15,10 +18,37 @@ import com.swtdesigner.SWTResourceManager;
 
 public class FileTypeDetector
 {
+	public static final int HEAD_SIZE = 16;
 
 	
 	
 	public static int getDECBFileType(DWDECBFileSystemDirEntry entry, byte[] fc)
+	{
+		return getDECBFileType(entry, fc, fc.length);
+	}
+	
+	
+	// only the first few bytes are looked at, so listings don't have to load whole files
+	public static int getDECBFileType(DWDECBFileSystemDirEntry entry, DWDECBFileSystem decbfs)
+	{
+		try
+		{
+			DWFileSystemInputStream in = decbfs.getFileInputStream(entry);
+			byte[] head = new byte[HEAD_SIZE];
+			
+			int n = in.readContents(head);
+			
+			return getDECBFileType(entry, Arrays.copyOf(head, n), in.getLength());
+		}
+		catch (Exception e)
+		{
+			return getDECBFileType(entry, new byte[0], 0);
+		}
+	}
+	
+	
+	// head: the start of the file, length: the whole file's
+	public static int getDECBFileType(DWDECBFileSystemDirEntry entry, byte[] fc, long length)
 	{
 		int res = DWLibrary.FILETYPE_UNKNOWN;
 		
@@ -39,7 +69,7 @@ public class FileTypeDetector
 		{
 			// cocomax
 			
-			if (((fc.length - 10) % 6144 == 0)  && (fc.length > 4) &&  (fc[0] == 0) && ((fc[1] == 0x30) || (fc[1] == 0x18)) && (fc[2] == 0) && (fc[3] == 0x0e) && (fc[4] == 0))
+			if (((length - 10) % 6144 == 0)  && (fc.length > 4) &&  (fc[0] == 0) && ((fc[1] == 0x30) || (fc[1] == 0x18)) && (fc[2] == 0) && (fc[3] == 0x0e) && (fc[4] == 0))
 			{
 				res = DWLibrary.FILETYPE_CCMAX;
 			}
@@ -3,6 +3,7 @@ package com.groupunix.drivewireui.plugins;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import javax.swing.text.NumberFormatter;
 
@@ -50,6 +51,7 @@ import com.groupunix.drivewireserver.dwdisk.DWDiskDrives;
 import com.groupunix.drivewireserver.dwdisk.filesystem.DWDECBFileSystem;
 import com.groupunix.drivewireserver.dwdisk.filesystem.DWDECBFileSystemDirEntry;
 import com.groupunix.drivewireserver.dwdisk.filesystem.DWFileSystemDirEntry;
+import com.groupunix.drivewireserver.dwdisk.filesystem.DWFileSystemInputStream;
 import com.groupunix.drivewireserver.dwdisk.filesystem.DWRBFFileDescriptor;
 import com.groupunix.drivewireserver.dwdisk.filesystem.DWRBFFileSystem;
 import com.groupunix.drivewireserver.dwdisk.filesystem.DWRBFFileSystemDirEntry;
@@ -1378,17 +1380,20 @@ public class PathInfoViewer extends Composite
 					{
 						ti.setText(0, " " + de.getFileName());
 						
-						byte[] data = null;
-						
 						try
 						{
-							data = decbfs.getFileContents(de.getFileName().trim() + "." + de.getFileExt());
-							int ftype = FileTypeDetector.getDECBFileType((DWDECBFileSystemDirEntry) de, data);
+							// the listing only needs the size and the first few bytes
+							DWFileSystemInputStream in = decbfs.getFileInputStream((DWDECBFileSystemDirEntry) de);
+							byte[] head = new byte[FileTypeDetector.HEAD_SIZE];
+							head = Arrays.copyOf(head, in.readContents(head));
+							long len = in.getLength();
+							
+							int ftype = FileTypeDetector.getDECBFileType((DWDECBFileSystemDirEntry) de, head, len);
 							ti.setImage(0, FileTypeDetector.getFileIcon(ftype));
-							ti.setText(2, new NumberFormatter().valueToString(data.length));
+							ti.setText(2, new NumberFormatter().valueToString(len));
 							ti.setText(3, FileTypeDetector.getFileDescription(ftype));
 							
-							int gran = (data.length / 2304) + 1; 
+							int gran = (int) (len / 2304) + 1; 
 							
 							ti.setText(6, new NumberFormatter().valueToString(gran * 2304) + " bytes (" + String.format("%2d", gran) + " granules)"); 
 							
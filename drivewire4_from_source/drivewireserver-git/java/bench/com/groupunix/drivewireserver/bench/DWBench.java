@@ -0,0 +1,200 @@
+package com.groupunix.drivewireserver.bench;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import com.groupunix.drivewireserver.DriveWireServer;
+
+public class DWBench
+{
+	// runs the benchmarks in process: warmup iterations, then measured ones, each a fixed
+	// amount of wall time spent calling op() back to back.  prints mean and spread per op.
+	//
+	// usage: DWBench [-wi n] [-i n] [-r ms] [-o file] [name prefix ...]
+
+	private static int warmups = 3;
+	private static int iterations = 5;
+	private static long itertime = 1000;
+
+	// results of op() end up here so nothing is dead code
+	private static long sink = 0;
+
+
+	public static List<DWBenchmark> getBenchmarks()
+	{
+		List<DWBenchmark> res = new ArrayList<DWBenchmark>();
+
+		res.add(new DWProtocolBench(DWProtocolBench.MIX_READ));
+		res.add(new DWProtocolBench(DWProtocolBench.MIX_READEX));
+		res.add(new DWProtocolBench(DWProtocolBench.MIX_WRITE));
+		res.add(new DWProtocolBench(DWProtocolBench.MIX_SERREAD));
+		res.add(new DWProtocolBench(DWProtocolBench.MIX_OS9));
+
+		res.add(new DWDiskReadBench(false, false));
+		res.add(new DWDiskReadBench(false, true));
+		res.add(new DWDiskReadBench(true, false));
+		res.add(new DWDiskReadBench(true, true));
+		res.add(new DWDiskWriteBench(false));
+		res.add(new DWDiskWriteBench(true));
+
+		res.add(new DWVSerialBufferBench(false));
+		res.add(new DWVSerialBufferBench(true));
+
+		res.add(new DWFileSystemBench(DWFileSystemBench.FS_DECB));
+		res.add(new DWFileSystemBench(DWFileSystemBench.FS_RBF));
+
+		return res;
+	}
+
+
+	public static void main(String[] args) throws Exception
+	{
+		List<String> filters = new ArrayList<String>();
+		String outfile = null;
+
+		for (int i = 0;i < args.length;i++)
+		{
+			if (args[i].equals("-wi") && (i + 1 < args.length))
+				warmups = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-i") && (i + 1 < args.length))
+				iterations = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-r") && (i + 1 < args.length))
+				itertime = Long.parseLong(args[++i]);
+			else if (args[i].equals("-o") && (i + 1 < args.length))
+				outfile = args[++i];
+			else
+				filters.add(args[i]);
+		}
+
+		// quiet, and the little bit of server config the disk code looks at
+		org.apache.log4j.BasicConfigurator.configure();
+		Logger.getRootLogger().setLevel(Level.OFF);
+		DriveWireServer.serverconfig = new XMLConfiguration();
+
+		List<String> lines = new ArrayList<String>();
+
+		lines.add("# " + new Date() + ", java " + System.getProperty("java.version") + " (" + System.getProperty("java.vm.name") + "), " + System.getProperty("os.name") + " " + System.getProperty("os.arch") + ", " + Runtime.getRuntime().availableProcessors() + " cpus");
+		lines.add("# " + warmups + " warmup and " + iterations + " measured iterations of " + itertime + "ms each");
+		lines.add(String.format("%-24s %6s %12s %10s %12s", "Benchmark", "Cnt", "Score", "StdDev", "Units"));
+
+		for (String line : lines)
+			System.out.println(line);
+
+		for (DWBenchmark bench : getBenchmarks())
+		{
+			if (!wanted(bench.getName(), filters))
+				continue;
+
+			String line = run(bench);
+
+			System.out.println(line);
+			lines.add(line);
+		}
+
+		if (outfile != null)
+			write(outfile, lines);
+
+		// keeps the sink live
+		if (sink == 42)
+			System.out.println();
+
+		System.exit(0);
+	}
+
+
+	private static boolean wanted(String name, List<String> filters)
+	{
+		if (filters.isEmpty())
+			return true;
+
+		for (String f : filters)
+		{
+			if (name.startsWith(f))
+				return true;
+		}
+
+		return false;
+	}
+
+
+	private static String run(DWBenchmark bench) throws Exception
+	{
+		double[] scores = new double[iterations];
+
+		bench.setup();
+
+		try
+		{
+			for (int i = 0;i < warmups;i++)
+				iteration(bench);
+
+			for (int i = 0;i < iterations;i++)
+				scores[i] = iteration(bench);
+		}
+		finally
+		{
+			bench.teardown();
+		}
+
+		double mean = 0;
+
+		for (double s : scores)
+			mean += s;
+
+		mean /= iterations;
+
+		double var = 0;
+
+		for (double s : scores)
+			var += (s - mean) * (s - mean);
+
+		double stddev = (iterations > 1) ? Math.sqrt(var / (iterations - 1)) : 0;
+
+		return String.format("%-24s %6d %12.3f %10.3f %12s", bench.getName(), iterations, mean, stddev, "us/op");
+	}
+
+
+	// microseconds per op over one iteration
+	private static double iteration(DWBenchmark bench) throws Exception
+	{
+		long ops = 0;
+		long start = System.nanoTime();
+		long end = start + itertime * 1000000L;
+		long now;
+
+		do
+		{
+			sink ^= bench.op();
+			ops++;
+			now = System.nanoTime();
+		}
+		while (now < end);
+
+		return (now - start) / 1000.0 / ops;
+	}
+
+
+	private static void write(String path, List<String> lines) throws IOException
+	{
+		PrintStream out = new PrintStream(new FileOutputStream(path));
+
+		try
+		{
+			for (String line : lines)
+				out.println(line);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+}
@@ -0,0 +1,150 @@
+package com.groupunix.drivewireserver.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.commons.vfs.FileObject;
+import org.apache.commons.vfs.VFS;
+
+import com.groupunix.drivewireserver.DWDefs;
+
+public class DWBenchImages
+{
+	// throwaway disk images for the benchmarks, deleted on exit
+
+	public static File randomImage(int sectors) throws IOException
+	{
+		byte[] data = new byte[sectors * DWDefs.DISK_SECTORSIZE];
+
+		new Random(sectors).nextBytes(data);
+
+		return writeImage(data);
+	}
+
+
+	public static File writeImage(byte[] data) throws IOException
+	{
+		File f = File.createTempFile("dwbench", ".dsk");
+		f.deleteOnExit();
+
+		FileOutputStream fos = new FileOutputStream(f);
+
+		try
+		{
+			fos.write(data);
+		}
+		finally
+		{
+			fos.close();
+		}
+
+		return f;
+	}
+
+
+	public static FileObject resolve(File f) throws IOException
+	{
+		return VFS.getManager().resolveFile(f.getAbsolutePath());
+	}
+
+
+	// an OS-9 RBF image, root holds DIR0..DIRn each holding FILE0..FILEn of one sector.
+	// the allocation map is left empty, nothing that reads directories looks at it.
+	public static byte[] rbfImage(int dirs, int files)
+	{
+		int rootsecs = ((dirs + 2) * 32 + 255) / 256;
+		int dirsecs = ((files + 2) * 32 + 255) / 256;
+		int sectors = 3 + rootsecs + dirs * (1 + dirsecs + files * 2);
+		byte[] img = new byte[sectors * DWDefs.DISK_SECTORSIZE];
+
+		int rootfd = 2;
+		int next = 3;
+
+		// ID sector, DD.MAP / DD.BIT * 8 must come out to about DD.TOT
+		put(img, 0, 0, sectors, 3);
+		put(img, 0, 4, (sectors + 7) / 8, 2);
+		put(img, 0, 6, 1, 2);
+		put(img, 0, 8, rootfd, 3);
+		img[31] = (byte) ('B' | 0x80);
+
+		// root directory contents: . and .. then the subdirectories
+		int rootdata = next;
+		int rootsize = (dirs + 2) * 32;
+		next += rootsecs;
+
+		fd(img, rootfd, true, rootsize, rootdata, rootsecs);
+		entry(img, rootdata, 0, "..", rootfd);
+		entry(img, rootdata, 1, ".", rootfd);
+
+		for (int d = 0;d < dirs;d++)
+		{
+			int dirfd = next++;
+			int dirdata = next;
+			int dirsize = (files + 2) * 32;
+			next += dirsecs;
+
+			entry(img, rootdata, d + 2, "DIR" + d, dirfd);
+			fd(img, dirfd, true, dirsize, dirdata, dirsecs);
+			entry(img, dirdata, 0, "..", rootfd);
+			entry(img, dirdata, 1, ".", dirfd);
+
+			for (int f = 0;f < files;f++)
+			{
+				int filefd = next++;
+				int filedata = next++;
+
+				entry(img, dirdata, f + 2, "FILE" + f, filefd);
+				fd(img, filefd, false, 200, filedata, 1);
+			}
+		}
+
+		return img;
+	}
+
+
+	private static void fd(byte[] img, int lsn, boolean dir, int size, int datalsn, int datasecs)
+	{
+		int o = lsn * DWDefs.DISK_SECTORSIZE;
+
+		img[o] = (byte) (dir ? 0xBF : 0x1B);
+		// modified 12/06/15 10:30, created 12/06/15
+		img[o + 3] = 112;
+		img[o + 4] = 6;
+		img[o + 5] = 15;
+		img[o + 6] = 10;
+		img[o + 7] = 30;
+		img[o + 8] = 1;
+		put(img, lsn, 9, size, 4);
+		img[o + 13] = 112;
+		img[o + 14] = 6;
+		img[o + 15] = 15;
+		put(img, lsn, 16, datalsn, 3);
+		put(img, lsn, 19, datasecs, 2);
+	}
+
+
+	private static void entry(byte[] img, int dirlsn, int slot, String name, int fdlsn)
+	{
+		int lsn = dirlsn + slot / 8;
+		int o = lsn * DWDefs.DISK_SECTORSIZE + (slot % 8) * 32;
+
+		for (int i = 0;i < name.length();i++)
+			img[o + i] = (byte) name.charAt(i);
+
+		img[o + name.length() - 1] |= 0x80;
+
+		put(img, lsn, (slot % 8) * 32 + 29, fdlsn, 3);
+	}
+
+
+	private static void put(byte[] img, int lsn, int off, int val, int len)
+	{
+		int o = lsn * DWDefs.DISK_SECTORSIZE + off;
+
+		for (int i = 0;i < len;i++)
+			img[o + i] = (byte) (val >> (8 * (len - 1 - i)));
+	}
+
+}
@@ -0,0 +1,22 @@
+package com.groupunix.drivewireserver.bench;
+
+public abstract class DWBenchmark
+{
+	// one measured operation, run back to back by DWBench.
+	// op() returns something derived from its work so the JIT can't throw the work away.
+
+	public abstract String getName();
+
+	public abstract long op() throws Exception;
+
+
+	public void setup() throws Exception
+	{
+	}
+
+
+	public void teardown() throws Exception
+	{
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.groupunix.drivewireserver.bench;
+
+import java.io.File;
+import java.util.Random;
+
+import com.groupunix.drivewireserver.DWDefs;
+import com.groupunix.drivewireserver.dwdisk.DWRawDisk;
+
+public class DWDiskReadBench extends DWBenchmark
+{
+	// seek + readSector on a DWRawDisk, either cached in memory or direct on the image file.
+	// direct disks are reloaded at the end of each pass so the prefetcher can't leave the whole image cached.
+
+	private static final int SECTORS = 16384;
+
+	private boolean direct;
+	private boolean random;
+
+	private File image;
+	private DWRawDisk disk;
+	private int[] order = new int[SECTORS];
+	private int n = 0;
+
+
+	public DWDiskReadBench(boolean direct, boolean random)
+	{
+		this.direct = direct;
+		this.random = random;
+	}
+
+
+	public String getName()
+	{
+		return "disk." + (this.direct ? "direct" : "cached") + (this.random ? ".random" : ".seq");
+	}
+
+
+	public void setup() throws Exception
+	{
+		this.image = DWBenchImages.randomImage(SECTORS);
+		this.disk = new DWRawDisk(DWBenchImages.resolve(this.image), DWDefs.DISK_SECTORSIZE, DWDefs.DISK_MAXSECTORS, !this.direct);
+
+		Random r = new Random(1);
+
+		for (int i = 0;i < SECTORS;i++)
+			this.order[i] = this.random ? r.nextInt(SECTORS) : i;
+	}
+
+
+	public void teardown() throws Exception
+	{
+		this.disk.eject();
+		this.image.delete();
+	}
+
+
+	public long op() throws Exception
+	{
+		if (this.n == SECTORS)
+		{
+			this.n = 0;
+
+			if (this.direct)
+				this.disk.reload();
+		}
+
+		this.disk.seekSector(this.order[this.n++]);
+
+		return this.disk.readSector()[0];
+	}
+
+}
@@ -0,0 +1,84 @@
+package com.groupunix.drivewireserver.bench;
+
+import java.io.File;
+
+import org.apache.commons.vfs.FileObject;
+
+import com.groupunix.drivewireserver.DWDefs;
+import com.groupunix.drivewireserver.dwdisk.DWRawDisk;
+
+public class DWDiskWriteBench extends DWBenchmark
+{
+	// getting written sectors back to the image file:
+	// writeSectors rewrites a whole cached image, sync pushes a scattering of dirty sectors of a direct one.
+
+	private static final int SECTORS = 4096;
+	private static final int DIRTY = 64;
+
+	private boolean sync;
+
+	private File image;
+	private File copy;
+	private FileObject copyobj;
+	private DWRawDisk disk;
+	private byte[] data = new byte[DWDefs.DISK_SECTORSIZE];
+	private int n = 0;
+
+
+	public DWDiskWriteBench(boolean sync)
+	{
+		this.sync = sync;
+	}
+
+
+	public String getName()
+	{
+		return this.sync ? "disk.sync." + DIRTY : "disk.writesectors";
+	}
+
+
+	public void setup() throws Exception
+	{
+		this.image = DWBenchImages.randomImage(SECTORS);
+		this.disk = new DWRawDisk(DWBenchImages.resolve(this.image), DWDefs.DISK_SECTORSIZE, DWDefs.DISK_MAXSECTORS, !this.sync);
+
+		if (!this.sync)
+		{
+			this.copy = DWBenchImages.randomImage(1);
+			this.copyobj = DWBenchImages.resolve(this.copy);
+		}
+	}
+
+
+	public void teardown() throws Exception
+	{
+		this.disk.eject();
+		this.image.delete();
+
+		if (this.copy != null)
+			this.copy.delete();
+	}
+
+
+	public long op() throws Exception
+	{
+		if (!this.sync)
+		{
+			this.disk.writeSectors(this.copyobj);
+			return this.copy.length();
+		}
+
+		// spread over the image so they go out as separate runs
+		for (int i = 0;i < DIRTY;i++)
+		{
+			this.data[0] = (byte) this.n;
+			this.disk.seekSector((this.n++ * 61) % SECTORS);
+			this.disk.writeSector(this.data);
+		}
+
+		this.disk.sync();
+
+		return this.disk.getDirtySectors();
+	}
+
+}
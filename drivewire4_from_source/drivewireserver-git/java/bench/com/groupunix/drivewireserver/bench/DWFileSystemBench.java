@@ -0,0 +1,95 @@
+package com.groupunix.drivewireserver.bench;
+
+import java.io.File;
+
+import com.groupunix.drivewireserver.DWDefs;
+import com.groupunix.drivewireserver.dwdisk.DWRawDisk;
+import com.groupunix.drivewireserver.dwdisk.filesystem.DWDECBFileSystem;
+import com.groupunix.drivewireserver.dwdisk.filesystem.DWFileSystemDirEntry;
+import com.groupunix.drivewireserver.dwdisk.filesystem.DWRBFFileSystem;
+
+public class DWFileSystemBench extends DWBenchmark
+{
+	// what a directory listing costs: the whole DECB directory plus a lookup of the last file,
+	// or every directory of an RBF tree by path.
+
+	public static final int FS_DECB = 0;
+	public static final int FS_RBF = 1;
+
+	private static final int DECB_FILES = 32;
+	private static final int RBF_DIRS = 8;
+	private static final int RBF_FILES = 24;
+
+	private int fstype;
+
+	private File image;
+	private DWRawDisk disk;
+	private DWDECBFileSystem decb;
+	private DWRBFFileSystem rbf;
+
+
+	public DWFileSystemBench(int fstype)
+	{
+		this.fstype = fstype;
+	}
+
+
+	public String getName()
+	{
+		return (this.fstype == FS_DECB) ? "fs.decb.dir" : "fs.rbf.walk";
+	}
+
+
+	public void setup() throws Exception
+	{
+		if (this.fstype == FS_DECB)
+		{
+			this.disk = new DWRawDisk(DWDefs.DISK_SECTORSIZE, DWDefs.DISK_MAXSECTORS);
+			this.decb = new DWDECBFileSystem(this.disk);
+			this.decb.format();
+
+			byte[] contents = new byte[600];
+
+			for (int i = 0;i < DECB_FILES;i++)
+				this.decb.addFile("FILE" + i + ".BIN", contents);
+		}
+		else
+		{
+			this.image = DWBenchImages.writeImage(DWBenchImages.rbfImage(RBF_DIRS, RBF_FILES));
+			this.disk = new DWRawDisk(DWBenchImages.resolve(this.image), DWDefs.DISK_SECTORSIZE, DWDefs.DISK_MAXSECTORS, true);
+			this.rbf = new DWRBFFileSystem(this.disk);
+
+			if (!this.rbf.isValidFS())
+				throw new Exception("benchmark RBF image is not valid");
+		}
+	}
+
+
+	public void teardown() throws Exception
+	{
+		if (this.image != null)
+			this.image.delete();
+	}
+
+
+	public long op() throws Exception
+	{
+		long res = 0;
+
+		if (this.fstype == FS_DECB)
+		{
+			for (DWFileSystemDirEntry e : this.decb.getDirectory(null))
+				res += e.getFileName().length();
+
+			return res + this.decb.getDirEntry("FILE" + (DECB_FILES - 1) + ".BIN").getFileName().length();
+		}
+
+		res = this.rbf.getDirectory(null).size();
+
+		for (int i = 0;i < RBF_DIRS;i++)
+			res += this.rbf.getDirectory("DIR" + i).size();
+
+		return res;
+	}
+
+}
@@ -0,0 +1,286 @@
+package com.groupunix.drivewireserver.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import com.groupunix.drivewireserver.dwexceptions.DWCommTimeOutException;
+import com.groupunix.drivewireserver.dwprotocolhandler.DWProtocolDevice;
+
+public class DWLoopbackDevice implements DWProtocolDevice
+{
+	// an in memory link: the protocol handler uses the DWProtocolDevice side,
+	// the benchmark plays the coco through write() and read().
+	// like the real devices, server writes are staged until flush() or the next read.
+
+	private Pipe tococo = new Pipe();
+	private Pipe toserver = new Pipe();
+
+	private byte[] outbuf = new byte[1024];
+	private int outpos = 0;
+
+	private volatile long bytesin = 0;
+	private volatile long bytesout = 0;
+
+
+	private static class Pipe
+	{
+		private byte[] buf = new byte[65536];
+		private int head = 0;
+		private int tail = 0;
+		private volatile int count = 0;
+		private boolean closed = false;
+
+		synchronized void put(byte[] data, int off, int len) throws IOException
+		{
+			while (len > 0)
+			{
+				while ((this.count == this.buf.length) && !this.closed)
+					await();
+
+				if (this.closed)
+					throw new IOException("Loopback closed");
+
+				int n = Math.min(len, Math.min(this.buf.length - this.count, this.buf.length - this.tail));
+
+				System.arraycopy(data, off, this.buf, this.tail, n);
+				this.tail = (this.tail + n) % this.buf.length;
+				this.count += n;
+				off += n;
+				len -= n;
+
+				notifyAll();
+			}
+		}
+
+		// false if closed before len bytes arrived
+		boolean take(byte[] data, int off, int len)
+		{
+			while (len > 0)
+			{
+				// the other side usually answers within a few microseconds, don't sleep on it right away
+				for (int spin = 0;(spin < 2000) && (this.count == 0);spin++)
+					Thread.yield();
+
+				synchronized(this)
+				{
+					while ((this.count == 0) && !this.closed)
+						await();
+
+					if (this.count == 0)
+						return false;
+
+					int n = Math.min(len, Math.min(this.count, this.buf.length - this.head));
+
+					System.arraycopy(this.buf, this.head, data, off, n);
+					this.head = (this.head + n) % this.buf.length;
+					this.count -= n;
+					off += n;
+					len -= n;
+
+					notifyAll();
+				}
+			}
+
+			return true;
+		}
+
+		synchronized void close()
+		{
+			this.closed = true;
+			notifyAll();
+		}
+
+		private void await()
+		{
+			try
+			{
+				wait();
+			}
+			catch (InterruptedException e)
+			{
+				this.closed = true;
+			}
+		}
+	}
+
+
+	// coco side
+
+	public void write(byte[] data) throws IOException
+	{
+		this.toserver.put(data, 0, data.length);
+	}
+
+
+	public void read(byte[] data, int off, int len) throws IOException
+	{
+		if (!this.tococo.take(data, off, len))
+			throw new IOException("Loopback closed");
+	}
+
+
+	public int read1() throws IOException
+	{
+		byte[] b = new byte[1];
+
+		read(b, 0, 1);
+
+		return b[0] & 0xFF;
+	}
+
+
+	// protocol handler side
+
+	public boolean connected()
+	{
+		return true;
+	}
+
+
+	public void close()
+	{
+		this.toserver.close();
+		this.tococo.close();
+	}
+
+
+	public void shutdown()
+	{
+		close();
+	}
+
+
+	public synchronized void comWrite(byte[] data, int len, boolean prefix)
+	{
+		int off = 0;
+
+		while (off < len)
+		{
+			if (this.outpos == this.outbuf.length)
+				flush();
+
+			int n = Math.min(len - off, this.outbuf.length - this.outpos);
+			System.arraycopy(data, off, this.outbuf, this.outpos, n);
+			this.outpos += n;
+			off += n;
+		}
+	}
+
+
+	public synchronized void comWrite1(int data, boolean prefix)
+	{
+		if (this.outpos == this.outbuf.length)
+			flush();
+
+		this.outbuf[this.outpos++] = (byte) data;
+	}
+
+
+	public synchronized void flush()
+	{
+		if (this.outpos == 0)
+			return;
+
+		try
+		{
+			this.tococo.put(this.outbuf, 0, this.outpos);
+			this.bytesout += this.outpos;
+		}
+		catch (IOException e)
+		{
+			// closed, nobody is listening
+		}
+
+		this.outpos = 0;
+	}
+
+
+	public byte[] comRead(int len) throws IOException, DWCommTimeOutException
+	{
+		byte[] buf = new byte[len];
+
+		comReadInto(buf, 0, len, true);
+
+		return buf;
+	}
+
+
+	public int comRead1(boolean timeout) throws IOException, DWCommTimeOutException
+	{
+		byte[] b = new byte[1];
+
+		flush();
+
+		if (!this.toserver.take(b, 0, 1))
+			return -1;
+
+		this.bytesin++;
+
+		return b[0] & 0xFF;
+	}
+
+
+	public void comReadInto(byte[] buf, int off, int len, boolean timeout) throws IOException, DWCommTimeOutException
+	{
+		flush();
+
+		if (!this.toserver.take(buf, off, len))
+			throw new IOException("Loopback closed during read");
+
+		this.bytesin += len;
+	}
+
+
+	public void comReadInto(ByteBuffer buf, int len, boolean timeout) throws IOException, DWCommTimeOutException
+	{
+		byte[] tmp = new byte[len];
+
+		comReadInto(tmp, 0, len, timeout);
+
+		buf.put(tmp);
+	}
+
+
+	public int getRate()
+	{
+		return -1;
+	}
+
+
+	public String getDeviceType()
+	{
+		return "loopback";
+	}
+
+
+	public String getDeviceName()
+	{
+		return "loopback";
+	}
+
+
+	public String getClient()
+	{
+		return "benchmark";
+	}
+
+
+	public InputStream getInputStream()
+	{
+		return null;
+	}
+
+
+	public long getBytesIn()
+	{
+		return this.bytesin;
+	}
+
+
+	public long getBytesOut()
+	{
+		return this.bytesout;
+	}
+
+}
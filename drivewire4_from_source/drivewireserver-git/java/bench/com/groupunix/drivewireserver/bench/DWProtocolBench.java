@@ -0,0 +1,198 @@
+package com.groupunix.drivewireserver.bench;
+
+import java.io.File;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+
+import com.groupunix.drivewireserver.DWDefs;
+import com.groupunix.drivewireserver.dwprotocolhandler.DWProtocolHandler;
+
+public class DWProtocolBench extends DWBenchmark
+{
+	// a coco talking to a real DWProtocolHandler over DWLoopbackDevice, drive 0 is a direct image.
+	// each op is one complete transaction including the handoffs between threads.
+
+	public static final int MIX_READ = 0;
+	public static final int MIX_READEX = 1;
+	public static final int MIX_WRITE = 2;
+	public static final int MIX_SERREAD = 3;
+	// roughly what an OS-9 boot looks like on the wire: polls between sequential READEX, a few writes
+	public static final int MIX_OS9 = 4;
+
+	private static final String[] NAMES = { "proto.read", "proto.readex", "proto.write", "proto.serread", "proto.mix" };
+	private static final int[] OS9OPS = { MIX_READEX, MIX_SERREAD, MIX_READEX, MIX_SERREAD, MIX_READEX, MIX_READEX, MIX_SERREAD, MIX_WRITE, MIX_READEX, MIX_SERREAD };
+
+	private static final int SECTORS = 4096;
+
+	private int mix;
+	private int n = 0;
+	private int lsn = 0;
+
+	private File image;
+	private DWLoopbackDevice dev;
+	private DWProtocolHandler handler;
+	private Thread thread;
+
+	private byte[] readcmd = new byte[5];
+	private byte[] writecmd = new byte[5 + DWDefs.DISK_SECTORSIZE + 2];
+	private byte[] serread = { DWDefs.OP_SERREAD };
+	private byte[] sum = new byte[2];
+	private byte[] response = new byte[DWDefs.DISK_SECTORSIZE + 3];
+
+
+	public DWProtocolBench(int mix)
+	{
+		this.mix = mix;
+	}
+
+
+	public String getName()
+	{
+		return NAMES[this.mix];
+	}
+
+
+	public void setup() throws Exception
+	{
+		this.image = DWBenchImages.randomImage(SECTORS);
+		this.dev = new DWLoopbackDevice();
+		this.handler = new DWProtocolHandler(0, new HierarchicalConfiguration(), this.dev);
+
+		this.thread = new Thread(this.handler);
+		this.thread.setDaemon(true);
+		this.thread.start();
+
+		while (!this.handler.isReady())
+			Thread.sleep(10);
+
+		this.handler.getDiskDrives().LoadDiskFromFile(0, this.image.getAbsolutePath());
+
+		// write payload never changes, neither does its checksum
+		for (int i = 0;i < DWDefs.DISK_SECTORSIZE;i++)
+			this.writecmd[5 + i] = (byte) i;
+
+		int cs = checksum(this.writecmd, 5, DWDefs.DISK_SECTORSIZE);
+		this.writecmd[0] = DWDefs.OP_WRITE;
+		this.writecmd[5 + DWDefs.DISK_SECTORSIZE] = (byte) (cs >> 8);
+		this.writecmd[6 + DWDefs.DISK_SECTORSIZE] = (byte) cs;
+	}
+
+
+	public void teardown() throws Exception
+	{
+		this.handler.shutdown();
+		this.thread.join(1000);
+		this.image.delete();
+	}
+
+
+	public long op() throws Exception
+	{
+		int m = this.mix;
+
+		if (m == MIX_OS9)
+			m = OS9OPS[this.n++ % OS9OPS.length];
+
+		switch(m)
+		{
+			case MIX_READ:
+				return read();
+
+			case MIX_READEX:
+				return readex();
+
+			case MIX_WRITE:
+				return write();
+
+			default:
+				this.dev.write(this.serread);
+				this.dev.read(this.response, 0, 2);
+				return this.response[0];
+		}
+	}
+
+
+	private int nextLSN()
+	{
+		this.lsn = (this.lsn + 1) % SECTORS;
+
+		return this.lsn;
+	}
+
+
+	private void packet(byte[] buf, byte opcode, int lsn)
+	{
+		buf[0] = opcode;
+		buf[1] = 0;
+		buf[2] = (byte) (lsn >> 16);
+		buf[3] = (byte) (lsn >> 8);
+		buf[4] = (byte) lsn;
+	}
+
+
+	private long read() throws Exception
+	{
+		packet(this.readcmd, DWDefs.OP_READ, nextLSN());
+		this.dev.write(this.readcmd);
+
+		// result code, and the sector and its checksum if it went ok
+		this.dev.read(this.response, 0, 1);
+
+		if (this.response[0] != DWDefs.DWOK)
+			throw new Exception("READ failed: " + this.response[0]);
+
+		this.dev.read(this.response, 1, DWDefs.DISK_SECTORSIZE + 2);
+
+		return this.response[1];
+	}
+
+
+	private long readex() throws Exception
+	{
+		packet(this.readcmd, DWDefs.OP_READEX, nextLSN());
+		this.dev.write(this.readcmd);
+		this.dev.read(this.response, 0, DWDefs.DISK_SECTORSIZE);
+
+		int cs = checksum(this.response, 0, DWDefs.DISK_SECTORSIZE);
+		this.sum[0] = (byte) (cs >> 8);
+		this.sum[1] = (byte) cs;
+		this.dev.write(this.sum);
+
+		int res = this.dev.read1();
+
+		if (res != DWDefs.DWOK)
+			throw new Exception("READEX failed: " + res);
+
+		return this.response[0];
+	}
+
+
+	private long write() throws Exception
+	{
+		int l = nextLSN();
+
+		this.writecmd[2] = (byte) (l >> 16);
+		this.writecmd[3] = (byte) (l >> 8);
+		this.writecmd[4] = (byte) l;
+		this.dev.write(this.writecmd);
+
+		int res = this.dev.read1();
+
+		if (res != DWDefs.DWOK)
+			throw new Exception("WRITE failed: " + res);
+
+		return res;
+	}
+
+
+	private static int checksum(byte[] data, int off, int len)
+	{
+		int cs = 0;
+
+		for (int i = off;i < off + len;i++)
+			cs += data[i] & 0xFF;
+
+		return cs & 0xFFFF;
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.groupunix.drivewireserver.bench;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import com.groupunix.drivewireserver.virtualserial.DWVSerialCircularBuffer;
+
+public class DWVSerialBufferBench extends DWBenchmark
+{
+	// one SERREADM sized chunk in and back out of a port buffer,
+	// through the streams the port threads use or through the ByteBuffer calls
+
+	private static final int CHUNK = 256;
+
+	private boolean bytebuffer;
+
+	private DWVSerialCircularBuffer buf;
+	private InputStream in;
+	private OutputStream out;
+	private byte[] src = new byte[CHUNK];
+	private byte[] dst = new byte[CHUNK];
+	private ByteBuffer bsrc = ByteBuffer.allocate(CHUNK);
+	private ByteBuffer bdst = ByteBuffer.allocate(CHUNK);
+
+
+	public DWVSerialBufferBench(boolean bytebuffer)
+	{
+		this.bytebuffer = bytebuffer;
+	}
+
+
+	public String getName()
+	{
+		return this.bytebuffer ? "vserial.bytebuffer" : "vserial.stream";
+	}
+
+
+	public void setup() throws Exception
+	{
+		this.buf = new DWVSerialCircularBuffer(DWVSerialCircularBuffer.INFINITE_SIZE, true);
+		this.in = this.buf.getInputStream();
+		this.out = this.buf.getOutputStream();
+
+		for (int i = 0;i < CHUNK;i++)
+			this.src[i] = (byte) i;
+
+		this.bsrc.put(this.src);
+	}
+
+
+	public long op() throws Exception
+	{
+		int got = 0;
+
+		if (this.bytebuffer)
+		{
+			this.bsrc.clear();
+			this.buf.write(this.bsrc);
+
+			this.bdst.clear();
+
+			while (this.bdst.hasRemaining())
+				got += this.buf.read(this.bdst);
+
+			return this.bdst.get(got - 1);
+		}
+
+		this.out.write(this.src, 0, CHUNK);
+
+		while (got < CHUNK)
+			got += this.in.read(this.dst, got, CHUNK - got);
+
+		return this.dst[CHUNK - 1];
+	}
+
+}
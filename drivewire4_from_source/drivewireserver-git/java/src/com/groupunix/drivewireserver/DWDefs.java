@@ -171,6 +171,7 @@ public class DWDefs
 	public static final int DISK_SECTORSIZE = 256;
 	public static final int DISK_MAX_SYNC_SKIPS = 1;
 	public static final long DISK_SYNC_INOP_PAUSE = 40;
+	public static final int DISK_SYNC_MAX_RUN = 256;
 	public static final int DISK_HDBDOS_DISKSIZE = 630;
 	
 	public static final int DISK_FORMAT_NONE = 0;
@@ -191,6 +192,12 @@ public class DWDefs
 	public static final Boolean DISK_DEFAULT_NAMEDOBJECT = false;
 	public static final int DISK_DEFAULT_OFFSET = 0;
 	public static final int DISK_DEFAULT_SIZELIMIT = -1;
+	public static final int DISK_DEFAULT_PREFETCH = 32;
+	
+	public static final int DISK_PREFETCH_TRIGGER = 2;
+	public static final int DISK_PREFETCH_MAX_RUN = 256;
+	public static final int DISK_PREFETCH_FD_MAX = 128;
+	public static final int DISK_PREFETCH_QUEUE_SIZE = 64;
 
 	public static final int DISK_IMAGE_HEADER_SIZE = 256;
 
@@ -222,6 +229,8 @@ public class DWDefs
 	public static final String EVENT_ITEM_VALUE = "v";
 	public static final String EVENT_ITEM_DRIVE = "d";
 	public static final String EVENT_ITEM_INSTANCE = "i";
+	public static final String EVENT_ITEM_READS = "R";
+	public static final String EVENT_ITEM_WRITES = "W";
 	
 	public static final String EVENT_ITEM_LOGLEVEL = "l";
 	public static final String EVENT_ITEM_TIMESTAMP = "t";
@@ -240,15 +249,47 @@ public class DWDefs
 	public static final String EVENT_ITEM_THREADS = "8";
 	public static final String EVENT_ITEM_UICLIENTS = "9";
 	public static final String EVENT_ITEM_MAGIC = "!";
-	
-	
+	public static final String EVENT_ITEM_BYTESIN = "<";
+	public static final String EVENT_ITEM_BYTESOUT = ">";
+	public static final String EVENT_ITEM_DISKLATENCY = "#";
+	public static final String EVENT_ITEM_CRCERRORS = "x";
+	
+	
+	// ui sync stream.  a client asking for "ui sync 2" gets SYNC_MAGIC, the version, then frames:
+	// length, type byte, body.  type SYNC_FRAME_STRING defines an interned string (id, length, utf8),
+	// any other type is an event: param count, then per param name id, value tag, value.
+	// all lengths, ids and counts are unsigned varints, numbers zigzag varints.
+	// anything else, or an older server, gives the text stream.
+	public static final int UI_SYNC_PROTO_TEXT = 1;
+	public static final int UI_SYNC_PROTO_BINARY = 2;
+	public static final byte UI_SYNC_MAGIC = (byte) 0xFE;
+	public static final byte UI_SYNC_FRAME_STRING = 0;
+	public static final byte UI_SYNC_VAL_NULL = 0;
+	public static final byte UI_SYNC_VAL_STRING = 1;
+	public static final byte UI_SYNC_VAL_INTERNED = 2;
+	public static final byte UI_SYNC_VAL_NUMBER = 3;
+	public static final int UI_SYNC_MAX_STRINGS = 4096;
+	public static final long UI_SYNC_BATCH_WINDOW = 5;
+	public static final int UI_SYNC_BATCH_MAX = 65536;
+	
+	// ui session.  "ui session 1" keeps the connection open for any number of commands: the server
+	// answers SESSION_MAGIC and the version, then reads requests (int id, int instance, int length, utf8 command)
+	// and writes responses (int id, byte rc, int length, data).  clients may send requests without waiting,
+	// ids are theirs and are only echoed back.  older servers answer with a plain syntax error.
+	public static final int UI_SESSION_PROTO = 1;
+	public static final byte UI_SESSION_MAGIC = (byte) 0xFD;
+	public static final int UI_SESSION_MAX_REQUEST = 65536;
+
 	public static final int EVENT_MAX_QUEUE_SIZE = 800;
 	public static final int EVENT_QUEUE_LOGDROP_SIZE = 500;
 	public static final int LOGGING_MAX_BUFFER_EVENTS = 500;
+	public static final int LOGGING_QUEUE_SIZE = 8192;
+	public static final long LOGGING_FLUSH_WAIT = 1000;
 
 	public static final long UITHREAD_WAIT_TICK = 200;
 	public static final long UITHREAD_SERVER_WAIT_TIME = 3000;
 	public static final long UITHREAD_INSTANCE_WAIT_TIME = 3000;
+	public static final long UITHREAD_SYNC_WAIT = 1000;
 
 	public static final long SERVER_MEM_UPDATE_INTERVAL = 5000;
 
@@ -292,9 +333,25 @@ public class DWDefs
 	public static final byte TIMER_WRITE	= (byte) 10; 
 	
 	public static final byte TIMER_USER			= (byte) 128; // start of user timers 
+	
+	// per phase latency histograms of the disk ops, kept alongside the timers.
+	// each opcode also gets a histogram of the whole op.
+	public static final int TIMER_HIST_PACKET = 0;		// rest of the request packet coming in
+	public static final int TIMER_HIST_LOOKUP = 1;		// seek and sector read/write
+	public static final int TIMER_HIST_TRANSMIT = 2;	// staging and flushing the response
+	public static final int TIMER_HIST_ACK = 3;			// waiting on the coco's checksum
+	public static final int TIMER_HISTS = 4;
 
 	public static final int COM_MIN_DATURBO_RATE = 57600;
 	public static final int COM_MAX_DATURBO_RATE = 115200;
+	public static final int COM_READ_BUFFER_SIZE = 4096;
+	public static final int COM_WRITE_BUFFER_SIZE = 1024;
+	public static final int COM_TCP_WRITE_TIMEOUT = 5000;
+	public static final int COM_TCP_SELECT_BACKOFF_MAX = 1000;
+	
+	// rfm
+	public static final int RFM_READAHEAD_SIZE = 4096;
+	public static final int RFM_WRITEBEHIND_SIZE = 4096;
 	
 
 
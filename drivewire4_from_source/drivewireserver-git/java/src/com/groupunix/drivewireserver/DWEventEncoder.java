@@ -0,0 +1,215 @@
+package com.groupunix.drivewireserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+
+public class DWEventEncoder
+{
+	// binary ui sync frames for one connection.  param names and config keys are sent once
+	// and then referred to by id, numbers go as varints.  every event carries all of its params.
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private HashMap<String,Integer> strings = new HashMap<String,Integer>();
+
+	private ByteArrayOutputStream batchbytes = new ByteArrayOutputStream(DWDefs.UI_SYNC_BATCH_MAX);
+	private DataOutputStream batch = new DataOutputStream(batchbytes);
+
+	private ByteArrayOutputStream framebytes = new ByteArrayOutputStream(256);
+	private DataOutputStream frame = new DataOutputStream(framebytes);
+
+	private long events = 0;
+	private long writes = 0;
+
+
+	public void writeHeader(OutputStream out) throws IOException
+	{
+		out.write(DWDefs.UI_SYNC_MAGIC);
+		out.write(DWDefs.UI_SYNC_PROTO_BINARY);
+	}
+
+
+	public void encode(DWEvent evt) throws IOException
+	{
+		// a full table starts over from id 0.  the client stores strings by id, so the
+		// new frames just overwrite the old ones, and nothing sent after refers to those.
+		if (this.strings.size() + countNew(evt) > DWDefs.UI_SYNC_MAX_STRINGS)
+			this.strings.clear();
+
+		// names and interned values first, their frames have to come before this one
+		for (String key : evt.getParamKeys())
+		{
+			intern(key);
+
+			if (key.equals(DWDefs.EVENT_ITEM_KEY) && (evt.getParam(key) != null))
+				intern(evt.getParam(key));
+		}
+
+		this.framebytes.reset();
+
+		this.frame.writeByte(evt.getEventType());
+		writeVarInt(this.frame, evt.getParamKeys().size());
+
+		for (String key : evt.getParamKeys())
+		{
+			String val = evt.getParam(key);
+
+			writeVarInt(this.frame, this.strings.get(key));
+
+			if (val == null)
+			{
+				this.frame.writeByte(DWDefs.UI_SYNC_VAL_NULL);
+			}
+			else if (isNumber(val))
+			{
+				this.frame.writeByte(DWDefs.UI_SYNC_VAL_NUMBER);
+				writeVarLong(this.frame, Long.parseLong(val));
+			}
+			else if (this.strings.containsKey(val) && key.equals(DWDefs.EVENT_ITEM_KEY))
+			{
+				this.frame.writeByte(DWDefs.UI_SYNC_VAL_INTERNED);
+				writeVarInt(this.frame, this.strings.get(val));
+			}
+			else
+			{
+				byte[] b = val.getBytes(UTF8);
+
+				this.frame.writeByte(DWDefs.UI_SYNC_VAL_STRING);
+				writeVarInt(this.frame, b.length);
+				this.frame.write(b);
+			}
+		}
+
+		writeVarInt(this.batch, this.framebytes.size());
+		this.framebytes.writeTo(this.batch);
+
+		this.events++;
+	}
+
+
+	private int countNew(DWEvent evt)
+	{
+		int n = 0;
+
+		for (String key : evt.getParamKeys())
+		{
+			if (!this.strings.containsKey(key))
+				n++;
+
+			if (key.equals(DWDefs.EVENT_ITEM_KEY) && (evt.getParam(key) != null) && !this.strings.containsKey(evt.getParam(key)))
+				n++;
+		}
+
+		return n;
+	}
+
+
+	private void intern(String s) throws IOException
+	{
+		if (this.strings.containsKey(s))
+			return;
+
+		int id = this.strings.size();
+		byte[] b = s.getBytes(UTF8);
+
+		this.strings.put(s, id);
+
+		this.framebytes.reset();
+		this.frame.writeByte(DWDefs.UI_SYNC_FRAME_STRING);
+		writeVarInt(this.frame, id);
+		writeVarInt(this.frame, b.length);
+		this.frame.write(b);
+
+		writeVarInt(this.batch, this.framebytes.size());
+		this.framebytes.writeTo(this.batch);
+	}
+
+
+	// only values that come back out of Long.toString unchanged
+	private static boolean isNumber(String s)
+	{
+		int len = s.length();
+		int start = 0;
+
+		if ((len > 0) && (s.charAt(0) == '-'))
+			start = 1;
+
+		if ((len == start) || (len - start > 18))
+			return false;
+
+		if ((s.charAt(start) == '0') && ((len - start > 1) || (start == 1)))
+			return false;
+
+		for (int i = start;i < len;i++)
+		{
+			char c = s.charAt(i);
+
+			if ((c < '0') || (c > '9'))
+				return false;
+		}
+
+		return true;
+	}
+
+
+	private static void writeVarLong(DataOutputStream out, long v) throws IOException
+	{
+		// zigzag so small negatives stay small
+		long z = (v << 1) ^ (v >> 63);
+
+		while ((z & ~0x7FL) != 0)
+		{
+			out.writeByte((int) ((z & 0x7F) | 0x80));
+			z >>>= 7;
+		}
+
+		out.writeByte((int) z);
+	}
+
+
+	private static void writeVarInt(DataOutputStream out, int v) throws IOException
+	{
+		while ((v & ~0x7F) != 0)
+		{
+			out.writeByte((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+
+		out.writeByte(v);
+	}
+
+
+	public int size()
+	{
+		return this.batchbytes.size();
+	}
+
+
+	// everything encoded since the last call goes out in one write
+	public void writeTo(OutputStream out) throws IOException
+	{
+		if (this.batchbytes.size() == 0)
+			return;
+
+		this.batchbytes.writeTo(out);
+		out.flush();
+
+		this.batchbytes.reset();
+		this.writes++;
+	}
+
+
+	public long getEvents()
+	{
+		return this.events;
+	}
+
+	public long getWrites()
+	{
+		return this.writes;
+	}
+}
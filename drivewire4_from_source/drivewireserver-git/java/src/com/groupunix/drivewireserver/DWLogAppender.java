@@ -1,29 +1,77 @@
 package com.groupunix.drivewireserver;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
 
+import org.apache.log4j.Appender;
 import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.Layout;
 import org.apache.log4j.Level;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.Filter;
 import org.apache.log4j.spi.LoggingEvent;
 
-// adds logging events to an internal list so they can be retrieved for web UI
-// very basic for now
+// adds logging events to an internal list so they can be retrieved for web UI.
+// the logging thread only drops the event into a ring, everything else (UI events,
+// the buffer, console and file output) happens on our own thread.
 
-public class DWLogAppender extends AppenderSkeleton 
+public class DWLogAppender extends AppenderSkeleton implements Runnable
 {
+	// layout conversions that need the caller's stack, which is gone by the time we format
+	private static final Pattern LOCATION_PATTERN = Pattern.compile("%[-.0-9]*[CFlLM]");
 
+	// bounded ring, any thread offers, only our thread takes
+	private final int mask;
+	private final AtomicReferenceArray<LoggingEvent> slots;
+	private final AtomicLongArray seqs;
+	private final AtomicLong tail = new AtomicLong(0);
+	private volatile long head = 0;
+	private volatile Thread waiter = null;
+	
+	private Thread consumer;
+	private volatile boolean wanttodie = false;
+	
+	// console, file etc get their events from us
+	private CopyOnWriteArrayList<Appender> downstream = new CopyOnWriteArrayList<Appender>();
+	private volatile boolean needLocation = false;
 
-	private LinkedList<LoggingEvent> events = new LinkedList<LoggingEvent>();
+	// last events, for viewing from coco
+	private LoggingEvent[] events = new LoggingEvent[DWDefs.LOGGING_MAX_BUFFER_EVENTS];
+	private int eventsnext = 0;
+	private int eventssize = 0;
+	
+	private final AtomicLong dropped = new AtomicLong(0);
+	private volatile long processed = 0;
+	private long droppedreported = 0;
+	private long lastdropreport = 0;
+	
 
 	public DWLogAppender(Layout layout) 
 	{
 		setLayout(layout);
+		
+		int cap = Integer.highestOneBit(Math.max(DWDefs.LOGGING_QUEUE_SIZE, 2) - 1) << 1;
+		
+		this.mask = cap - 1;
+		this.slots = new AtomicReferenceArray<LoggingEvent>(cap);
+		this.seqs = new AtomicLongArray(cap);
+		
+		for (int i = 0;i < cap;i++)
+			this.seqs.set(i, i);
+		
+		this.consumer = new Thread(this, "dwlogger");
+		this.consumer.setDaemon(true);
+		this.consumer.start();
 	}
 
 	public void setLayout(Layout layout) {
 		this.layout = layout;
+		checkLocation(layout);
 	}
 
 	public Layout getLayout() {
@@ -34,11 +82,49 @@ public class DWLogAppender extends AppenderSkeleton
 		return true;
 	}
 
-
-	public synchronized void shutdown() 
+	
+	public void addAppender(Appender appender)
+	{
+		checkLocation(appender.getLayout());
+		this.downstream.add(appender);
+	}
+	
+	
+	private void checkLocation(Layout layout)
 	{
+		if ((layout instanceof PatternLayout) && (((PatternLayout) layout).getConversionPattern() != null))
+		{
+			if (LOCATION_PATTERN.matcher(((PatternLayout) layout).getConversionPattern()).find())
+				this.needLocation = true;
+		}
 	}
+	
 
+	// AppenderSkeleton's version is synchronized, we don't need to be
+	public void doAppend(LoggingEvent event)
+	{
+		if (this.closed || !isAsSevereAsThreshold(event.getLevel()))
+			return;
+		
+		Filter f = this.headFilter;
+		
+		while (f != null)
+		{
+			int d = f.decide(event);
+			
+			if (d == Filter.DENY)
+				return;
+			
+			if (d == Filter.ACCEPT)
+				break;
+			
+			f = f.getNext();
+		}
+		
+		append(event);
+	}
+	
+	
 	protected void append(LoggingEvent event) 
 	{
 		// fatal to console
@@ -48,59 +134,250 @@ public class DWLogAppender extends AppenderSkeleton
 			System.out.println("FATAL: " + event.getRenderedMessage());
 		}
 		
-		// ignore those pesky XMLConfiguration debug messages and massive httpd client noise
-		if ((event != null) && (event.getMessage() != null) && (event.getLocationInformation().getClassName() != null) && (!event.getMessage().equals("ConfigurationUtils.locate(): base is null, name is null")) && (!event.getLocationInformation().getClassName().startsWith("org.apache.commons.httpclient"))) 		
+		// these are worked out from the current thread when first asked for, so ask now
+		event.getThreadName();
+		event.getNDC();
+		event.getMDCCopy();
+		
+		if (this.needLocation)
+			event.getLocationInformation();
+		
+		if (offer(event))
+			return;
+		
+		// full.  debug and info noise is dropped, warnings and worse wait for room,
+		// except from our own thread, which is the only one that can make any
+		if (event.getLevel().isGreaterOrEqual(Level.WARN) && (Thread.currentThread() != this.consumer))
 		{
-			// send it to UI listeners
-			DriveWireServer.submitLogEvent(event);
+			while (!this.wanttodie && this.consumer.isAlive())
+			{
+				Thread.yield();
+				
+				if (offer(event))
+					return;
+			}
+		}
+		
+		this.dropped.incrementAndGet();
+	}
+	
+	
+	private boolean offer(LoggingEvent event)
+	{
+		while (true)
+		{
+			long t = this.tail.get();
+			int slot = (int) t & this.mask;
+			long seq = this.seqs.get(slot);
 			
-			// add to our buffer (for viewing from coco)
-			synchronized (events) 
+			if (seq == t)
 			{
-				if (events.size() == DWDefs.LOGGING_MAX_BUFFER_EVENTS)
+				if (this.tail.compareAndSet(t, t + 1))
 				{
-					events.removeFirst();
+					this.slots.set(slot, event);
+					this.seqs.set(slot, t + 1);
+					break;
 				}
+			}
+			else if (seq < t)
+			{
+				// full
+				return false;
+			}
+		}
+		
+		Thread w = this.waiter;
+		if (w != null)
+			LockSupport.unpark(w);
+		
+		return true;
+	}
+	
+	
+	private LoggingEvent poll()
+	{
+		long h = this.head;
+		int slot = (int) h & this.mask;
+		
+		if (this.seqs.get(slot) != h + 1)
+			return null;
+		
+		LoggingEvent event = this.slots.get(slot);
+		
+		this.slots.set(slot, null);
+		this.seqs.set(slot, h + this.mask + 1);
+		this.head = h + 1;
+		
+		return event;
+	}
+	
+	
+	public void run()
+	{
+		while (true)
+		{
+			LoggingEvent event = poll();
 			
-				events.addLast(event);
+			if (event == null)
+			{
+				if (this.wanttodie)
+					break;
 				
+				this.waiter = Thread.currentThread();
 				
+				// recheck after publishing ourselves as waiter so an offer in between is not missed
+				if ((event = poll()) == null)
+					LockSupport.parkNanos(this, 100000000L);
+				
+				this.waiter = null;
+				
+				if (event == null)
+					continue;
+			}
+			
+			try
+			{
+				process(event);
 			}
+			catch (RuntimeException e)
+			{
+				// a bad event must not take the log thread down
+				System.err.println("log appender: " + e.getMessage());
+			}
+			
+			this.processed++;
+			
+			reportDrops();
 		}
 	}
+	
+	
+	private void process(LoggingEvent event)
+	{
+		for (Appender a : this.downstream)
+			a.doAppend(event);
+		
+		// ignore those pesky XMLConfiguration debug messages and massive httpd client noise
+		if ((event.getMessage() != null) && (!event.getMessage().equals("ConfigurationUtils.locate(): base is null, name is null")) && (event.getLoggerName() != null) && (!event.getLoggerName().startsWith("org.apache.commons.httpclient"))) 		
+		{
+			// send it to UI listeners
+			DriveWireServer.submitLogEvent(event);
+			
+			synchronized (this.events) 
+			{
+				this.events[this.eventsnext] = event;
+				this.eventsnext = (this.eventsnext + 1) % this.events.length;
+				
+				if (this.eventssize < this.events.length)
+					this.eventssize++;
+			}
+		}
+	}
+	
+	
+	// once a second at most, so a flood doesn't report itself into the ring
+	private void reportDrops()
+	{
+		long d = this.dropped.get();
+		
+		if ((d != this.droppedreported) && (System.currentTimeMillis() - this.lastdropreport > 1000))
+		{
+			LoggingEvent note = new LoggingEvent(DWLogAppender.class.getName(), org.apache.log4j.Logger.getLogger("DWServer.DWLogAppender"), Level.WARN, "log queue full, dropped " + (d - this.droppedreported) + " events", null);
+			
+			this.droppedreported = d;
+			this.lastdropreport = System.currentTimeMillis();
+			
+			process(note);
+		}
+	}
+	
 
 	public ArrayList<String> getLastEvents(int num)
 	{
 		ArrayList<String> eventstxt = new ArrayList<String>();
-		int start = 0;
 		
-		synchronized(events)
+		synchronized(this.events)
 		{
-			if (num > events.size())
-				num = events.size();
-		
-			if (events.size() > num)
-			{
-				start = events.size() - num;
-			}
+			if (num > this.eventssize)
+				num = this.eventssize;
 			
-			for (int i = start;i<events.size();i++)
+			if (num < 0)
+				num = 0;
+			
+			// formatted only when someone asks
+			for (int i = this.eventssize - num;i < this.eventssize;i++)
 			{
+				int idx = (this.eventsnext - this.eventssize + i + this.events.length) % this.events.length;
 				
-				eventstxt.add(layout.format(events.get(i)));
+				eventstxt.add(layout.format(this.events[idx]));
 			}
 		}
 		
 		return(eventstxt);
 	}
 	
+	
+	// wait a little for whatever is queued to be written, for shutdown
+	public void flush()
+	{
+		long deadline = System.currentTimeMillis() + DWDefs.LOGGING_FLUSH_WAIT;
+		
+		while ((this.head != this.tail.get()) && this.consumer.isAlive() && (System.currentTimeMillis() < deadline))
+		{
+			Thread w = this.waiter;
+			if (w != null)
+				LockSupport.unpark(w);
+			
+			Thread.yield();
+		}
+	}
+	
+	
 	public void close()
 	{
+		this.closed = true;
+		this.wanttodie = true;
 		
+		LockSupport.unpark(this.consumer);
+		
+		if (Thread.currentThread() != this.consumer)
+		{
+			try
+			{
+				this.consumer.join(DWDefs.LOGGING_FLUSH_WAIT);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		for (Appender a : this.downstream)
+			a.close();
+		
+		this.downstream.clear();
 	}
 
 	public int getEventsSize()
 	{
-		return(events.size());
+		synchronized(this.events)
+		{
+			return(this.eventssize);
+		}
+	}
+	
+	public long getDropped()
+	{
+		return this.dropped.get();
+	}
+	
+	public long getProcessed()
+	{
+		return this.processed;
+	}
+	
+	public int getQueued()
+	{
+		return (int) (this.tail.get() - this.head);
 	}
-}
\ No newline at end of file
+}
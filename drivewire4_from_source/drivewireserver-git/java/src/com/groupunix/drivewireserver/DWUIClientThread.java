@@ -2,10 +2,15 @@ package com.groupunix.drivewireserver;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.net.Socket;
-import java.util.LinkedList;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 
@@ -18,20 +23,28 @@ import com.groupunix.drivewireserver.uicommands.UICmd;
 public class DWUIClientThread implements Runnable {
 
 	private static final Logger logger = Logger.getLogger("DWUIClientThread");
+	private static final Charset UTF8 = Charset.forName("UTF-8");
 
 	private Socket skt;
 	private boolean wanttodie = false;
 	private int instance = -1;
 	
+	// built once per connection, a session keeps using it for every request
 	private DWCommandList commands;
+	private DWCmd dwcmd = null;
+	private HashMap<Integer, DWCmd> dwcmds = new HashMap<Integer, DWCmd>();
 	
-	private LinkedBlockingQueue<DWEvent> eventQueue = new LinkedBlockingQueue<DWEvent>();
+	private DWUIEventQueue eventQueue = new DWUIEventQueue(DWDefs.EVENT_MAX_QUEUE_SIZE);
 
-	private LinkedList<DWUIClientThread> clientThreads;
+	private List<DWUIClientThread> clientThreads;
 
 	private BufferedOutputStream bufferedout;
+	private BufferedInputStream bufferedin;
 	
-	private boolean droplog = true;
+	// events are only queued for clients running ui sync
+	private volatile boolean sync = false;
+	private volatile boolean droplog = true;
+	private boolean session = false;
 
 	private String tname = "not set";
 
@@ -40,7 +53,7 @@ public class DWUIClientThread implements Runnable {
 	private String state = "not set";
 
 	
-	public DWUIClientThread(Socket skt, LinkedList<DWUIClientThread> clientThreads) 
+	public DWUIClientThread(Socket skt, List<DWUIClientThread> clientThreads) 
 	{
 		this.skt = skt;
 		this.clientThreads = clientThreads;
@@ -57,10 +70,7 @@ public class DWUIClientThread implements Runnable {
 	public void run() 
 	{
 		this.state  = "add to client threads";
-		synchronized(this.clientThreads)
-		{
-			this.clientThreads.add(this);
-		}
+		this.clientThreads.add(this);
 		
 
 		this.tname = "dwUIcliIn-" + Thread.currentThread().getId();
@@ -76,38 +86,35 @@ public class DWUIClientThread implements Runnable {
 		{
 			this.state  = "get output stream";
 			this.bufferedout = new BufferedOutputStream(skt.getOutputStream());
+			this.bufferedin = new BufferedInputStream(skt.getInputStream());
 			
-			// cmd loop
+			// one command per connection, unless it's "ui session" which keeps going in there
 			
-			String cmd = new String();
+			ByteArrayOutputStream cmd = new ByteArrayOutputStream();
 			
 			while ((!skt.isClosed()) && (!wanttodie))
 			{
-				this.state  = "read from output stream";
-				int databyte = skt.getInputStream().read();
+				this.state  = "read from input stream";
+				int databyte = this.bufferedin.read();
 			
 				if (databyte == -1)
 				{	
 					//logger.debug("got -1 in input stream");
 					wanttodie = true;
 				}
-				else
+				else if (databyte == 10)
 				{
-					if (databyte == 10)
+					if (cmd.size() > 0)
 					{
-						if (cmd.length() > 0)
-						{
-							this.state  = "do cmd";
-							doCmd(cmd.trim());
-							wanttodie = true;
-							cmd = "";
-						}
+						this.state  = "do cmd";
+						doCmd(new String(cmd.toByteArray(), "ISO-8859-1").trim());
+						wanttodie = true;
+						cmd.reset();
 					}
-					else if ((databyte > -1) && (databyte != 13))
-					{
-						cmd += Character.toString((char) databyte);
-					}
-					
+				}
+				else if (databyte != 13)
+				{
+					cmd.write(databyte);
 				}
 			}
 			
@@ -123,10 +130,7 @@ public class DWUIClientThread implements Runnable {
 		}
 		
 		this.state  = "remove from client threads";
-		synchronized(this.clientThreads)
-		{
-			this.clientThreads.remove(this);
-		}
+		this.clientThreads.remove(this);
 		
 		//if (DriveWireServer.serverconfig.getBoolean("LogUIConnections", false))
 		//	logger.debug("exit");
@@ -154,7 +158,7 @@ public class DWUIClientThread implements Runnable {
 			// non numeric instance..
 			try
 			{
-				this.setInstance(Integer.parseInt(cmd.substring(0, div)));
+				this.instance = Integer.parseInt(cmd.substring(0, div));
 			}
 			catch (NumberFormatException e)
 			{
@@ -174,9 +178,27 @@ public class DWUIClientThread implements Runnable {
 		// strip instance 
 		cmd = cmd.substring(div+1);
 		
+		DWCommandResponse resp = runCommand(this.instance, cmd);
+		
+		// a session has had the connection and already said all it had to say on it
+		if (this.session)
+			return;
+		
+		sendUIresponse(resp);
+
+		this.bufferedout.flush();
+	}
+	
+	
+	// the part of a request that's the same with or without a session
+	private DWCommandResponse runCommand(int inst, String cmd)
+	{
+		this.curcmd = cmd;
+		this.setInstance(inst);
+		
 		// Log command and verify DWCmd is available
 		logger.info("UI command '" + cmd + "' for instance " + this.instance);
-		if (this.commands.validate("dw")) {
+		if (this.dwcmd != null) {
 			logger.debug("DWCmd is available in command list");
 		} else {
 			// DWCmd is not available if instance is invalid - this is expected behavior
@@ -200,53 +222,80 @@ public class DWUIClientThread implements Runnable {
 			catch (InterruptedException e) 
 			{
 				logger.warn("Interrupted while waiting for server to be ready");
-				sendUIresponse(new DWCommandResponse(false, DWDefs.RC_SERVER_NOT_READY, "Interrupted while waiting for server to be ready"));
-				return;
+				return(new DWCommandResponse(false, DWDefs.RC_SERVER_NOT_READY, "Interrupted while waiting for server to be ready"));
 			}
 		}
 		
 		if (!DriveWireServer.isReady())
 		{
 			logger.warn("Timed out waiting for server to be ready");
-			sendUIresponse(new DWCommandResponse(false, DWDefs.RC_SERVER_NOT_READY, "Timed out waiting for server to be ready"));
-			return;
+			return(new DWCommandResponse(false, DWDefs.RC_SERVER_NOT_READY, "Timed out waiting for server to be ready"));
 		}
 		
+		return(this.commands.parse(cmd));
+	}
+	
+	
+	// called by "ui session", serves framed requests on this connection until the client goes away.
+	// requests are run in the order they arrive, responses to a burst of them go out in one flush.
+	public void runSession() throws IOException
+	{
+		DataInputStream in = new DataInputStream(this.bufferedin);
+		DataOutputStream out = new DataOutputStream(this.bufferedout);
+		
+		this.session = true;
 		
-		// wait for instance ready..
-		/*
-		if (this.instance > -1)
+		out.write(DWDefs.UI_SESSION_MAGIC);
+		out.write(DWDefs.UI_SESSION_PROTO);
+		out.flush();
+		
+		while (!wanttodie && !skt.isClosed())
 		{
-			waits = 0;
-			while (!DriveWireServer.getHandler(instance).isReady() && (waits < DWDefs.UITHREAD_INSTANCE_WAIT_TIME))
+			int id;
+			
+			this.state = "session wait";
+			
+			try
 			{
-				try 
-				{
-					Thread.sleep(DWDefs.UITHREAD_WAIT_TICK);
-					waits += DWDefs.UITHREAD_WAIT_TICK;
-				} 
-				catch (InterruptedException e) 
-				{
-					logger.warn("Interrupted while waiting for instance ready");
-					sendUIresponse(new DWCommandResponse(false, DWDefs.RC_INSTANCE_NOT_READY, "Interrupted while waiting for instance ready"));
-					return;
-				}
+				id = in.readInt();
 			}
-			
-			if (!DriveWireServer.getHandler(instance).isReady())
+			catch (EOFException e)
 			{
-				logger.warn("Timed out waiting for instance #" + instance + " to be ready");
-				sendUIresponse(new DWCommandResponse(false, DWDefs.RC_INSTANCE_NOT_READY, "Timed out waiting for instance #" + instance + " to be ready"));
-				return;
+				break;
 			}
+			
+			int inst = in.readInt();
+			int len = in.readInt();
+			
+			if ((len < 0) || (len > DWDefs.UI_SESSION_MAX_REQUEST))
+				throw new IOException("Bad UI session request length " + len);
+			
+			byte[] buf = new byte[len];
+			in.readFully(buf);
+			
+			this.state = "session cmd";
+			
+			DWCommandResponse resp = runCommand(inst, new String(buf, UTF8).trim());
+			
+			byte[] data = null;
+			
+			if (resp.isUsebytes() && (resp.getResponseBytes() != null))
+				data = resp.getResponseBytes();
+			else if (resp.getResponseText() != null)
+				data = resp.getResponseText().getBytes(UTF8);
+			else
+				data = new byte[0];
+			
+			out.writeInt(id);
+			out.write(resp.getResponseCode() & 0xFF);
+			out.writeInt(data.length);
+			out.write(data);
+			
+			if (in.available() == 0)
+				out.flush();
 		}
-		*/
 		
-		DWCommandResponse resp = this.commands.parse(cmd);
-		
-		sendUIresponse(resp);
-
-		this.bufferedout.flush();
+		out.flush();
 	}
 
 
@@ -278,26 +327,27 @@ public class DWUIClientThread implements Runnable {
 	{
 		this.instance = handler;
 		
-		// valid instances get a dw cmd mapping
+		// valid instances get a dw cmd mapping, one per instance and only one in the list at a time
+		DWCmd want = null;
+		
 		if (DriveWireServer.isValidHandlerNo(handler))
 		{
-			// Always add DWCmd for valid instances
-			// Note: Adding multiple times creates duplicates, but command parser uses first match
-			// So we always add it to ensure it's available for the current instance
-			try {
-				DWProtocol proto = DriveWireServer.getHandler(handler);
-				if (proto != null) {
-					DWCmd dwCmd = new DWCmd(proto);
-					this.commands.addcommand(dwCmd);
-					// Always log for debugging
-					logger.info("Added DWCmd for instance " + handler + " (command: " + dwCmd.getCommand() + ")");
-					logger.debug("Current commands: " + this.commands.getShortHelp());
-				} else {
-					logger.error("DriveWireServer.getHandler(" + handler + ") returned null");
+			want = this.dwcmds.get(handler);
+			
+			if (want == null)
+			{
+				try {
+					DWProtocol proto = DriveWireServer.getHandler(handler);
+					if (proto != null) {
+						want = new DWCmd(proto);
+						this.dwcmds.put(handler, want);
+						logger.debug("Added DWCmd for instance " + handler + " (command: " + want.getCommand() + ")");
+					} else {
+						logger.error("DriveWireServer.getHandler(" + handler + ") returned null");
+					}
+				} catch (Exception e) {
+					logger.error("Error adding DWCmd for instance " + handler + ": " + e.getMessage(), e);
 				}
-			} catch (Exception e) {
-				logger.error("Error adding DWCmd for instance " + handler + ": " + e.getMessage(), e);
-				e.printStackTrace();
 			}
 		}
 		else
@@ -305,6 +355,17 @@ public class DWUIClientThread implements Runnable {
 			// Invalid instance - log for debugging
 			logger.warn("Attempted to set invalid instance: " + handler + ". Valid instances: 0-" + (DriveWireServer.getNumHandlers() - 1));
 		}
+		
+		if (want != this.dwcmd)
+		{
+			if (this.dwcmd != null)
+				this.commands.getCommands().remove(this.dwcmd);
+			
+			if (want != null)
+				this.commands.addcommand(want);
+			
+			this.dwcmd = want;
+		}
 	}
 
 	public int getInstance() 
@@ -319,7 +380,12 @@ public class DWUIClientThread implements Runnable {
 	
 	public BufferedInputStream getInputStream() throws IOException
 	{
-		return new BufferedInputStream(skt.getInputStream());
+		return this.bufferedin;
+	}
+	
+	public boolean isSession()
+	{
+		return this.session;
 	}
 	
 
@@ -345,12 +411,23 @@ public class DWUIClientThread implements Runnable {
 		}
 	}
 	
-	public LinkedBlockingQueue<DWEvent> getEventQueue()
+	public DWUIEventQueue getEventQueue()
 	{
 		return(this.eventQueue);
 	}
 
 
+	public boolean isSync()
+	{
+		return this.sync;
+	}
+	
+	public void setSync(boolean b)
+	{
+		this.sync = b;
+	}
+
+
 
 	public boolean isDropLog()
 	{
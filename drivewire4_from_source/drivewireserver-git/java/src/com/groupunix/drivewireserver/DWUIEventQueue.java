@@ -0,0 +1,403 @@
+package com.groupunix.drivewireserver;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+public class DWUIEventQueue
+{
+	// events waiting for one sync client.  any thread may offer, only the client's sync thread takes.
+	// offer never blocks: when the client falls behind, newer disk/status values replace the
+	// pending ones, log events pile into one batch, and past that events are dropped and counted.
+
+	private static final Object LOGBATCH = new Object();
+
+	// bounded ring, each slot has a sequence number telling producers and the consumer whose turn it is
+	private final int mask;
+	private final AtomicReferenceArray<Object> slots;
+	private final AtomicLongArray seqs;
+	private final long[] stamps;
+	private final AtomicLong tail = new AtomicLong(0);
+	private volatile long head = 0;
+
+	// latest value for each coalescing key that has a token in the ring
+	private final ConcurrentHashMap<String,DWEvent> pending = new ConcurrentHashMap<String,DWEvent>();
+	// bumped by every disk action on a drive, so values from after it never fold into a token queued before it
+	private final ConcurrentHashMap<String,AtomicInteger> epochs = new ConcurrentHashMap<String,AtomicInteger>();
+
+	private final ConcurrentLinkedQueue<DWEvent> logs = new ConcurrentLinkedQueue<DWEvent>();
+	private final AtomicInteger logcount = new AtomicInteger(0);
+	private final AtomicBoolean logqueued = new AtomicBoolean(false);
+	private final ArrayDeque<DWEvent> logbatch = new ArrayDeque<DWEvent>();
+
+	private volatile Thread waiter = null;
+
+	// counters
+	private final AtomicLong offered = new AtomicLong(0);
+	private final AtomicLong coalesced = new AtomicLong(0);
+	private final AtomicLong dropped = new AtomicLong(0);
+	private final AtomicLong logsdropped = new AtomicLong(0);
+	private volatile long sent = 0;
+	private volatile long batches = 0;
+	private volatile long lag = 0;
+	private volatile long lagmax = 0;
+	private volatile int depthmax = 0;
+
+
+	public DWUIEventQueue(int size)
+	{
+		int cap = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+
+		this.mask = cap - 1;
+		this.slots = new AtomicReferenceArray<Object>(cap);
+		this.seqs = new AtomicLongArray(cap);
+		this.stamps = new long[cap];
+
+		for (int i = 0;i < cap;i++)
+			this.seqs.set(i, i);
+	}
+
+
+	public void offer(DWEvent evt)
+	{
+		this.offered.incrementAndGet();
+
+		if (evt.getEventType() == DWDefs.EVENT_TYPE_LOG)
+		{
+			offerLog(evt);
+			return;
+		}
+
+		String key = getCoalesceKey(evt);
+
+		if (key == null)
+		{
+			if (!enqueue(evt))
+				this.dropped.incrementAndGet();
+
+			return;
+		}
+
+		while (true)
+		{
+			DWEvent prev = this.pending.putIfAbsent(key, evt);
+
+			if (prev == null)
+			{
+				if (!enqueue(key))
+				{
+					// anything merged into it in the meantime goes with it
+					this.pending.remove(key);
+					this.dropped.incrementAndGet();
+				}
+
+				return;
+			}
+
+			// still waiting to be sent, fold the new values in
+			if (this.pending.replace(key, prev, merge(prev, evt)))
+			{
+				this.coalesced.incrementAndGet();
+				return;
+			}
+
+			// consumer took it or another producer got in first, go again
+		}
+	}
+
+
+	private void offerLog(DWEvent evt)
+	{
+		if (this.logcount.incrementAndGet() > DWDefs.EVENT_QUEUE_LOGDROP_SIZE)
+		{
+			this.logcount.decrementAndGet();
+			this.logsdropped.incrementAndGet();
+			return;
+		}
+
+		this.logs.add(evt);
+
+		// one token in the ring stands for every log event added until it is taken
+		if (this.logqueued.compareAndSet(false, true))
+		{
+			if (!enqueue(LOGBATCH))
+				this.logqueued.set(false);
+		}
+	}
+
+
+	// disk values and server status are state, only the newest matters.  disk actions (*insert etc) are not.
+	private String getCoalesceKey(DWEvent evt)
+	{
+		if (evt.getEventType() == DWDefs.EVENT_TYPE_STATUS)
+			return "@";
+
+		if (evt.getEventType() == DWDefs.EVENT_TYPE_DISK)
+		{
+			String k = evt.getParam(DWDefs.EVENT_ITEM_KEY);
+
+			if (k == null)
+				return null;
+
+			String drive = evt.getEventInstance() + ":" + evt.getParam(DWDefs.EVENT_ITEM_DRIVE);
+			AtomicInteger epoch = getEpoch(drive);
+
+			if (k.startsWith("*"))
+			{
+				epoch.incrementAndGet();
+				return null;
+			}
+
+			if (k.startsWith("_"))
+				return "D" + drive + ":" + epoch.get() + ":" + k;
+		}
+
+		return null;
+	}
+
+
+	private AtomicInteger getEpoch(String drive)
+	{
+		AtomicInteger epoch = this.epochs.get(drive);
+
+		if (epoch == null)
+		{
+			AtomicInteger prev = this.epochs.putIfAbsent(drive, epoch = new AtomicInteger(0));
+
+			if (prev != null)
+				epoch = prev;
+		}
+
+		return epoch;
+	}
+
+
+	// status events only carry what changed, so keep older values the newer one doesn't have
+	private DWEvent merge(DWEvent older, DWEvent newer)
+	{
+		DWEvent res = new DWEvent(newer.getEventType(), newer.getEventInstance());
+
+		for (String k : older.getParamKeys())
+			res.setParam(k, older.getParam(k));
+
+		for (String k : newer.getParamKeys())
+			res.setParam(k, newer.getParam(k));
+
+		return res;
+	}
+
+
+	private boolean enqueue(Object item)
+	{
+		long t;
+
+		while (true)
+		{
+			t = this.tail.get();
+
+			int slot = (int) t & this.mask;
+			long seq = this.seqs.get(slot);
+
+			if (seq == t)
+			{
+				if (this.tail.compareAndSet(t, t + 1))
+				{
+					this.stamps[slot] = System.nanoTime();
+					this.slots.set(slot, item);
+					// publishes the slot to the consumer
+					this.seqs.set(slot, t + 1);
+					break;
+				}
+			}
+			else if (seq < t)
+			{
+				// full
+				return false;
+			}
+		}
+
+		// head may be stale here, close enough for a high water mark
+		int depth = Math.min((int) (t + 1 - this.head), this.mask + 1);
+		if (depth > this.depthmax)
+			this.depthmax = depth;
+
+		Thread w = this.waiter;
+		if (w != null)
+			LockSupport.unpark(w);
+
+		return true;
+	}
+
+
+	// consumer only
+	public DWEvent poll()
+	{
+		while (true)
+		{
+			if (!this.logbatch.isEmpty())
+			{
+				this.sent++;
+				return this.logbatch.poll();
+			}
+
+			int slot = (int) this.head & this.mask;
+
+			if (this.seqs.get(slot) != this.head + 1)
+				return null;
+
+			Object item = this.slots.get(slot);
+			long stamp = this.stamps[slot];
+
+			this.slots.set(slot, null);
+			this.seqs.set(slot, this.head + this.mask + 1);
+			this.head++;
+
+			DWEvent evt = null;
+
+			if (item == LOGBATCH)
+			{
+				// clear first so a log added while we drain gets a new token
+				this.logqueued.set(false);
+
+				DWEvent l;
+				while ((l = this.logs.poll()) != null)
+				{
+					this.logcount.decrementAndGet();
+					this.logbatch.add(l);
+				}
+
+				if (this.logbatch.isEmpty())
+					continue;
+
+				this.batches++;
+			}
+			else if (item instanceof String)
+			{
+				evt = this.pending.remove(item);
+
+				if (evt == null)
+					continue;
+			}
+			else
+			{
+				evt = (DWEvent) item;
+			}
+
+			long l = System.nanoTime() - stamp;
+
+			this.lag = l;
+			if (l > this.lagmax)
+				this.lagmax = l;
+
+			// a log batch is handed out from the top of the loop
+			if (evt == null)
+				continue;
+
+			this.sent++;
+			return evt;
+		}
+	}
+
+
+	// consumer only, waits up to wait ms (0 waits forever)
+	public DWEvent take(long wait) throws InterruptedException
+	{
+		DWEvent evt = poll();
+
+		if (evt != null)
+			return evt;
+
+		long deadline = System.nanoTime() + wait * 1000000L;
+
+		this.waiter = Thread.currentThread();
+
+		try
+		{
+			// recheck after publishing ourselves as waiter so an offer in between is not missed
+			while ((evt = poll()) == null)
+			{
+				if (Thread.interrupted())
+					throw new InterruptedException();
+
+				if (wait == 0)
+				{
+					LockSupport.park(this);
+				}
+				else
+				{
+					long left = deadline - System.nanoTime();
+
+					if (left <= 0)
+						return null;
+
+					LockSupport.parkNanos(this, left);
+				}
+			}
+		}
+		finally
+		{
+			this.waiter = null;
+		}
+
+		return evt;
+	}
+
+
+	public int size()
+	{
+		return (int) (this.tail.get() - this.head) + this.logbatch.size();
+	}
+
+	public long getOffered()
+	{
+		return this.offered.get();
+	}
+
+	public long getSent()
+	{
+		return this.sent;
+	}
+
+	public long getCoalesced()
+	{
+		return this.coalesced.get();
+	}
+
+	public long getDropped()
+	{
+		return this.dropped.get();
+	}
+
+	public long getLogsDropped()
+	{
+		return this.logsdropped.get();
+	}
+
+	public long getLogBatches()
+	{
+		return this.batches;
+	}
+
+	public int getDepthMax()
+	{
+		return this.depthmax;
+	}
+
+	// time the last event sent spent waiting, ns
+	public long getLag()
+	{
+		return this.lag;
+	}
+
+	public long getLagMax()
+	{
+		return this.lagmax;
+	}
+
+}
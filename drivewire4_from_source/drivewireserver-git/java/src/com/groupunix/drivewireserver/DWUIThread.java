@@ -3,10 +3,8 @@ package com.groupunix.drivewireserver;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.ConcurrentModificationException;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.log4j.Logger;
 
@@ -19,11 +17,8 @@ public class DWUIThread implements Runnable {
 	private boolean wanttodie = false;
 	private ServerSocket srvr = null;
 	
-	private LinkedList<DWUIClientThread> clientThreads = new LinkedList<DWUIClientThread>();
-
-	private int dropppedevents = 0;
-
-	private int lastQueueSize;
+	// clients come and go rarely, events are fanned out constantly
+	private CopyOnWriteArrayList<DWUIClientThread> clientThreads = new CopyOnWriteArrayList<DWUIClientThread>();
 	
 	public DWUIThread(int port) 
 	{
@@ -52,10 +47,6 @@ public class DWUIThread implements Runnable {
 		{
 			logger.warn("IO Error closing socket: " + e.getMessage());
 		}
-		catch (ConcurrentModificationException e)
-		{
-			// TODO whatever, we are dying, but should do this right
-		}
 		
 	}
 	
@@ -133,49 +124,23 @@ public class DWUIThread implements Runnable {
 	}
 
 
+	// called from protocol, logging and status threads, never waits on a client
 	public void submitEvent(DWEvent evt) 
 	{
-		
-		//System.out.println("Event " + evt.getEventType() + " " + evt.getParam("k") + " " + evt.getParam("v"));
-
-		
-		synchronized(this.clientThreads)
+		for (DWUIClientThread client : this.clientThreads)
 		{
-			Iterator<DWUIClientThread> itr = this.clientThreads.iterator(); 
+			if (!client.isSync())
+				continue;
 			
-			while(itr.hasNext()) 
-			{	
-				DWUIClientThread client = itr.next();
-				
-				// filter for instance
-				if ((client.getInstance() == -1) || (client.getInstance() == evt.getEventInstance()) || (evt.getEventInstance() == -1))
+			// filter for instance
+			if ((client.getInstance() == -1) || (client.getInstance() == evt.getEventInstance()) || (evt.getEventInstance() == -1))
+			{
+				if (!(client.isDropLog() && (evt.getEventType() == DWDefs.EVENT_TYPE_LOG)))
 				{
-					LinkedBlockingQueue<DWEvent> queue = (LinkedBlockingQueue<DWEvent>) client.getEventQueue(); 
-					
-					synchronized(queue)
-					{
-						if ((queue != null) && !(client.isDropLog() && (evt.getEventType() == DWDefs.EVENT_TYPE_LOG)))
-						{
-							this.lastQueueSize = queue.size();
-							if (queue.size() < DWDefs.EVENT_QUEUE_LOGDROP_SIZE)
-							{
-								queue.add(evt);
-							}
-							else if ((queue.size() < DWDefs.EVENT_MAX_QUEUE_SIZE) && (evt.getEventType() != DWDefs.EVENT_TYPE_LOG))
-							{
-								queue.add(evt);
-							}
-							else
-							{
-								this.dropppedevents++; 
-								System.out.println("queue drop: " + queue.size() + "/" + this.dropppedevents + "  " + evt.getEventType() + " thr " + client.getThreadName() + " cmd " + client.getCurCmd() + " state " + client.getState() );
-							}
-						}
-					}
+					client.getEventQueue().offer(evt);
 				}
 			}
-
-		} 
+		}
 	}
 
 	
@@ -185,11 +150,9 @@ public class DWUIThread implements Runnable {
 	}
 
 
-	public int getQueueSize()
+	public List<DWUIClientThread> getClientThreads()
 	{
-	
-		
-		return lastQueueSize;
+		return this.clientThreads;
 	}
 	
 
@@ -37,12 +37,14 @@ import org.apache.log4j.lf5.LF5Appender;
 import org.apache.log4j.spi.LoggingEvent;
 
 import com.groupunix.drivewireserver.dwdisk.DWDiskLazyWriter;
+import com.groupunix.drivewireserver.dwdisk.DWDiskTelemetry;
 import com.groupunix.drivewireserver.dwexceptions.DWPlatformUnknownException;
 import com.groupunix.drivewireserver.dwprotocolhandler.DWProtocol;
 import com.groupunix.drivewireserver.dwprotocolhandler.DWProtocolHandler;
 import com.groupunix.drivewireserver.dwprotocolhandler.DWUtils;
 import com.groupunix.drivewireserver.dwprotocolhandler.MCXProtocolHandler;
 import com.groupunix.drivewireserver.dwprotocolhandler.vmodem.VModemProtocolHandler;
+import com.groupunix.drivewireserver.virtualprinter.DWVPrinterFX80Encoder;
 
 
 
@@ -66,6 +68,7 @@ public class DriveWireServer
 	private static Vector<DWProtocol> dwProtoHandlers = new Vector<DWProtocol>();
 
 	private static Thread lazyWriterT;
+	private static Thread diskTelemetryT;
 	private static DWUIThread uiObj;
 	private static Thread uiT;	
 	
@@ -80,7 +83,10 @@ public class DriveWireServer
 	
 	private static DWEvent statusEvent = new DWEvent(DWDefs.EVENT_TYPE_STATUS, -1);
 	private static long lastMemoryUpdate = 0;
-	private static ArrayList<DWEvent> logcache = new ArrayList<DWEvent>();
+	// circular, logcachenext is where the next one goes
+	private static DWEvent[] logcache = new DWEvent[DWDefs.LOGGING_MAX_BUFFER_EVENTS];
+	private static int logcachenext = 0;
+	private static int logcachesize = 0;
 	private static boolean useDebug = false;
 	private static long magic = System.currentTimeMillis();
 	private static DWEvent evt = new DWEvent(DWDefs.EVENT_TYPE_STATUS, -1);
@@ -169,7 +175,7 @@ public class DriveWireServer
 
 							dwProtoHandlers.set(i, new DWProtocolHandler(i, handlerconfs.get(i)));
 							
-					    	dwProtoHandlerThreads.set(i, new Thread(dwProtoHandlers.get(i)));
+					    	dwProtoHandlerThreads.set(i, newHandlerThread(dwProtoHandlers.get(i)));
 					    	dwProtoHandlerThreads.get(i).start();	
 						}
 						
@@ -205,6 +211,9 @@ public class DriveWireServer
 			evt.setParam(DWDefs.EVENT_ITEM_DISKOPS, DriveWireServer.getDiskOps()+"");
 			evt.setParam(DWDefs.EVENT_ITEM_VSERIALOPS, DriveWireServer.getVSerialOps()+"");
 			
+			// perf
+			submitPerfStatus();
+			
 			// some things should not be updated every tick..
 			if (ticktime - lastMemoryUpdate > DWDefs.SERVER_MEM_UPDATE_INTERVAL)
 			{	
@@ -235,6 +244,13 @@ public class DriveWireServer
 
 
 
+	public static DWUIThread getUIThread()
+	{
+		return DriveWireServer.uiObj;
+	}
+
+
+
 	public static DWEvent getServerStatusEvent()
 	{
 		return DriveWireServer.statusEvent;
@@ -255,6 +271,39 @@ public class DriveWireServer
 	}
 
 
+	private static void submitPerfStatus()
+	{
+		long bytesin = 0;
+		long bytesout = 0;
+		long latency = 0;
+		long crcerrors = 0;
+		
+		for (DWProtocol p : dwProtoHandlers)
+		{
+			if (p == null)
+				continue;
+			
+			if (p.getProtoDev() != null)
+			{
+				bytesin += p.getProtoDev().getBytesIn();
+				bytesout += p.getProtoDev().getBytesOut();
+			}
+			
+			// worst instance wins
+			if (p.getTimers() != null)
+				latency = Math.max(latency, p.getTimers().getHistogram(DWDefs.TIMER_HIST_LOOKUP).getPercentile(99));
+			
+			if (p instanceof DWProtocolHandler)
+				crcerrors += ((DWProtocolHandler) p).getReadCRCErrors() + ((DWProtocolHandler) p).getWriteCRCErrors();
+		}
+		
+		evt.setParam(DWDefs.EVENT_ITEM_BYTESIN, bytesin+"");
+		evt.setParam(DWDefs.EVENT_ITEM_BYTESOUT, bytesout+"");
+		evt.setParam(DWDefs.EVENT_ITEM_DISKLATENCY, latency+"");
+		evt.setParam(DWDefs.EVENT_ITEM_CRCERRORS, crcerrors+"");
+	}
+
+
 	private static long getDiskOps()
 	{
 		long res = 0;
@@ -362,6 +411,9 @@ public class DriveWireServer
     	
     	// start lazy writer
 		startLazyWriter();
+		
+		// start disk telemetry publisher
+		startDiskTelemetry();
     	
 		// start UI server
 		applyUISettings();
@@ -408,7 +460,7 @@ public class DriveWireServer
 		    	dwProtoHandlers.add(new DWProtocolHandler(hno, hconf));
 		    }
 		    
-		    dwProtoHandlerThreads.add(new Thread(dwProtoHandlers.get(hno)) );
+		    dwProtoHandlerThreads.add(newHandlerThread(dwProtoHandlers.get(hno)) );
 		    
 		    
 		    if (hconf.getBoolean("AutoStart", true))
@@ -423,6 +475,26 @@ public class DriveWireServer
 
 
 
+	private static Thread newHandlerThread(Runnable handler)
+	{
+		// protocol loops mostly sit blocked on their device, so they can live on virtual threads if the jvm has them
+		if ((serverconfig != null) && serverconfig.getBoolean("ProtocolVirtualThreads", false))
+		{
+			try
+			{
+				Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+				return (Thread) Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class).invoke(builder, handler);
+			}
+			catch (Exception e)
+			{
+				logger.warn("ProtocolVirtualThreads is set but virtual threads are not available (" + e.getClass().getSimpleName() + "), using platform threads");
+			}
+		}
+		
+		return new Thread(handler);
+	}
+	
+	
 	public static void startHandler(int hno) 
 	{
 		if (dwProtoHandlerThreads.get(hno).isAlive())
@@ -470,7 +542,7 @@ public class DriveWireServer
 		dwProtoHandlers.remove(hno);
 		dwProtoHandlers.add(hno,  new DWProtocolHandler(hno, hc));
 		dwProtoHandlerThreads.remove(hno);
-		dwProtoHandlerThreads.add(hno , new Thread(dwProtoHandlers.get(hno)) );
+		dwProtoHandlerThreads.add(hno , newHandlerThread(dwProtoHandlers.get(hno)) );
 		
     }
     
@@ -756,6 +828,14 @@ public class DriveWireServer
 		}
 		
 		
+		if (diskTelemetryT != null)
+		{
+			diskTelemetryT.interrupt();
+		}
+		
+		// print pages already queued get written before we go
+		DWVPrinterFX80Encoder.shutdown();
+		
 		if (lazyWriterT != null)
 		{
 			logger.debug("stopping lazy writer...");
@@ -788,6 +868,10 @@ public class DriveWireServer
 		
 		
 		logger.info("server shutdown complete");
+		
+		if (dwAppender != null)
+			dwAppender.flush();
+		
 		logger.removeAllAppenders();
 	}
 
@@ -801,6 +885,14 @@ public class DriveWireServer
 	}
 
 
+	private static void startDiskTelemetry() 
+	{
+		diskTelemetryT = new Thread(new DWDiskTelemetry());
+		diskTelemetryT.setDaemon(true);
+		diskTelemetryT.start();
+	}
+
+
 
 
 	public static void applyUISettings() 
@@ -840,6 +932,7 @@ public class DriveWireServer
     		logLayout = new PatternLayout(serverconfig.getString("LogFormat"));
     	}
     	
+    	// closes the old dwAppender, which closes the console/file appenders it fed
     	Logger.getRootLogger().removeAllAppenders();
 		
     	dwAppender = new DWLogAppender(logLayout);
@@ -851,7 +944,8 @@ public class DriveWireServer
     	if (serverconfig.getBoolean("LogToConsole", true) || useDebug)
     	{
     		consoleAppender = new ConsoleAppender(logLayout);
-    		Logger.getRootLogger().addAppender(consoleAppender);
+    		// written from the log thread, not the thread doing the logging
+    		dwAppender.addAppender(consoleAppender);
     	}
     	
     	
@@ -861,7 +955,7 @@ public class DriveWireServer
     		try 
     		{
     			fileAppender = new FileAppender(logLayout,serverconfig.getString("LogFile"),true,false,128);
-    			Logger.getRootLogger().addAppender(fileAppender);
+    			dwAppender.addAppender(fileAppender);
     		} 
     		catch (IOException e) 
     		{
@@ -905,6 +999,12 @@ public class DriveWireServer
 	}
 
 
+	public static DWLogAppender getLogAppender()
+	{
+		return(dwAppender);
+	}
+
+
 
 
 	public static int getNumHandlers()
@@ -1129,6 +1229,25 @@ public class DriveWireServer
 	}
 	
 
+	// one event carries a drive's lsn plus its read and write counts
+	public static void submitDiskTelemetry(int instance, int diskno, int lsn, long reads, long writes) 
+	{
+		if (uiObj != null)
+		{
+			DWEvent evt = new DWEvent(DWDefs.EVENT_TYPE_DISK, instance);
+			
+			evt.setParam(DWDefs.EVENT_ITEM_INSTANCE, String.valueOf(instance));
+			evt.setParam(DWDefs.EVENT_ITEM_DRIVE, String.valueOf(diskno));
+			evt.setParam(DWDefs.EVENT_ITEM_KEY, "_lsn");
+			evt.setParam(DWDefs.EVENT_ITEM_VALUE, String.valueOf(lsn));
+			evt.setParam(DWDefs.EVENT_ITEM_READS, String.valueOf(reads));
+			evt.setParam(DWDefs.EVENT_ITEM_WRITES, String.valueOf(writes));
+			
+			uiObj.submitEvent(evt);
+		}
+	}
+	
+
 	public static void submitMIDIEvent(int instance, String key, String val) 
 	{
 		if (uiObj != null)
@@ -1155,9 +1274,11 @@ public class DriveWireServer
 		
 		synchronized(logcache)
 		{
-			logcache.add(evt);
-			if (logcache.size() > DWDefs.LOGGING_MAX_BUFFER_EVENTS)
-				logcache.remove(0);
+			logcache[logcachenext] = evt;
+			logcachenext = (logcachenext + 1) % logcache.length;
+			
+			if (logcachesize < logcache.length)
+				logcachesize++;
 		}
 		
 		if (uiObj != null)
@@ -1272,7 +1393,15 @@ public class DriveWireServer
 
 	public static ArrayList<DWEvent> getLogCache()
 	{
-		return DriveWireServer.logcache;
+		ArrayList<DWEvent> res = new ArrayList<DWEvent>();
+		
+		synchronized(logcache)
+		{
+			for (int i = 0;i < logcachesize;i++)
+				res.add(logcache[(logcachenext - logcachesize + i + logcache.length) % logcache.length]);
+		}
+		
+		return res;
 	}
 
 
@@ -8,6 +8,7 @@ import org.apache.commons.configuration.HierarchicalConfiguration;
 
 import com.groupunix.drivewireserver.DWDefs;
 import com.groupunix.drivewireserver.dwdisk.DWDisk;
+import com.groupunix.drivewireserver.dwdisk.DWDiskReadAhead;
 import com.groupunix.drivewireserver.dwexceptions.DWDriveNotLoadedException;
 import com.groupunix.drivewireserver.dwexceptions.DWDriveNotValidException;
 import com.groupunix.drivewireserver.dwprotocolhandler.DWProtocolHandler;
@@ -107,6 +108,13 @@ public class DWCmdDiskShow extends DWCommand
 				text += "This drive reports " + disk.getDirtySectors() + " dirty sectors.\r\n";
 			}
 			
+			DWDiskReadAhead ra = disk.getReadAhead();
+			
+			if ((ra != null) && (ra.getHits() + ra.getMisses() > 0))
+			{
+				text += "Read ahead: " + ra.getHits() + " hits, " + ra.getMisses() + " misses, " + ra.getMapped() + " mapped, " + ra.getPrefetched() + " prefetched (" + ra.getSpeculated() + " speculative), " + ra.getUsed() + " used, " + ra.getWasted(disk.getSectors()) + " wasted.\r\n";
+			}
+			
 			
 			HierarchicalConfiguration params = disk.getParams();
 			
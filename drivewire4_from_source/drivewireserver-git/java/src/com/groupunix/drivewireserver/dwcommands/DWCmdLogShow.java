@@ -48,7 +48,8 @@ public class DWCmdLogShow extends DWCommand {
 		{
 			int lines = Integer.parseInt(strlines);
 			
-			text += "\r\nDriveWire Server Log (" + DriveWireServer.getLogEventsSize() + " events in buffer):\r\n\n";
+			text += "\r\nDriveWire Server Log (" + DriveWireServer.getLogEventsSize() + " events in buffer, ";
+			text += DriveWireServer.getLogAppender().getQueued() + " queued, " + DriveWireServer.getLogAppender().getDropped() + " dropped):\r\n\n";
 			
 			ArrayList<String> loglines = DriveWireServer.getLogEvents(lines);
 			
@@ -4,6 +4,7 @@ import com.groupunix.drivewireserver.DWDefs;
 import com.groupunix.drivewireserver.dwexceptions.DWPortNotValidException;
 import com.groupunix.drivewireserver.dwprotocolhandler.DWUtils;
 import com.groupunix.drivewireserver.dwprotocolhandler.DWVSerialProtocol;
+import com.groupunix.drivewireserver.virtualserial.DWVSerialPollScheduler;
 
 public class DWCmdPortShow extends DWCommand {
 
@@ -82,6 +83,12 @@ public class DWCmdPortShow extends DWCommand {
 			text += "\r\n";
 		}
 		
+		DWVSerialPollScheduler sched = dwProto.getVPorts().getScheduler();
+		
+		text += "\r\nPoll scheduler: " + sched.getPolls() + " polls, " + sched.getServed() + " served, " + sched.getStale() + " stale\r\n";
+		text += "Ready to served: avg " + (sched.getLatencyAvg() / 1000) + " us, max " + (sched.getLatencyMax() / 1000) + " us, max polls waited " + sched.getPollsWaitedMax() + "\r\n";
+		text += "Ready ports: " + sched.getDepth() + ", most at once " + sched.getDepthMax() + "\r\n";
+		
 		return(new DWCommandResponse(text));
 		
 	}
@@ -16,6 +16,7 @@ public class DWCmdServerShow extends DWCommand {
 		commands = new DWCommandList(this.dwProto, this.dwProto.getCMDCols());
 		commands.addcommand(new DWCmdServerShowThreads(this));
 		commands.addcommand(new DWCmdServerShowTimers(this.dwProto, this));
+		commands.addcommand(new DWCmdServerShowPerf(this.dwProto, this));
 		commands.addcommand(new DWCmdServerShowSerial(this.dwProto, this));
 	}
 	
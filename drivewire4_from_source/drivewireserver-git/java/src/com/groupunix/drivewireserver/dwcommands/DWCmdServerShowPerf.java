@@ -0,0 +1,118 @@
+package com.groupunix.drivewireserver.dwcommands;
+
+import com.groupunix.drivewireserver.DWDefs;
+import com.groupunix.drivewireserver.dwprotocolhandler.DWLatencyHistogram;
+import com.groupunix.drivewireserver.dwprotocolhandler.DWProtocol;
+import com.groupunix.drivewireserver.dwprotocolhandler.DWProtocolDevice;
+import com.groupunix.drivewireserver.dwprotocolhandler.DWProtocolHandler;
+import com.groupunix.drivewireserver.dwprotocolhandler.DWProtocolTimers;
+import com.groupunix.drivewireserver.dwprotocolhandler.DWUtils;
+
+
+public class DWCmdServerShowPerf extends DWCommand {
+
+	private DWProtocol dwProto;
+
+	DWCmdServerShowPerf(DWProtocol dwProto, DWCommand parent)
+	{
+		this.dwProto = dwProto;
+		setParentCmd(parent);
+	}
+
+	public String getCommand()
+	{
+		return "perf";
+	}
+
+
+
+	public String getShortHelp()
+	{
+		return "Show instance latency and throughput";
+	}
+
+
+	public String getUsage()
+	{
+		return "dw server show perf [reset]";
+	}
+
+	public DWCommandResponse parse(String cmdline)
+	{
+		DWProtocolTimers timers = dwProto.getTimers();
+
+		if (cmdline.equals("reset") && (timers != null))
+		{
+			timers.resetHistograms();
+			return(new DWCommandResponse("Latency histograms reset."));
+		}
+		else if (cmdline.length() > 0)
+		{
+			return(new DWCommandResponse(false,DWDefs.RC_SYNTAX_ERROR,"Syntax error: " + getUsage()));
+		}
+
+		String text = new String();
+
+		text += "DriveWire instance performance:\r\n\r\n";
+
+		DWProtocolDevice dev = dwProto.getProtoDev();
+
+		if (dev != null)
+			text += "Device " + dev.getDeviceType() + " " + dev.getDeviceName() + ": " + dev.getBytesIn() + " bytes in, " + dev.getBytesOut() + " bytes out\r\n";
+
+		text += "Ops: " + dwProto.getNumOps() + " total, " + dwProto.getNumDiskOps() + " disk, " + dwProto.getNumVSerialOps() + " virtual serial\r\n";
+
+		if (dwProto instanceof DWProtocolHandler)
+		{
+			DWProtocolHandler dwp = (DWProtocolHandler) dwProto;
+
+			text += "Sectors read: " + dwp.getSectorsRead() + ", retries " + dwp.getReadRetries() + " (" + rate(dwp.getReadRetries(), dwp.getSectorsRead()) + "), CRC errors " + dwp.getReadCRCErrors() + " (" + rate(dwp.getReadCRCErrors(), dwp.getSectorsRead()) + ")\r\n";
+			text += "Sectors written: " + dwp.getSectorsWritten() + ", retries " + dwp.getWriteRetries() + " (" + rate(dwp.getWriteRetries(), dwp.getSectorsWritten()) + "), CRC errors " + dwp.getWriteCRCErrors() + " (" + rate(dwp.getWriteCRCErrors(), dwp.getSectorsWritten()) + ")\r\n";
+		}
+
+		if (timers == null)
+			return(new DWCommandResponse(text));
+
+		text += String.format("\r\n%-24s %9s %8s %8s %8s %8s %8s\r\n\r\n", "Latency (us)", "count", "mean", "p50", "p99", "p99.9", "max");
+
+		for (int i = 0;i < 256;i++)
+		{
+			DWLatencyHistogram h = timers.getOpHistogram(i);
+
+			if (h.getCount() > 0)
+				text += formatHistogram(DWUtils.prettyOP((byte) i), h);
+		}
+
+		text += "\r\n";
+
+		for (int i = 0;i < DWDefs.TIMER_HISTS;i++)
+		{
+			DWLatencyHistogram h = timers.getHistogram(i);
+
+			if (h.getCount() > 0)
+				text += formatHistogram("disk " + DWUtils.prettyTimerHistogram(i), h);
+		}
+
+		return(new DWCommandResponse(text));
+	}
+
+
+	private String formatHistogram(String name, DWLatencyHistogram h)
+	{
+		return(String.format("%-24s %9d %8d %8d %8d %8d %8d\r\n", name, h.getCount(), h.getMean(), h.getPercentile(50), h.getPercentile(99), h.getPermille(999), h.getMax()));
+	}
+
+
+	private String rate(int n, int of)
+	{
+		if (of + n == 0)
+			return "0.00%";
+
+		return(String.format("%.2f%%", (n * 100.0) / (of + n)));
+	}
+
+	public boolean validate(String cmdline)
+	{
+		return(true);
+	}
+}
@@ -5,15 +5,17 @@ import gnu.io.SerialPort;
 
 import com.groupunix.drivewireserver.DWDefs;
 import com.groupunix.drivewireserver.dwprotocolhandler.DWProtocol;
+import com.groupunix.drivewireserver.dwprotocolhandler.DWSerialDevice;
+import com.groupunix.drivewireserver.dwprotocolhandler.DWSerialReader;
 
 
 public class DWCmdServerShowSerial extends DWCommand {
 
-
+	private DWProtocol dwProto;
 
 	DWCmdServerShowSerial(DWProtocol dwProto, DWCommand parent)
 	{
-
+		this.dwProto = dwProto;
 		setParentCmd(parent);
 	}
 	
@@ -39,6 +41,20 @@ public class DWCmdServerShowSerial extends DWCommand {
 	{
 		String text = new String();
 		
+		// input buffer stats for this instance's own device
+		if ((dwProto != null) && (dwProto.getProtoDev() instanceof DWSerialDevice))
+		{
+			DWSerialDevice dev = (DWSerialDevice) dwProto.getProtoDev();
+			DWSerialReader rdr = dev.getSerialReader();
+			
+			if (rdr != null)
+			{
+				text += "Instance serial device " + dev.getDeviceName() + ":\r\n\r\n";
+				text += "Input buffer: " + rdr.available() + " of " + rdr.getCapacity() + " bytes used, high water " + rdr.getHighWater() + "\r\n";
+				text += "Received: " + rdr.getReceived() + " bytes  Overflows: " + rdr.getOverflows() + " bytes dropped  Reader parks: " + rdr.getParks() + "\r\n\r\n";
+			}
+		}
+		
 		text += "Server serial devices:\r\n\r\n";
 		
 		 @SuppressWarnings("unchecked")
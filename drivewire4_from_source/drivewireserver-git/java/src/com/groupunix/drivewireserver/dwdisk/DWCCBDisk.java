@@ -66,7 +66,7 @@ public class DWCCBDisk extends DWDisk
 	    	// ccb scripts may not be /256
 	    	if (readres == -1)
 	    	{
-	    		this.sectors.set(sec, new DWDiskSector(this, sec, DWDefs.DISK_SECTORSIZE, false));
+	    		this.sectors.set(sec, new DWDiskSector(this, sec, false));
 	    		for (int i = secres;i < DWDefs.DISK_SECTORSIZE;i++)
 	    			buf[i] = 0;
 	    		this.sectors.get(sec).setData(buf, false);
@@ -79,7 +79,7 @@ public class DWCCBDisk extends DWDisk
 	    		
 	    		if (secres == DWDefs.DISK_SECTORSIZE)
 	    		{
-	    			this.sectors.set(sec, new DWDiskSector(this, sec, DWDefs.DISK_SECTORSIZE, false));
+	    			this.sectors.set(sec, new DWDiskSector(this, sec, false));
 		    		this.sectors.get(sec).setData(buf, false);
 	    			secres = 0;
 	    			
@@ -113,7 +113,7 @@ public class DWCCBDisk extends DWDisk
 		}
 		else
 		{
-			this.setParam("_lsn", newLSN);
+			this.setLSN(newLSN);
 		}
 	}
 
@@ -131,7 +131,7 @@ public class DWCCBDisk extends DWDisk
 			
 			this.sectors.get(this.getLSN()).setData(data);
 			
-			this.incParam("_writes");
+			this.countWrite();
 			
 		}
 	}
@@ -140,7 +140,7 @@ public class DWCCBDisk extends DWDisk
 
 	public byte[] readSector() throws IOException
 	{
-		this.incParam("_reads");
+		this.countRead();
 		return(this.sectors.get(this.getLSN()).getData() );
 	}
 
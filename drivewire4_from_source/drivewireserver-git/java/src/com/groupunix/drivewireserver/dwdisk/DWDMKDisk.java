@@ -170,7 +170,7 @@ public class DWDMKDisk extends DWDisk
 		
 		if ((lsn > -1) && (lsn < this.sectors.size()))
 		{
-			this.sectors.set(lsn, new DWDiskSector(this, lsn, idam.getSectorSize(), false));
+			this.sectors.set(lsn, new DWDiskSector(this, lsn, false));
 			this.sectors.get(lsn).setData(getSectorDataFrom(idam, track), false);
 		}
 		else
@@ -262,7 +262,7 @@ public class DWDMKDisk extends DWDisk
 		}
 		else
 		{
-			this.setParam("_lsn", newLSN);
+			this.setLSN(newLSN);
 		}
 	}
 
@@ -280,7 +280,7 @@ public class DWDMKDisk extends DWDisk
 			
 			this.sectors.get(this.getLSN()).setData(data);
 			
-			this.incParam("_writes");
+			this.countWrite();
 			
 			// logger.debug("write sector " + this.LSN + "\r" + DWProtocolHandler.byteArrayToHexString(this.sectors[this.LSN].getData()));
 		}
@@ -290,7 +290,7 @@ public class DWDMKDisk extends DWDisk
 
 	public byte[] readSector() throws IOException
 	{
-		this.incParam("_reads");
+		this.countRead();
 		return(this.sectors.get(this.getLSN()).getData() );
 	}
 
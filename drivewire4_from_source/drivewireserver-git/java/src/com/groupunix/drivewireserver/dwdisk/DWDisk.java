@@ -3,7 +3,7 @@ package com.groupunix.drivewireserver.dwdisk;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.util.Iterator;
-import java.util.Vector;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.commons.configuration.HierarchicalConfiguration;
 import org.apache.commons.configuration.event.ConfigurationListener;
@@ -14,6 +14,8 @@ import org.apache.commons.vfs.VFS;
 import org.apache.log4j.Logger;
 
 import com.groupunix.drivewireserver.DWDefs;
+import com.groupunix.drivewireserver.DriveWireServer;
+import com.groupunix.drivewireserver.dwdisk.filesystem.DWRBFFileSystemCache;
 import com.groupunix.drivewireserver.dwexceptions.DWDiskInvalidSectorNumber;
 import com.groupunix.drivewireserver.dwexceptions.DWDriveWriteProtectedException;
 import com.groupunix.drivewireserver.dwexceptions.DWImageFormatException;
@@ -26,11 +28,23 @@ public abstract class DWDisk
 	private static final Logger logger = Logger.getLogger("DWServer.DWDisk");
 	
 	protected HierarchicalConfiguration params;
-	public Vector<DWDiskSector> sectors = new Vector<DWDiskSector>();	
+	public DWDiskSectorStore sectors;
 	protected FileObject fileobj = null;
 	protected DWDiskConfigListener configlistener;
 	protected DWDiskDrive drive;
 
+	// hot path counters, copied into params by DWDiskTelemetry at its own pace
+	private final LongAdder reads = new LongAdder();
+	private final LongAdder writes = new LongAdder();
+	private volatile int lsn = 0;
+	
+	// values last copied into params, publisher thread only
+	private long pubreads = 0;
+	private long pubwrites = 0;
+	private int publsn = 0;
+	
+	// parsed RBF metadata, made on first use
+	private volatile DWRBFFileSystemCache rbfcache = null;
 
 	
 	
@@ -49,6 +63,7 @@ public abstract class DWDisk
 	{
 
 		this.fileobj = fileobj;
+		this.sectors = newSectorStore(DWDefs.DISK_SECTORSIZE);
 		
 		this.params = new HierarchicalConfiguration();
 		
@@ -83,6 +98,7 @@ public abstract class DWDisk
 	{
 
 		this.fileobj = null;
+		this.sectors = newSectorStore(DWDefs.DISK_SECTORSIZE);
 		
 		this.params = new HierarchicalConfiguration();
 		
@@ -99,6 +115,17 @@ public abstract class DWDisk
 	}
 	
 	
+	protected DWDiskSectorStore newSectorStore(int sectorsize)
+	{
+		boolean offheap = false;
+		
+		if (DriveWireServer.serverconfig != null)
+			offheap = DriveWireServer.serverconfig.getBoolean("DiskCacheOffHeap", false);
+		
+		return new DWDiskSectorArray(this, sectorsize, offheap);
+	}
+	
+	
 	public HierarchicalConfiguration getParams()
 	{
 		return this.params;
@@ -149,7 +176,66 @@ public abstract class DWDisk
 	
 	public int getLSN()
 	{
-		return(this.params.getInt("_lsn",0));
+		return(this.lsn);
+	}
+	
+	protected void setLSN(int lsn)
+	{
+		this.lsn = lsn;
+	}
+	
+	protected void countRead()
+	{
+		this.reads.increment();
+	}
+	
+	protected void countWrite()
+	{
+		this.writes.increment();
+	}
+	
+	public long getReads()
+	{
+		return(this.reads.sum());
+	}
+	
+	public long getWrites()
+	{
+		return(this.writes.sum());
+	}
+	
+	
+	// true for the params kept up to date by the telemetry publisher instead of on every op
+	public static boolean isTelemetryParam(String key)
+	{
+		return(key.equals("_lsn") || key.equals("_reads") || key.equals("_writes"));
+	}
+	
+	
+	// copy the counters into params if they moved since last time.  true if anything changed.
+	public boolean publishTelemetry()
+	{
+		int l = this.lsn;
+		long r = this.reads.sum();
+		long w = this.writes.sum();
+		
+		if ((l == this.publsn) && (r == this.pubreads) && (w == this.pubwrites))
+			return(false);
+		
+		this.publsn = l;
+		this.pubreads = r;
+		this.pubwrites = w;
+		
+		// the config listener leaves these to the publisher, so no event per key.
+		// params are not thread safe, drive ops hold the same lock
+		synchronized(this)
+		{
+			this.setParam("_lsn", l);
+			this.setParam("_reads", r);
+			this.setParam("_writes", w);
+		}
+		
+		return(true);
 	}
 	
 	
@@ -270,13 +356,15 @@ public abstract class DWDisk
  		 
  		 time_init = System.currentTimeMillis() - time_point;
  		 
+		 byte[] tmp = new byte[this.sectors.getSectorSize()];
+		 
 		 for (int i = 0;i < this.sectors.size();i++)
 		 {
-		 	 // we do have a sector obj
-		 	 if (this.sectors.get(i) != null)
+		 	 // we do have a sector
+		 	 if (this.sectors.exists(i))
 		 	 {
 		 		 time_point = System.currentTimeMillis();
-		 		 byte[] tmp = this.sectors.get(i).getData();
+		 		 this.sectors.readData(i, tmp, 0);
 		 		 time_getdata += (System.currentTimeMillis() - time_point);
 		 		 
 		 		 time_point = System.currentTimeMillis();
@@ -284,7 +372,7 @@ public abstract class DWDisk
 			 	 time_write += (System.currentTimeMillis() - time_point);
 			 	 
 			 	 time_point = System.currentTimeMillis();
-		 		 this.sectors.get(i).makeClean();
+		 		 this.sectors.makeClean(i);
 		 		 time_clean += (System.currentTimeMillis() - time_point);
 		 	 }
 		 	 // we dont, write 0 filled
@@ -309,22 +397,11 @@ public abstract class DWDisk
 	 
 	public int getDirtySectors() 
 	{
-		int drt = 0;
-		
 		if (this.sectors != null)
 		{
-			for (int i=0;i<this.sectors.size();i++)
-			{
-				if (this.sectors.get(i) != null)
-				{
-					if (this.sectors.get(i).isDirty())
-					{
-						drt++;
-					}
-				}
-			}
+			return(this.sectors.getDirtySectors());
 		}
-		return(drt);
+		return(0);
 	}
 	 
 	 
@@ -335,13 +412,20 @@ public abstract class DWDisk
 			throw new DWDiskInvalidSectorNumber("Invalid sector number: " + no);
 		}
 		
-		if (this.sectors.get(no) != null)
+		return(this.sectors.get(no));
+			
+	}
+	
+	
+	// count whole sectors into buf, runs that are still on disk come in one read
+	public void readSectors(int no, int count, byte[] buf, int off) throws DWDiskInvalidSectorNumber, IOException
+	{
+		if ((no < 0) || (count < 0) || (no + count > this.sectors.size()))
 		{
-			return(this.sectors.get(no));
+			throw new DWDiskInvalidSectorNumber("Invalid sector range: " + no + "+" + count);
 		}
 		
-		return(null);
-			
+		this.sectors.readRun(no, buf, off, count);
 	}
 	 
 	 
@@ -400,12 +484,54 @@ public abstract class DWDisk
 		return false;
 	}
 	
-	public Vector<DWDiskSector> getSectors()
+	// start reading the sector after the current one, if the format can
+	public void prefetchNext()
+	{
+	}
+	
+	// only direct images read ahead
+	public DWDiskReadAhead getReadAhead()
+	{
+		return null;
+	}
+	
+	public DWDiskMappedFile getMappedFile()
+	{
+		return null;
+	}
+	
+	public DWDiskSectorStore getSectors()
 	{
 		return this.sectors;
 	}
 	
 	
+	public synchronized DWRBFFileSystemCache getRBFCache()
+	{
+		if (this.rbfcache == null)
+			this.rbfcache = new DWRBFFileSystemCache();
+		
+		return this.rbfcache;
+	}
+	
+	// the sector store calls these whenever sector contents change
+	public void sectorChanged(int lsn)
+	{
+		DWRBFFileSystemCache c = this.rbfcache;
+		
+		if (c != null)
+			c.invalidate(lsn);
+	}
+	
+	public void sectorsChanged()
+	{
+		DWRBFFileSystemCache c = this.rbfcache;
+		
+		if (c != null)
+			c.clear();
+	}
+	
+	
 
 
 
@@ -18,7 +18,8 @@ public class DWDiskConfigListener implements ConfigurationListener
 	{
 		if (!event.isBeforeUpdate())
         {
-            if (event.getPropertyName() != null)
+            // sector telemetry goes out coalesced from DWDiskTelemetry
+            if ((event.getPropertyName() != null) && !DWDisk.isTelemetryParam(event.getPropertyName()))
             {
             	
             	if (event.getPropertyValue() != null)
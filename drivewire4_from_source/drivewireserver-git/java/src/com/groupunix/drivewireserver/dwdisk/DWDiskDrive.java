@@ -117,6 +117,20 @@ public class DWDiskDrive
 	}
 
 
+	public void prefetchNext()
+	{
+		DWDisk d = this.disk;
+		
+		if (d != null)
+		{
+			synchronized(d)
+			{
+				d.prefetchNext();
+			}
+		}
+	}
+
+
 	public void writeSector(byte[] data) throws DWDriveWriteProtectedException, IOException
 	{
 		if (this.disk == null)
@@ -129,6 +143,15 @@ public class DWDiskDrive
 	}
 
 
+	public void publishTelemetry()
+	{
+		DWDisk d = this.disk;
+		
+		if ((d != null) && d.publishTelemetry() && (this.drives != null))
+			this.drives.submitTelemetry(this.driveno, d);
+	}
+	
+	
 	public void submitEvent(String key, String val)
 	{
 		if (this.drives != null)
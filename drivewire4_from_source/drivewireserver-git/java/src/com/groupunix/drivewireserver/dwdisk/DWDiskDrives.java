@@ -7,7 +7,6 @@ import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
-import java.util.Vector;
 
 import org.apache.commons.configuration.HierarchicalConfiguration;
 import org.apache.commons.vfs.FileContent;
@@ -118,6 +117,19 @@ public class DWDiskDrives
 	}
 	
 	
+	// speculative, never fails the op that asked for it
+	public void prefetchNext(int driveno)
+	{
+		if (dwProto.getConfig().getBoolean("HDBDOSMode",false))
+		{
+			driveno = this.hdbdosdrive;
+		}
+		
+		if (isDriveNo(driveno))
+			this.diskDrives[driveno].prefetchNext();
+	}
+	
+	
 	public void seekSector(int driveno, int lsn) throws DWDriveNotLoadedException, DWDriveNotValidException, DWInvalidSectorException, DWSeekPastEndOfDeviceException
 	{
 		if (dwProto.getConfig().getBoolean("HDBDOSMode",false))
@@ -548,6 +560,22 @@ public class DWDiskDrives
 	}
 
 
+	public void submitTelemetry(int driveno, DWDisk disk)
+	{
+		DriveWireServer.submitDiskTelemetry(this.dwProto.getHandlerNo(), driveno, disk.getLSN(), disk.getReads(), disk.getWrites());
+	}
+	
+	
+	public void publishTelemetry()
+	{
+		for (int i = 0;i < this.diskDrives.length;i++)
+		{
+			if (this.diskDrives[i].isLoaded())
+				this.diskDrives[i].publishTelemetry();
+		}
+	}
+
+
 	public HierarchicalConfiguration getConfig()
 	{
 		return this.dwProto.getConfig();
@@ -575,21 +603,23 @@ public class DWDiskDrives
 	
 
 
-	public static int getDiskFSType(Vector<DWDiskSector> sectors)
+	public static int getDiskFSType(DWDiskSectorStore sectors)
 	{
 		try
 		{
 			if (!sectors.isEmpty())
 			{
+				byte[] sec0 = sectors.get(0).getData();
+				
 				// OS9 ?
-				if ((sectors.get(0).getData()[3] == 18) && (sectors.get(0).getData()[73] == 18) && (sectors.get(0).getData()[75] == 18))
+				if ((sec0[3] == 18) && (sec0[73] == 18) && (sec0[75] == 18))
 				{
 					return(DWDefs.DISK_FILESYSTEM_OS9);
 				}
 				
 				// LWFS
 				byte[] lwfs = new byte[4];
-				System.arraycopy( sectors.get(0).getData(), 0, lwfs, 0, 4 );
+				System.arraycopy( sec0, 0, lwfs, 0, 4 );
 				
 				if (new String(lwfs).equals("LWFS") || new String(lwfs).equals("LW16"))
 				{
@@ -597,7 +627,7 @@ public class DWDiskDrives
 				}
 				
 				// TODO - outdated? cocoboot isave
-				if (sectors.get(0).getData()[0] == (byte) 'f' && sectors.get(0).getData()[1] == (byte) 'c')
+				if (sec0[0] == (byte) 'f' && sec0[1] == (byte) 'c')
 				{
 					return(DWDefs.DISK_FILESYSTEM_CCB);
 				}
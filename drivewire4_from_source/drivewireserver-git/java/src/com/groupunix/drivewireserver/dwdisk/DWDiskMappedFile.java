@@ -0,0 +1,208 @@
+package com.groupunix.drivewireserver.dwdisk;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.vfs.FileObject;
+import org.apache.commons.vfs.FileSystemException;
+import org.apache.commons.vfs.provider.local.LocalFileName;
+import org.apache.log4j.Logger;
+
+public class DWDiskMappedFile
+{
+	private static final Logger logger = Logger.getLogger("DWServer.DWDiskMappedFile");
+
+	private File file;
+	private RandomAccessFile raf;
+	private FileChannel channel;
+	private MappedByteBuffer map;
+	private boolean writable;
+	private int sectorsize;
+
+
+	public DWDiskMappedFile(File file, int sectorsize, boolean writable) throws IOException
+	{
+		this.file = file;
+		this.sectorsize = sectorsize;
+		this.writable = writable;
+
+		this.raf = new RandomAccessFile(file, writable ? "rw" : "r");
+		this.channel = this.raf.getChannel();
+
+		map();
+
+		logger.debug("mapped " + this.map.capacity() + " bytes of '" + file.getPath() + "'" + (writable ? "" : " (read only)"));
+	}
+
+
+	// map local file:// objects, anything else stays on the VFS path
+	public static DWDiskMappedFile open(FileObject fileobj, int sectorsize) throws IOException
+	{
+		if (!(fileobj.getName() instanceof LocalFileName))
+			return null;
+
+		LocalFileName name = (LocalFileName) fileobj.getName();
+		File file = new File(name.getRootFile() + name.getPathDecoded());
+
+		if (!file.isFile())
+			return null;
+
+		boolean writable = false;
+
+		try
+		{
+			writable = fileobj.isWriteable() && file.canWrite();
+		}
+		catch (FileSystemException e)
+		{
+			logger.debug("cannot determine writability of '" + file.getPath() + "': " + e.getMessage());
+		}
+
+		return new DWDiskMappedFile(file, sectorsize, writable);
+	}
+
+
+	private void map() throws IOException
+	{
+		long size = this.channel.size();
+
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("Image file is too large to map");
+
+		this.map = this.channel.map(this.writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, size);
+	}
+
+
+	// 0 once closed, readers checking this outside the disk lock fall back to the file
+	public synchronized int getMappedSectors()
+	{
+		if (this.map == null)
+			return 0;
+
+		return this.map.capacity() / this.sectorsize;
+	}
+
+
+	public boolean isWritable()
+	{
+		return this.writable;
+	}
+
+
+	public File getFile()
+	{
+		return this.file;
+	}
+
+
+	public synchronized ByteBuffer getSectorBuffer(int lsn) throws IOException
+	{
+		// read only view directly onto the mapped image, no copy
+		checkMapped(lsn);
+
+		ByteBuffer dup = this.map.duplicate();
+		dup.position(lsn * this.sectorsize);
+		dup.limit(lsn * this.sectorsize + this.sectorsize);
+
+		return dup.slice().asReadOnlyBuffer();
+	}
+
+
+	public byte[] readSector(int lsn) throws IOException
+	{
+		byte[] buf = new byte[this.sectorsize];
+		readSector(lsn, buf, 0);
+		return buf;
+	}
+
+
+	public synchronized void readSector(int lsn, byte[] buf, int off) throws IOException
+	{
+		checkMapped(lsn);
+
+		ByteBuffer dup = this.map.duplicate();
+		dup.position(lsn * this.sectorsize);
+		dup.get(buf, off, this.sectorsize);
+	}
+
+
+	public void writeSector(int lsn, byte[] data) throws IOException
+	{
+		writeSectors(lsn, data, 1);
+	}
+
+
+	public synchronized void writeSectors(int lsn, byte[] data, int count) throws IOException
+	{
+		if (!this.writable)
+			throw new IOException("Mapped image '" + this.file.getPath() + "' is read only");
+
+		if (lsn < 0)
+			throw new IOException("Invalid sector " + lsn);
+
+		if (this.map == null)
+			throw new IOException("Mapped image '" + this.file.getPath() + "' is closed");
+
+		if (lsn + count <= getMappedSectors())
+		{
+			ByteBuffer dup = this.map.duplicate();
+			dup.position(lsn * this.sectorsize);
+			dup.put(data, 0, count * this.sectorsize);
+		}
+		else
+		{
+			// beyond the mapping, grow the file and remap
+			ByteBuffer buf = ByteBuffer.wrap(data, 0, count * this.sectorsize);
+			long pos = (long) lsn * this.sectorsize;
+
+			while (buf.hasRemaining())
+				pos += this.channel.write(buf, pos);
+
+			map();
+		}
+	}
+
+
+	public synchronized void force(int lsn, int count)
+	{
+		if (!this.writable || (this.map == null))
+			return;
+
+		int start = Math.min(lsn * this.sectorsize, this.map.capacity());
+		int len = Math.min(count * this.sectorsize, this.map.capacity() - start);
+
+		if (len > 0)
+			this.map.force(start, len);
+	}
+
+
+	public synchronized void close()
+	{
+		try
+		{
+			this.channel.close();
+			this.raf.close();
+		}
+		catch (IOException e)
+		{
+			logger.warn("closing mapped image '" + this.file.getPath() + "': " + e.getMessage());
+		}
+
+		// the mapping itself is released when collected
+		this.map = null;
+	}
+
+
+	private void checkMapped(int lsn) throws IOException
+	{
+		if (this.map == null)
+			throw new IOException("Mapped image '" + this.file.getPath() + "' is closed");
+
+		if ((lsn < 0) || (lsn >= getMappedSectors()))
+			throw new IOException("Sector " + lsn + " is outside mapped image");
+	}
+}
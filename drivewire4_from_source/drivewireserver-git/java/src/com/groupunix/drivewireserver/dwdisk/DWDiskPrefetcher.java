@@ -0,0 +1,137 @@
+package com.groupunix.drivewireserver.dwdisk;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import org.apache.log4j.Logger;
+
+import com.groupunix.drivewireserver.DWDefs;
+
+public class DWDiskPrefetcher implements Runnable
+{
+	// reads sectors of direct images into their sector store ahead of the coco asking for them,
+	// so a sequential read finds the data cached instead of waiting on the source file.
+	// mapped images are left alone, their reads never wait on the file anyway.
+	private static final Logger logger = Logger.getLogger("DWServer.DWDiskPrefetcher");
+
+	private static DWDiskPrefetcher instance = null;
+
+	private ArrayBlockingQueue<Request> requests = new ArrayBlockingQueue<Request>(DWDefs.DISK_PREFETCH_QUEUE_SIZE);
+	private byte[] buf = new byte[DWDefs.DISK_PREFETCH_MAX_RUN * DWDefs.DISK_SECTORSIZE];
+
+
+	private static class Request
+	{
+		DWDisk disk;
+		DWDiskSectorStore store;
+		DWDiskReadAhead readahead;
+		int generation;
+		int lsn;
+		int count;
+
+		Request(DWDisk disk, DWDiskSectorStore store, DWDiskReadAhead readahead, int lsn, int count)
+		{
+			this.disk = disk;
+			this.store = store;
+			this.readahead = readahead;
+			this.generation = store.getGeneration();
+			this.lsn = lsn;
+			this.count = count;
+		}
+	}
+
+
+	public static synchronized DWDiskPrefetcher getPrefetcher()
+	{
+		if (instance == null)
+		{
+			instance = new DWDiskPrefetcher();
+
+			Thread t = new Thread(instance, "dwprefetch");
+			t.setDaemon(true);
+			t.start();
+		}
+
+		return instance;
+	}
+
+
+	// never blocks the protocol thread, if we're that far behind the request is stale anyway
+	public boolean submit(DWDisk disk, DWDiskSectorStore store, DWDiskReadAhead readahead, int lsn, int count)
+	{
+		// a mapped image is already served from memory, copying it to the heap would only double it
+		DWDiskMappedFile mapped = disk.getMappedFile();
+
+		if ((mapped != null) && (lsn + count <= mapped.getMappedSectors()))
+			return true;
+
+		return this.requests.offer(new Request(disk, store, readahead, lsn, count));
+	}
+
+
+	public void run()
+	{
+		logger.debug("started");
+
+		while (true)
+		{
+			try
+			{
+				prefetch(this.requests.take());
+			}
+			catch (InterruptedException e)
+			{
+				logger.debug("interrupted");
+				break;
+			}
+		}
+
+		logger.debug("exit");
+	}
+
+
+	private void prefetch(Request req)
+	{
+		int lsn = req.lsn;
+		int end = req.lsn + req.count;
+		int sectorsize = req.store.getSectorSize();
+		int maxrun = this.buf.length / sectorsize;
+
+		try
+		{
+			while (lsn < end)
+			{
+				// disk was ejected or reloaded since the request was made
+				if ((req.disk.getSectors() != req.store) || (req.store.getGeneration() != req.generation))
+					return;
+
+				if (!req.store.isSourceOnly(lsn))
+				{
+					lsn++;
+					continue;
+				}
+
+				// gather a run of sectors we don't have yet, read it in one go
+				int run = 1;
+
+				while ((run < maxrun) && (lsn + run < end) && req.store.isSourceOnly(lsn + run))
+					run++;
+
+				req.store.readSource(lsn, this.buf, 0, run);
+				req.readahead.countPrefetched(req.store.fillData(lsn, this.buf, run, req.generation));
+
+				lsn += run;
+			}
+		}
+		catch (IOException e)
+		{
+			logger.debug("prefetch of " + req.count + " sectors at " + req.lsn + " failed: " + e.getMessage());
+		}
+		catch (RuntimeException e)
+		{
+			// the image went away under us
+			logger.debug("prefetch of " + req.count + " sectors at " + req.lsn + " abandoned: " + e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,168 @@
+package com.groupunix.drivewireserver.dwdisk;
+
+import java.io.IOException;
+
+import com.groupunix.drivewireserver.DWDefs;
+import com.groupunix.drivewireserver.dwdisk.filesystem.DWRBFFileDescriptor;
+import com.groupunix.drivewireserver.dwdisk.filesystem.DWRBFFileSegment;
+
+public class DWDiskReadAhead
+{
+	// watches the reads of one direct image and hands the prefetcher whatever is likely next:
+	// the following sectors once reads turn sequential, or a file's segments when its FD is read.
+	// everything but the prefetched count belongs to the protocol thread.
+
+	private DWDisk disk;
+
+	private int lastlsn = -2;
+	private int run = 0;
+	// everything below this has already been asked for in the current run
+	private int ahead = 0;
+
+	private volatile long hits = 0;
+	private volatile long misses = 0;
+	private volatile long mapped = 0;
+	private volatile long used = 0;
+	private volatile long prefetched = 0;
+	private volatile long speculated = 0;
+
+
+	public DWDiskReadAhead(DWDisk disk)
+	{
+		this.disk = disk;
+	}
+
+
+	public byte[] read(DWDiskSectorStore store, int lsn, int window, boolean rbf) throws IOException
+	{
+		DWDiskMappedFile map = this.disk.getMappedFile();
+		
+		// served from the mapping, the prefetcher never sees these
+		if ((map != null) && (lsn < map.getMappedSectors()) && store.isSourceOnly(lsn))
+		{
+			this.mapped++;
+		}
+		else if (store.isSourceOnly(lsn))
+		{
+			this.misses++;
+		}
+		else
+		{
+			this.hits++;
+
+			if (store.takePrefetched(lsn))
+				this.used++;
+		}
+
+		byte[] data = store.getData(lsn);
+
+		if (window > 0)
+		{
+			if (lsn == this.lastlsn + 1)
+			{
+				this.run++;
+			}
+			else
+			{
+				this.run = 1;
+				this.ahead = lsn + 1;
+			}
+
+			this.lastlsn = lsn;
+
+			if ((this.run >= DWDefs.DISK_PREFETCH_TRIGGER) && (this.ahead - lsn <= window / 2))
+			{
+				int from = Math.max(this.ahead, lsn + 1);
+				int to = Math.min(lsn + 1 + window, store.size());
+
+				if ((to > from) && DWDiskPrefetcher.getPrefetcher().submit(this.disk, store, this, from, to - from))
+					this.ahead = to;
+			}
+
+			if (rbf && DWRBFFileDescriptor.isFileDescriptor(data, store.size()))
+				prefetchSegments(store, new DWRBFFileDescriptor(data));
+		}
+
+		return data;
+	}
+
+
+	// the coco is about to be asked for this one, unless the current run already covers it
+	public void speculate(DWDiskSectorStore store, int lsn)
+	{
+		if ((lsn < this.ahead) || !store.isSourceOnly(lsn))
+			return;
+
+		if (DWDiskPrefetcher.getPrefetcher().submit(this.disk, store, this, lsn, 1))
+		{
+			this.speculated++;
+			this.ahead = lsn + 1;
+		}
+	}
+
+
+	private void prefetchSegments(DWDiskSectorStore store, DWRBFFileDescriptor fd)
+	{
+		int left = DWDefs.DISK_PREFETCH_FD_MAX;
+
+		for (DWRBFFileSegment seg : fd.getSegmentList())
+		{
+			if (!seg.isUsed() || (left == 0))
+				break;
+
+			int count = Math.min(seg.getSize(), left);
+
+			if (!DWDiskPrefetcher.getPrefetcher().submit(this.disk, store, this, seg.getLsn(), count))
+				break;
+
+			left -= count;
+		}
+	}
+
+
+	void countPrefetched(int n)
+	{
+		this.prefetched += n;
+	}
+
+
+	public long getHits()
+	{
+		return this.hits;
+	}
+
+	public long getMisses()
+	{
+		return this.misses;
+	}
+
+	// reads from a mapped image, left out of the hits and misses
+	public long getMapped()
+	{
+		return this.mapped;
+	}
+
+	// prefetched sectors that were read before anything replaced them
+	public long getUsed()
+	{
+		return this.used;
+	}
+
+	// single sectors queued while a READEX waited on its checksum
+	public long getSpeculated()
+	{
+		return this.speculated;
+	}
+
+	public long getPrefetched()
+	{
+		return this.prefetched;
+	}
+
+	// prefetched sectors that were written, reloaded or ejected before being read
+	public long getWasted(DWDiskSectorStore store)
+	{
+		return Math.max(0, this.prefetched - this.used - store.getPrefetchPending());
+	}
+
+}
@@ -3,128 +3,82 @@ package com.groupunix.drivewireserver.dwdisk;
 import java.io.IOException;
 
 import org.apache.commons.vfs.FileSystemException;
-import org.apache.commons.vfs.RandomAccessContent;
-import org.apache.commons.vfs.util.RandomAccessMode;
 
 
-public class DWDiskSector 
+public class DWDiskSector
 {
+	// a handle onto one LSN of a disk's sector store, the data itself lives in the store
 	private int LSN;
-	private byte[] data;
-	//private byte[] dirtydata;
-	private boolean dirty = false;
-	private int sectorsize;
-	private DWDisk disk;
 	private boolean direct;
-	private RandomAccessContent raf;
-	
-	
-	public DWDiskSector( DWDisk disk, int lsn, int sectorsize, boolean direct) throws FileSystemException
+	private DWDiskSectorStore store;
+
+
+	public DWDiskSector( DWDisk disk, int lsn, boolean direct) throws FileSystemException
 	{
 		this.LSN = lsn;
-		this.sectorsize = sectorsize;
 		this.direct = direct;
-		this.disk = disk;
-		
-		if (!direct)
-			this.data = new byte[sectorsize];
-		
-		
+		this.store = disk.getSectors();
+	}
+
+	DWDiskSector(DWDiskSectorStore store, int lsn)
+	{
+		this.LSN = lsn;
+		this.direct = false;
+		this.store = store;
 	}
 
 	public int getLSN() {
 		return this.LSN;
 	}
 
-	public void setData(byte[] newdata) 
+	public boolean isDirect()
 	{
-		if (this.data == null)
-		{
-			this.data = new byte[newdata.length];
-		}	
-		
-		this.dirty = true;
-		System.arraycopy(newdata, 0, this.data, 0, this.sectorsize);
-		
+		return this.direct;
 	}
 
-	public synchronized void setData(byte[] newdata, boolean dirty) 
+	public void setData(byte[] newdata)
 	{
-		this.dirty = dirty;
-		
-		if (this.data == null)
-		{
-			this.data = new byte[newdata.length];
-		}
-		
-		System.arraycopy(newdata, 0, this.data, 0, this.sectorsize);
+		this.store.setData(this.LSN, newdata, true);
 	}
-	
-	
-	public synchronized byte[] getData() throws IOException 
+
+	public void setData(byte[] newdata, boolean dirty)
 	{
-		if (this.data != null)
-			return this.data;
-		else if (this.direct)
-		{
-			return this.getFileSector();
-		}
-		else
-			return new byte[this.sectorsize];
+		this.store.setData(this.LSN, newdata, dirty);
 	}
 
-	
 
-	public synchronized void makeClean()
+	public byte[] getData() throws IOException
 	{
-		if (this.dirty)
-		{
-			if (this.direct)
-			{
-				this.data = null;
-			}
-			this.dirty = false;
-		}
+		return this.store.getData(this.LSN);
+	}
+
+	public byte getDataByte(int i) throws IOException
+	{
+		return this.store.getDataByte(this.LSN, i);
 	}
 
-	
 
-	private byte[] getFileSector() throws IOException
+
+	public void makeClean()
 	{
-		
-		raf = this.disk.getFileObject().getContent().getRandomAccessContent(RandomAccessMode.READ);
-		long pos = this.LSN * this.sectorsize;
-		raf.seek(pos);
-		byte[] buf = new byte[this.sectorsize];
-		raf.readFully(buf);
-		raf.close();
-		raf = null;
-		return buf;
+		this.store.makeClean(this.LSN);
 	}
-	
-	
-	
 
-	public synchronized boolean isDirty() {
-		return dirty;
+
+
+	public boolean isDirty() {
+		return this.store.isDirty(this.LSN);
 	}
 
 	public void setDataByte(int i, byte b) throws IOException
 	{
-		if (this.data == null)
-		{
-			this.data = this.getFileSector();
-		}
-		
-		this.data[i] = b;
-		this.dirty = true;
+		this.store.setDataByte(this.LSN, i, b);
 	}
 
-	
+
 	public void makeDirty()
 	{
-		this.dirty = true;
-		
+		this.store.makeDirty(this.LSN);
 	}
-	
+
 }
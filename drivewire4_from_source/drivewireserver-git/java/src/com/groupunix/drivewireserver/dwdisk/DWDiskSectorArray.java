@@ -0,0 +1,676 @@
+package com.groupunix.drivewireserver.dwdisk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.commons.vfs.RandomAccessContent;
+import org.apache.commons.vfs.util.RandomAccessMode;
+
+public class DWDiskSectorArray implements DWDiskSectorStore
+{
+	// sector data lives in pages of 256 sectors, allocated on first write
+	private static final int PAGE_SHIFT = 8;
+	private static final int PAGE_SECTORS = 1 << PAGE_SHIFT;
+	private static final int PAGE_MASK = PAGE_SECTORS - 1;
+
+	private DWDisk disk;
+	private int sectorsize;
+	private boolean offheap;
+	private int size = 0;
+
+	private ByteBuffer[] pages = new ByteBuffer[0];
+
+	// sector is defined (null in the old Vector when clear)
+	private long[] exists = new long[0];
+	// sector data is held in a page
+	private long[] cached = new long[0];
+	// sector can be (re)read from the disk's source file
+	private long[] source = new long[0];
+	private long[] dirty = new long[0];
+	private int dirtycount = 0;
+	// sector was filled by the prefetcher and hasn't been read yet
+	private long[] prefetched = new long[0];
+	private int prefetchcount = 0;
+	// bumped whenever sectors are redefined, a prefetch read before that is stale
+	private int generation = 0;
+
+
+	public DWDiskSectorArray(DWDisk disk, int sectorsize, boolean offheap)
+	{
+		this.disk = disk;
+		this.sectorsize = sectorsize;
+		this.offheap = offheap;
+	}
+
+
+	public synchronized int size()
+	{
+		return this.size;
+	}
+
+
+	public synchronized boolean isEmpty()
+	{
+		return (this.size == 0);
+	}
+
+
+	public synchronized void setSize(int newsize)
+	{
+		ensureCapacity(newsize);
+
+		if (newsize < this.size)
+		{
+			for (int i = newsize;i < this.size;i++)
+			{
+				clearBit(this.exists, i);
+				clearBit(this.cached, i);
+				clearBit(this.source, i);
+				markClean(i);
+				unmarkPrefetched(i);
+			}
+
+			this.generation++;
+
+			for (int p = ((newsize + PAGE_MASK) >> PAGE_SHIFT);p < this.pages.length;p++)
+				this.pages[p] = null;
+
+			changedAll();
+		}
+
+		this.size = newsize;
+	}
+
+
+	public synchronized void clear()
+	{
+		this.size = 0;
+		this.pages = new ByteBuffer[0];
+		this.exists = new long[0];
+		this.cached = new long[0];
+		this.source = new long[0];
+		this.dirty = new long[0];
+		this.dirtycount = 0;
+		this.prefetched = new long[0];
+		this.prefetchcount = 0;
+		this.generation++;
+
+		changedAll();
+	}
+
+
+	public synchronized DWDiskSector get(int lsn)
+	{
+		checkIndex(lsn);
+
+		if (getBit(this.exists, lsn))
+			return new DWDiskSector(this, lsn);
+
+		return null;
+	}
+
+
+	public synchronized void set(int lsn, DWDiskSector sector)
+	{
+		checkIndex(lsn);
+
+		markClean(lsn);
+		unmarkPrefetched(lsn);
+		this.generation++;
+
+		if (sector == null)
+		{
+			clearBit(this.exists, lsn);
+			clearBit(this.cached, lsn);
+			clearBit(this.source, lsn);
+		}
+		else
+		{
+			setBit(this.exists, lsn);
+
+			if (sector.isDirect())
+			{
+				setBit(this.source, lsn);
+				clearBit(this.cached, lsn);
+			}
+			else
+			{
+				// a fresh sector is all zeros
+				clearBit(this.source, lsn);
+				setBit(this.cached, lsn);
+
+				ByteBuffer page = this.pages[lsn >> PAGE_SHIFT];
+				if (page != null)
+					page.put((lsn & PAGE_MASK) * this.sectorsize, new byte[this.sectorsize]);
+			}
+		}
+
+		changed(lsn);
+	}
+
+
+	public synchronized void setSourceRange(int lsn, int count)
+	{
+		// what set() does for a direct sector, for a whole image at once
+		checkIndex(lsn);
+		checkIndex(lsn + count - 1);
+
+		for (int i = lsn;i < lsn + count;i++)
+		{
+			markClean(i);
+			unmarkPrefetched(i);
+			setBit(this.exists, i);
+			setBit(this.source, i);
+			clearBit(this.cached, i);
+		}
+
+		this.generation++;
+
+		changedAll();
+	}
+
+
+	public synchronized void add(DWDiskSector sector)
+	{
+		setSize(this.size + 1);
+		set(this.size - 1, sector);
+	}
+
+
+	public int getSectorSize()
+	{
+		return this.sectorsize;
+	}
+
+
+	public synchronized boolean exists(int lsn)
+	{
+		if ((lsn < 0) || (lsn >= this.size))
+			return false;
+
+		return getBit(this.exists, lsn);
+	}
+
+
+	public byte[] getData(int lsn) throws IOException
+	{
+		byte[] buf = new byte[this.sectorsize];
+		readData(lsn, buf, 0);
+		return buf;
+	}
+
+
+	public synchronized void readData(int lsn, byte[] buf, int off) throws IOException
+	{
+		checkIndex(lsn);
+
+		if (getBit(this.cached, lsn))
+		{
+			ByteBuffer page = this.pages[lsn >> PAGE_SHIFT];
+
+			if (page != null)
+				page.get((lsn & PAGE_MASK) * this.sectorsize, buf, off, this.sectorsize);
+			else
+				Arrays.fill(buf, off, off + this.sectorsize, (byte) 0);
+		}
+		else if (getBit(this.source, lsn))
+		{
+			readSource(lsn, buf, off);
+		}
+		else
+		{
+			Arrays.fill(buf, off, off + this.sectorsize, (byte) 0);
+		}
+	}
+
+
+	public synchronized byte getDataByte(int lsn, int i) throws IOException
+	{
+		checkIndex(lsn);
+
+		if (getBit(this.cached, lsn))
+		{
+			ByteBuffer page = this.pages[lsn >> PAGE_SHIFT];
+
+			if (page != null)
+				return page.get((lsn & PAGE_MASK) * this.sectorsize + i);
+		}
+		else if (getBit(this.source, lsn))
+		{
+			byte[] buf = new byte[this.sectorsize];
+			readSource(lsn, buf, 0);
+			return buf[i];
+		}
+
+		return 0;
+	}
+
+
+	public void readRun(int lsn, byte[] buf, int off, int count) throws IOException
+	{
+		// stretches still only in the source file are one positioned read, done without the lock.
+		// anything cached or written while that read was out is copied over it afterwards.
+		int i = 0;
+
+		while (i < count)
+		{
+			int gen = getGeneration();
+			int n = getSourceRunLength(lsn + i, count - i);
+
+			if (n > 0)
+			{
+				readSource(lsn + i, buf, off + i * this.sectorsize, n);
+				refreshRun(lsn + i, buf, off + i * this.sectorsize, n, gen);
+				i += n;
+			}
+			else
+			{
+				readData(lsn + i, buf, off + i * this.sectorsize);
+				i++;
+			}
+		}
+	}
+
+
+	public synchronized void setData(int lsn, byte[] data, boolean dirty)
+	{
+		checkIndex(lsn);
+
+		getPage(lsn).put((lsn & PAGE_MASK) * this.sectorsize, data, 0, this.sectorsize);
+
+		setBit(this.exists, lsn);
+		setBit(this.cached, lsn);
+		unmarkPrefetched(lsn);
+
+		if (dirty)
+			markDirty(lsn);
+		else
+			markClean(lsn);
+
+		changed(lsn);
+	}
+
+
+	public synchronized void setDataByte(int lsn, int i, byte b) throws IOException
+	{
+		checkIndex(lsn);
+
+		if (!getBit(this.cached, lsn))
+		{
+			byte[] buf = new byte[this.sectorsize];
+
+			if (getBit(this.source, lsn))
+				readSource(lsn, buf, 0);
+
+			setData(lsn, buf, false);
+		}
+
+		getPage(lsn).put((lsn & PAGE_MASK) * this.sectorsize + i, b);
+		markDirty(lsn);
+		changed(lsn);
+	}
+
+
+	public synchronized boolean isDirty(int lsn)
+	{
+		checkIndex(lsn);
+		return getBit(this.dirty, lsn);
+	}
+
+
+	public synchronized void makeDirty(int lsn)
+	{
+		checkIndex(lsn);
+		markDirty(lsn);
+	}
+
+
+	public synchronized void makeClean(int lsn)
+	{
+		checkIndex(lsn);
+
+		if (getBit(this.dirty, lsn))
+		{
+			markClean(lsn);
+
+			// direct sectors go back to being read from the source
+			if (getBit(this.source, lsn))
+			{
+				clearBit(this.cached, lsn);
+				this.generation++;
+			}
+		}
+	}
+
+
+	public synchronized int getDirtySectors()
+	{
+		return this.dirtycount;
+	}
+
+
+	public synchronized int nextDirty(int from)
+	{
+		if (from < 0)
+			from = 0;
+
+		int w = from >> 6;
+
+		if ((this.dirtycount == 0) || (w >= this.dirty.length))
+			return -1;
+
+		// skip whole clean words
+		long word = this.dirty[w] & (-1L << from);
+
+		while (word == 0)
+		{
+			w++;
+
+			if (w >= this.dirty.length)
+				return -1;
+
+			word = this.dirty[w];
+		}
+
+		int lsn = (w << 6) + Long.numberOfTrailingZeros(word);
+
+		if (lsn >= this.size)
+			return -1;
+
+		return lsn;
+	}
+
+
+	public synchronized int getDirtyRunLength(int lsn, int max)
+	{
+		int len = 0;
+
+		while ((len < max) && (lsn + len < this.size) && getBit(this.dirty, lsn + len))
+			len++;
+
+		return len;
+	}
+
+
+	public synchronized byte[] takeDirtyRun(int lsn, int count) throws IOException
+	{
+		// copy and clean in one step, a write that lands after this makes the sector dirty again.
+		// the data stays cached until releaseRun, so reads never see the file before it's written.
+		checkIndex(lsn);
+		checkIndex(lsn + count - 1);
+
+		byte[] buf = new byte[count * this.sectorsize];
+
+		for (int i = 0;i < count;i++)
+			readData(lsn + i, buf, i * this.sectorsize);
+
+		for (int i = 0;i < count;i++)
+			markClean(lsn + i);
+
+		return buf;
+	}
+
+
+	public synchronized void releaseRun(int lsn, int count)
+	{
+		// the run is in the file now, direct sectors that are still clean go back to being read from it
+		boolean released = false;
+
+		for (int i = 0;(i < count) && (lsn + i < this.size);i++)
+		{
+			int l = lsn + i;
+
+			if (getBit(this.source, l) && getBit(this.cached, l) && !getBit(this.dirty, l))
+			{
+				clearBit(this.cached, l);
+				unmarkPrefetched(l);
+				released = true;
+			}
+		}
+
+		if (released)
+			this.generation++;
+	}
+
+
+	public synchronized void restoreDirtyRun(int lsn, byte[] buf, int count)
+	{
+		// put back a run whose write failed, unless it has been written again since
+		byte[] tmp = new byte[this.sectorsize];
+
+		for (int i = 0;i < count;i++)
+		{
+			if (!getBit(this.dirty, lsn + i))
+			{
+				System.arraycopy(buf, i * this.sectorsize, tmp, 0, this.sectorsize);
+				setData(lsn + i, tmp, true);
+			}
+		}
+	}
+
+
+	public synchronized boolean isSourceOnly(int lsn)
+	{
+		if ((lsn < 0) || (lsn >= this.size))
+			return false;
+
+		return getBit(this.source, lsn) && !getBit(this.cached, lsn);
+	}
+
+
+	public synchronized int getGeneration()
+	{
+		return this.generation;
+	}
+
+
+	public void readSource(int lsn, byte[] buf, int off, int count) throws IOException
+	{
+		// no lock, the source file isn't part of our state.  a run is one positioned read.
+		DWDiskMappedFile mapped = this.disk.getMappedFile();
+
+		if ((mapped != null) && (lsn + count <= mapped.getMappedSectors()))
+		{
+			for (int i = 0;i < count;i++)
+				mapped.readSector(lsn + i, buf, off + i * this.sectorsize);
+
+			return;
+		}
+
+		RandomAccessContent raf = this.disk.getFileObject().getContent().getRandomAccessContent(RandomAccessMode.READ);
+
+		try
+		{
+			raf.seek((long) lsn * this.sectorsize);
+			raf.readFully(buf, off, count * this.sectorsize);
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+
+	public synchronized int fillData(int lsn, byte[] buf, int count, int generation)
+	{
+		// cache sectors read by readSource, skipping any that were written or redefined meanwhile
+		if (generation != this.generation)
+			return 0;
+
+		int filled = 0;
+
+		for (int i = 0;(i < count) && (lsn + i < this.size);i++)
+		{
+			int l = lsn + i;
+
+			if (getBit(this.source, l) && !getBit(this.cached, l))
+			{
+				getPage(l).put((l & PAGE_MASK) * this.sectorsize, buf, i * this.sectorsize, this.sectorsize);
+				setBit(this.cached, l);
+				setBit(this.prefetched, l);
+				this.prefetchcount++;
+				filled++;
+			}
+		}
+
+		return filled;
+	}
+
+
+	public synchronized boolean takePrefetched(int lsn)
+	{
+		if ((lsn < 0) || (lsn >= this.size) || !getBit(this.prefetched, lsn))
+			return false;
+
+		unmarkPrefetched(lsn);
+		return true;
+	}
+
+
+	public synchronized int getPrefetchPending()
+	{
+		return this.prefetchcount;
+	}
+
+
+	// let the disk drop anything it parsed out of these sectors
+	private void changed(int lsn)
+	{
+		if (this.disk != null)
+			this.disk.sectorChanged(lsn);
+	}
+
+
+	private void changedAll()
+	{
+		if (this.disk != null)
+			this.disk.sectorsChanged();
+	}
+
+
+	private void unmarkPrefetched(int lsn)
+	{
+		if (getBit(this.prefetched, lsn))
+		{
+			clearBit(this.prefetched, lsn);
+			this.prefetchcount--;
+		}
+	}
+
+
+	private void markDirty(int lsn)
+	{
+		if (!getBit(this.dirty, lsn))
+		{
+			setBit(this.dirty, lsn);
+			this.dirtycount++;
+		}
+	}
+
+
+	private void markClean(int lsn)
+	{
+		if (getBit(this.dirty, lsn))
+		{
+			clearBit(this.dirty, lsn);
+			this.dirtycount--;
+		}
+	}
+
+
+	private void readSource(int lsn, byte[] buf, int off) throws IOException
+	{
+		readSource(lsn, buf, off, 1);
+	}
+
+
+	private synchronized int getSourceRunLength(int lsn, int max)
+	{
+		checkIndex(lsn);
+
+		int n = 0;
+
+		while ((n < max) && (lsn + n < this.size) && getBit(this.source, lsn + n) && !getBit(this.cached, lsn + n))
+			n++;
+
+		return n;
+	}
+
+
+	private synchronized void refreshRun(int lsn, byte[] buf, int off, int count, int generation) throws IOException
+	{
+		// a sync may have written the file and dropped its cached copy under us, read it all again
+		boolean all = (generation != this.generation);
+
+		for (int i = 0;(i < count) && (lsn + i < this.size);i++)
+		{
+			int l = lsn + i;
+
+			if (all || getBit(this.cached, l))
+				readData(l, buf, off + i * this.sectorsize);
+		}
+	}
+
+
+	private ByteBuffer getPage(int lsn)
+	{
+		int p = lsn >> PAGE_SHIFT;
+
+		if (this.pages[p] == null)
+		{
+			if (this.offheap)
+				this.pages[p] = ByteBuffer.allocateDirect(PAGE_SECTORS * this.sectorsize);
+			else
+				this.pages[p] = ByteBuffer.allocate(PAGE_SECTORS * this.sectorsize);
+		}
+
+		return this.pages[p];
+	}
+
+
+	private void ensureCapacity(int newsize)
+	{
+		int words = (newsize + 63) >> 6;
+
+		if (words > this.exists.length)
+		{
+			int len = Math.max(words, this.exists.length * 2);
+
+			this.exists = Arrays.copyOf(this.exists, len);
+			this.cached = Arrays.copyOf(this.cached, len);
+			this.source = Arrays.copyOf(this.source, len);
+			this.dirty = Arrays.copyOf(this.dirty, len);
+			this.prefetched = Arrays.copyOf(this.prefetched, len);
+		}
+
+		int npages = (newsize + PAGE_MASK) >> PAGE_SHIFT;
+
+		if (npages > this.pages.length)
+			this.pages = Arrays.copyOf(this.pages, Math.max(npages, this.pages.length * 2));
+	}
+
+
+	private void checkIndex(int lsn)
+	{
+		if ((lsn < 0) || (lsn >= this.size))
+			throw new ArrayIndexOutOfBoundsException("Sector " + lsn + " is out of range (size " + this.size + ")");
+	}
+
+
+	private static boolean getBit(long[] map, int i)
+	{
+		return ((map[i >> 6] & (1L << i)) != 0);
+	}
+
+	private static void setBit(long[] map, int i)
+	{
+		map[i >> 6] |= (1L << i);
+	}
+
+	private static void clearBit(long[] map, int i)
+	{
+		map[i >> 6] &= ~(1L << i);
+	}
+
+}
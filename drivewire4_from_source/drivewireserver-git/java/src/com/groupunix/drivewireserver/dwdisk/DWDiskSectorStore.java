@@ -0,0 +1,77 @@
+package com.groupunix.drivewireserver.dwdisk;
+
+import java.io.IOException;
+
+public interface DWDiskSectorStore
+{
+	// Vector style access, used by disk formats and filesystems
+
+	public int size();
+
+	public boolean isEmpty();
+
+	public void setSize(int size);
+
+	public void clear();
+
+	public DWDiskSector get(int lsn);
+
+	public void set(int lsn, DWDiskSector sector);
+
+	public void add(DWDiskSector sector);
+
+	public void setSourceRange(int lsn, int count);
+
+
+	// per sector access, used by DWDiskSector
+
+	public int getSectorSize();
+
+	public boolean exists(int lsn);
+
+	public byte[] getData(int lsn) throws IOException;
+
+	public void readData(int lsn, byte[] buf, int off) throws IOException;
+
+	public byte getDataByte(int lsn, int i) throws IOException;
+
+	public void readRun(int lsn, byte[] buf, int off, int count) throws IOException;
+
+	public void setData(int lsn, byte[] data, boolean dirty);
+
+	public void setDataByte(int lsn, int i, byte b) throws IOException;
+
+	public boolean isDirty(int lsn);
+
+	public void makeDirty(int lsn);
+
+	public void makeClean(int lsn);
+
+	public int getDirtySectors();
+
+	public int nextDirty(int from);
+
+	public int getDirtyRunLength(int lsn, int max);
+
+	public byte[] takeDirtyRun(int lsn, int count) throws IOException;
+
+	public void restoreDirtyRun(int lsn, byte[] buf, int count);
+
+	public void releaseRun(int lsn, int count);
+
+
+	// read ahead, used by DWDiskPrefetcher
+
+	public boolean isSourceOnly(int lsn);
+
+	public int getGeneration();
+
+	public void readSource(int lsn, byte[] buf, int off, int count) throws IOException;
+
+	public int fillData(int lsn, byte[] buf, int count, int generation);
+
+	public boolean takePrefetched(int lsn);
+
+	public int getPrefetchPending();
+
+}
@@ -0,0 +1,62 @@
+package com.groupunix.drivewireserver.dwdisk;
+
+import org.apache.log4j.Logger;
+
+import com.groupunix.drivewireserver.DriveWireServer;
+import com.groupunix.drivewireserver.dwprotocolhandler.DWProtocol;
+import com.groupunix.drivewireserver.dwprotocolhandler.DWProtocolHandler;
+
+public class DWDiskTelemetry implements Runnable {
+
+	// samples drive lsn/read/write counters and sends one event per drive that changed,
+	// so the protocol thread never builds or queues UI events for sector I/O
+	private static final Logger logger = Logger.getLogger("DWServer.DWDiskTelemetry");
+	private boolean wanttodie = false;
+	
+	public void run() 
+	{
+		Thread.currentThread().setName("dsktelemetry-" + Thread.currentThread().getId());
+	
+		logger.debug("started, rate is " + getRate() + " per second");
+		
+		while (wanttodie == false)
+		{
+			try 
+			{
+				Thread.sleep(1000 / getRate());
+				publish();
+			}	 
+			catch (InterruptedException e) 
+			{
+				logger.debug("interrupted");
+				wanttodie = true;
+			}
+		}
+		
+		logger.debug("exit");
+	}
+
+	
+	private int getRate()
+	{
+		return(Math.max(1, Math.min(100, DriveWireServer.serverconfig.getInt("DiskTelemetryRate", 20))));
+	}
+	
+	
+	private void publish()
+	{ 
+		for (int h = 0;h<DriveWireServer.getNumHandlers();h++)
+		{
+			if (DriveWireServer.handlerIsAlive(h))
+			{
+				DWProtocol proto = DriveWireServer.getHandler(h);
+				
+				if ((proto instanceof DWProtocolHandler) && (((DWProtocolHandler) proto).getDiskDrives() != null))
+				{
+					((DWProtocolHandler) proto).getDiskDrives().publishTelemetry();
+				}
+			}
+		}
+	}
+	
+}
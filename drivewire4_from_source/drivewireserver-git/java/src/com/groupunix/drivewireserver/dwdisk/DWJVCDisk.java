@@ -90,7 +90,7 @@ public class DWJVCDisk extends DWDisk
 	    	while (readres < header.getSectorSize())
 		    	readres += fis.read(buf, readres, header.getSectorSize() - readres);
 	    	
-	    	this.sectors.set(i, new DWDiskSector(this, i, header.getSectorSize(), false));
+	    	this.sectors.set(i, new DWDiskSector(this, i, false));
 	    	this.sectors.get(i).setData(buf, false);
 	    	
 	    	
@@ -120,7 +120,7 @@ public class DWJVCDisk extends DWDisk
 		}
 		else
 		{
-			this.setParam("_lsn", newLSN);
+			this.setLSN(newLSN);
 		}
 	}
 
@@ -138,7 +138,7 @@ public class DWJVCDisk extends DWDisk
 			
 			this.sectors.get(this.getLSN()).setData(data);
 			
-			this.incParam("_writes");
+			this.countWrite();
 			
 		}
 	}
@@ -147,7 +147,7 @@ public class DWJVCDisk extends DWDisk
 
 	public byte[] readSector() throws IOException
 	{
-		this.incParam("_reads");
+		this.countRead();
 		return(this.sectors.get(this.getLSN()).getData() );
 	}
 
@@ -1,7 +1,6 @@
 package com.groupunix.drivewireserver.dwdisk;
 import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.util.Vector;
 
 import org.apache.commons.vfs.Capability;
 import org.apache.commons.vfs.FileObject;
@@ -11,7 +10,6 @@ import org.apache.commons.vfs.util.RandomAccessMode;
 import org.apache.log4j.Logger;
 
 import com.groupunix.drivewireserver.DWDefs;
-import com.groupunix.drivewireserver.dwexceptions.DWDiskInvalidSectorNumber;
 import com.groupunix.drivewireserver.dwexceptions.DWDriveWriteProtectedException;
 import com.groupunix.drivewireserver.dwexceptions.DWImageFormatException;
 import com.groupunix.drivewireserver.dwexceptions.DWImageHasNoSourceException;
@@ -26,6 +24,9 @@ public class DWRawDisk extends DWDisk {
 	
 	private static final Logger logger = Logger.getLogger("DWServer.DWRawDisk");
 	private boolean direct = false;
+	private DWDiskMappedFile mapped = null;
+	private DWDiskReadAhead readahead = null;
+	private int fstype = DWDefs.DISK_FILESYSTEM_UNKNOWN;
 	
 	
 	public DWRawDisk(FileObject fileobj, int sectorsize, int maxsectors) throws IOException, DWImageFormatException
@@ -71,7 +72,7 @@ public class DWRawDisk extends DWDisk {
 	}
 	
 	
-	public DWRawDisk(Vector<DWDiskSector> sectors)
+	public DWRawDisk(DWDiskSectorStore sectors)
 	{
 		// used only for temp objs..
 		
@@ -83,6 +84,9 @@ public class DWRawDisk extends DWDisk {
 
 	private void setDefaultOptions(int sectorsize, int maxsectors)
 	{
+		if (this.sectors.getSectorSize() != sectorsize)
+			this.sectors = newSectorStore(sectorsize);
+		
 		// set internal info
 		this.setParam("_sectorsize", sectorsize);
 		this.setParam("_maxsectors", maxsectors);
@@ -93,6 +97,7 @@ public class DWRawDisk extends DWDisk {
 		this.setParam("offsetdrv", 0);
 		this.setParam("sizelimit",DWDefs.DISK_DEFAULT_SIZELIMIT);
 		this.setParam("expand",DWDefs.DISK_DEFAULT_EXPAND);
+		this.setParam("prefetch",DWDefs.DISK_DEFAULT_PREFETCH);
 	}
 
 
@@ -121,7 +126,7 @@ public class DWRawDisk extends DWDisk {
 		}
 		else
 		{
-			this.setParam("_lsn", newLSN);
+			this.setLSN(newLSN);
 			
 		}
 	}
@@ -179,8 +184,7 @@ public class DWRawDisk extends DWDisk {
 			   	if (bytesRead == sectorsize)
 			   	{
 			   		
-			   		this.sectors.set(sector, new DWDiskSector(this, sector, sectorsize, false));
-			   		this.sectors.get(sector).setData(buffer, false);
+			   		this.sectors.setData(sector, buffer, false);
 			   		
 			   		sector++;
 			   		bytesRead = 0;
@@ -201,16 +205,18 @@ public class DWRawDisk extends DWDisk {
 				    }
 	    else
 	    {
-	    	int sz = 0;
+	    	mapFile();
+	    	
+	    	if (this.readahead == null)
+	    		this.readahead = new DWDiskReadAhead(this);
+	    	
+	    	sector = (int) (filesize / sectorsize);
 	    	
-	    	this.sectors.setSize( (int) (filesize / sectorsize));
+	    	// every sector is read from the file until written
+	    	this.sectors.setSize(sector);
 	    	
-	    	while (sz < filesize)
-	    	{
-	    		this.sectors.set(sector, new DWDiskSector(this, sector, sectorsize, true));
-	    		sector++;
-	    		sz += sectorsize;
-	    	}
+	    	if (sector > 0)
+	    		this.sectors.setSourceRange(0, sector);
 	    }
 	    
 	    
@@ -229,7 +235,8 @@ public class DWRawDisk extends DWDisk {
 
 	    this.setParam("_sectors", sector);
 	    
-		this.setParam("_filesystem", DWUtils.prettyFileSystem(DWDiskDrives.getDiskFSType(this.sectors)));
+		this.fstype = DWDiskDrives.getDiskFSType(this.sectors);
+		this.setParam("_filesystem", DWUtils.prettyFileSystem(this.fstype));
 		 
 			
 	}
@@ -241,7 +248,7 @@ public class DWRawDisk extends DWDisk {
 	public byte[] readSector() throws IOException, DWImageFormatException
 	{
 		// logger.debug("Read sector " + this.LSN + "\r" + DWProtocolHandler.byteArrayToHexString(this.sectors[this.LSN].getData()));
-		this.incParam("_reads");
+		this.countRead();
 		
 		
 		// check source for changes...
@@ -275,7 +282,7 @@ public class DWRawDisk extends DWDisk {
 		int effLSN = this.getLSN() + this.getOffset();
 		
 		// we can read beyond the current size of the image
-		if ((effLSN >= this.sectors.size()) || (this.sectors.get(effLSN) == null))
+		if (!this.sectors.exists(effLSN))
 		{
 			logger.debug("request for undefined sector, effLSN: " + effLSN + "  rawLSN: " + this.getLSN() + "  curSize: " + (this.sectors.size()-1));
 			
@@ -284,7 +291,10 @@ public class DWRawDisk extends DWDisk {
 			
 		}
 		
-		return(this.sectors.get(effLSN).getData());	
+		if (this.readahead != null)
+			return(this.readahead.read(this.sectors, effLSN, this.getPrefetch(), (this.fstype == DWDefs.DISK_FILESYSTEM_OS9)));
+		
+		return(this.sectors.getData(effLSN));	
 	}
 	
 
@@ -300,7 +310,7 @@ public class DWRawDisk extends DWDisk {
 		@SuppressWarnings("unused")
 		final DWDisk disk = this;
 		
-		this.sectors.setSize(target);
+		this.sectors.setSize(target + 1);
 		
 		/*
 		Runnable expander = new Runnable() 
@@ -315,7 +325,7 @@ public class DWRawDisk extends DWDisk {
 				for (int i = start;i <= target;i++)
 				{
 					if (sectors.get(i) == null)
-						sectors.set(i, new DWDiskSector(disk, i, sectorsize, false));
+						sectors.set(i, new DWDiskSector(disk, i, false));
 				}
 				logger.debug("Expander init sectors " + start +" to " + target + "in " + (System.currentTimeMillis() - starttime) + " ms"); 
 				
@@ -348,17 +358,13 @@ public class DWRawDisk extends DWDisk {
 			{
 				// expand disk / add sector
 				expandDisk(effLSN);
-				this.sectors.add(effLSN, new DWDiskSector(this, effLSN, this.getSectorSize(), false));
 				//logger.debug("new sector " + effLSN);
 			}
 			
-			// jit sector maker
-			if (this.sectors.get(effLSN) == null)
-				this.sectors.set(effLSN, new DWDiskSector(this, effLSN, this.getSectorSize(), false));
-			
-			this.sectors.get(effLSN).setData(data);
+			// undefined sectors are made on the fly by the store
+			this.sectors.setData(effLSN, data, true);
 			
-			this.incParam("_writes");
+			this.countWrite();
 			
 			// logger.debug("write sector " + this.LSN + "\r" + DWProtocolHandler.byteArrayToHexString(this.sectors[this.LSN].getData()));
 
@@ -411,48 +417,105 @@ public class DWRawDisk extends DWDisk {
 	
 	
 	
+	private void mapFile()
+	{
+		if (this.mapped != null)
+		{
+			this.mapped.close();
+			this.mapped = null;
+		}
+		
+		try
+		{
+			this.mapped = DWDiskMappedFile.open(this.fileobj, this.getSectorSize());
+		}
+		catch (IOException e)
+		{
+			logger.warn("Cannot map " + this.getFilePath() + ", using VFS access: " + e.getMessage());
+		}
+	}
+	
+	
 	private void syncSectors() 
 	{
 		long sectorswritten = 0;
+		long runswritten = 0;
 		long starttime = System.currentTimeMillis();
 		long sleeptime = 0;
 		
+		boolean usemap = (this.mapped != null) && this.mapped.isWritable();
+		RandomAccessContent raf = null;
+		
+		// span of the mapped writes, forced to the file once at the end
+		int forcefrom = -1;
+		int forceto = -1;
+		
 		try 
 		{
-			RandomAccessContent raf = fileobj.getContent().getRandomAccessContent(RandomAccessMode.READWRITE);
-		
-			for (int i = 0;i<this.sectors.size();i++)
+			if (!usemap)
+				raf = fileobj.getContent().getRandomAccessContent(RandomAccessMode.READWRITE);
+			
+			// visit only the dirty runs, each goes out in one positioned write
+			int lsn = this.sectors.nextDirty(0);
+			
+			while (lsn > -1)
 			{
-				if (getSector(i) != null)
+				if (!usemap && (this.drive != null) && this.drive.getDiskDrives().getDWProtocolHandler().isInOp())
 				{
-					if (getSector(i).isDirty())
+					try
 					{
-						if (this.drive.getDiskDrives().getDWProtocolHandler().isInOp())
-						{
-							try
-							{
-								long sleepstart = System.currentTimeMillis();
-								Thread.sleep(DWDefs.DISK_SYNC_INOP_PAUSE);
-								sleeptime += System.currentTimeMillis() - sleepstart;
-							} 
-							catch (InterruptedException e)
-							{
-								//  this would be weird..
-								e.printStackTrace();
-							}
-							
-						}
-						long pos = i * this.getSectorSize();
-						raf.seek(pos);
-						raf.write(getSector(i).getData());
-						sectorswritten++;
-						getSector(i).makeClean();
+						long sleepstart = System.currentTimeMillis();
+						Thread.sleep(DWDefs.DISK_SYNC_INOP_PAUSE);
+						sleeptime += System.currentTimeMillis() - sleepstart;
+					} 
+					catch (InterruptedException e)
+					{
+						//  this would be weird..
+						e.printStackTrace();
 					}
 				}
+				
+				int count = this.sectors.getDirtyRunLength(lsn, DWDefs.DISK_SYNC_MAX_RUN);
+				byte[] buf = this.sectors.takeDirtyRun(lsn, count);
+				
+				try
+				{
+					if (usemap)
+					{
+						this.mapped.writeSectors(lsn, buf, count);
+						
+						if (forcefrom < 0)
+							forcefrom = lsn;
+						
+						forceto = lsn + count;
+					}
+					else
+					{
+						raf.seek((long) lsn * this.getSectorSize());
+						raf.write(buf, 0, buf.length);
+					}
+				}
+				catch (IOException e)
+				{
+					// keep the data for the next attempt
+					this.sectors.restoreDirtyRun(lsn, buf, count);
+					throw e;
+				}
+				
+				this.sectors.releaseRun(lsn, count);
+				
+				sectorswritten += count;
+				runswritten++;
+				
+				lsn = this.sectors.nextDirty(lsn + count);
 			}
 			
-		
-			raf.close();
+			if (forcefrom > -1)
+				this.mapped.force(forcefrom, forceto - forcefrom);
+			
+			if (raf != null)
+				raf.close();
+			
 			fileobj.close();
 			this.setLastModifiedTime(this.fileobj.getContent().getLastModifiedTime()); 
 		} 
@@ -460,19 +523,13 @@ public class DWRawDisk extends DWDisk {
 		{
 			logger.error("Error writing sectors in " + this.getFilePath() + ": " + e.getMessage() );
 		} 
-		catch (DWDiskInvalidSectorNumber e)
-		{
-			logger.error("Error writing sectors in " + this.getFilePath() + ": " + e.getMessage() );
-		}
 		
 		if (sectorswritten > 0)
-			logger.debug("wrote " + sectorswritten + " sectors in " + (System.currentTimeMillis() - starttime) + " ms (" + sleeptime + "ms sleep), to " + getFilePath() );
+			logger.debug("wrote " + sectorswritten + " sectors in " + runswritten + " runs in " + (System.currentTimeMillis() - starttime) + " ms (" + sleeptime + "ms sleep" + (usemap ? ", mapped" : "") + "), to " + getFilePath() );
 		
 	}
 	
 	
-
-
 	private int getMaxSectors()
 	{
 		return this.params.getInt("_maxsectors", DWDefs.DISK_MAXSECTORS);
@@ -503,6 +560,13 @@ public class DWRawDisk extends DWDisk {
 
 
 
+	private int getPrefetch() 
+	{
+		return Math.max(0, Math.min(DWDefs.DISK_PREFETCH_MAX_RUN, this.params.getInt("prefetch",DWDefs.DISK_DEFAULT_PREFETCH)));
+	}
+
+
+
 	private int getSizelimit() 
 	{
 		return this.params.getInt("sizelimit",DWDefs.DISK_DEFAULT_SIZELIMIT);
@@ -559,4 +623,35 @@ public class DWRawDisk extends DWDisk {
 		return this.direct;
 	}
 	
+	@Override
+	public void prefetchNext()
+	{
+		if ((this.readahead != null) && (this.sectors != null) && (this.getPrefetch() > 0))
+			this.readahead.speculate(this.sectors, this.getLSN() + this.getOffset() + 1);
+	}
+	
+	@Override
+	public DWDiskReadAhead getReadAhead()
+	{
+		return this.readahead;
+	}
+	
+	@Override
+	public DWDiskMappedFile getMappedFile()
+	{
+		return this.mapped;
+	}
+	
+	@Override
+	public void eject() throws IOException
+	{
+		super.eject();
+		
+		if (this.mapped != null)
+		{
+			this.mapped.close();
+			this.mapped = null;
+		}
+	}
+	
 }
@@ -75,7 +75,7 @@ public class DWSIDEImageDisk extends DWDisk
 	    	
 	    while (sz < filesize)
 	    {
-	    	this.sectors.set(sector, new DWDiskSector(this, sector, 256, true));
+	    	this.sectors.set(sector, new DWDiskSector(this, sector, true));
 	    	sector++;
 	    	sz += 256;
 	    }
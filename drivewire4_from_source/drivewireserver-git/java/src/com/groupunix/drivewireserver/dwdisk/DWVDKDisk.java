@@ -180,7 +180,7 @@ follow the disk name.
 	    	while (readres < DWVDKDisk.VDK_SECTOR_SIZE)
 		    	readres += fis.read(buf, readres, DWVDKDisk.VDK_SECTOR_SIZE - readres);
 	    	
-	    	this.sectors.set(i, new DWDiskSector(this, i, DWVDKDisk.VDK_SECTOR_SIZE, false));
+	    	this.sectors.set(i, new DWDiskSector(this, i, false));
 	    	this.sectors.get(i).setData(buf, false);
 	    	
 	    	
@@ -253,7 +253,7 @@ follow the disk name.
 		}
 		else
 		{
-			this.setParam("_lsn", newLSN);
+			this.setLSN(newLSN);
 		}
 	}
 
@@ -271,7 +271,7 @@ follow the disk name.
 			
 			this.sectors.get(this.getLSN()).setData(data);
 			
-			this.incParam("_writes");
+			this.countWrite();
 			
 		}
 	}
@@ -280,7 +280,7 @@ follow the disk name.
 
 	public byte[] readSector() throws IOException
 	{
-		this.incParam("_reads");
+		this.countRead();
 		return(this.sectors.get(this.getLSN()).getData() );
 	}
 
@@ -107,34 +107,39 @@ public class DWDECBFileSystem extends DWFileSystem
 
 	public byte[] getFileContents(String filename) throws DWFileSystemFileNotFoundException, DWFileSystemInvalidFATException, IOException, DWDiskInvalidSectorNumber, DWFileSystemInvalidDirectoryException
 	{
-			
-		
-		byte[] res = new byte[0];
+		return this.getFileContents((DWDECBFileSystemDirEntry) getDirEntry(filename));
+	}
+	
+	
+	public byte[] getFileContents(DWDECBFileSystemDirEntry entry) throws DWFileSystemInvalidFATException, IOException, DWDiskInvalidSectorNumber
+	{
+		DWFileSystemInputStream in = this.getFileInputStream(entry);
 		
-		ArrayList<DWDiskSector> sectors = this.getFileSectors(filename);
+		byte[] res = new byte[(int) in.getLength()];
 		
-		int bl = ((DWDECBFileSystemDirEntry) getDirEntry(filename)).getBytesInLastSector();
+		in.readContents(res);
 		
-		if ((sectors != null) && (sectors.size() > 0))
-		{
-			res = new byte[(sectors.size()-1) * DWDefs.DISK_SECTORSIZE  + bl];
-			
-			for (int i = 0; i<sectors.size() - 1;i++)
-			{
-				System.arraycopy(sectors.get(i).getData(), 0, res, i*DWDefs.DISK_SECTORSIZE, DWDefs.DISK_SECTORSIZE);
-			}
-		}
+		return res;
+	}
+	
+	
+	public DWFileSystemInputStream getFileInputStream(String filename) throws DWFileSystemFileNotFoundException, DWFileSystemInvalidFATException, IOException, DWDiskInvalidSectorNumber, DWFileSystemInvalidDirectoryException
+	{
+		return this.getFileInputStream((DWDECBFileSystemDirEntry) getDirEntry(filename));
+	}
+	
+	
+	public DWFileSystemInputStream getFileInputStream(DWDECBFileSystemDirEntry entry) throws DWFileSystemInvalidFATException, IOException, DWDiskInvalidSectorNumber
+	{
+		// whole granules, last sector is partial bytes
+		DWFileSystemInputStream in = new DWFileSystemInputStream(this.disk, 0);
 		
-		// last sector is partial bytes
+		int sectors = getFAT().addFileSectors(in, entry.getFirstGranule());
 		
-			
-		if (bl > 0)
-		{
-			System.arraycopy(sectors.get(sectors.size()-1).getData(), 0, res, (sectors.size() - 1) * DWDefs.DISK_SECTORSIZE, bl);
-			
-		}
+		if (sectors > 0)
+			in.setLength((sectors - 1) * DWDefs.DISK_SECTORSIZE + entry.getBytesInLastSector());
 		
-		return res;
+		return in;
 	}
 	
 	
@@ -292,11 +297,11 @@ public class DWDECBFileSystem extends DWFileSystem
 			for (int i = 0;i<256;i++)
 				buf[i] = (byte) 0xFF;
 			
-			this.disk.getSectors().removeAllElements();
+			this.disk.getSectors().clear();
 			
 			for (int i =0; i< 630;i++)
 			{
-				this.disk.getSectors().add(new DWDiskSector(this.disk, i, 256, this.disk.getDirect()));
+				this.disk.getSectors().add(new DWDiskSector(this.disk, i, this.disk.getDirect()));
 				this.disk.getSectors().get(i).setData(buf);
 			}
 		}
@@ -347,13 +352,18 @@ public class DWDECBFileSystem extends DWFileSystem
 				}
 				
 				// look for wacky fat
+				byte[] fat = null;
+				
 				for (int i = 0; i < DECBDefs.FAT_SIZE;i++)
 				{
 					int val;
 					
 					try
 					{
-						val = (0xFF & this.disk.getSector(DECBDefs.FAT_OFFSET).getData()[i]);
+						if (fat == null)
+							fat = this.disk.getSector(DECBDefs.FAT_OFFSET).getData();
+						
+						val = (0xFF & fat[i]);
 						
 						if (((val > DECBDefs.FAT_SIZE) && (val < 0xC0)) || ((val > 0xCF) && (val < 0xFF)))
 						{
@@ -431,13 +441,18 @@ public class DWDECBFileSystem extends DWFileSystem
 				}
 				
 				// look for wacky fat
+				byte[] fat = null;
+				
 				for (int i = 0; i < DECBDefs.FAT_SIZE;i++)
 				{
 					int val;
 					
 					try
 					{
-						val = (0xFF & this.disk.getSector(DECBDefs.FAT_OFFSET).getData()[i]);
+						if (fat == null)
+							fat = this.disk.getSector(DECBDefs.FAT_OFFSET).getData();
+						
+						val = (0xFF & fat[i]);
 						
 						if (((val > DECBDefs.FAT_SIZE) && (val < 0xC0)) || ((val > 0xCF) && (val < 0xFF)))
 						{
@@ -3,10 +3,10 @@ package com.groupunix.drivewireserver.dwdisk.filesystem;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Vector;
 
 import com.groupunix.drivewireserver.DECBDefs;
 import com.groupunix.drivewireserver.dwdisk.DWDiskSector;
+import com.groupunix.drivewireserver.dwdisk.DWDiskSectorStore;
 
 import com.groupunix.drivewireserver.dwexceptions.DWFileSystemFullException;
 import com.groupunix.drivewireserver.dwexceptions.DWFileSystemInvalidFATException;
@@ -69,7 +69,7 @@ public class DWDECBFileSystemFAT
 		this.sector = sector;
 	}
 
-	public ArrayList<DWDiskSector> getFileSectors(Vector<DWDiskSector> sectors, byte granule) throws DWFileSystemInvalidFATException, IOException
+	public ArrayList<DWDiskSector> getFileSectors(DWDiskSectorStore sectors, byte granule) throws DWFileSystemInvalidFATException, IOException
 	{
 		ArrayList<DWDiskSector> res = new ArrayList<DWDiskSector>();
 		
@@ -94,6 +94,32 @@ public class DWDECBFileSystemFAT
 	}
 	
 	
+	// the same chain as granule runs for a stream, walked on one copy of the FAT.  returns the sector count.
+	public int addFileSectors(DWFileSystemInputStream in, byte granule) throws DWFileSystemInvalidFATException, IOException
+	{
+		byte[] fat = this.sector.getData();
+		int count = 0;
+		
+		byte entry = getEntry(fat, granule);
+		
+		while (!this.isLastEntry(entry))
+		{
+			if (count > DECBDefs.FAT_SIZE * 9)
+				throw (new DWFileSystemInvalidFATException("Chain loops back at granule #" + granule));
+			
+			in.addSectors(getFirstSectorNoForGranule(granule), 9);
+			count += 9;
+			
+			granule = entry;
+			entry = getEntry(fat, granule);
+		}
+		
+		in.addSectors(getFirstSectorNoForGranule(granule), entry & 0x0F);
+		
+		return(count + (entry & 0x0F));
+	}
+	
+	
 	public ArrayList<Byte> getFileGranules(byte granule) throws DWFileSystemInvalidFATException, IOException
 	{
 		ArrayList<Byte> res = new ArrayList<Byte>();
@@ -109,7 +135,7 @@ public class DWDECBFileSystemFAT
 	
 	
 	
-	private List<DWDiskSector> getGranuleSectors(Vector<DWDiskSector> sectors, byte granule)
+	private List<DWDiskSector> getGranuleSectors(DWDiskSectorStore sectors, byte granule)
 	{
 		List<DWDiskSector> res = new ArrayList<DWDiskSector>();
 		
@@ -133,20 +159,25 @@ public class DWDECBFileSystemFAT
 	}
 
 	public byte getEntry(byte granule) throws DWFileSystemInvalidFATException, IOException
+	{
+		return getEntry(this.sector.getData(), granule);
+	}
+	
+	private static byte getEntry(byte[] fat, byte granule) throws DWFileSystemInvalidFATException
 	{
 	
 		if (((granule & 0xFF) ) <= DECBDefs.FAT_SIZE)
-			if ((this.sector.getData()[(granule & 0xFF) ] & 0xFF) == 0xFF)
+			if ((fat[(granule & 0xFF) ] & 0xFF) == 0xFF)
 				throw (new DWFileSystemInvalidFATException("Chain links to unused FAT entry #" + granule));
 			else
-				return(this.sector.getData()[(granule & 0xFF)]);
+				return(fat[(granule & 0xFF)]);
 		else
 			throw (new DWFileSystemInvalidFATException("Invalid granule #" + granule));
 	}
 	
 	public byte getGranuleByte(byte granule) throws IOException
 	{
-		return this.sector.getData()[(granule & 0xFF)];
+		return this.sector.getDataByte(granule & 0xFF);
 	}
 	
 	public boolean isLastEntry(byte entry)
@@ -161,9 +192,10 @@ public class DWDECBFileSystemFAT
 	public int getFreeGanules() throws IOException
 	{
 		int free =0;
+		byte[] fat = this.sector.getData();
 		
 		for (int i = 0;i< (DECBDefs.FAT_SIZE);i++)
-			if ((this.sector.getData()[i] & 0xFF) == 0xFF)
+			if ((fat[i] & 0xFF) == 0xFF)
 				free++;
 		
 		return free;
@@ -214,9 +246,11 @@ public class DWDECBFileSystemFAT
 
 	private byte getFreeGranule() throws IOException
 	{
+		byte[] fat = this.sector.getData();
+		
 		for (byte i = 0;i< (DECBDefs.FAT_SIZE);i++)
 		{
-			if ((this.sector.getData()[i] & 0xFF) == 0xFF)
+			if ((fat[i] & 0xFF) == 0xFF)
 				return(i);
 		}
 		return -1;
@@ -225,10 +259,11 @@ public class DWDECBFileSystemFAT
 	public String dumpFat() throws IOException
 	{
 		String res = "";
+		byte[] fat = this.sector.getData();
 			
 		for (int i = 0; i< DECBDefs.FAT_SIZE; i++)
-			if (this.sector.getData()[i] != -1)
-				res += i + ": " + this.sector.getData()[i] + "\t\t";
+			if (fat[i] != -1)
+				res += i + ": " + fat[i] + "\t\t";
 		
 		return(res);
 			
@@ -1,6 +1,10 @@
 package com.groupunix.drivewireserver.dwdisk.filesystem;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -36,6 +40,17 @@ public abstract class DWFileSystem
 	
 	public abstract byte[] getFileContents(String filename) throws DWFileSystemFileNotFoundException, DWFileSystemInvalidFATException, IOException, DWDiskInvalidSectorNumber, DWFileSystemInvalidDirectoryException;
 	
+	// filesystems that know where a file's sectors are read them a run at a time instead
+	public InputStream getFileInputStream(String filename) throws DWFileSystemFileNotFoundException, DWFileSystemInvalidFATException, IOException, DWDiskInvalidSectorNumber, DWFileSystemInvalidDirectoryException
+	{
+		return new ByteArrayInputStream(getFileContents(filename));
+	}
+	
+	public ReadableByteChannel getFileChannel(String filename) throws DWFileSystemFileNotFoundException, DWFileSystemInvalidFATException, IOException, DWDiskInvalidSectorNumber, DWFileSystemInvalidDirectoryException
+	{
+		return Channels.newChannel(getFileInputStream(filename));
+	}
+	
 	public abstract void addFile(String filename, byte[] filecontents) throws DWFileSystemFullException, DWFileSystemInvalidFilenameException, DWFileSystemFileNotFoundException, DWFileSystemInvalidFATException, IOException, DWDiskInvalidSectorNumber, DWFileSystemInvalidDirectoryException;
 	
 	public abstract void format() throws DWInvalidSectorException, DWSeekPastEndOfDeviceException, DWDriveWriteProtectedException, IOException;
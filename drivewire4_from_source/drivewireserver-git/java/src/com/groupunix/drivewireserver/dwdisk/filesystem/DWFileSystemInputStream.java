@@ -0,0 +1,193 @@
+package com.groupunix.drivewireserver.dwdisk.filesystem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import com.groupunix.drivewireserver.DWDefs;
+import com.groupunix.drivewireserver.dwdisk.DWDisk;
+import com.groupunix.drivewireserver.dwexceptions.DWDiskInvalidSectorNumber;
+
+public class DWFileSystemInputStream extends InputStream
+{
+	// a file's contents straight off its disk, one run of consecutive sectors per read.
+	// the filesystem hands over the sectors in file order, neighbours are merged into runs.
+	// reads asking for whole sectors go right into the caller's buffer, the rest through ours.
+
+	private static final int MAX_RUN = 64;
+
+	private DWDisk disk;
+	private int sectorsize = DWDefs.DISK_SECTORSIZE;
+
+	// lsn, count
+	private ArrayList<int[]> runs = new ArrayList<int[]>();
+	private int run = 0;
+	private int runpos = 0;
+
+	private long length;
+	private long remaining;
+
+	private byte[] buf = null;
+	private int pos = 0;
+	private int end = 0;
+
+
+	public DWFileSystemInputStream(DWDisk disk, long length)
+	{
+		this.disk = disk;
+		this.length = length;
+		this.remaining = length;
+	}
+
+
+	public void addSectors(int lsn, int count)
+	{
+		if (count <= 0)
+			return;
+
+		if (!this.runs.isEmpty())
+		{
+			int[] last = this.runs.get(this.runs.size() - 1);
+
+			if (last[0] + last[1] == lsn)
+			{
+				last[1] += count;
+				return;
+			}
+		}
+
+		this.runs.add(new int[] { lsn, count });
+	}
+
+
+	public long getLength()
+	{
+		return this.length;
+	}
+
+
+	// for filesystems that only know the length once the sectors are in, before any reading
+	public void setLength(long length)
+	{
+		this.length = length;
+		this.remaining = length;
+	}
+
+
+	public int getRunCount()
+	{
+		return this.runs.size();
+	}
+
+
+	public int read() throws IOException
+	{
+		byte[] b = new byte[1];
+
+		if (read(b, 0, 1) < 1)
+			return -1;
+
+		return b[0] & 0xFF;
+	}
+
+
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		try
+		{
+			return readContents(b, off, len);
+		}
+		catch (DWDiskInvalidSectorNumber e)
+		{
+			throw new IOException(e.getMessage());
+		}
+	}
+
+
+	// like read, but the disk's own exception when a run points off the end of it
+	public int readContents(byte[] b, int off, int len) throws IOException, DWDiskInvalidSectorNumber
+	{
+		if (len == 0)
+			return 0;
+
+		if ((this.pos == this.end) && (this.remaining >= this.sectorsize) && (len >= this.sectorsize) && (this.run < this.runs.size()))
+		{
+			int n = (int) Math.min(len / this.sectorsize, this.remaining / this.sectorsize);
+
+			n = takeRun(n, b, off);
+
+			this.remaining -= n * this.sectorsize;
+			return n * this.sectorsize;
+		}
+
+		if ((this.pos == this.end) && !fill())
+			return -1;
+
+		int n = Math.min(len, this.end - this.pos);
+
+		System.arraycopy(this.buf, this.pos, b, off, n);
+		this.pos += n;
+
+		return n;
+	}
+
+
+	// read until b is full or the file runs out, returns how much it got
+	public int readContents(byte[] b) throws IOException, DWDiskInvalidSectorNumber
+	{
+		int got = 0;
+		int n = 0;
+
+		while ((got < b.length) && ((n = readContents(b, got, b.length - got)) > 0))
+			got += n;
+
+		return got;
+	}
+
+
+	public int available()
+	{
+		return this.end - this.pos;
+	}
+
+
+	private boolean fill() throws IOException, DWDiskInvalidSectorNumber
+	{
+		if ((this.remaining <= 0) || (this.run >= this.runs.size()))
+			return false;
+
+		if (this.buf == null)
+			this.buf = new byte[MAX_RUN * this.sectorsize];
+
+		int n = (int) Math.min(MAX_RUN, (this.remaining + this.sectorsize - 1) / this.sectorsize);
+
+		n = takeRun(n, this.buf, 0);
+
+		this.pos = 0;
+		this.end = (int) Math.min(n * this.sectorsize, this.remaining);
+		this.remaining -= this.end;
+
+		return true;
+	}
+
+
+	// up to max sectors from the current run in one read
+	private int takeRun(int max, byte[] b, int off) throws IOException, DWDiskInvalidSectorNumber
+	{
+		int[] r = this.runs.get(this.run);
+		int n = Math.min(max, r[1] - this.runpos);
+
+		this.disk.readSectors(r[0] + this.runpos, n, b, off);
+
+		this.runpos += n;
+
+		if (this.runpos == r[1])
+		{
+			this.run++;
+			this.runpos = 0;
+		}
+
+		return n;
+	}
+
+}
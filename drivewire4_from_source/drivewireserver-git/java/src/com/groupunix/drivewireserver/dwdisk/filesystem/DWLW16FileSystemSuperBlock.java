@@ -19,13 +19,15 @@ public class DWLW16FileSystemSuperBlock
 	public DWLW16FileSystemSuperBlock(DWDiskSector sector) throws IOException
 	{
 		
-		System.arraycopy( sector.getData(), 0, magic, 0, 4 ); 
-		this.inodes = (0xff & sector.getData()[4]) * 256 + (0xff & sector.getData()[5]);
-		this.inodebmpblocks = 0xff & sector.getData()[6];
-		this.databmpblocks = 0xff & sector.getData()[7];
-		this.firstdatablock = (0xff & sector.getData()[8]) * 256 + (0xff & sector.getData()[9]);
-		this.datablocks = (0xff & sector.getData()[10]) * 256 + (0xff & sector.getData()[11]);
-		this.firstdatablock = (0xff & sector.getData()[12]) * 256 + (0xff & sector.getData()[13]);
+		byte[] data = sector.getData();
+		
+		System.arraycopy( data, 0, magic, 0, 4 ); 
+		this.inodes = (0xff & data[4]) * 256 + (0xff & data[5]);
+		this.inodebmpblocks = 0xff & data[6];
+		this.databmpblocks = 0xff & data[7];
+		this.firstdatablock = (0xff & data[8]) * 256 + (0xff & data[9]);
+		this.datablocks = (0xff & data[10]) * 256 + (0xff & data[11]);
+		this.firstdatablock = (0xff & data[12]) * 256 + (0xff & data[13]);
 		
 	}
 
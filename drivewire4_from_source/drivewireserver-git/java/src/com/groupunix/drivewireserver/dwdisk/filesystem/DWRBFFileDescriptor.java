@@ -9,6 +9,8 @@ public class DWRBFFileDescriptor
 	private int link_count;
 	private int filesize;
 	private DWRBFFileSegment[] segmentlist = new DWRBFFileSegment[48];
+	// once in the RBF cache it is shared, setters throw and arrays come out as copies
+	private boolean readonly = false;
 	
 	public DWRBFFileDescriptor(byte[] data)
 	{
@@ -26,8 +28,49 @@ public class DWRBFFileDescriptor
 		
 	}
 
+	// cheap sanity check for a sector that might be an FD, so readers can guess without a directory walk
+	public static boolean isFileDescriptor(byte[] data, int disksectors)
+	{
+		if ((data.length < 256) || ((data[8] & 0xFF) == 0))
+			return false;
+		
+		// modified y/m/d/h/m, created y/m/d
+		if (!isDate(data[4], data[5]) || ((data[6] & 0xFF) > 23) || ((data[7] & 0xFF) > 59) || !isDate(data[14], data[15]))
+			return false;
+		
+		long filesize = ((data[9] & 0xFFL) << 24) + ((data[10] & 0xFF) << 16) + ((data[11] & 0xFF) << 8) + (data[12] & 0xFF);
+		long allocated = 0;
+		int i;
+		
+		for (i = 16;i < 256;i += 5)
+		{
+			int lsn = ((data[i] & 0xFF) << 16) + ((data[i+1] & 0xFF) << 8) + (data[i+2] & 0xFF);
+			int size = ((data[i+3] & 0xFF) << 8) + (data[i+4] & 0xFF);
+			
+			if ((lsn == 0) && (size == 0))
+				break;
+			
+			if ((lsn == 0) || (size == 0) || (lsn + size > disksectors))
+				return false;
+			
+			allocated += size;
+		}
+		
+		// an empty file has nothing worth finding
+		if (i == 16)
+			return false;
+		
+		return (allocated * 256 >= filesize);
+	}
+	
+	private static boolean isDate(byte month, byte day)
+	{
+		return ((month >= 1) && (month <= 12) && (day >= 1) && (day <= 31));
+	}
+
 	public void setAttributes(int attributes)
 	{
+		checkWritable();
 		this.attributes = attributes;
 	}
 
@@ -38,6 +81,7 @@ public class DWRBFFileDescriptor
 
 	public void setOwner(int owner)
 	{
+		checkWritable();
 		this.owner = owner;
 	}
 
@@ -48,6 +92,7 @@ public class DWRBFFileDescriptor
 
 	public void setLink_count(int link_count)
 	{
+		checkWritable();
 		this.link_count = link_count;
 	}
 
@@ -58,6 +103,7 @@ public class DWRBFFileDescriptor
 
 	public void setFilesize(int filesize)
 	{
+		checkWritable();
 		this.filesize = filesize;
 	}
 
@@ -68,16 +114,30 @@ public class DWRBFFileDescriptor
 	
 	public DWRBFFileSegment[] getSegmentList()
 	{
+		if (this.readonly)
+			return this.segmentlist.clone();
+		
 		return this.segmentlist;
 	}
 
+	public DWRBFFileSegment getSegment(int i)
+	{
+		return this.segmentlist[i];
+	}
+
 	public byte[] getDateModified()
 	{
+		if (this.readonly)
+			return this.date_modified.clone();
+		
 		return this.date_modified;
 	}
 	
 	public byte[] getDateCreated()
 	{
+		if (this.readonly)
+			return this.date_created.clone();
+		
 		return this.date_created;
 	}
 
@@ -148,4 +208,23 @@ public class DWRBFFileDescriptor
 		return false;
 	}
 	
+	void setReadOnly()
+	{
+		this.readonly = true;
+		
+		for (DWRBFFileSegment seg : this.segmentlist)
+			seg.setReadOnly();
+	}
+	
+	public boolean isReadOnly()
+	{
+		return this.readonly;
+	}
+	
+	private void checkWritable()
+	{
+		if (this.readonly)
+			throw new UnsupportedOperationException("RBF file descriptor is shared by the filesystem cache and read only");
+	}
+	
 }	
@@ -4,6 +4,8 @@ public class DWRBFFileSegment
 {
 	private int lsn;
 	private int size;
+	// shared through the RBF cache
+	private boolean readonly = false;
 	
 	public DWRBFFileSegment(byte[] data, int i)
 	{
@@ -13,6 +15,7 @@ public class DWRBFFileSegment
 
 	public void setLsn(int lsn)
 	{
+		checkWritable();
 		this.lsn = lsn;
 	}
 
@@ -23,6 +26,7 @@ public class DWRBFFileSegment
 
 	public void setSize(int size)
 	{
+		checkWritable();
 		this.size = size;
 	}
 
@@ -41,4 +45,15 @@ public class DWRBFFileSegment
 		return false;
 	}
 	
+	void setReadOnly()
+	{
+		this.readonly = true;
+	}
+	
+	private void checkWritable()
+	{
+		if (this.readonly)
+			throw new UnsupportedOperationException("RBF file segment is shared by the filesystem cache and read only");
+	}
+	
 }
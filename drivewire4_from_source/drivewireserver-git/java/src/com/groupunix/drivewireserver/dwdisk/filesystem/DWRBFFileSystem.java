@@ -23,10 +23,14 @@ public class DWRBFFileSystem extends DWFileSystem
 
 	private static final String FSNAME = "RBF";
 	
+	// shared by every DWRBFFileSystem on this disk
+	private DWRBFFileSystemCache cache;
+	
 	public DWRBFFileSystem(DWDisk disk)
 	{
 		super(disk);
 		
+		this.cache = disk.getRBFCache();
 	}
 
 	@Override
@@ -36,10 +40,7 @@ public class DWRBFFileSystem extends DWFileSystem
 		
 		try
 		{
-			for (DWRBFFileSystemDirEntry entry : this.getDirectoryFromFD( this.getFDFromPath(path)))
-			{
-				res.add(entry);
-			}
+			res.addAll(this.getCachedDirectory(this.getLSNFromPath(path)).getEntries());
 		} 
 		catch (DWDiskInvalidSectorNumber e)
 		{
@@ -91,37 +92,73 @@ public class DWRBFFileSystem extends DWFileSystem
 	
 	public DWRBFFileDescriptor getFDFromPath(String filename) throws IOException, DWDiskInvalidSectorNumber, DWFileSystemFileNotFoundException, DWFileSystemInvalidDirectoryException
 	{
+		return this.getFD(this.getLSNFromPath(filename));
+	}
+	
+	
+	// FD LSN of a path like "CMDS/dir", null is the root directory
+	public int getLSNFromPath(String filename) throws IOException, DWDiskInvalidSectorNumber, DWFileSystemFileNotFoundException, DWFileSystemInvalidDirectoryException
+	{
+		int lsn = this.getRootDirectoryLSN();
+		
 		if (filename == null)
+			return lsn;
+		
+		DWRBFFileSystemDirEntry entry = null;
+		
+		for (String name : filename.split("/"))
 		{
-			return (new DWRBFFileDescriptor(this.disk.getSector(this.getRootDirectoryLSN()).getData()));
+			if (name.length() == 0)
+				continue;
+			
+			if ((entry != null) && !entry.isDirectory())
+				throw new DWFileSystemFileNotFoundException("File not found: " + filename);
+			
+			entry = this.getCachedDirectory(lsn).find(name);
+			
+			if (entry == null)
+				throw new DWFileSystemFileNotFoundException("File not found: " + filename);
+			
+			lsn = entry.getFDLSN();
 		}
 		
+		return lsn;
+	}
+	
+	
+	public DWRBFFileDescriptor getFD(int lsn) throws DWDiskInvalidSectorNumber, IOException
+	{
+		DWRBFFileDescriptor fd = this.cache.getFD(lsn);
 		
-		String[] path = filename.split("/");
-		ArrayList<DWRBFFileSystemDirEntry> dir = this.getRootDirectory();
-		DWRBFFileDescriptor res = null;
+		if (fd == null)
+		{
+			int gen = this.cache.getGeneration();
+			
+			fd = new DWRBFFileDescriptor(this.disk.getSector(lsn).getData());
+			this.cache.putFD(lsn, fd, gen);
+		}
+		
+		return fd;
+	}
+	
+	
+	private DWRBFFileSystemCache.Directory getCachedDirectory(int fdlsn) throws IOException, DWDiskInvalidSectorNumber, DWFileSystemInvalidDirectoryException
+	{
+		DWRBFFileSystemCache.Directory dir = this.cache.getDirectory(fdlsn);
 		
-		for (int i = 0;i<path.length;i++)
+		if (dir == null)
 		{
-			res = null;
-			int j = 0;
+			int gen = this.cache.getGeneration();
+			ArrayList<Integer> sectors = new ArrayList<Integer>();
 			
-			while ((j<dir.size()) && (res == null))
-			{
-				if (dir.get(j).getFileName().equals(path[i]))
-				{
-					res = dir.get(j).getFD();
-				}
-				j++;
-			}
+			DWRBFFileDescriptor fd = new DWRBFFileDescriptor(this.disk.getSector(fdlsn).getData());
 			
-			if (res == null)
-				throw new DWFileSystemFileNotFoundException("File not found: " + filename);
+			dir = this.cache.putDirectory(fdlsn, this.directoryFromContents(this.getFileContentsFromDescriptor(fd, sectors), sectors), sectors, gen);
 		}
 		
-		return res;
+		return dir;
 	}
-
+	
 	
 	
 	@Override
@@ -216,29 +253,18 @@ public class DWRBFFileSystem extends DWFileSystem
 
 	public ArrayList<DWRBFFileSystemDirEntry> getRootDirectory() throws IOException, DWDiskInvalidSectorNumber, DWFileSystemInvalidDirectoryException
 	{
-		ArrayList<DWRBFFileSystemDirEntry> dir = new ArrayList<DWRBFFileSystemDirEntry>();
-		
-		try
-		{
-			int rootsec = this.getRootDirectoryLSN();
-			
-			DWRBFFileDescriptor fd = new DWRBFFileDescriptor(this.disk.getSector(rootsec).getData());
-			
-			dir = this.directoryFromContents(this.getFileContentsFromDescriptor(fd));
-			
-		}
-		catch (NumberFormatException e)
-		{
-			throw new DWDiskInvalidSectorNumber(e.getMessage());
-		}
-		
-		return dir;
+		return this.getCachedDirectory(this.getRootDirectoryLSN()).getEntries();
 	}
 	
 	
 	private int getRootDirectoryLSN() throws DWDiskInvalidSectorNumber, IOException
 	{
-		int rootsec = -1;
+		int rootsec = this.cache.getRootLSN();
+		
+		if (rootsec > -1)
+			return rootsec;
+		
+		int gen = this.cache.getGeneration();
 		
 		try
 		{
@@ -250,17 +276,26 @@ public class DWRBFFileSystem extends DWFileSystem
 			throw new DWDiskInvalidSectorNumber(e.getMessage());
 		}
 		
+		this.cache.putRootLSN(rootsec, gen);
+		
 		return rootsec;
 	}
 
 	public ArrayList<DWRBFFileSystemDirEntry> getDirectoryFromFD(DWRBFFileDescriptor fd) throws IOException, DWDiskInvalidSectorNumber, DWFileSystemInvalidDirectoryException
 	{
 		
-		return this.directoryFromContents(this.getFileContentsFromDescriptor(fd));
+		return this.directoryFromContents(this.getFileContentsFromDescriptor(fd), null);
+	}
+	
+	// same, through the cache
+	public ArrayList<DWRBFFileSystemDirEntry> getDirectoryFromFD(int fdlsn) throws IOException, DWDiskInvalidSectorNumber, DWFileSystemInvalidDirectoryException
+	{
+		return this.getCachedDirectory(fdlsn).getEntries();
 	}
 	
 
-	private ArrayList<DWRBFFileSystemDirEntry> directoryFromContents(byte[] data) throws IOException, DWDiskInvalidSectorNumber
+	// sectors, if not null, collects the entries' FD LSNs
+	private ArrayList<DWRBFFileSystemDirEntry> directoryFromContents(byte[] data, ArrayList<Integer> sectors) throws IOException, DWDiskInvalidSectorNumber
 	{
 		ArrayList<DWRBFFileSystemDirEntry> res = new ArrayList<DWRBFFileSystemDirEntry>();
 		
@@ -273,9 +308,10 @@ public class DWRBFFileSystem extends DWFileSystem
 			{
 				int lsn = (entry[29] & 0xFF) * 256 * 256 + (entry[30] & 0xFF) * 256 + (entry[31] & 0xFF);
 				
-				DWRBFFileDescriptor fd = new DWRBFFileDescriptor(this.disk.getSector(lsn).getData());
+				res.add(new DWRBFFileSystemDirEntry(DWUtils.OS9String(entry), lsn , this.getFD(lsn)));
 				
-				res.add(new DWRBFFileSystemDirEntry(DWUtils.OS9String(entry), lsn , fd));
+				if (sectors != null)
+					sectors.add(lsn);
 			}
 		}
 		
@@ -283,6 +319,12 @@ public class DWRBFFileSystem extends DWFileSystem
 	}
 
 	public byte[] getFileContentsFromDescriptor(DWRBFFileDescriptor fd) throws IOException, DWDiskInvalidSectorNumber, DWFileSystemInvalidDirectoryException
+	{
+		return this.getFileContentsFromDescriptor(fd, null);
+	}
+	
+	// sectors, if not null, collects the LSNs read
+	private byte[] getFileContentsFromDescriptor(DWRBFFileDescriptor fd, ArrayList<Integer> sectors) throws IOException, DWDiskInvalidSectorNumber, DWFileSystemInvalidDirectoryException
 	{
 		if (fd.getFilesize() < 0)
 		{
@@ -291,32 +333,57 @@ public class DWRBFFileSystem extends DWFileSystem
 		
 		byte[] res = new byte[fd.getFilesize()];
 		
-		int bytesread = 0;
+		// a short segment list leaves the rest zeroed
+		this.getFileInputStream(fd, sectors).readContents(res);
+		
+		return res;
+	}
+	
+	
+	@Override
+	public DWFileSystemInputStream getFileInputStream(String filename) throws IOException, DWDiskInvalidSectorNumber, DWFileSystemFileNotFoundException, DWFileSystemInvalidDirectoryException
+	{
+		return this.getFileInputStream(getFDFromPath(filename));
+	}
+	
+	
+	public DWFileSystemInputStream getFileInputStream(DWRBFFileDescriptor fd) throws DWFileSystemInvalidDirectoryException
+	{
+		return this.getFileInputStream(fd, null);
+	}
+	
+	
+	// one run per segment, as far as the file size reaches
+	private DWFileSystemInputStream getFileInputStream(DWRBFFileDescriptor fd, ArrayList<Integer> sectors) throws DWFileSystemInvalidDirectoryException
+	{
+		if (fd.getFilesize() < 0)
+		{
+			throw new DWFileSystemInvalidDirectoryException("Negative file size?");
+		}
+		
+		DWFileSystemInputStream in = new DWFileSystemInputStream(this.disk, fd.getFilesize());
+		
+		int needed = (fd.getFilesize() + 255) / 256;
 		int segmentsread = 0;
 		
-		while ((bytesread < res.length) && (segmentsread < 48))
+		while ((needed > 0) && (segmentsread < 48))
 		{
-			int lsn = fd.getSegmentList()[segmentsread].getLsn();
-			int siz = fd.getSegmentList()[segmentsread].getSize();
-				
-			//System.out.println("size: " + res.length + " read: " + bytesread +   "  lsn: " + lsn + "  siz: " + siz + " toread: " + toread);
+			int lsn = fd.getSegment(segmentsread).getLsn();
+			int siz = Math.min(fd.getSegment(segmentsread).getSize(), needed);
 			
-			int i = lsn;
+			in.addSectors(lsn, siz);
 			
-			while ((i<lsn+siz) && (bytesread < res.length))
+			if (sectors != null)
 			{
-				int toread = Math.min(256, res.length - bytesread); 
-				System.arraycopy(this.disk.getSector(i).getData(), 0, res, bytesread, toread);
-				bytesread += toread;
-				i++;
+				for (int i = lsn;i < lsn + siz;i++)
+					sectors.add(i);
 			}
 			
+			needed -= Math.max(siz, 0);
 			segmentsread++;
-			
 		}
 		
-		
-		return res;
+		return in;
 	}
 
 	public DWDiskSector getSector(int no) throws DWDiskInvalidSectorNumber
@@ -0,0 +1,186 @@
+package com.groupunix.drivewireserver.dwdisk.filesystem;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+public class DWRBFFileSystemCache
+{
+	// parsed RBF metadata for one disk: file descriptors by LSN, and directories with a name index.
+	// everything handed out is shared, so FDs and entries are made read only on the way in.
+	// the disk tells us about every sector whose contents change, and only what was built from
+	// that sector is dropped.  fills happen outside the lock, so each one remembers the
+	// generation it started at and is thrown away if a sector it read changed meanwhile.
+
+	private static final int RECENT = 64;
+
+	private HashMap<Integer, DWRBFFileDescriptor> fds = new HashMap<Integer, DWRBFFileDescriptor>();
+	private HashMap<Integer, Directory> dirs = new HashMap<Integer, Directory>();
+	// sector -> directories (by FD LSN) built from it
+	private HashMap<Integer, ArrayList<Integer>> deps = new HashMap<Integer, ArrayList<Integer>>();
+	private int rootlsn = -1;
+
+	// last few invalidated sectors, indexed by generation
+	private int generation = 0;
+	private int[] recent = new int[RECENT];
+
+
+	public static class Directory
+	{
+		private ArrayList<DWRBFFileSystemDirEntry> entries;
+		private HashMap<String, DWRBFFileSystemDirEntry> index;
+
+		Directory(ArrayList<DWRBFFileSystemDirEntry> entries)
+		{
+			this.entries = entries;
+			this.index = new HashMap<String, DWRBFFileSystemDirEntry>(entries.size() * 2);
+
+			// first one wins, like the old linear scan
+			for (DWRBFFileSystemDirEntry e : entries)
+			{
+				if (!this.index.containsKey(e.getFileName()))
+					this.index.put(e.getFileName(), e);
+			}
+		}
+
+		public DWRBFFileSystemDirEntry find(String name)
+		{
+			return this.index.get(name);
+		}
+
+		// a copy of the list, callers are free to change it but not the entries
+		public ArrayList<DWRBFFileSystemDirEntry> getEntries()
+		{
+			return new ArrayList<DWRBFFileSystemDirEntry>(this.entries);
+		}
+	}
+
+
+	public synchronized int getGeneration()
+	{
+		return this.generation;
+	}
+
+
+	public synchronized int getRootLSN()
+	{
+		return this.rootlsn;
+	}
+
+	public synchronized void putRootLSN(int lsn, int gen)
+	{
+		if (unchanged(gen, 0, null))
+			this.rootlsn = lsn;
+	}
+
+
+	public synchronized DWRBFFileDescriptor getFD(int lsn)
+	{
+		return this.fds.get(lsn);
+	}
+
+	public synchronized void putFD(int lsn, DWRBFFileDescriptor fd, int gen)
+	{
+		fd.setReadOnly();
+		
+		if (unchanged(gen, lsn, null))
+			this.fds.put(lsn, fd);
+	}
+
+
+	public synchronized Directory getDirectory(int fdlsn)
+	{
+		return this.dirs.get(fdlsn);
+	}
+
+	// sectors: everything the listing was read from, the directory's data and its entries' FDs
+	public synchronized Directory putDirectory(int fdlsn, ArrayList<DWRBFFileSystemDirEntry> entries, ArrayList<Integer> sectors, int gen)
+	{
+		for (DWRBFFileSystemDirEntry e : entries)
+			e.setReadOnly();
+		
+		Directory dir = new Directory(entries);
+
+		if (!unchanged(gen, fdlsn, sectors))
+			return dir;
+
+		this.dirs.put(fdlsn, dir);
+		addDep(fdlsn, fdlsn);
+
+		for (int s : sectors)
+			addDep(s, fdlsn);
+
+		// the entries' FDs came along for free
+		for (DWRBFFileSystemDirEntry e : entries)
+			this.fds.put(e.getFDLSN(), e.getFD());
+
+		return dir;
+	}
+
+
+	// the sector's contents changed
+	public synchronized void invalidate(int lsn)
+	{
+		this.fds.remove(lsn);
+		this.dirs.remove(lsn);
+
+		ArrayList<Integer> users = this.deps.remove(lsn);
+
+		if (users != null)
+		{
+			for (int d : users)
+				this.dirs.remove(d);
+		}
+
+		if (lsn == 0)
+			this.rootlsn = -1;
+
+		this.recent[this.generation % RECENT] = lsn;
+		this.generation++;
+	}
+
+
+	public synchronized void clear()
+	{
+		this.fds.clear();
+		this.dirs.clear();
+		this.deps.clear();
+		this.rootlsn = -1;
+
+		// nothing filled before this can be trusted
+		this.generation += RECENT;
+	}
+
+
+	private void addDep(int sector, int fdlsn)
+	{
+		ArrayList<Integer> users = this.deps.get(sector);
+
+		if (users == null)
+		{
+			users = new ArrayList<Integer>(1);
+			this.deps.put(sector, users);
+		}
+
+		if (!users.contains(fdlsn))
+			users.add(fdlsn);
+	}
+
+
+	// true if none of the sectors a fill read were invalidated since it started
+	private boolean unchanged(int gen, int lsn, ArrayList<Integer> sectors)
+	{
+		if (this.generation - gen > RECENT)
+			return false;
+
+		for (int g = gen;g < this.generation;g++)
+		{
+			int s = this.recent[g % RECENT];
+
+			if ((s == lsn) || ((sectors != null) && sectors.contains(s)))
+				return false;
+		}
+
+		return true;
+	}
+
+}
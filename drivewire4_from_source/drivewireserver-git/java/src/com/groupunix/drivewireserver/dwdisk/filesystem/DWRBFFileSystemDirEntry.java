@@ -9,6 +9,7 @@ public class DWRBFFileSystemDirEntry extends DWFileSystemDirEntry
 	private String filename;
 	private int fdlsn;
 	private DWRBFFileDescriptor fd;
+	private boolean readonly = false;
 
 	public DWRBFFileSystemDirEntry(String fn, int fd_lsn, DWRBFFileDescriptor fd)
 	{
@@ -86,6 +87,7 @@ public class DWRBFFileSystemDirEntry extends DWFileSystemDirEntry
 
 	public void setFD(DWRBFFileDescriptor fd)
 	{
+		checkWritable();
 		this.fd = fd;
 	}
 
@@ -96,6 +98,7 @@ public class DWRBFFileSystemDirEntry extends DWFileSystemDirEntry
 
 	public void setFDLSN(int fdlsn)
 	{
+		checkWritable();
 		this.fdlsn = fdlsn;
 	}
 
@@ -114,4 +117,19 @@ public class DWRBFFileSystemDirEntry extends DWFileSystemDirEntry
 		 return DWUtils.pretty3ByteDate(this.fd.getDateCreated());
 	}
 
+	// the RBF cache shares it from here on, FD included
+	void setReadOnly()
+	{
+		this.readonly = true;
+		
+		if (this.fd != null)
+			this.fd.setReadOnly();
+	}
+
+	private void checkWritable()
+	{
+		if (this.readonly)
+			throw new UnsupportedOperationException("RBF directory entry is shared by the filesystem cache and read only");
+	}
+
 }
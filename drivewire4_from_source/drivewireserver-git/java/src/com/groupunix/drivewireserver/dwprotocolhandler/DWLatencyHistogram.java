@@ -0,0 +1,129 @@
+package com.groupunix.drivewireserver.dwprotocolhandler;
+
+public class DWLatencyHistogram
+{
+	// HDR style buckets in microseconds: exact below 8us, then 8 linear steps per power of two,
+	// so any value reads back within 12.5%.  samples beyond ~33s (2^25 us) land in the last bucket.
+	// one writer (the protocol thread) and nothing allocated per sample, readers may see a sample half recorded.
+	private static final int SUB_BITS = 3;
+	private static final int SUB = 1 << SUB_BITS;
+	private static final int MAX_EXP = 24;
+
+	public static final int BUCKETS = ((MAX_EXP - SUB_BITS + 1) << SUB_BITS) + SUB;
+
+	private final long[] buckets = new long[BUCKETS];
+	private volatile long count = 0;
+	private volatile long total = 0;
+	private volatile long max = 0;
+
+
+	public void record(long nanos)
+	{
+		long us = nanos / 1000;
+
+		if (us < 0)
+			us = 0;
+
+		this.buckets[index(us)]++;
+		this.total += us;
+		this.count++;
+
+		if (us > this.max)
+			this.max = us;
+	}
+
+
+	public void reset()
+	{
+		for (int i = 0;i < BUCKETS;i++)
+			this.buckets[i] = 0;
+
+		this.count = 0;
+		this.total = 0;
+		this.max = 0;
+	}
+
+
+	private static int index(long us)
+	{
+		if (us < SUB)
+			return (int) us;
+
+		int e = 63 - Long.numberOfLeadingZeros(us);
+		int idx = ((e - SUB_BITS + 1) << SUB_BITS) + (int) ((us >> (e - SUB_BITS)) & (SUB - 1));
+
+		if (idx >= BUCKETS)
+			return BUCKETS - 1;
+
+		return idx;
+	}
+
+
+	// largest value that lands in bucket idx
+	private static long upperBound(int idx)
+	{
+		if (idx < SUB)
+			return idx;
+
+		int shift = (idx >> SUB_BITS) - 1;
+
+		return ((long) (SUB + (idx & (SUB - 1)) + 1) << shift) - 1;
+	}
+
+
+	public long getCount()
+	{
+		return this.count;
+	}
+
+	public long getTotal()
+	{
+		return this.total;
+	}
+
+	// microseconds
+	public long getMean()
+	{
+		long c = this.count;
+
+		if (c == 0)
+			return 0;
+
+		return this.total / c;
+	}
+
+	public long getMax()
+	{
+		return this.max;
+	}
+
+
+	// pth percentile in microseconds, p in tenths of a percent so 999 is p99.9
+	public long getPermille(int p)
+	{
+		long c = this.count;
+
+		if (c == 0)
+			return 0;
+
+		long want = (c * p + 999) / 1000;
+		long seen = 0;
+
+		for (int b = 0;b < BUCKETS;b++)
+		{
+			seen += this.buckets[b];
+
+			if (seen >= want)
+				return Math.min(upperBound(b), this.max);
+		}
+
+		return this.max;
+	}
+
+
+	public long getPercentile(int p)
+	{
+		return getPermille(p * 10);
+	}
+
+}
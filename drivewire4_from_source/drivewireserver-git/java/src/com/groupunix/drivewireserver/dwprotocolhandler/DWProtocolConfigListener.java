@@ -20,6 +20,12 @@ public class DWProtocolConfigListener implements ConfigurationListener
 	{
 		if (!event.isBeforeUpdate())
         {
+			// swap in a fresh snapshot before anyone hears about the change
+			if (this.dwProto instanceof DWProtocolHandler)
+			{
+				((DWProtocolHandler) this.dwProto).updateSettings();
+			}
+			
             if (event.getPropertyName() != null)
             {
             	if (event.getPropertyValue() == null)
@@ -2,6 +2,7 @@ package com.groupunix.drivewireserver.dwprotocolhandler;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 import com.groupunix.drivewireserver.dwexceptions.DWCommTimeOutException;
 
@@ -15,12 +16,22 @@ public interface DWProtocolDevice
 	public void shutdown();
 	public void comWrite(byte[] data, int len, boolean prefix);
 	public void comWrite1(int data, boolean prefix);
+	// writes are staged until flush(), or until the next read
+	public void flush();
 	public byte[] comRead(int len) throws IOException, DWCommTimeOutException; 
 	public int comRead1(boolean timeout) throws IOException, DWCommTimeOutException; 
+	
+	// fill exactly len bytes or throw, no per byte calls on the device
+	public void comReadInto(byte[] buf, int off, int len, boolean timeout) throws IOException, DWCommTimeOutException;
+	public void comReadInto(ByteBuffer buf, int len, boolean timeout) throws IOException, DWCommTimeOutException;
 	public int getRate();
 	public String getDeviceType();
 	public String getDeviceName();
 	public String getClient();
 	public InputStream getInputStream();
+	
+	// bytes read from and written to the link since the device was opened
+	public long getBytesIn();
+	public long getBytesOut();
 
 }
@@ -44,6 +44,8 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 	private int writeRetries = 0;
 	private int sectorsRead = 0;
 	private int sectorsWritten = 0;
+	private int readCRCErrors = 0;
+	private int writeCRCErrors = 0;
 	private byte lastOpcode = DWDefs.OP_RESET1;
 	private byte lastGetStat = (byte) 255;
 	private byte lastSetStat = (byte) 255;
@@ -75,6 +77,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 	
 	private int handlerno;
 	private HierarchicalConfiguration config;
+	private volatile DWProtocolSettings settings;
 	private Thread termT;
 	private DWVSerialPorts dwVSerialPorts;
 	
@@ -97,10 +100,19 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 	{
 		this.handlerno = handlerno;
 		this.config = hconf;
+		this.settings = new DWProtocolSettings(hconf);
 		
-		config.addConfigurationListener(new DWProtocolConfigListener(this));   
-		
-		
+		config.addConfigurationListener(new DWProtocolConfigListener(this));
+
+
+	}
+
+
+	// run on a device we didn't make, DeviceType is ignored
+	public DWProtocolHandler(int handlerno, HierarchicalConfiguration hconf, DWProtocolDevice protodev)
+	{
+		this(handlerno, hconf);
+		this.protodev = protodev;
 	}
 
 	
@@ -110,6 +122,18 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 	}
 	
 
+	public DWProtocolSettings getSettings()
+	{
+		return(this.settings);
+	}
+	
+	
+	public void updateSettings()
+	{
+		this.settings = new DWProtocolSettings(this.config);
+	}
+	
+
 	public void reset()
 	{
 		DoOP_RESET();
@@ -196,6 +220,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 
 		this.ready = true;
 		long optime = 0;
+		long opnanos = 0;
 		long optook = 0;
 		
 		logger.debug("handler #" + handlerno + " is ready");
@@ -250,6 +275,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 					
 					
 					optime = System.currentTimeMillis();
+					opnanos = System.nanoTime();
 					
 					this.inOp = true;
 					lastOpcode = (byte) opcodeint;
@@ -448,6 +474,12 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 					{
 						logger.warn("Invalid port # from CoCo in " + DWUtils.prettyOP(lastOpcode) + ": " + e.getMessage());
 					}
+					
+					// end of op, whole response goes out together
+					if (protodev != null)
+						protodev.flush();
+					
+					this.timers.recordOp(lastOpcode, System.nanoTime() - opnanos);
 		
 					this.inOp = false;
 					
@@ -455,7 +487,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 					
 					if (optook > DWDefs.SERVER_SLOW_OP)
 						logger.warn(DWUtils.prettyOP(lastOpcode) + " took " + optook +"ms.");
-					else if (config.getBoolean("LogTiming",false))
+					else if (settings.isLogTiming())
 						logger.debug(DWUtils.prettyOP(lastOpcode) + " took " + optook  +"ms, serial read delay was " + ((DWSerialDevice) this.protodev).getReadtime());
 				}
 				else
@@ -510,6 +542,11 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 				this.diskDrives.shutdown();
 			}
 			
+			if (this.rfmhandler != null)
+			{
+				this.rfmhandler.shutdown();
+			}
+			
 			if (this.termT != null)
 			{
 				termHandler.shutdown();
@@ -557,7 +594,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 		
 		int namesize = protodev.comRead1(true);
 		byte[] namebuf = new byte[namesize];
-		namebuf = protodev.comRead(namesize);
+		protodev.comReadInto(namebuf, 0, namesize, true);
 		String objname = new String(namebuf);
 		
 		
@@ -579,7 +616,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 		
 		protodev.comWrite1(result, false);
 		
-		if (config.getBoolean("LogOpCode", false))
+		if (settings.isLogOpCode())
 		{
 			long delay = System.currentTimeMillis() - starttime;
 			logger.info("DoOP_NAMEOBJ_MOUNT for '" + objname  + "' result: " + result + ", call took " + delay + "ms");
@@ -618,7 +655,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 			
 			dwVSerialPorts.serWrite(port,databyte);
 			
-			if (config.getBoolean("LogOpCode", false))
+			if (settings.isLogOpCode())
 			{
 				logger.info("DoOP_FASTSERWRITE to port " + port + ": " + databyte);
 			}
@@ -644,7 +681,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 	{
 		int drv_version;
 	
-		if (config.getBoolean("LogOpCode", false))
+		if (settings.isLogOpCode())
 		{
 			logger.info("DoOP_DWINIT");
 		}
@@ -704,7 +741,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 	
 	private void DoOP_NOP() 
 	{
-		if (config.getBoolean("LogOpCode", false))
+		if (settings.isLogOpCode())
 		{
 			logger.info("DoOP_NOP");
 		}
@@ -730,7 +767,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 
 	private void DoOP_TERM() 
 	{
-		if (config.getBoolean("LogOpCode", false))
+		if (settings.isLogOpCode())
 		{
 			logger.info("DoOP_TERM");
 		}
@@ -738,7 +775,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 	
 	private void DoOP_INIT() 
 	{
-		if (config.getBoolean("LogOpCode", false))
+		if (settings.isLogOpCode())
 		{
 			logger.info("DoOP_INIT");
 		}
@@ -755,6 +792,8 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 		writeRetries = 0;
 		sectorsRead = 0;
 		sectorsWritten = 0;
+		readCRCErrors = 0;
+		writeCRCErrors = 0;
 		lastOpcode = DWDefs.OP_RESET1;
 		lastGetStat = (byte) 255;
 		lastSetStat = (byte) 255;
@@ -768,7 +807,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 		// reset all ports
 		dwVSerialPorts.resetAllPorts();
 	
-		if (config.getBoolean("LogOpCode", false))
+		if (settings.isLogOpCode())
 		{
 			logger.info("DoOP_RESET");
 		}
@@ -779,22 +818,29 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 	
 	private void DoOP_WRITE(byte opcode) throws DWCommTimeOutException, IOException
 	{
+		// one snapshot for the whole op, config changes apply from the next op
+		DWProtocolSettings settings = this.settings;
+		
 		byte[] cocosum = new byte[2];
-		byte[] responsebuf = new byte[getConfig().getInt("DiskSectorSize", DWDefs.DISK_SECTORSIZE) + 6];
+		byte[] responsebuf = new byte[4];
 		byte response = 0;
-		byte[] sector = new byte[getConfig().getInt("DiskSectorSize", DWDefs.DISK_SECTORSIZE)];
+		byte[] sector = new byte[settings.getDiskSectorSize()];
+		long packetstart = System.nanoTime();
+		
+		// read rest of packet straight into place - drive # and 3 byte LSN, sector, checksum
+		protodev.comReadInto(responsebuf, 0, 4, true);
+		protodev.comReadInto(sector, 0, settings.getDiskSectorSize(), true);
+		protodev.comReadInto(cocosum, 0, 2, true);
 		
-		// read rest of packet
-		responsebuf = protodev.comRead(getConfig().getInt("DiskSectorSize", DWDefs.DISK_SECTORSIZE) + 6);
+		long lookupstart = System.nanoTime();
+		this.timers.recordLatency(DWDefs.TIMER_HIST_PACKET, lookupstart - packetstart);
 
 		lastDrive = responsebuf[0] & 0xff;
 		System.arraycopy( responsebuf, 1, lastLSN, 0, 3 );
-		System.arraycopy( responsebuf, 4, sector, 0, getConfig().getInt("DiskSectorSize", DWDefs.DISK_SECTORSIZE) );
-		System.arraycopy( responsebuf, getConfig().getInt("DiskSectorSize", DWDefs.DISK_SECTORSIZE) + 4, cocosum, 0, 2 );
 
 		
 		// Compute Checksum on sector received - NOTE: no V1 version checksum
-		lastChecksum = computeChecksum(sector, getConfig().getInt("DiskSectorSize", DWDefs.DISK_SECTORSIZE));
+		lastChecksum = computeChecksum(sector, settings.getDiskSectorSize());
 		
 		
 		// Compare checksums 
@@ -802,6 +848,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 		{
 			// checksums do not match, tell Coco
 			protodev.comWrite1(DWDefs.DWERROR_CRC, true);
+			writeCRCErrors++;
 			
 			logger.warn("DoOP_WRITE: Bad checksum, drive: " + lastDrive + " LSN: " + DWUtils.int3(lastLSN) + " CocoSum: " + DWUtils.int2(cocosum) + " ServerSum: " + lastChecksum);
 			
@@ -848,6 +895,8 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 			logger.warn(e6.getMessage());
 		} 
 		
+		this.timers.recordLatency(DWDefs.TIMER_HIST_LOOKUP, System.nanoTime() - lookupstart);
+		
 		// record error
 		if (response != DWDefs.DWOK)
 			lastError = response;
@@ -862,14 +911,14 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 		if (opcode == DWDefs.OP_REWRITE)
 		{
 			writeRetries++;
-			if (config.getBoolean("LogOpCode", false))
+			if (settings.isLogOpCode())
 			{
 				logger.warn("DoOP_REWRITE lastDrive: " + lastDrive + " LSN: " + DWUtils.int3(lastLSN));
 			}
 		}
 		else
 		{
-			if (config.getBoolean("LogOpCode", false))
+			if (settings.isLogOpCode())
 			{
 				logger.info("DoOP_WRITE lastDrive: " + lastDrive + " LSN: " + DWUtils.int3(lastLSN));
 			}
@@ -883,15 +932,23 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 	
 	private void DoOP_READ(int opcode) throws IOException, DWCommTimeOutException
 	{
+		// one snapshot for the whole op, config changes apply from the next op
+		DWProtocolSettings settings = this.settings;
+		
 		byte[] mysum = new byte[2];
 		byte[] responsebuf = new byte[4];
-		byte[] sector = new byte[getConfig().getInt("DiskSectorSize", DWDefs.DISK_SECTORSIZE)];
+		byte[] sector = new byte[settings.getDiskSectorSize()];
 		byte result = DWDefs.DWOK; 
+		long packetstart = System.nanoTime();
+		long lookupstart = packetstart;
 		
 		try 
 		{
 			// read rest of packet - drive # and 3 byte LSN
-			responsebuf = protodev.comRead(4);
+			protodev.comReadInto(responsebuf, 0, 4, true);
+			
+			lookupstart = System.nanoTime();
+			this.timers.recordLatency(DWDefs.TIMER_HIST_PACKET, lookupstart - packetstart);
 			
 			// store that..
 			lastDrive = responsebuf[0] & 0xff;
@@ -932,6 +989,9 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 			result = DWDefs.DWERROR_READ;
 		} 
 
+		long sendstart = System.nanoTime();
+		this.timers.recordLatency(DWDefs.TIMER_HIST_LOOKUP, sendstart - lookupstart);
+		
 		// send ultimate result to coco in a response byte
 		
 		protodev.comWrite1(result, true);
@@ -942,16 +1002,19 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 			// if our response was OK, next we send the sector data
 			
 			// write out response sector
-			protodev.comWrite(sector, getConfig().getInt("DiskSectorSize", DWDefs.DISK_SECTORSIZE), true);
+			protodev.comWrite(sector, settings.getDiskSectorSize(), true);
 			
 			// calc a checksum
-			lastChecksum = computeChecksum(sector, getConfig().getInt("DiskSectorSize", DWDefs.DISK_SECTORSIZE));
+			lastChecksum = computeChecksum(sector, settings.getDiskSectorSize());
 
 			mysum[0] = (byte) ((lastChecksum >> 8) & 0xFF);
 			mysum[1] = (byte) ((lastChecksum << 0) & 0xFF);
 			
 			// send checksum to coco
 			protodev.comWrite(mysum, 2, true);
+			protodev.flush();
+			
+			this.timers.recordLatency(DWDefs.TIMER_HIST_TRANSMIT, System.nanoTime() - sendstart);
 			
 			// we're done.. do housekeeping stuff
 			sectorsRead++;
@@ -963,7 +1026,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 			}
 			else
 			{
-				if (config.getBoolean("LogOpCode", false))
+				if (settings.isLogOpCode())
 				{
 					logger.info("DoOP_READ lastDrive: " + lastDrive + " LSN: " + DWUtils.int3(lastLSN));
 				}
@@ -977,17 +1040,25 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 	
 	private void DoOP_READEX(int opcode) throws IOException, DWCommTimeOutException
 	{
+		// one snapshot for the whole op, config changes apply from the next op
+		DWProtocolSettings settings = this.settings;
+		
 		byte[] cocosum = new byte[2];
 		byte[] mysum = new byte[2];
 		byte[] responsebuf = new byte[4];
-		byte[] sector = new byte[getConfig().getInt("DiskSectorSize", DWDefs.DISK_SECTORSIZE)];
+		byte[] sector = new byte[settings.getDiskSectorSize()];
 		byte result = DWDefs.DWOK; 
+		long packetstart = System.nanoTime();
+		long lookupstart = packetstart;
 		
 		try 
 		{
 			// read rest of packet
 			
-			responsebuf = protodev.comRead(4);
+			protodev.comReadInto(responsebuf, 0, 4, true);
+			
+			lookupstart = System.nanoTime();
+			this.timers.recordLatency(DWDefs.TIMER_HIST_PACKET, lookupstart - packetstart);
 			
 			lastDrive = responsebuf[0] & 0xff;
 			System.arraycopy( responsebuf, 1, lastLSN, 0, 3 );
@@ -1034,12 +1105,12 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 		
 				
 		// artificial delay test
-		if (config.containsKey("ReadDelay"))
+		if (settings.hasReadDelay())
 		{
 			try 
 			{
-				logger.debug("read delay " + config.getLong("ReadDelay") + " ms...");
-				Thread.sleep(config.getLong("ReadDelay"));
+				logger.debug("read delay " + settings.getReadDelay() + " ms...");
+				Thread.sleep(settings.getReadDelay());
 			} 
 			catch (InterruptedException e) 
 			{
@@ -1047,22 +1118,38 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 			}
 		}
 		
-		// write out response sector
-		protodev.comWrite(sector, getConfig().getInt("DiskSectorSize", DWDefs.DISK_SECTORSIZE), true);
+		long sendstart = System.nanoTime();
+		this.timers.recordLatency(DWDefs.TIMER_HIST_LOOKUP, sendstart - lookupstart);
 		
-		if (!config.getBoolean("ProtocolDisableReadChecksum",false))
+		// sum the sector while it's still hot, so nothing is left to do once the coco answers
+		if (!settings.isDisableReadChecksum())
 		{
-			// calc checksum
-			lastChecksum = computeChecksum(sector, getConfig().getInt("DiskSectorSize", DWDefs.DISK_SECTORSIZE));
+			lastChecksum = computeChecksum(sector, settings.getDiskSectorSize());
 
 			mysum[0] = (byte) ((lastChecksum >> 8) & 0xFF);
 			mysum[1] = (byte) ((lastChecksum << 0) & 0xFF);
+		}
+		
+		// write out response sector, coco answers with its checksum once it has it all
+		protodev.comWrite(sector, settings.getDiskSectorSize(), true);
+		protodev.flush();
 		
+		long sumstart = System.nanoTime();
+		this.timers.recordLatency(DWDefs.TIMER_HIST_TRANSMIT, sumstart - sendstart);
+		
+		// the coco is busy receiving, get LSN+1 on its way in case that's what it asks for next
+		if (result == DWDefs.DWOK)
+			diskDrives.prefetchNext(lastDrive);
+		
+		if (!settings.isDisableReadChecksum())
+		{
 			// 	logger.debug("looking for checksum " + mysum[0] + ":" + mysum[1]);
 		
-			cocosum  = protodev.comRead(2);
+			protodev.comReadInto(cocosum, 0, 2, true);
+			
+			this.timers.recordLatency(DWDefs.TIMER_HIST_ACK, System.nanoTime() - sumstart);
 			
-			if (((mysum[0] == cocosum[0]) && (mysum[1] == cocosum[1])) || config.getBoolean("ProtocolLieAboutCRC",false))
+			if (((mysum[0] == cocosum[0]) && (mysum[1] == cocosum[1])) || settings.isLieAboutCRC())
 			{
 				// Good checksum, all is well
 				sectorsRead++;
@@ -1074,7 +1161,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 				}
 				else
 				{
-					if (config.getBoolean("LogOpCode", false))
+					if (settings.isLogOpCode())
 					{
 						logger.info("DoOP_READEX lastDrive: " + lastDrive + " LSN: " + DWUtils.int3(lastLSN));
 					}
@@ -1086,6 +1173,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 				// 	sectorsRead++;  should we increment this?
 
 				result = DWDefs.DWERROR_CRC;
+				readCRCErrors++;
 			
 				if (opcode == DWDefs.OP_REREADEX)
 				{
@@ -1127,7 +1215,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 		
 		// get packet args
 		// drive # and stat
-		responsebuf = protodev.comRead(2);
+		protodev.comReadInto(responsebuf, 0, 2, true);
 		
 		lastDrive = responsebuf[0] & 0xff;
 		
@@ -1135,7 +1223,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 		if (opcode == DWDefs.OP_GETSTAT)
 		{
 			lastGetStat = responsebuf[1];
-			if (config.getBoolean("LogOpCode", false))
+			if (settings.isLogOpCode())
 			{
 				logger.info("DoOP_GETSTAT: " + DWUtils.prettySS(responsebuf[1]) + " lastDrive: " + lastDrive + " LSN: " + DWUtils.int3(lastLSN));
 			}
@@ -1143,7 +1231,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 		else
 		{
 			lastSetStat = responsebuf[1];
-			if (config.getBoolean("LogOpCode", false))
+			if (settings.isLogOpCode())
 			{
 				logger.info("DoOP_SETSTAT " + DWUtils.prettySS(responsebuf[1]) + " lastDrive: " + lastDrive + " LSN: " + DWUtils.int3(lastLSN));
 			}
@@ -1154,9 +1242,9 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 	{
 		byte[] responsebuf = new byte[6];
 		
-		responsebuf = protodev.comRead(6);
+		protodev.comReadInto(responsebuf, 0, 6, true);
 	
-		if (config.getBoolean("LogOpCode", false))
+		if (settings.isLogOpCode())
 		{
 			logger.info("DoOP_SETTIME data: " + DWUtils.byteArrayToHexString(responsebuf) );
 		}
@@ -1187,7 +1275,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 		}
 		
 		
-		if (config.getBoolean("LogOpCode", false))
+		if (settings.isLogOpCode())
 		{
 			logger.info("DoOP_TIME");
 		}
@@ -1204,7 +1292,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 			
 		protodev.comWrite(timers.getTimerBytes(tno), 4, true);
 		
-		if (config.getBoolean("LogOpCode", false))
+		if (settings.isLogOpCode())
 		{
 			logger.info("DoOP_TIMER # " + (tno & 0xff) + " val ~" + timers.getTimer(tno));
 		}
@@ -1219,7 +1307,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 			
 		timers.resetTimer(tno);
 		
-		if (config.getBoolean("LogOpCode", false))
+		if (settings.isLogOpCode())
 		{
 			logger.info("DoOP_RESET_TIMER # " + (tno & 0xff));
 		}
@@ -1238,7 +1326,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 		
 		// get packet args
 		// port # and stat
-		responsebuf = protodev.comRead(2);
+		protodev.comReadInto(responsebuf, 0, 2, true);
 		
 		
 		// Z
@@ -1255,7 +1343,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 		
 		//if (responsebuf[1] != 1)
 		{
-			if (config.getBoolean("LogOpCode", false))
+			if (settings.isLogOpCode())
 			{
 				logger.info("DoOP_SERGETSTAT: " + DWUtils.prettySS(responsebuf[1]) + " port: " + responsebuf[0] + "(" + dwVSerialPorts.prettyPort(responsebuf[0]) + ")");
 			}
@@ -1273,9 +1361,9 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 		{
 			// get packet args
 			// port # and stat
-			responsebuf = protodev.comRead(2);
+			protodev.comReadInto(responsebuf, 0, 2, true);
 			
-			if (config.getBoolean("LogOpCode", false))
+			if (settings.isLogOpCode())
 			{
 				logger.info("DoOP_SERSETSTAT: " + DWUtils.prettySS(responsebuf[1]) + " port: " + responsebuf[0] + "(" + dwVSerialPorts.prettyPort(responsebuf[0]) + ")");
 			}
@@ -1286,7 +1374,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 				// SS.ComSt
 				case 0x28:
 					byte[] devdescr = new byte[26];
-					devdescr = protodev.comRead(26);
+					protodev.comReadInto(devdescr, 0, 26, true);
 					
 					logger.debug("COMST on port " + responsebuf[0] + ": " + DWUtils.byteArrayToHexString(devdescr));
 					
@@ -1336,13 +1424,13 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 		
 		// get packet args
 		// port # (mode no longer sent)
-		responsebuf = protodev.comRead(1);
+		protodev.comReadInto(responsebuf, 0, 1, true);
 		
 		int portnum = responsebuf[0];
 		
 		//dwVSerialPorts.openPort(portnum);
 		
-		if (config.getBoolean("LogOpCode", false))
+		if (settings.isLogOpCode())
 		{
 			logger.info("DoOP_SERINIT for port " + dwVSerialPorts.prettyPort(portnum));
 		}
@@ -1360,7 +1448,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 	
 		//dwVSerialPorts.closePort(portnum);
 		
-		if (config.getBoolean("LogOpCode", false))
+		if (settings.isLogOpCode())
 		{
 			logger.info("DoOP_SERTERM for port " + portnum);
 		}
@@ -1377,7 +1465,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 		protodev.comWrite(result, 2, true);
 		
 		//if (result[0] != 0)
-		if (config.getBoolean("LogOpCodePolls", false))
+		if (settings.isLogOpCodePolls())
 		{
 			logger.info("DoOP_SERREAD response " + (int) (result[0] & 0xFF) + ":" + (int) (result[1] & 0xFF));
 		}
@@ -1388,11 +1476,11 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 		byte[] cmdpacket = new byte[2];
 				
 		try {
-			cmdpacket = protodev.comRead(2);
+			protodev.comReadInto(cmdpacket, 0, 2, true);
 			
 			dwVSerialPorts.serWrite(cmdpacket[0],cmdpacket[1]);
 			
-			if (config.getBoolean("LogOpCode", false))
+			if (settings.isLogOpCode())
 			{
 				logger.debug("DoOP_SERWRITE to port " + cmdpacket[0]);
 			}
@@ -1415,9 +1503,9 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 		byte[] data = new byte[256];
 		
 		try {
-			cmdpacket = protodev.comRead(2);
+			protodev.comReadInto(cmdpacket, 0, 2, true);
 			
-			if (config.getBoolean("LogOpCode", false))
+			if (settings.isLogOpCode())
 			{
 				logger.info("DoOP_SERREADM for " +  (cmdpacket[1] & 0xFF) + " bytes on port " + cmdpacket[0]);
 			}
@@ -1444,15 +1532,15 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 		byte[] cmdpacket = new byte[2];
 				
 		try {
-			cmdpacket = protodev.comRead(2);
+			protodev.comReadInto(cmdpacket, 0, 2, true);
 			
 			byte[] data = new byte[(0xff & cmdpacket[1])];
 		
-			data = protodev.comRead(0xff & cmdpacket[1]);
+			protodev.comReadInto(data, 0, 0xff & cmdpacket[1], true);
 			
 			dwVSerialPorts.serWriteM(cmdpacket[0],data);	
 			
-			if (config.getBoolean("LogOpCode", false))
+			if (settings.isLogOpCode())
 			{
 				logger.debug("DoOP_SERWRITEM to port " + cmdpacket[0] + ", " + (0xff & cmdpacket[1]) + " bytes");
 			}
@@ -1482,7 +1570,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 
 		tmpint = protodev.comRead1(true);
 		
-		if (config.getBoolean("LogOpCode", false))
+		if (settings.isLogOpCode())
 		{
 			logger.info("DoOP_PRINT: byte "+ tmpint);
 		}
@@ -1493,7 +1581,7 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 	
 	private void DoOP_PRINTFLUSH() 
 	{
-		if (config.getBoolean("LogOpCode", false))
+		if (settings.isLogOpCode())
 		{
 			logger.info("DoOP_PRINTFLUSH");
 		}
@@ -1548,6 +1636,16 @@ public class DWProtocolHandler implements Runnable, DWVSerialProtocol
 	}
 
 
+	public int getReadCRCErrors() {
+		return readCRCErrors;
+	}
+
+
+	public int getWriteCRCErrors() {
+		return writeCRCErrors;
+	}
+
+
 	public byte getLastOpcode() {
 		return lastOpcode;
 	}
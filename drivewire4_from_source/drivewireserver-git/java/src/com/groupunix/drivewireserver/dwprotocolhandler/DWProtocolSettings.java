@@ -0,0 +1,122 @@
+package com.groupunix.drivewireserver.dwprotocolhandler;
+
+import org.apache.commons.configuration.ConversionException;
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.log4j.Logger;
+
+import com.groupunix.drivewireserver.DWDefs;
+
+public final class DWProtocolSettings
+{
+	// immutable copy of the settings read on every op, rebuilt by DWProtocolConfigListener
+	private static final Logger logger = Logger.getLogger("DWServer.DWProtocolSettings");
+
+	private final int diskSectorSize;
+	private final boolean logOpCode;
+	private final boolean logOpCodePolls;
+	private final boolean logTiming;
+	private final boolean disableReadChecksum;
+	private final boolean lieAboutCRC;
+	private final long readDelay;
+
+
+	public DWProtocolSettings(HierarchicalConfiguration config)
+	{
+		this.diskSectorSize = getInt(config, "DiskSectorSize", DWDefs.DISK_SECTORSIZE);
+		this.logOpCode = getBoolean(config, "LogOpCode", false);
+		this.logOpCodePolls = getBoolean(config, "LogOpCodePolls", false);
+		this.logTiming = getBoolean(config, "LogTiming", false);
+		this.disableReadChecksum = getBoolean(config, "ProtocolDisableReadChecksum", false);
+		this.lieAboutCRC = getBoolean(config, "ProtocolLieAboutCRC", false);
+
+		// -1 means no delay configured
+		if (config.containsKey("ReadDelay"))
+			this.readDelay = getLong(config, "ReadDelay", -1);
+		else
+			this.readDelay = -1;
+	}
+
+
+	public int getDiskSectorSize()
+	{
+		return this.diskSectorSize;
+	}
+
+	public boolean isLogOpCode()
+	{
+		return this.logOpCode;
+	}
+
+	public boolean isLogOpCodePolls()
+	{
+		return this.logOpCodePolls;
+	}
+
+	public boolean isLogTiming()
+	{
+		return this.logTiming;
+	}
+
+	public boolean isDisableReadChecksum()
+	{
+		return this.disableReadChecksum;
+	}
+
+	public boolean isLieAboutCRC()
+	{
+		return this.lieAboutCRC;
+	}
+
+	public boolean hasReadDelay()
+	{
+		return (this.readDelay >= 0);
+	}
+
+	public long getReadDelay()
+	{
+		return this.readDelay;
+	}
+
+
+	// a bad value keeps the default rather than failing the config change that triggered the rebuild
+
+	private static int getInt(HierarchicalConfiguration config, String key, int def)
+	{
+		try
+		{
+			return config.getInt(key, def);
+		}
+		catch (ConversionException e)
+		{
+			logger.warn("Invalid value for " + key + ", using " + def);
+			return def;
+		}
+	}
+
+	private static long getLong(HierarchicalConfiguration config, String key, long def)
+	{
+		try
+		{
+			return config.getLong(key, def);
+		}
+		catch (ConversionException e)
+		{
+			logger.warn("Invalid value for " + key + ", using " + def);
+			return def;
+		}
+	}
+
+	private static boolean getBoolean(HierarchicalConfiguration config, String key, boolean def)
+	{
+		try
+		{
+			return config.getBoolean(key, def);
+		}
+		catch (ConversionException e)
+		{
+			logger.warn("Invalid value for " + key + ", using " + def);
+			return def;
+		}
+	}
+
+}
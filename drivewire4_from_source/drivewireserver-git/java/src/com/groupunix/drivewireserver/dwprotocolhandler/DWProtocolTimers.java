@@ -6,11 +6,52 @@ public class DWProtocolTimers
 {
 	
 	private long[] timers;
+	private DWLatencyHistogram[] histograms;
+	private DWLatencyHistogram[] ophistograms;
 	
 	public DWProtocolTimers()
 	{
 		this.timers = new long[256];
 		
+		// all up front, recording never allocates
+		this.histograms = new DWLatencyHistogram[DWDefs.TIMER_HISTS];
+		this.ophistograms = new DWLatencyHistogram[256];
+		
+		for (int i = 0;i < DWDefs.TIMER_HISTS;i++)
+			this.histograms[i] = new DWLatencyHistogram();
+		
+		for (int i = 0;i < 256;i++)
+			this.ophistograms[i] = new DWLatencyHistogram();
+	}
+	
+	
+	public void recordLatency(int hno, long nanos)
+	{
+		this.histograms[hno].record(nanos);
+	}
+	
+	public void recordOp(byte opcode, long nanos)
+	{
+		this.ophistograms[opcode & 0xff].record(nanos);
+	}
+	
+	public DWLatencyHistogram getHistogram(int hno)
+	{
+		return this.histograms[hno];
+	}
+	
+	public DWLatencyHistogram getOpHistogram(int opcode)
+	{
+		return this.ophistograms[opcode & 0xff];
+	}
+	
+	public void resetHistograms()
+	{
+		for (int i = 0;i < DWDefs.TIMER_HISTS;i++)
+			this.histograms[i].reset();
+		
+		for (int i = 0;i < 256;i++)
+			this.ophistograms[i].reset();
 	}
 	
 	public void resetTimer(byte tno)
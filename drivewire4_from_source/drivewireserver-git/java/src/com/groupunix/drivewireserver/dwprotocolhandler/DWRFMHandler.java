@@ -40,6 +40,48 @@ public class DWRFMHandler
 		this.handlerno = handlerno;
 	}
 	
+	public void shutdown()
+	{
+		for (int i = 0;i < this.paths.length;i++)
+			closePath(i);
+	}
+	
+	
+	// each path buffers on its own, so before a path looks at its file the other paths on it push
+	// their buffered writes out, and after it writes they drop what they read ahead.
+	private void syncFile(int pathno, boolean wrote)
+	{
+		DWRFMPath p = this.paths[pathno];
+		
+		if ((p == null) || (p.getPathstr() == null))
+			return;
+		
+		for (int i = 0;i < this.paths.length;i++)
+		{
+			DWRFMPath q = this.paths[i];
+			
+			if ((i == pathno) || (q == null) || !q.isFileMode() || !p.getPathstr().equals(q.getPathstr()))
+				continue;
+			
+			if (wrote)
+				q.invalidate();
+			else
+				q.flush();
+		}
+	}
+	
+	
+	// a path number reused without a close still holds its file open
+	private void closePath(int pathno)
+	{
+		if (this.paths[pathno] != null)
+		{
+			this.paths[pathno].close();
+			this.paths[pathno] = null;
+		}
+	}
+	
+	
 	public void DoRFMOP(DWProtocolDevice protodev, int rfm_op)
 	{
 		switch (rfm_op)
@@ -137,6 +179,12 @@ public class DWRFMHandler
 			
 			logger.debug("SETSTT path " + pathno + " call " + call);
 			
+			// buffered writes go out before anything else changes on the file
+			if (this.paths[pathno] != null)
+				this.paths[pathno].flush();
+			
+			syncFile(pathno, false);
+			
 			switch (call)
 			{
 				case OS9Defs.SS_FD:
@@ -173,6 +221,8 @@ public class DWRFMHandler
 			int call = protodev.comRead1(true);
 			
 			logger.debug("GETSTT path " + pathno + " call " + call);
+			
+			syncFile(pathno, false);
 		
 			switch (call)
 			{
@@ -303,6 +353,8 @@ public class DWRFMHandler
 			this.paths[pathno].writeBytes(buf,maxbytes);
 			this.paths[pathno].incSeekpos(maxbytes);
 			
+			syncFile(pathno, true);
+			
 			logger.debug("writln on path " + pathno + " bytes: " + maxbytes);
 		} 
 		catch (IOException  e)
@@ -334,6 +386,8 @@ public class DWRFMHandler
 			
 			int maxbytes = DWUtils.int2(maxbytesb);
 			
+			syncFile(pathno, false);
+			
 			int availbytes = this.paths[pathno].getBytesAvail(maxbytes);
 
 			logger.debug("initial AB: " + availbytes);
@@ -402,6 +456,8 @@ public class DWRFMHandler
 			
 			int maxbytes = DWUtils.int2(maxbytesb);
 			
+			syncFile(pathno, false);
+			
 			int availbytes = this.paths[pathno].getBytesAvail(maxbytes);
 			
 			if (maxbytes > availbytes)
@@ -421,7 +477,8 @@ public class DWRFMHandler
 				protodev.comWrite(buf, maxbytes, false);
 				this.paths[pathno].incSeekpos(maxbytes);
 				
-				logger.debug("buf: " + DWUtils.byteArrayToHexString(buf));
+				if (logger.isDebugEnabled())
+					logger.debug("buf: " + DWUtils.byteArrayToHexString(buf));
 				
 			}
 			
@@ -517,6 +574,8 @@ public class DWRFMHandler
 			// send result
 			
 	
+			closePath(pathno);
+			
 			this.paths[pathno] = new DWRFMPath(this.handlerno, pathno);
 			this.paths[pathno].setPathstr(pathstr);
 			
@@ -565,6 +624,8 @@ public class DWRFMHandler
 			
 			// anything needed for dealing with multiple opens..
 			
+			closePath(pathno);
+			
 			this.paths[pathno] = new DWRFMPath(this.handlerno, pathno);
 			this.paths[pathno].setPathstr(pathstr);
 			
@@ -1,9 +1,10 @@
 package com.groupunix.drivewireserver.dwprotocolhandler;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 
 import org.apache.commons.vfs.FileObject;
@@ -13,6 +14,7 @@ import org.apache.commons.vfs.FileType;
 import org.apache.commons.vfs.VFS;
 import org.apache.log4j.Logger;
 
+import com.groupunix.drivewireserver.DWDefs;
 import com.groupunix.drivewireserver.DriveWireServer;
 import com.groupunix.drivewireserver.OS9Defs;
 
@@ -36,6 +38,21 @@ public class DWRFMPath
 
 	private ArrayList<DWRFMDirEntry> dirEntries = new ArrayList<DWRFMDirEntry>();
 	
+	// file mode i/o, one channel for the life of the path
+	private RandomAccessFile raf = null;
+	private FileChannel chan = null;
+	private boolean chanrw = false;
+	// -1 until first needed, kept up to date by our own writes, dropped when another path writes
+	private long length = -1;
+	
+	// read ahead window, valid from rastart for ra.limit() bytes
+	private ByteBuffer ra = null;
+	private long rastart = 0;
+	
+	// pending writes, contiguous from wbstart
+	private ByteBuffer wb = null;
+	private long wbstart = 0;
+	
 	public DWRFMPath(int handlerno, int pathno) throws FileSystemException
 	{
 		this.setPathno(pathno);
@@ -73,9 +90,13 @@ public class DWRFMPath
 	public void close()
 	{
 		logger.debug("closing path " + this.pathno + " to " + this.pathstr);
+		
+		closeChannel();
+		
 		try
 		{
-			fileobj.close();
+			if (fileobj != null)
+				fileobj.close();
 		} catch (FileSystemException e)
 		{
 			logger.warn("error closing file: " + e.getMessage());
@@ -209,11 +230,16 @@ public class DWRFMPath
 			// File mode
 			// return # bytes left in file from current seek pos, up to maxbytes
 	
-			File f = new File(this.localroot + this.pathstr);
-			if (f.exists())
+			try
 			{
+				if (!openChannel(false))
+				{
+					//TODO wrong!
+					return(0);
+				}
+				
 				// we only handle int sized files..
-				int tmpsize = (int)f.length() - this.seekpos;
+				int tmpsize = (int) (this.length - this.seekpos);
 			
 				// only 256 per call
 				if (tmpsize > 127)
@@ -226,11 +252,10 @@ public class DWRFMPath
 					return(maxbytes);
 				}
 				return(tmpsize);
-			
 			}
-			else
+			catch (IOException e)
 			{
-				//TODO wrong!
+				logger.warn("path " + this.pathno + ": " + e.getMessage());
 				return(0);
 			}
 		}
@@ -238,10 +263,8 @@ public class DWRFMPath
 
 	public byte[] getBytes(int availbytes)
 	{
-		// TODO very crappy !
-		// return byte array of next availbytes bytes from file, move seekpos
-		// TODO structure blindly assumes this will work.
-		// like above need to implement exceptions/error handling passed up to caller
+		// return byte array of next availbytes bytes from file, does not move seekpos
+		// TODO like above need to implement exceptions/error handling passed up to caller
 		
 		byte[] buf = new byte[availbytes];
 		
@@ -252,48 +275,29 @@ public class DWRFMPath
 		}
 		else
 		{
-			RandomAccessFile inFile = null;
-		
-			File f = new File(this.localroot + this.pathstr);
-			if (f.exists())
+			logger.debug("FILE: asked for "+ availbytes);
+			
+			try
 			{
-				logger.debug("FILE: asked for "+ availbytes);
-				
-				try
+				if (openChannel(false))
 				{
-					inFile = new RandomAccessFile(f, "r");
-				
-					inFile.seek(seekpos);
-				
-					//TODO what if we don't get buf.length??
-					//this.seekpos += 
-					inFile.read(buf);
-				
-				
-				
-				} 
-				catch (FileNotFoundException e)
-				{
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				} 
-				catch (IOException e)
-				{
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
-				finally
-				{
-					try
+					// outside the window, refill it from here
+					if ((this.seekpos < this.rastart) || (this.seekpos + availbytes > this.rastart + this.ra.limit()))
+						fillReadAhead(this.seekpos);
+					
+					int n = (int) Math.min(availbytes, this.rastart + this.ra.limit() - this.seekpos);
+					
+					if (n > 0)
 					{
-						inFile.close();
-					} 
-					catch (IOException e)
-					{
-						// TODO Auto-generated catch block
-						e.printStackTrace();
+						ByteBuffer src = this.ra.duplicate();
+						src.position((int) (this.seekpos - this.rastart));
+						src.get(buf, 0, n);
 					}
-				}	
+				}
+			}
+			catch (IOException e)
+			{
+				logger.warn("read on path " + this.pathno + ": " + e.getMessage());
 			}
 		}
 	
@@ -309,6 +313,8 @@ public class DWRFMPath
 
 	public void setFd(byte[] buf) throws FileSystemException
 	{
+		flush();
+		
 		DWRFMFD fd = new DWRFMFD(DriveWireServer.getHandler(this.handlerno).getConfig().getString("RFMRoot","/") + this.pathstr);
 		
 		fd.readFD();
@@ -325,6 +331,9 @@ public class DWRFMPath
 
 	public byte[] getFd(int size) throws FileSystemException
 	{
+		// FD size has to include anything still buffered
+		flush();
+		
 		byte[] b = new byte[size];
 		
 		DWRFMFD fd = new DWRFMFD(DriveWireServer.getHandler(this.handlerno).getConfig().getString("RFMRoot","/") + this.pathstr);
@@ -337,43 +346,180 @@ public class DWRFMPath
 
 	public void writeBytes(byte[] buf, int maxbytes)
 	{
-		// write to file
-		RandomAccessFile inFile = null;
-		
-		File f = new File(this.localroot + this.pathstr);
-		if (f.exists())
+		// write to file at seekpos, buffered until flush() or a non contiguous write
+		try
 		{
-			try
+			if (!openChannel(true))
 			{
-				inFile = new RandomAccessFile(f, "rw");
+				logger.error("write to non existent file");
+				return;
+			}
 			
-				inFile.seek(this.seekpos);
-				
-				//TODO what if we don't get buf.length??
-				//this.seekpos += 
-				inFile.write(buf);		
+			if ((this.wb.position() > 0) && ((this.seekpos != this.wbstart + this.wb.position()) || (buf.length > this.wb.remaining())))
+				flushWriteBehind();
 			
-			} 
-			catch (FileNotFoundException e)
+			if (this.wb.position() == 0)
+				this.wbstart = this.seekpos;
+			
+			if (buf.length > this.wb.remaining())
 			{
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			} 
-			catch (IOException e)
+				// too big to buffer, straight out
+				ByteBuffer src = ByteBuffer.wrap(buf);
+				long pos = this.seekpos;
+				
+				while (src.hasRemaining())
+					pos += this.chan.write(src, pos);
+			}
+			else
 			{
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				this.wb.put(buf);
 			}
 			
+			this.length = Math.max(this.length, (long) this.seekpos + buf.length);
 			
+			// anything we had read ahead over this range is stale
+			if ((this.seekpos < this.rastart + this.ra.limit()) && (this.seekpos + buf.length > this.rastart))
+				this.ra.limit(0);
 		}
-		else
+		catch (IOException e)
 		{
-			logger.error("write to non existent file");
+			logger.error("write on path " + this.pathno + ": " + e.getMessage());
 		}
 	}
 	
 	
+	// another path wrote this file, what we read ahead and the length may be stale
+	public void invalidate()
+	{
+		if (this.ra != null)
+			this.ra.limit(0);
+		
+		this.length = -1;
+	}
+	
+	
+	public boolean isFileMode()
+	{
+		return (!this.dirmode && (this.chan != null));
+	}
+	
+	
+	// push buffered writes to the file
+	public void flush()
+	{
+		try
+		{
+			flushWriteBehind();
+		}
+		catch (IOException e)
+		{
+			logger.error("flush on path " + this.pathno + ": " + e.getMessage());
+		}
+	}
+	
+	
+	private void flushWriteBehind() throws IOException
+	{
+		if ((this.wb == null) || (this.wb.position() == 0))
+			return;
+		
+		this.wb.flip();
+		
+		long pos = this.wbstart;
+		
+		while (this.wb.hasRemaining())
+			pos += this.chan.write(this.wb, pos);
+		
+		this.wb.clear();
+	}
+	
+	
+	private void fillReadAhead(long pos) throws IOException
+	{
+		// reads have to see our own writes
+		flushWriteBehind();
+		
+		this.ra.clear();
+		this.rastart = pos;
+		
+		while (this.ra.hasRemaining())
+		{
+			if (this.chan.read(this.ra, pos + this.ra.position()) < 0)
+				break;
+		}
+		
+		this.ra.flip();
+	}
+	
+	
+	// open the channel on first use, reopening read/write if a write needs it.
+	// false if the file is not there.
+	private boolean openChannel(boolean rw) throws IOException
+	{
+		if ((this.chan != null) && (this.chanrw || !rw))
+		{
+			if (this.length < 0)
+				this.length = Math.max(this.chan.size(), this.wbstart + this.wb.position());
+			
+			return(true);
+		}
+		
+		File f = new File(this.localroot + this.pathstr);
+		
+		if (!f.exists())
+			return(false);
+		
+		if (this.chan != null)
+		{
+			flushWriteBehind();
+			this.raf.close();
+		}
+		
+		// read only files still get a channel
+		this.chanrw = rw || f.canWrite();
+		this.raf = new RandomAccessFile(f, this.chanrw ? "rw" : "r");
+		this.chan = this.raf.getChannel();
+		this.length = this.chan.size();
+		
+		if (this.ra == null)
+		{
+			this.ra = ByteBuffer.allocate(DWDefs.RFM_READAHEAD_SIZE);
+			this.ra.limit(0);
+			this.wb = ByteBuffer.allocate(DWDefs.RFM_WRITEBEHIND_SIZE);
+		}
+		
+		return(true);
+	}
+	
+	
+	private void closeChannel()
+	{
+		if (this.chan == null)
+			return;
+		
+		try
+		{
+			flushWriteBehind();
+		}
+		catch (IOException e)
+		{
+			logger.error("flush on path " + this.pathno + ": " + e.getMessage());
+		}
+		
+		try
+		{
+			this.raf.close();
+		}
+		catch (IOException e)
+		{
+			logger.warn("error closing file: " + e.getMessage());
+		}
+		
+		this.raf = null;
+		this.chan = null;
+	}
+	
+	
 	public DWRFMDirEntry getNextDirEntry() throws FileSystemException
 	{
 		if (this.dirmode)
@@ -9,9 +9,8 @@ import gnu.io.UnsupportedCommOperationException;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.TooManyListenersException;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 
@@ -34,9 +33,15 @@ public class DWSerialDevice implements DWProtocolDevice
 	private byte[] prefix;
 	private long readtime;
 
-	private ArrayBlockingQueue<Byte> queue;
-
 	private DWSerialReader evtlistener;
+	
+	// response bytes waiting for flush()
+	private byte[] outbuf = new byte[DWDefs.COM_WRITE_BUFFER_SIZE];
+	private int outlen = 0;
+	
+	// protocol thread reads, writes are synchronized
+	private volatile long bytesin = 0;
+	private volatile long bytesout = 0;
 
 	private boolean ProtocolFlipOutputBits;
 
@@ -165,9 +170,7 @@ public class DWSerialDevice implements DWProtocolDevice
 				this.serialPort.removeEventListener();
 			}
 			
-			this.queue = new ArrayBlockingQueue<Byte>(512);
-			
-			this.evtlistener = new DWSerialReader(serialPort.getInputStream(), queue);
+			this.evtlistener = new DWSerialReader(serialPort.getInputStream(), DWDefs.COM_READ_BUFFER_SIZE);
 			
 			serialPort.addEventListener(this.evtlistener);
             serialPort.notifyOnDataAvailable(true);
@@ -312,57 +315,39 @@ public class DWSerialDevice implements DWProtocolDevice
 
 	
 	
-	public void comWrite(byte[] data, int len, boolean pfix)
+	public synchronized void comWrite(byte[] data, int len, boolean pfix)
 	{	
-		try 
+		boolean flip = this.ProtocolFlipOutputBits || this.DATurboMode;
+		
+		if (this.WriteByteDelay > 0)
 		{
-			if (this.ProtocolFlipOutputBits || this.DATurboMode) 
-				data = DWUtils.reverseByteArray(data);
-				
-			
-			if (this.WriteByteDelay > 0)
+			// paced output goes out a byte at a time, nothing is staged.
+			// comWrite1 flips too, and these have always gone out flipped twice
+			for (int i = 0;i< len;i++)
 			{
-				for (int i = 0;i< len;i++)
-				{
-					comWrite1(data[i],pfix);
-				}
+				comWrite1(flip ? DWUtils.reverseByte(data[i]) : data[i],pfix);
 			}
-			else
+			
+			return;
+		}
+		
+		if (pfix && (this.ProtocolResponsePrefix || this.DATurboMode))
+			stage(this.prefix, this.prefix.length, false);
+		
+		stage(data, len, flip);
+		
+		// extreme cases only
+		
+		if (bytelog)
+		{
+			String tmps = new String();
+			
+			for (int i = 0;i< len;i++)
 			{
-				if (pfix && (this.ProtocolResponsePrefix || this.DATurboMode))
-				{
-					byte[] out = new byte[this.prefix.length + len];
-					System.arraycopy(this.prefix, 0, out, 0, this.prefix.length);
-					System.arraycopy(data, 0, out, this.prefix.length, len);
-					
-					serialPort.getOutputStream().write(out);
-				}
-				else
-				{
-					serialPort.getOutputStream().write(data, 0, len);
-				}
-				
-				
-				// extreme cases only
-				
-				if (bytelog)
-				{
-					String tmps = new String();
-					
-					for (int i = 0;i< len;i++)
-					{
-						tmps += " " + (int)(data[i] & 0xFF);
-					}
-					
-					logger.debug("WRITE " + len + ":" + tmps);
-					
-				}
+				tmps += " " + (int)(data[i] & 0xFF);
 			}
-		} 
-		catch (IOException e) 
-		{
-			// problem with comm port, bail out
-			logger.error(e.getMessage());
+			
+			logger.debug("WRITE " + len + ":" + tmps);
 			
 		}
 	}	
@@ -370,50 +355,91 @@ public class DWSerialDevice implements DWProtocolDevice
 	
 
 
-	public void comWrite1(int data, boolean pfix)
+	public synchronized void comWrite1(int data, boolean pfix)
 	{
-		
-		
-		try 
+		if (this.ProtocolFlipOutputBits || this.DATurboMode) 
+			data = DWUtils.reverseByte(data);
+			
+		if (this.WriteByteDelay > 0)
 		{
-			if (this.ProtocolFlipOutputBits || this.DATurboMode) 
-				data = DWUtils.reverseByte(data);
-				
-			if (this.WriteByteDelay > 0)
+			flush();
+			
+			try
 			{
-				try
-				{
-					Thread.sleep(this.WriteByteDelay);
-				} 
-				catch (InterruptedException e)
-				{
-					logger.warn("interrupted during writebytedelay");
-				}
+				Thread.sleep(this.WriteByteDelay);
+			} 
+			catch (InterruptedException e)
+			{
+				logger.warn("interrupted during writebytedelay");
 			}
+		}
+		
+		if (this.outlen + this.prefix.length + 1 > this.outbuf.length)
+			flush();
+		
+		if (pfix && (this.ProtocolResponsePrefix || this.DATurboMode))
+		{
+			System.arraycopy(this.prefix, 0, this.outbuf, this.outlen, this.prefix.length);
+			this.outlen += this.prefix.length;
+		}
+		
+		this.outbuf[this.outlen++] = (byte) data;
+		
+		if (bytelog)
+			logger.debug("WRITE1: " + (0xFF & data));
+		
+		if (this.WriteByteDelay > 0)
+			flush();
+	}
+	
+	
+	private void stage(byte[] data, int len, boolean flip)
+	{
+		int off = 0;
+		
+		while (off < len)
+		{
+			if (this.outlen == this.outbuf.length)
+				flush();
 			
-			if (pfix && (this.ProtocolResponsePrefix || this.DATurboMode))
+			int n = Math.min(len - off, this.outbuf.length - this.outlen);
+			
+			if (flip)
 			{
-				byte[] out = new byte[this.prefix.length + 1];
-				out[out.length - 1] = (byte)data;
-				System.arraycopy(this.prefix, 0, out, 0, this.prefix.length);
-				
-				serialPort.getOutputStream().write(out);
+				for (int i = 0;i < n;i++)
+					this.outbuf[this.outlen + i] = DWUtils.reverseByte(data[off + i]);
 			}
 			else
 			{
-				serialPort.getOutputStream().write((byte) data);
+				System.arraycopy(data, off, this.outbuf, this.outlen, n);
 			}
 			
-			if (bytelog)
-				logger.debug("WRITE1: " + (0xFF & data));
-			
+			this.outlen += n;
+			off += n;
+		}
+	}
+	
+	
+	public synchronized void flush()
+	{
+		if ((this.outlen == 0) || (this.serialPort == null))
+		{
+			this.outlen = 0;
+			return;
+		}
+		
+		try 
+		{
+			serialPort.getOutputStream().write(this.outbuf, 0, this.outlen);
+			this.bytesout += this.outlen;
 		} 
 		catch (IOException e) 
 		{
 			// problem with comm port, bail out
 			logger.error(e.getMessage());
-			
 		}
+		
+		this.outlen = 0;
 	}
 	
 	
@@ -422,24 +448,77 @@ public class DWSerialDevice implements DWProtocolDevice
 	{
 		byte[] buf = new byte[len];
 		
-		for (int i = 0;i<len;i++)
+		comReadInto(buf, 0, len, true);
+		
+		return(buf);
+	}
+	
+	
+	public void comReadInto(ByteBuffer buf, int len, boolean timeout) throws IOException, DWCommTimeOutException 
+	{
+		if (buf.hasArray())
 		{
-			buf[i] = (byte) comRead1(true, false);
+			comReadInto(buf.array(), buf.arrayOffset() + buf.position(), len, timeout);
+			buf.position(buf.position() + len);
+		}
+		else
+		{
+			byte[] tmp = new byte[len];
+			comReadInto(tmp, 0, len, timeout);
+			buf.put(tmp);
+		}
+	}
+	
+	
+	public void comReadInto(byte[] buf, int off, int len, boolean timeout) throws IOException, DWCommTimeOutException 
+	{
+		int got = 0;
+		
+		// the other end won't answer what it hasn't seen
+		flush();
+		
+		try
+		{
+			while (got < len)
+			{
+				if (this.serialPort == null)
+					throw new IOException("Serial device closed during read");
+				
+				long starttime = System.currentTimeMillis();
+				int n = this.evtlistener.read(buf, off + got, len - got, this.ReadByteWait);
+				this.readtime += System.currentTimeMillis() - starttime;
+				
+				if (n > 0)
+					got += n;
+				else if (timeout)
+					throw (new DWCommTimeOutException("No data in " + this.ReadByteWait + " ms"));
+			}
+		} 
+		catch (InterruptedException e)
+		{
+			logger.debug("interrupted in serial read");
+			throw new IOException("Interrupted during serial read");
+		}
+		
+		this.bytesin += len;
+		
+		if (this.xorinput)
+		{
+			for (int i = off;i < off + len;i++)
+				buf[i] = (byte) (buf[i] ^ 0xFF);
 		}
 		
 		if (this.bytelog)
 		{
 			String tmps = new String();
 			
-			for (int i = 0;i< buf.length;i++)
+			for (int i = off;i < off + len;i++)
 			{
 				tmps += " " + (int)(buf[i] & 0xFF);
 			}
 		
 			logger.debug("READ " + len + ": " + tmps);
 		}
-		
-		return(buf);
 	}
 	
 	
@@ -454,17 +533,17 @@ public class DWSerialDevice implements DWProtocolDevice
 		
 		int res = -1;
 		
+		flush();
+		
 		try
 		{
 			while ((res == -1) && (this.serialPort != null)) 
 			{
 				long starttime = System.currentTimeMillis();
-				Byte read = queue.poll(this.ReadByteWait, TimeUnit.MILLISECONDS);
+				res = this.evtlistener.read(this.ReadByteWait);
 				this.readtime += System.currentTimeMillis() - starttime;
 				
-				if (read != null)
-					res = 0xFF & read;
-				else if (timeout)
+				if ((res == -1) && timeout)
 				{
 					throw (new DWCommTimeOutException("No data in " + this.ReadByteWait + " ms"));
 				}
@@ -476,7 +555,10 @@ public class DWSerialDevice implements DWProtocolDevice
 			logger.debug("interrupted in serial read");
 		}
 		
-		if (this.xorinput )
+		if (res != -1)
+			this.bytesin++;
+		
+		if (this.xorinput && (res != -1))
 			res = res ^ 0xFF;
 		
 		if (blog && this.bytelog)
@@ -534,6 +616,12 @@ public class DWSerialDevice implements DWProtocolDevice
 	}
 
 
+	public DWSerialReader getSerialReader()
+	{
+		return this.evtlistener;
+	}
+
+
 	@Override
 	public String getClient() 
 	{
@@ -546,30 +634,57 @@ public class DWSerialDevice implements DWProtocolDevice
 	{
 		 return new InputStream() 
 		 {
-             private boolean endReached = false;
-
          	@Override
              public int read() throws IOException 
              {
-                 try {
-                     if (endReached)
-                         return -1;
-                         
-                     Byte value = queue.take();
-                     if (value == null) 
-                     {
-                    	
-                         throw new IOException(
-                                 "Timeout while reading from the queue-based input stream");
-                     }
-
-                     endReached = (value.intValue() == -1);
-                     return value;
-                 } catch (InterruptedException ie) {
-                     throw new IOException(
-                             "Interruption occurred while writing in the queue");
+                 try 
+                 {
+                	 return evtlistener.read(0);
+                 } 
+                 catch (InterruptedException ie) 
+                 {
+                     throw new IOException("Interruption occurred while reading from the serial buffer");
                  }
              }
+         	
+         	@Override
+         	public int read(byte[] b, int off, int len) throws IOException 
+         	{
+         		try 
+         		{
+         			int n = evtlistener.read(b, off, len, 0);
+         			
+         			// nothing after a blocking wait means the reader was shut down
+         			if ((n == 0) && (len > 0))
+         				return -1;
+         			
+         			return n;
+         		} 
+         		catch (InterruptedException ie) 
+         		{
+         			throw new IOException("Interruption occurred while reading from the serial buffer");
+         		}
+         	}
+         	
+         	@Override
+         	public int available()
+         	{
+         		return evtlistener.available();
+         	}
          };
 	}
+
+
+
+	public long getBytesIn()
+	{
+		return this.bytesin;
+	}
+
+
+	public long getBytesOut()
+	{
+		return this.bytesout;
+	}
+
 }
@@ -5,45 +5,236 @@ import gnu.io.SerialPortEventListener;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
 
 public class DWSerialReader implements SerialPortEventListener
 {
-	private ArrayBlockingQueue<Byte> queue;
+	private static final Logger logger = Logger.getLogger("DWServer.DWSerialReader");
+
+	// busy wait this many times before parking the reading thread
+	private static final int SPIN_TRIES = 2000;
+
+	// single producer (serialEvent) / single consumer (protocol handler) ring, no locks.
+	// head and tail only ever grow, the slot is the low bits
+	private final byte[] ring;
+	private final int mask;
+	private volatile long head = 0;
+	private volatile long tail = 0;
+	private volatile Thread waiter = null;
+
+	// written by the producer only
+	private volatile long overflows = 0;
+	private volatile int highwater = 0;
+	private volatile long received = 0;
+
+	// written by the consumer only
+	private volatile long parks = 0;
+
 	private InputStream in;
-	private boolean wanttodie = false;
-	
-	public DWSerialReader(InputStream in, ArrayBlockingQueue<Byte> q)
+	private byte[] inbuf;
+	private volatile boolean wanttodie = false;
+
+	public DWSerialReader(InputStream in, int size)
 	{
-		this.queue = q;
+		// round up to a power of 2
+		int cap = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+
+		this.ring = new byte[cap];
+		this.mask = cap - 1;
+		this.inbuf = new byte[cap];
 		this.in = in;
 	}
 
 	@Override
 	public void serialEvent(SerialPortEvent arg0)
 	{
-		 int data;
-         
+		 int avail;
+		 int len;
+
          try
          {
-             while (!wanttodie && ( data = in.read()) > -1 )
+        	 // take whatever the driver has in one go
+             while (!wanttodie && ((avail = in.available()) > 0))
              {
-                 queue.add((byte) data);
+                 len = in.read(inbuf, 0, Math.min(avail, inbuf.length));
+
+                 if (len <= 0)
+                	 break;
+
+                 put(inbuf, len);
              }
-             
+
          }
          catch ( IOException e )
          {
-             e.printStackTrace(); 
-         }     
+             e.printStackTrace();
+         }
+	}
+
+
+	private void put(byte[] buf, int len)
+	{
+		long t = this.tail;
+		int free = this.ring.length - (int) (t - this.head);
+		int n = Math.min(len, free);
+
+		if (n < len)
+		{
+			// consumer is not keeping up, drop the rest
+			this.overflows += len - n;
+			logger.warn("serial input overflow, dropped " + (len - n) + " bytes");
+		}
+
+		if (n > 0)
+		{
+			int slot = (int) t & this.mask;
+			int first = Math.min(n, this.ring.length - slot);
+
+			System.arraycopy(buf, 0, this.ring, slot, first);
+			System.arraycopy(buf, first, this.ring, 0, n - first);
+
+			// publish
+			this.tail = t + n;
+			this.received += n;
+
+			int used = (int) (t + n - this.head);
+			if (used > this.highwater)
+				this.highwater = used;
+		}
+
+		Thread w = this.waiter;
+		if (w != null)
+			LockSupport.unpark(w);
+	}
+
+
+	// returns next byte, or -1 if nothing arrived within wait ms (0 waits forever)
+	public int read(long wait) throws InterruptedException
+	{
+		if (!waitFor(wait))
+			return -1;
+
+		long h = this.head;
+		int res = this.ring[(int) h & this.mask] & 0xFF;
+		this.head = h + 1;
+
+		return res;
+	}
+
+
+	// drains up to len available bytes, waiting up to wait ms for the first one
+	public int read(byte[] buf, int off, int len, long wait) throws InterruptedException
+	{
+		if ((len == 0) || !waitFor(wait))
+			return 0;
+
+		long h = this.head;
+		int n = (int) Math.min(len, this.tail - h);
+		int slot = (int) h & this.mask;
+		int first = Math.min(n, this.ring.length - slot);
+
+		System.arraycopy(this.ring, slot, buf, off, first);
+		System.arraycopy(this.ring, 0, buf, off + first, n - first);
+
+		this.head = h + n;
+
+		return n;
 	}
 
+
+	private boolean waitFor(long wait) throws InterruptedException
+	{
+		if (this.tail != this.head)
+			return true;
+
+		for (int i = 0;i < SPIN_TRIES;i++)
+		{
+			Thread.onSpinWait();
+
+			if (this.tail != this.head)
+				return true;
+		}
+
+		long deadline = System.nanoTime() + wait * 1000000L;
+
+		this.waiter = Thread.currentThread();
+
+		try
+		{
+			// recheck after publishing ourselves as waiter so a put in between is not missed
+			while ((this.tail == this.head) && !this.wanttodie)
+			{
+				if (Thread.interrupted())
+					throw new InterruptedException();
+
+				this.parks++;
+
+				if (wait == 0)
+				{
+					LockSupport.park(this);
+				}
+				else
+				{
+					long left = deadline - System.nanoTime();
+
+					if (left <= 0)
+						return false;
+
+					LockSupport.parkNanos(this, left);
+				}
+			}
+		}
+		finally
+		{
+			this.waiter = null;
+		}
+
+		return (this.tail != this.head);
+	}
+
+
+	public int available()
+	{
+		return (int) (this.tail - this.head);
+	}
+
+	public int getCapacity()
+	{
+		return this.ring.length;
+	}
+
+	public long getOverflows()
+	{
+		return this.overflows;
+	}
+
+	public int getHighWater()
+	{
+		return this.highwater;
+	}
+
+	public long getReceived()
+	{
+		return this.received;
+	}
+
+	public long getParks()
+	{
+		return this.parks;
+	}
+
+
 	public void shutdown()
 	{
 		this.wanttodie = true;
-		
+
+		Thread w = this.waiter;
+		if (w != null)
+			LockSupport.unpark(w);
 	}
 
-	
+
 
 }
@@ -1,11 +1,14 @@
 package com.groupunix.drivewireserver.dwprotocolhandler;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 
 import org.apache.log4j.Logger;
 
+import com.groupunix.drivewireserver.DWDefs;
 import com.groupunix.drivewireserver.DriveWireServer;
 
 
@@ -16,8 +19,11 @@ public class DWTCPClientDevice implements DWProtocolDevice {
 	private String tcphost;
 	private int handlerno;
 	private Socket sock;
+	private BufferedOutputStream out;
 
 	private boolean bytelog = false;
+	private volatile long bytesin = 0;
+	private volatile long bytesout = 0;
 	
 	public DWTCPClientDevice(int handlerno, String tcphost, int tcpport) throws IOException 
 	{
@@ -32,6 +38,10 @@ public class DWTCPClientDevice implements DWProtocolDevice {
 		// check for listen address
 			
 		sock = new Socket(this.tcphost, this.tcpport);
+		sock.setTcpNoDelay(true);
+		
+		// responses are staged here until flush()
+		out = new BufferedOutputStream(sock.getOutputStream(), DWDefs.COM_WRITE_BUFFER_SIZE);
 	
 	
 
@@ -64,20 +74,55 @@ public class DWTCPClientDevice implements DWProtocolDevice {
 
 		byte[] buf = new byte[len];
 		
-		for (int i = 0;i<len;i++)
-		{
-			buf[i] = (byte) comRead1(true);
-		}
+		comReadInto(buf, 0, len, true);
 		
 		return(buf);
 
 	}
+	
+	
+	public void comReadInto(byte[] buf, int off, int len, boolean timeout) throws IOException 
+	{
+		int got = 0;
+		
+		// the other end won't answer what it hasn't seen
+		flush();
+		
+		while (got < len)
+		{
+			int n = sock.getInputStream().read(buf, off + got, len - got);
+			
+			if (n < 0)
+			{
+				logger.info("socket error reading device");
+				throw new IOException("Connection to " + this.tcphost + ":" + this.tcpport + " closed");
+			}
+			
+			got += n;
+		}
+		
+		this.bytesin += len;
+		
+		if (bytelog)
+			logger.debug("TCPREAD " + len + " bytes");
+	}
+	
+	
+	public void comReadInto(ByteBuffer buf, int len, boolean timeout) throws IOException 
+	{
+		byte[] tmp = new byte[len];
+		
+		comReadInto(tmp, 0, len, timeout);
+		buf.put(tmp);
+	}
 
 	
 	public int comRead1(boolean timeout) throws IOException  
 	{
 		int data = -1;
 		
+		flush();
+		
 			
 		try 
 		{
@@ -98,6 +143,8 @@ public class DWTCPClientDevice implements DWProtocolDevice {
 			return(-1);
 
 		}
+		
+		this.bytesin++;
 			
 		if (bytelog)
 			logger.debug("TCPREAD: " + data);
@@ -107,12 +154,13 @@ public class DWTCPClientDevice implements DWProtocolDevice {
 
 	
 	
-	public void comWrite(byte[] data, int len, boolean prefix) 
+	public synchronized void comWrite(byte[] data, int len, boolean prefix) 
 	{
 		try 
 		{
 				
-			sock.getOutputStream().write(data, 0, len);
+			out.write(data, 0, len);
+			this.bytesout += len;
 			
 			if (bytelog)
 			{
@@ -135,13 +183,14 @@ public class DWTCPClientDevice implements DWProtocolDevice {
 	}
 
 	
-	public void comWrite1(int data, boolean prefix) 
+	public synchronized void comWrite1(int data, boolean prefix) 
 	{
 		try 
 		{
 
 				
-			sock.getOutputStream().write((byte) data);
+			out.write((byte) data);
+			this.bytesout++;
 			
 			if (bytelog)
 				logger.debug("TCP-C-WRITE1: " + data);
@@ -157,6 +206,19 @@ public class DWTCPClientDevice implements DWProtocolDevice {
 	}
 
 
+	public synchronized void flush()
+	{
+		try 
+		{
+			out.flush();
+		} 
+		catch (IOException e) 
+		{
+			logger.error(e.getMessage());
+		}
+	}
+
+
 	public boolean connected() 
 	{
 		if (sock == null)
@@ -215,6 +277,18 @@ public class DWTCPClientDevice implements DWProtocolDevice {
 	}
 
 
+	public long getBytesIn()
+	{
+		return this.bytesin;
+	}
+
+
+	public long getBytesOut()
+	{
+		return this.bytesout;
+	}
+
+
 	
 
 
@@ -3,311 +3,592 @@ package com.groupunix.drivewireserver.dwprotocolhandler;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.net.SocketException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.log4j.Logger;
 
+import com.groupunix.drivewireserver.DWDefs;
 import com.groupunix.drivewireserver.DriveWireServer;
+import com.groupunix.drivewireserver.dwexceptions.DWCommTimeOutException;
 
 public class DWTCPDevice implements DWProtocolDevice {
 
 	private static final Logger logger = Logger.getLogger("DWServer.DWTCPDevice");
 	private int tcpport;
 	private int handlerno;
-	private ServerSocket srvr;
-	private Socket skt = null;
+	private ServerSocketChannel srvr;
+	private DWTCPDeviceSelector selector;
+	private volatile SocketChannel sktchan = null;
+	private SelectionKey sktkey = null;
+	private volatile boolean closed = false;
 	private boolean bytelog = false;
-	private String client = null;
-	private int totalBytesRead = 0; // Track total bytes read for diagnostic logging
-	
-	public DWTCPDevice(int handlerno, int tcpport) throws IOException 
+	private volatile String client = null;
+	private volatile long bytesin = 0;
+	private volatile long bytesout = 0;
+	// ms to wait for each byte of an op, like the serial device
+	private long readbytewait = 200;
+
+	// accepts and reads happen on the shared selector thread, the protocol thread waits on inready
+	private final ReentrantLock inlock = new ReentrantLock();
+	private final Condition inready = inlock.newCondition();
+	// flush() waits on this for the selector to see the socket writable again
+	private final Condition outready = inlock.newCondition();
+	private boolean outblocked = false;
+	// bytes read from the channel but not yet consumed, always left in fill mode
+	private ByteBuffer inbuf = ByteBuffer.allocate(DWDefs.COM_READ_BUFFER_SIZE);
+	// response bytes waiting for flush(), sent in one channel write
+	private ByteBuffer outbuf = ByteBuffer.allocateDirect(DWDefs.COM_WRITE_BUFFER_SIZE);
+
+	public DWTCPDevice(int handlerno, int tcpport) throws IOException
 	{
 		this.handlerno = handlerno;
 		this.tcpport = tcpport;
-		
+
 		bytelog = DriveWireServer.getHandler(this.handlerno).getConfig().getBoolean("LogDeviceBytes",false);
-		
+		readbytewait = DriveWireServer.getHandler(this.handlerno).getConfig().getLong("ReadByteWait", 200);
+
 		logger.debug("init tcp device server on port " + tcpport + " for handler #" + handlerno + " (logging bytes: " + bytelog + ")");
-		
+
+		srvr = ServerSocketChannel.open();
+		srvr.socket().setReuseAddress(true);
+
 		// check for listen address
-			
+
 		if (DriveWireServer.getHandler(this.handlerno).getConfig().containsKey("ListenAddress"))
 		{
-			srvr = new ServerSocket(this.tcpport, 0, InetAddress.getByName(DriveWireServer.getHandler(this.handlerno).getConfig().getString("ListenAddress")) );
+			srvr.socket().bind(new InetSocketAddress(InetAddress.getByName(DriveWireServer.getHandler(this.handlerno).getConfig().getString("ListenAddress")), this.tcpport), 0);
 		}
 		else
 		{
-			srvr = new ServerSocket(this.tcpport, 0);
+			srvr.socket().bind(new InetSocketAddress(this.tcpport), 0);
 		}
-		
-		// CRITICAL: Set initial timeout on ServerSocket to prevent blocking on first accept()
-		// This ensures the protocol handler loop can start immediately without waiting for a client
-		srvr.setSoTimeout(5000);
-		
-		logger.info("listening on port " + srvr.getLocalPort() + " (with 5-second accept timeout)");
-		
+
+		srvr.configureBlocking(false);
+
+		this.selector = DWTCPDeviceSelector.getSelector();
+		this.selector.addListener(srvr, this);
+
+		logger.info("listening on port " + srvr.socket().getLocalPort());
+
 	}
 
 
-	public void close() 
+	public void close()
 	{
 		logger.debug("closing tcp device in handler #" + this.handlerno);
-		
+
+		this.closed = true;
+
 		closeClient();
-		
-		try 
+
+		try
 		{
+			// closing the channel also drops it from the selector
 			srvr.close();
-		} 
-		catch (IOException e) 
+		}
+		catch (IOException e)
 		{
 			logger.debug(e.getMessage());
 		}
-		
+
 	}
 
-	
-	
-	private void closeClient() 
+
+
+	private void closeClient()
 	{
-		logger.debug("closing client connection");
-		
-		if ((skt != null) && (!skt.isClosed()))
+		inlock.lock();
+
+		try
 		{
-			try 
+			if (sktchan != null)
 			{
-				skt.close();
-			} 
-			catch (IOException e) 
+				logger.debug("closing client connection");
+
+				if (sktkey != null)
+					sktkey.cancel();
+
+				try
+				{
+					sktchan.close();
+				}
+				catch (IOException e)
+				{
+					logger.debug(e.getMessage());
+				}
+			}
+
+			client = null;
+			sktchan = null;
+			sktkey = null;
+			inbuf.clear();
+			outblocked = false;
+
+			inready.signalAll();
+			outready.signalAll();
+		}
+		finally
+		{
+			inlock.unlock();
+		}
+
+		// anything still staged is dropped by the next flush()
+	}
+
+
+	// called on the selector thread
+
+	boolean clientAccepted(SocketChannel chan, SelectionKey key)
+	{
+		inlock.lock();
+
+		try
+		{
+			if (this.closed || (this.sktchan != null))
+				return false;
+
+			this.sktchan = chan;
+			this.sktkey = key;
+			this.inbuf.clear();
+			// no reverse lookup here, it would stall every other device on the selector
+			this.client = chan.socket().getInetAddress().getHostAddress();
+
+			logger.info("New client connected from " + this.client);
+
+			inready.signalAll();
+
+			return true;
+		}
+		finally
+		{
+			inlock.unlock();
+		}
+	}
+
+
+	// the selector hit something unexpected on this client's key
+	void clientFailed(SelectionKey key)
+	{
+		inlock.lock();
+
+		try
+		{
+			if (key == this.sktkey)
+			{
+				closeClient();
+				return;
+			}
+		}
+		finally
+		{
+			inlock.unlock();
+		}
+
+		key.cancel();
+
+		try
+		{
+			key.channel().close();
+		}
+		catch (IOException e)
+		{
+			logger.debug(e.getMessage());
+		}
+	}
+
+
+	void channelReadable(SelectionKey key)
+	{
+		inlock.lock();
+
+		try
+		{
+			if (key != this.sktkey)
+				return;
+
+			int n = this.sktchan.read(inbuf);
+
+			if (n < 0)
 			{
-				logger.debug(e.getMessage());
+				// EOF - client disconnected
+				logger.info("Client disconnected (EOF), closing connection");
+				closeClient();
+				return;
 			}
+
+			// full, stop reading until the protocol thread catches up
+			if (!inbuf.hasRemaining())
+				key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+
+			if (n > 0)
+				inready.signalAll();
+		}
+		catch (IOException e)
+		{
+			logger.warn("IOException reading from TCP device: " + e.getMessage());
+			closeClient();
+		}
+		finally
+		{
+			inlock.unlock();
 		}
-		
-		client = null;
-		skt = null;
 	}
 
 
-	public byte[] comRead(int len) throws IOException 
+	void channelWritable(SelectionKey key)
 	{
+		inlock.lock();
 
-		byte[] buf = new byte[len];
-		
-		for (int i = 0;i<len;i++)
+		try
 		{
-			buf[i] = (byte) comRead1(true);
+			if (key != this.sktkey)
+				return;
+
+			key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+			outblocked = false;
+			outready.signalAll();
+		}
+		finally
+		{
+			inlock.unlock();
 		}
-		
+	}
+
+
+	// protocol thread side
+
+	public byte[] comRead(int len) throws IOException, DWCommTimeOutException
+	{
+
+		byte[] buf = new byte[len];
+
+		comReadInto(buf, 0, len, true);
+
 		return(buf);
 
 	}
 
-	
-	public int comRead1(boolean timeout) throws IOException 
+
+	public void comReadInto(byte[] buf, int off, int len, boolean timeout) throws IOException, DWCommTimeOutException
 	{
-		int data = -1;
-		
-		if (skt == null)
+		int got = 0;
+
+		// the other end won't answer what it hasn't seen
+		flush();
+
+		inlock.lock();
+
+		try
 		{
-			getClientConnection();
-			
-			if (skt == null)
+			while (got < len)
 			{
-				return -1;
+				if (!awaitData(false, timeout))
+					throw new IOException("Client disconnected during read");
+
+				inbuf.flip();
+
+				int n = Math.min(inbuf.remaining(), len - got);
+				inbuf.get(buf, off + got, n);
+				got += n;
+				bytesin += n;
+
+				consumed();
 			}
 		}
-		
-		if (skt != null)
+		finally
+		{
+			inlock.unlock();
+		}
+
+		if (bytelog)
 		{
-			// Check if socket is still connected
-			if (skt.isClosed() || !skt.isConnected())
+			String tmps = new String();
+
+			for (int i = off;i < off + len;i++)
 			{
-				logger.warn("Socket is closed or not connected, closing client");
-				closeClient();
-				// Try to get a new connection
-				if (skt == null)
-				{
-					getClientConnection();
-				}
+				tmps += " " + (buf[i] & 0xFF);
 			}
-			
-			if (skt != null)
+
+			logger.debug("TCPREAD " + len + " bytes:" + tmps);
+		}
+	}
+
+
+	public void comReadInto(ByteBuffer buf, int len, boolean timeout) throws IOException, DWCommTimeOutException
+	{
+		int got = 0;
+
+		flush();
+
+		inlock.lock();
+
+		try
+		{
+			while (got < len)
 			{
-				try 
-				{
-					data = skt.getInputStream().read();
-					
-					if (bytelog)
-						logger.debug("TCPREAD: " + data + " (0x" + Integer.toHexString(data) + ")");
-				} 
-				catch (IOException e) 
-				{
-					logger.warn("IOException reading from TCP device: " + e.getMessage());
-					closeClient();
-					return -1;
-				}
-				
-				if (data < 0)
-				{
-					// EOF - client disconnected
-					logger.info("Client disconnected (EOF), closing connection");
-					closeClient();
+				if (!awaitData(false, timeout))
+					throw new IOException("Client disconnected during read");
+
+				inbuf.flip();
+
+				int n = Math.min(inbuf.remaining(), len - got);
+
+				ByteBuffer src = inbuf.duplicate();
+				src.limit(src.position() + n);
+				buf.put(src);
+
+				inbuf.position(inbuf.position() + n);
+				got += n;
+				bytesin += n;
+
+				consumed();
+			}
+		}
+		finally
+		{
+			inlock.unlock();
+		}
+
+		if (bytelog)
+			logger.debug("TCPREAD " + len + " bytes");
+	}
+
+
+	public int comRead1(boolean timeout) throws IOException, DWCommTimeOutException
+	{
+		int data = -1;
+
+		flush();
+
+		inlock.lock();
+
+		try
+		{
+			// outside of an op we wait for the next client rather than give up
+			if (!awaitData(!timeout, timeout))
+			{
+				if (this.closed)
 					return -1;
-				}
+
+				throw new IOException("Client disconnected during read");
 			}
+
+			inbuf.flip();
+			data = inbuf.get() & 0xFF;
+			bytesin++;
+			consumed();
 		}
-		
+		finally
+		{
+			inlock.unlock();
+		}
+
+		if (bytelog)
+			logger.debug("TCPREAD: " + data + " (0x" + Integer.toHexString(data) + ")");
+
 		return data;
 	}
 
-	
-	
-	public void comWrite(byte[] data, int len, boolean prefix) 
+
+	// with inlock held, true once there is something in inbuf
+	private boolean awaitData(boolean anyclient, boolean timeout) throws IOException, DWCommTimeOutException
 	{
-		if ((skt != null) && (!skt.isClosed()) && skt.isConnected())
+		long nanos = TimeUnit.MILLISECONDS.toNanos(this.readbytewait);
+
+		while (inbuf.position() == 0)
 		{
-			try 
+			if (this.closed)
+				return false;
+
+			if ((this.sktchan == null) && !anyclient)
+				return false;
+
+			try
 			{
-				skt.getOutputStream().write(data, 0, len);
-				skt.getOutputStream().flush(); // Ensure data is sent immediately
-				
-				if (bytelog)
-				{
-					String tmps = new String();
-				
-					for (int i = 0;i< len;i++)
-					{
-						tmps += " " + (int)(data[i] & 0xFF);
-					}
-				
-					logger.debug("TCPWRITE " + len + " bytes:" + tmps);
-				}
+				if (!timeout)
+					inready.await();
+				else if (nanos > 0)
+					nanos = inready.awaitNanos(nanos);
 				else
-				{
-					logger.trace("TCPWRITE " + len + " bytes");
-				}
-			} 
-			catch (IOException e) 
+					throw (new DWCommTimeOutException("No data in " + this.readbytewait + " ms"));
+			}
+			catch (InterruptedException e)
 			{
-				logger.error("IOException writing to TCP device: " + e.getMessage());
-				closeClient();
+				throw new IOException("Interrupted during TCP read");
 			}
 		}
-		else
+
+		return true;
+	}
+
+
+	// with inlock held, back to fill mode and reading again if we had paused
+	private void consumed()
+	{
+		inbuf.compact();
+
+		if ((sktkey != null) && sktkey.isValid() && ((sktkey.interestOps() & SelectionKey.OP_READ) == 0))
 		{
-			logger.warn("Cannot write to TCP device: socket is null, closed, or not connected");
+			sktkey.interestOps(sktkey.interestOps() | SelectionKey.OP_READ);
+			selector.wakeup();
 		}
 	}
 
-	
-	public void comWrite1(int data, boolean prefix) 
+
+	public synchronized void comWrite(byte[] data, int len, boolean prefix)
 	{
-		if ((skt != null) && (!skt.isClosed()) && skt.isConnected())
+		if (sktchan != null)
 		{
-			try 
+			int off = 0;
+
+			while (off < len)
 			{
-				skt.getOutputStream().write((byte) data);
-				skt.getOutputStream().flush(); // Ensure data is sent immediately
-				
-				if (bytelog)
-					logger.debug("TCPWRITE1: " + data + " (0x" + Integer.toHexString(data) + ")");
-				else
-					logger.trace("TCPWRITE1: " + data + " (0x" + Integer.toHexString(data) + ")");
-			} 
-			catch (IOException e) 
+				if (!outbuf.hasRemaining())
+					flush();
+
+				int n = Math.min(len - off, outbuf.remaining());
+				outbuf.put(data, off, n);
+				off += n;
+			}
+
+			if (bytelog)
 			{
-				logger.error("IOException writing single byte to TCP device: " + e.getMessage());
-				closeClient();
+				String tmps = new String();
+
+				for (int i = 0;i< len;i++)
+				{
+					tmps += " " + (int)(data[i] & 0xFF);
+				}
+
+				logger.debug("TCPWRITE " + len + " bytes:" + tmps);
+			}
+			else
+			{
+				logger.trace("TCPWRITE " + len + " bytes");
 			}
 		}
 		else
 		{
-			logger.warn("Cannot write single byte to TCP device: socket is null, closed, or not connected");
+			logger.warn("Cannot write to TCP device: no client connected");
 		}
 	}
 
 
-	public boolean connected() 
+	public synchronized void comWrite1(int data, boolean prefix)
 	{
-		if (skt == null)
-			return false;
-		
-		return true;
-	}
+		if (sktchan != null)
+		{
+			if (!outbuf.hasRemaining())
+				flush();
 
+			outbuf.put((byte) data);
 
-	public void shutdown() 
-	{
-			
-		close();
+			if (bytelog)
+				logger.debug("TCPWRITE1: " + data + " (0x" + Integer.toHexString(data) + ")");
+			else
+				logger.trace("TCPWRITE1: " + data + " (0x" + Integer.toHexString(data) + ")");
+		}
+		else
+		{
+			logger.warn("Cannot write single byte to TCP device: no client connected");
+		}
 	}
 
-	private void getClientConnection()
+
+	public synchronized void flush()
 	{
-		// Only log once when first waiting for connection
-		if (skt == null) {
-			logger.debug("Waiting for client connection on port " + this.tcpport + "...");
-		}
-		
-		try 
-		{
-			// MANDATORY: Ensure 5-second timeout is set on accept() to prevent blocking protocol handler loop
-			// This is CRITICAL - without it, accept() blocks indefinitely and breaks connection flow
-			// The timeout is already set in constructor, but ensure it's still set (in case it was reset)
-			if (srvr.getSoTimeout() != 5000) {
-				srvr.setSoTimeout(5000);  // 5 seconds - REQUIRED
-			}
-			skt = srvr.accept();
-			// Keep timeout at 5000 for next connection attempt (if client disconnects)
-			// This ensures we never block on accept() - CRITICAL for protocol handler loop
-			srvr.setSoTimeout(5000);
-		} 
-		catch (java.net.SocketTimeoutException e)
-		{
-			// Timeout is expected - no client connected yet, return and let loop continue
-			// Debug level, NOT error - this happens frequently during normal operation
-			logger.debug("No client connection yet on port " + this.tcpport + ", will retry...");
-			skt = null;
-			// Timeout is already set to 5000, no need to reset
-			// This allows the protocol handler loop to continue without blocking
+		if (outbuf.position() == 0)
 			return;
-		}
-		catch (IOException e1) 
+
+		outbuf.flip();
+
+		SocketChannel chan = sktchan;
+
+		try
 		{
-			logger.error("IO error while listening for client: " + e1.getMessage());
-			skt = null;
-			// Reset timeout on error to ensure next attempt works
-			try {
-				srvr.setSoTimeout(5000);
-			} catch (SocketException se) {
-				logger.debug("Failed to reset ServerSocket timeout: " + se.getMessage());
+			// one segment per response instead of one per byte
+			while ((chan != null) && chan.isOpen() && outbuf.hasRemaining())
+			{
+				// non blocking channel, only a full socket buffer gives us 0
+				int n = chan.write(outbuf);
+
+				bytesout += n;
+
+				if (n == 0)
+					awaitWritable(chan);
 			}
-			return;
 		}
-		
-		if (skt != null)
+		catch (IOException e)
 		{
-			String clientAddr = skt.getInetAddress().getHostAddress();
-			String clientName = skt.getInetAddress().getCanonicalHostName();
-			logger.info("New client connected from " + clientAddr + " (" + clientName + ")");
-			
-			this.client = clientName;
-			
-			try 
-			{
-				skt.setTcpNoDelay(true);
-				skt.setSoTimeout(0);  // Blocking reads after connection - REQUIRED
-			} 
-			catch (SocketException e) 
+			logger.error("IOException writing to TCP device: " + e.getMessage());
+			closeClient();
+		}
+
+		outbuf.clear();
+	}
+
+
+	// socket buffer is full, let the selector tell us when it drains
+	private void awaitWritable(SocketChannel chan) throws IOException
+	{
+		inlock.lock();
+
+		try
+		{
+			if ((chan != sktchan) || (sktkey == null) || !sktkey.isValid())
+				throw new IOException("Client disconnected during write");
+
+			sktkey.interestOps(sktkey.interestOps() | SelectionKey.OP_WRITE);
+			outblocked = true;
+			selector.wakeup();
+
+			long nanos = TimeUnit.MILLISECONDS.toNanos(DWDefs.COM_TCP_WRITE_TIMEOUT);
+
+			while (outblocked)
 			{
-				logger.warn("Failed to configure TCP socket options: " + e.getMessage());
+				if (chan != sktchan)
+					throw new IOException("Client disconnected during write");
+
+				if (nanos <= 0)
+					throw new IOException("Client not reading, write timed out after " + DWDefs.COM_TCP_WRITE_TIMEOUT + " ms");
+
+				nanos = outready.awaitNanos(nanos);
 			}
 		}
+		catch (InterruptedException e)
+		{
+			throw new IOException("Interrupted during TCP write");
+		}
+		finally
+		{
+			inlock.unlock();
+		}
+	}
+
+
+	public boolean connected()
+	{
+		if (sktchan == null)
+			return false;
+
+		return true;
+	}
+
+
+	public void shutdown()
+	{
+
+		close();
 	}
-	
+
+
 	public int getRate()
 	{
 		// doesn't make sense here?
@@ -316,21 +597,21 @@ public class DWTCPDevice implements DWProtocolDevice {
 
 
 	@Override
-	public String getDeviceName() 
+	public String getDeviceName()
 	{
 		return("listen:" + this.tcpport);
 	}
 
 
 	@Override
-	public String getDeviceType() 
+	public String getDeviceType()
 	{
 		return("tcp");
 	}
 
 
 	@Override
-	public String getClient() 
+	public String getClient()
 	{
 		return this.client;
 	}
@@ -343,6 +624,18 @@ public class DWTCPDevice implements DWProtocolDevice {
 	}
 
 
+	public long getBytesIn()
+	{
+		return this.bytesin;
+	}
+
+
+	public long getBytesOut()
+	{
+		return this.bytesout;
+	}
+
+
+
 
-	
 }
@@ -0,0 +1,211 @@
+package com.groupunix.drivewireserver.dwprotocolhandler;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.log4j.Logger;
+
+import com.groupunix.drivewireserver.DWDefs;
+
+public class DWTCPDeviceSelector implements Runnable
+{
+	// one selector thread does accepts and reads for every tcp device instance
+	private static final Logger logger = Logger.getLogger("DWServer.DWTCPDeviceSelector");
+
+	private static DWTCPDeviceSelector instance = null;
+
+	private Selector selector;
+	// registrations have to happen on the selector thread
+	private ConcurrentLinkedQueue<Runnable> changes = new ConcurrentLinkedQueue<Runnable>();
+
+
+	public static synchronized DWTCPDeviceSelector getSelector() throws IOException
+	{
+		if (instance == null)
+		{
+			instance = new DWTCPDeviceSelector();
+
+			Thread t = new Thread(instance, "dwtcpselector");
+			t.setDaemon(true);
+			t.setPriority(Thread.MAX_PRIORITY);
+			t.start();
+		}
+
+		return instance;
+	}
+
+
+	private DWTCPDeviceSelector() throws IOException
+	{
+		this.selector = Selector.open();
+	}
+
+
+	public void addListener(final ServerSocketChannel srvr, final DWTCPDevice dev)
+	{
+		this.changes.add(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					srvr.register(selector, SelectionKey.OP_ACCEPT, dev);
+				}
+				catch (ClosedChannelException e)
+				{
+					logger.debug("listener closed before registration");
+				}
+			}
+		});
+
+		this.selector.wakeup();
+	}
+
+
+	public void wakeup()
+	{
+		this.selector.wakeup();
+	}
+
+
+	@Override
+	public void run()
+	{
+		logger.debug("selector thread started");
+
+		int failures = 0;
+
+		while (true)
+		{
+			try
+			{
+				this.selector.select();
+
+				failures = 0;
+
+				Runnable change;
+
+				while ((change = this.changes.poll()) != null)
+				{
+					try
+					{
+						change.run();
+					}
+					catch (RuntimeException e)
+					{
+						logger.error("selector registration failed: " + e.toString());
+					}
+				}
+
+				Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+
+				while (keys.hasNext())
+				{
+					SelectionKey key = keys.next();
+					keys.remove();
+
+					try
+					{
+						if (!key.isValid())
+							continue;
+
+						if (key.isAcceptable())
+						{
+							accept(key);
+							continue;
+						}
+
+						if (key.isReadable())
+							((DWTCPDevice) key.attachment()).channelReadable(key);
+
+						if (key.isValid() && key.isWritable())
+							((DWTCPDevice) key.attachment()).channelWritable(key);
+					}
+					catch (CancelledKeyException e)
+					{
+						// device closed under us
+					}
+					catch (RuntimeException e)
+					{
+						// one broken device must not take every other one down with the thread
+						DWTCPDevice dev = (DWTCPDevice) key.attachment();
+
+						logger.error("selector: " + dev.getDeviceName() + ": " + e.toString(), e);
+
+						if (key.channel() instanceof SocketChannel)
+							dev.clientFailed(key);
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				logger.error("selector: " + e.getMessage());
+
+				// don't spin if the selector keeps failing
+				failures++;
+
+				try
+				{
+					Thread.sleep(Math.min(DWDefs.COM_TCP_SELECT_BACKOFF_MAX, 10L << Math.min(failures, 10)));
+				}
+				catch (InterruptedException e1)
+				{
+					logger.debug("interrupted in selector backoff");
+				}
+			}
+		}
+	}
+
+
+	private void accept(SelectionKey key)
+	{
+		DWTCPDevice dev = (DWTCPDevice) key.attachment();
+		SocketChannel chan = null;
+
+		try
+		{
+			chan = ((ServerSocketChannel) key.channel()).accept();
+
+			if (chan == null)
+				return;
+
+			chan.configureBlocking(false);
+			chan.socket().setTcpNoDelay(true);
+
+			SelectionKey ckey = chan.register(this.selector, SelectionKey.OP_READ, dev);
+
+			// hand straight to the device, the protocol thread is woken by it
+			if (!dev.clientAccepted(chan, ckey))
+			{
+				logger.warn("rejecting connection from " + chan.socket().getInetAddress().getHostAddress() + ", " + dev.getDeviceName() + " already has a client");
+				ckey.cancel();
+				chan.close();
+			}
+		}
+		catch (IOException e)
+		{
+			logger.error("accept on " + dev.getDeviceName() + ": " + e.getMessage());
+
+			if (chan != null)
+			{
+				try
+				{
+					chan.close();
+				}
+				catch (IOException e1)
+				{
+					logger.debug(e1.getMessage());
+				}
+			}
+		}
+	}
+
+}
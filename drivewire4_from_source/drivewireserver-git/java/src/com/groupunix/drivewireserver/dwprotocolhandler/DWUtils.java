@@ -180,6 +180,27 @@ public class DWUtils
 		
 		return(result);
 	}
+	
+	
+	public static String prettyTimerHistogram(int hno)
+	{
+		switch (hno)
+		{
+			case DWDefs.TIMER_HIST_PACKET:
+				return "read packet";
+				
+			case DWDefs.TIMER_HIST_LOOKUP:
+				return "lookup";
+				
+			case DWDefs.TIMER_HIST_TRANSMIT:
+				return "transmit";
+				
+			case DWDefs.TIMER_HIST_ACK:
+				return "await ack";
+		}
+		
+		return "unknown " + hno;
+	}
 		
 	
 	
@@ -195,6 +195,8 @@ public class MCXProtocolHandler implements Runnable, DWProtocol
 						logger.warn("Got non alert code when expected alert code: " + alertcodeint);
 					}
 					
+					protodev.flush();
+					
 					
 				} 
 				catch (IOException  e) 
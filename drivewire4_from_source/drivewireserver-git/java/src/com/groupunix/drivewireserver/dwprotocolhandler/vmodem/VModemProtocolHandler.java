@@ -159,6 +159,7 @@ public class VModemProtocolHandler implements Runnable, DWVSerialProtocol
 			{
 				int bread = vSerialPorts.getPortOutput(0).read(buffer);
 				this.protodev.comWrite(buffer, bread, false);
+				this.protodev.flush();
 				if (logdevbytes)
 					logger.debug("read " + bread + " bytes from vmodem: " + DWUtils.byteArrayToHexString(buffer, bread));
 			}				
@@ -20,6 +20,7 @@ public class UICmd extends DWCommand
 		commands.addcommand(new UICmdInstance(ct));
 		commands.addcommand(new UICmdServer(ct));
 		commands.addcommand(new UICmdSync(ct));
+		commands.addcommand(new UICmdSession(ct));
 		commands.addcommand(new UICmdTest(ct));
 		// Add "dw" as an alias for "instance" to support legacy command format
 		commands.addcommand(new UICmdDW(ct));
@@ -21,6 +21,7 @@ public class UICmdServerShow extends DWCommand {
 		commands.addcommand(new UICmdServerShowStatus());
 		commands.addcommand(new UICmdServerShowNet());
 		commands.addcommand(new UICmdServerShowLog());
+		commands.addcommand(new UICmdServerShowUIClients());
 		commands.addcommand(new UICmdServerShowTopics(dwuiClientThread));
 		commands.addcommand(new UICmdServerShowHelp(dwuiClientThread));
 		commands.addcommand(new UICmdServerShowErrors(dwuiClientThread));
@@ -38,6 +39,7 @@ public class UICmdServerShow extends DWCommand {
 		commands.addcommand(new UICmdServerShowStatus());
 		commands.addcommand(new UICmdServerShowNet());
 		commands.addcommand(new UICmdServerShowLog());
+		commands.addcommand(new UICmdServerShowUIClients());
 		commands.addcommand(new UICmdServerShowTopics(dwProto));
 		commands.addcommand(new UICmdServerShowHelp(dwProto));
 		commands.addcommand(new UICmdServerShowErrors(dwProto));
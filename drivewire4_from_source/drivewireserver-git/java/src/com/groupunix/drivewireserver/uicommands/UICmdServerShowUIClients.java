@@ -0,0 +1,59 @@
+package com.groupunix.drivewireserver.uicommands;
+
+import com.groupunix.drivewireserver.DWUIClientThread;
+import com.groupunix.drivewireserver.DWUIEventQueue;
+import com.groupunix.drivewireserver.DWUIThread;
+import com.groupunix.drivewireserver.DriveWireServer;
+import com.groupunix.drivewireserver.dwcommands.DWCommand;
+import com.groupunix.drivewireserver.dwcommands.DWCommandResponse;
+
+public class UICmdServerShowUIClients extends DWCommand {
+
+	@Override
+	public String getCommand() 
+	{
+		return "uiclients";
+	}
+
+
+	@Override
+	public String getShortHelp() 
+	{
+		return "show connected UI clients and their event queues";
+	}
+
+	@Override
+	public String getUsage() 
+	{
+		return "ui server show uiclients";
+	}
+
+	@Override
+	public DWCommandResponse parse(String cmdline) 
+	{
+		String txt = new String();
+		
+		DWUIThread ui = DriveWireServer.getUIThread();
+		
+		if (ui == null)
+			return(new DWCommandResponse(txt));
+		
+		// thread|instance|sync|queued|maxqueued|sent|coalesced|dropped|logsdropped|logbatches|lag ms|max lag ms
+		for (DWUIClientThread client : ui.getClientThreads())
+		{
+			DWUIEventQueue q = client.getEventQueue();
+			
+			txt += client.getThreadName() + "|" + client.getInstance() + "|" + client.isSync() + "|";
+			txt += q.size() + "|" + q.getDepthMax() + "|" + q.getSent() + "|" + q.getCoalesced() + "|";
+			txt += q.getDropped() + "|" + q.getLogsDropped() + "|" + q.getLogBatches() + "|";
+			txt += (q.getLag() / 1000000) + "|" + (q.getLagMax() / 1000000) + "\n";
+		}
+		
+		return(new DWCommandResponse(txt));
+	}
+
+	public boolean validate(String cmdline) 
+	{
+		return(true);
+	}
+}
@@ -0,0 +1,71 @@
+package com.groupunix.drivewireserver.uicommands;
+
+import java.io.IOException;
+
+import org.apache.log4j.Logger;
+
+import com.groupunix.drivewireserver.DWDefs;
+import com.groupunix.drivewireserver.DWUIClientThread;
+import com.groupunix.drivewireserver.dwcommands.DWCommand;
+import com.groupunix.drivewireserver.dwcommands.DWCommandResponse;
+
+public class UICmdSession extends DWCommand {
+
+	static final String command = "session";
+		
+	private static final Logger logger = Logger.getLogger("DWServer.DWUtilUIThread");
+	
+	private DWUIClientThread dwuiref;
+	
+	public UICmdSession(DWUIClientThread dwuiClientThread) 
+	{
+		this.dwuiref = dwuiClientThread;
+	}
+
+	public String getCommand() 
+	{
+		return command;
+	}
+
+	public DWCommandResponse parse(String cmdline)
+	{
+		if (!cmdline.trim().equals(String.valueOf(DWDefs.UI_SESSION_PROTO)))
+			return(new DWCommandResponse(false, DWDefs.RC_UI_ERROR, "Unsupported session version '" + cmdline.trim() + "'"));
+		
+		if (this.dwuiref.isSession())
+			return(new DWCommandResponse(false, DWDefs.RC_UI_ERROR, "Already in a session"));
+		
+		logger.debug("starting UI session");
+		
+		try 
+		{
+			this.dwuiref.runSession();
+		} 
+		catch (IOException e) 
+		{
+			logger.debug("UI session I/O error: " + e.getMessage());
+		}
+		
+		logger.debug("UI session closed");
+		
+		return(new DWCommandResponse(false, DWDefs.RC_FAIL, "Session closed"));
+	}
+
+
+	public String getShortHelp() 
+	{
+		return "Keep this connection open for framed, pipelined requests";
+	}
+
+
+	public String getUsage() 
+	{
+		return "ui session " + DWDefs.UI_SESSION_PROTO;
+	}
+	
+	public boolean validate(String cmdline) 
+	{
+		return(true);
+	}
+	
+}
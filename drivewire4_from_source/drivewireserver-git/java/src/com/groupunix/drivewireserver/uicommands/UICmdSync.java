@@ -6,7 +6,9 @@ import org.apache.log4j.Logger;
 
 import com.groupunix.drivewireserver.DWDefs;
 import com.groupunix.drivewireserver.DWEvent;
+import com.groupunix.drivewireserver.DWEventEncoder;
 import com.groupunix.drivewireserver.DWUIClientThread;
+import com.groupunix.drivewireserver.DWUIEventQueue;
 import com.groupunix.drivewireserver.DriveWireServer;
 import com.groupunix.drivewireserver.dwcommands.DWCommand;
 import com.groupunix.drivewireserver.dwcommands.DWCommandResponse;
@@ -19,6 +21,8 @@ public class UICmdSync extends DWCommand {
 	
 	private DWUIClientThread dwuiref;
 	private DWEvent lastevt = new DWEvent((byte) 0, -1);
+	// set when the client asked for the binary stream
+	private DWEventEncoder encoder = null;
 	
 	public UICmdSync(DWUIClientThread dwuiClientThread) 
 	{
@@ -34,15 +38,30 @@ public class UICmdSync extends DWCommand {
 	{
 		boolean wanttodie = false;
 		
-		logger.debug("adding status sync client");
+		// would take the session's connection away from it
+		if (this.dwuiref.isSession())
+			return(new DWCommandResponse(false, DWDefs.RC_UI_ERROR, "Sync needs its own connection"));
+		
+		// "ui sync 2" asks for binary frames, anything else gets text
+		if (cmdline.trim().equals(String.valueOf(DWDefs.UI_SYNC_PROTO_BINARY)))
+			this.encoder = new DWEventEncoder();
+		
+		logger.debug("adding status sync client (" + (this.encoder == null ? "text" : "binary") + ")");
+		
+		// start queueing before the snapshot so nothing falls in between
+		this.dwuiref.setSync(true);
 		
 		try 
 		{
-			dwuiref.getOutputStream().write(13);
+			if (this.encoder == null)
+				dwuiref.getOutputStream().write(13);
+			else
+				this.encoder.writeHeader(dwuiref.getOutputStream());
 			
 			// bring client up to date..
 			
 			sendEvent(DriveWireServer.getServerStatusEvent());
+			flushEvents();
 			
 			/*
 			for (DWEvent e : DriveWireServer.getLogCache())
@@ -63,11 +82,42 @@ public class UICmdSync extends DWCommand {
 		
 		
 	
+		DWUIEventQueue queue = this.dwuiref.getEventQueue();
+		
 		while ((wanttodie == false) && (!dwuiref.getSocket().isClosed()))
 		{
 			try 
 			{	
-				sendEvent(this.dwuiref.getEventQueue().take());
+				DWEvent evt = queue.take(DWDefs.UITHREAD_SYNC_WAIT);
+				
+				if (evt != null)
+				{
+					// send whatever piled up meanwhile in the same write
+					do
+					{
+						sendEvent(evt);
+					}
+					while ((evt = queue.poll()) != null);
+					
+					// binary clients also get what shows up within the batch window
+					if (this.encoder != null)
+					{
+						long deadline = System.currentTimeMillis() + DWDefs.UI_SYNC_BATCH_WINDOW;
+						long left;
+						
+						while ((this.encoder.size() < DWDefs.UI_SYNC_BATCH_MAX) && ((left = deadline - System.currentTimeMillis()) > 0))
+						{
+							evt = queue.take(left);
+							
+							if (evt == null)
+								break;
+							
+							sendEvent(evt);
+						}
+					}
+					
+					flushEvents();
+				}
 			} 
 			catch (InterruptedException e) 
 			{
@@ -80,6 +130,8 @@ public class UICmdSync extends DWCommand {
 			
 		}
 		
+		this.dwuiref.setSync(false);
+		
 		logger.debug("removing status sync client");
 			
 		return(new DWCommandResponse(false, DWDefs.RC_FAIL, "Sync closed"));
@@ -88,6 +140,12 @@ public class UICmdSync extends DWCommand {
 	
 	private void sendEvent(DWEvent msg) throws IOException
 	{
+		if (this.encoder != null)
+		{
+			this.encoder.encode(msg);
+			return;
+		}
+		
 		for (String key : msg.getParamKeys())
 		{
 			
@@ -102,7 +160,15 @@ public class UICmdSync extends DWCommand {
 		
 		dwuiref.getOutputStream().write(msg.getEventType());
 		dwuiref.getOutputStream().write(13);
-		dwuiref.getOutputStream().flush();
+	}
+	
+	
+	private void flushEvents() throws IOException
+	{
+		if (this.encoder != null)
+			this.encoder.writeTo(dwuiref.getOutputStream());
+		else
+			dwuiref.getOutputStream().flush();
 	}
 	
 
@@ -114,7 +180,7 @@ public class UICmdSync extends DWCommand {
 
 	public String getUsage() 
 	{
-		return "ui sync";
+		return "ui sync [2]";
 	}
 	
 	public boolean validate(String cmdline) 
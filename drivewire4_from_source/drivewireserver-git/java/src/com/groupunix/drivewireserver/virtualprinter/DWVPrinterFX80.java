@@ -1,16 +1,10 @@
 package com.groupunix.drivewireserver.virtualprinter;
 
-import java.awt.Color;
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
-import java.io.DataInputStream;
+import java.awt.image.DataBufferByte;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-
-import javax.imageio.ImageIO;
+import java.util.Arrays;
 
 import org.apache.commons.configuration.HierarchicalConfiguration;
 
@@ -46,8 +40,8 @@ public class DWVPrinterFX80 implements DWVPrinterDriver {
 	private double line_height;
 	private double char_width;
 	
-	private DWVPrinterFX80CharacterSet charset = new DWVPrinterFX80CharacterSet();
-	private Graphics2D rGraphic;
+	private DWVPrinterFX80Rasterizer rasterizer = null;
+	private int glyphMode;
 	
 	@SuppressWarnings("unused")
 	private File printDir;
@@ -57,6 +51,10 @@ public class DWVPrinterFX80 implements DWVPrinterDriver {
 	private double ypos;
 	
 	private BufferedImage rImage;
+	// rImage's pixels, glyphs are stamped straight in
+	private byte[] rPixels;
+	private int rWidth;
+	private int rHeight;
 	
 	
 	
@@ -86,24 +84,21 @@ public class DWVPrinterFX80 implements DWVPrinterDriver {
 	}
 
 	@Override
-	public void flush() throws NumberFormatException, IOException, DWPrinterNotDefinedException, DWPrinterFileError 
+	public synchronized void flush() throws NumberFormatException, IOException, DWPrinterNotDefinedException, DWPrinterFileError 
 	{
 		
-// load characters
+// load characters, parsed once per file and rendered once per character and mode
+		
+		DWVPrinterFX80CharacterSet charset = DWVPrinterFX80CharacterSet.getCharacterSet(config.getString("CharacterFile","default.chars"));
 		
-		loadCharacter(config.getString("CharacterFile","default.chars"));
+		if ((this.rasterizer == null) || (this.rasterizer.getCharacterSet() != charset))
+		{
+			this.rasterizer = new DWVPrinterFX80Rasterizer(charset, SZ_PICA, SZ_ELITE, SZ_COMPRESSED, line_height, DEF_YSIZE / 66 / 24);
+		}
 
 		// init img
 
-				
-        rImage = new BufferedImage((int)DEF_XSIZE, (int)DEF_YSIZE, BufferedImage.TYPE_BYTE_INDEXED);
-        //.TYPE_USHORT_GRAY );
-        rGraphic = (Graphics2D) rImage.getGraphics();
-
-        
-        rGraphic.setColor(Color.WHITE);	
-        rGraphic.fillRect(0, 0, (int) DEF_XSIZE, (int) DEF_YSIZE);
-        
+		newPage();
       
         this.char_width = getCPI();
         
@@ -217,7 +212,6 @@ public class DWVPrinterFX80 implements DWVPrinterDriver {
 	     	else
 	    	{
 	    		drawCharacter(c,xpos,ypos);
-	    		// drawCharacter(c,xpos+2,ypos,2);
 	    		
 	    		if (m_expanded)
 	    		{
@@ -243,24 +237,31 @@ public class DWVPrinterFX80 implements DWVPrinterDriver {
 	    
 		// output img
 
-        try 
-        {
-        	printFile = this.getPrinterFile();
-    		
-        	
-        	
-            ImageIO.write(rImage, config.getString("ImageFormat","PNG"), printFile);
-            //Logger.getLogger().info("wrote last print page image to: " + printFile.getAbsolutePath());
-            
-        } 
-        catch (IOException ex) 
-        {
-           // vprinter.getLogger().warn("Cannot save print image: " + ex.getMessage());
-        }
+        outputPage();
+		
+	}
 
+	
+	private void newPage()
+	{
+		this.rImage = new BufferedImage((int)DEF_XSIZE, (int)DEF_YSIZE, BufferedImage.TYPE_BYTE_GRAY);
+		this.rPixels = ((DataBufferByte) this.rImage.getRaster().getDataBuffer()).getData();
+		this.rWidth = this.rImage.getWidth();
+		this.rHeight = this.rImage.getHeight();
 		
+		Arrays.fill(this.rPixels, (byte) 0xFF);
+	}
+	
+	
+	private void outputPage() throws IOException, DWPrinterNotDefinedException, DWPrinterFileError
+	{
+		printFile = this.getPrinterFile();
 		
+		// encoded on the encoder thread, we carry on with a fresh page
+		DWVPrinterFX80Encoder.getEncoder().submit(rImage, config.getString("ImageFormat","PNG"), printFile);
 		
+		this.rImage = null;
+		this.rPixels = null;
 	}
 
 	
@@ -278,26 +279,33 @@ public class DWVPrinterFX80 implements DWVPrinterDriver {
 	private double getCPI()
 	{
 		double sz;
+		int pitch;
 		
 		if (m_elite)
 		{
 			
 			sz = SZ_ELITE;
+			pitch = DWVPrinterFX80Rasterizer.PITCH_ELITE;
 		}
 		else if (m_compressed)
 		{
 			 sz = SZ_COMPRESSED;
+			 pitch = DWVPrinterFX80Rasterizer.PITCH_COMPRESSED;
 		}
 		else
 		{
 			sz = SZ_PICA;
+			pitch = DWVPrinterFX80Rasterizer.PITCH_PICA;
 		}
 		
+		// every caller applies the result, so pick the glyph set here too
+		this.glyphMode = DWVPrinterFX80Rasterizer.getMode(pitch, m_expanded, m_emphasized, m_doublestrike);
+		
 		return(sz);
 	}
 
 	
-	private void newline() throws DWPrinterNotDefinedException, DWPrinterFileError
+	private void newline() throws DWPrinterNotDefinedException, DWPrinterFileError, IOException
 	{
 		ypos += line_height;
 		
@@ -306,25 +314,8 @@ public class DWVPrinterFX80 implements DWVPrinterDriver {
 			// new page
 			ypos = line_height;
 			
-			try 
-		    {
-				printFile = this.getPrinterFile();
-				ImageIO.write(rImage, config.getString("ImageFormat","PNG"), printFile);
-				
-//				vprinter.getLogger().info("wrote print page image to: " + printFile.getAbsolutePath());
-				
-				rImage = new BufferedImage((int)DEF_XSIZE, (int)DEF_YSIZE, BufferedImage.TYPE_USHORT_GRAY );
-				rGraphic = (Graphics2D) rImage.getGraphics();
-			       
-				rGraphic.setColor(Color.WHITE);	
-			    rGraphic.fillRect(0, 0, (int) DEF_XSIZE, (int) DEF_YSIZE);
-		    } 
-		    catch (IOException ex) 
-		    {
-	//	    	 vprinter.getLogger().warn("Cannot save print image: " + ex.getMessage());
-		    }
-			
-			
+			outputPage();
+			newPage();
 		}
 	}
 
@@ -348,260 +339,10 @@ public class DWVPrinterFX80 implements DWVPrinterDriver {
 
 	private void drawCharacter(int ch, double xpos, double ypos) 
 	{
-		// draw one character.. just testing
-		
-		for (int i = 0; i<12;i++)
-		{
-			int lbits = charset.getCharacterCol(ch, i);
+		DWVPrinterFX80Glyph glyph = this.rasterizer.getGlyph(ch, this.glyphMode);
 		
-			drawCharCol(lbits,xpos, ypos);
-			
-			if (m_doublestrike)
-			{
-				drawCharCol(lbits,xpos, ypos + (DEF_YSIZE / 66 / 24));
-			}
-			
-			if (m_expanded)
-			{
-				xpos += (this.char_width / 6);
-				drawCharCol(lbits,xpos, ypos);
-				
-				if (m_doublestrike)
-				{
-					drawCharCol(lbits,xpos, ypos + (DEF_YSIZE / 66 / 24));
-				}
-				
-			}
-			else if (m_emphasized)
-			{
-				xpos += (this.char_width / 12);
-				drawCharCol(lbits,xpos, ypos);
-				
-				if (m_doublestrike)
-				{
-					drawCharCol(lbits,xpos, ypos + (DEF_YSIZE / 66 / 24));
-				}
-			}
-			else
-			{
-				xpos += (this.char_width / 12);
-			}
-			
-		}
-		
-	}
-
-	private void drawCharCol(int lbits, double xpos, double ypos) 
-	{
-		// draw one column
-		
-		for (int i = 0; i < 9; i++)
-		{
-			if ((lbits & (int) Math.pow(2,i)) == Math.pow(2,i))
-			{
-				
-				
-				int r = (int) (char_width / 5);
-				@SuppressWarnings("unused")
-				int x = ((int) xpos) - (r/2);
-				@SuppressWarnings("unused")
-				int y = ((int) ypos) - (r/2);
-				
-				int[] pdx = new int[4];
-				int[] pdy = new int[4];
-				
-				int[] sdx = new int[8];
-				int[] sdy = new int[8];
-				
-				int ix = (int) xpos;
-				int iy = (int) ypos;
-				
-				pdx[0] = ix - 2;
-				pdy[0] = iy;
-				pdx[1] = ix;
-				pdy[1] = iy - 2;
-				pdx[2] = ix + 2;
-				pdy[2] = iy;
-				pdx[3] = ix;
-				pdy[3] = iy + 2;
-				
-				sdx[0] = ix - 2;
-				sdy[0] = iy - 1;
-				
-				sdx[1] = ix - 1;
-				sdy[1] = iy - 2;
-				
-				sdx[2] = ix + 1;
-				sdy[2] = iy - 2;
-				
-				sdx[3] = ix + 2;
-				sdy[3] = iy - 1;
-				
-				sdx[4] = ix + 2;
-				sdy[4] = iy + 1;
-				
-				sdx[5] = ix + 1;
-				sdy[5] = iy + 2;
-				
-				sdx[6] = ix - 1;
-				sdy[6] = iy + 2;
-			
-				sdx[7] = ix - 2;
-				sdy[7] = iy + 1;
-				
-				
-				rGraphic.setColor(Color.GRAY);
-				rGraphic.drawPolygon(sdx, sdy, 8);
-				
-				rGraphic.setColor(Color.BLACK);
-				rGraphic.fillPolygon(pdx, pdy, 4);
-				
-				rGraphic.setColor(Color.DARK_GRAY);
-				rGraphic.drawPolygon(pdx, pdy, 4);
-				
-				//rGraphic.fillOval(x, y, 2, 2);
-				
-				rGraphic.setColor(Color.BLACK);
-				
-				r = (int) (char_width / 6);
-				x = ((int) xpos) - (r/2);
-				y = ((int) ypos) - (r/2);
-				
-				//rGraphic.fillOval(x,y, r, r);
-			}
-			
-			ypos -= (line_height/10);
-		}
-		
-		
-	}
-
-	private void loadCharacter(String fname) throws NumberFormatException, IOException 
-	{
-	    int curline = 0;
-	    int curchar = -1;
-	    int curpos = -1;
-	    int[] charbits = new int[12];
-	    int prop = 0;
-	    
-		//try
-		{
-		    FileInputStream fstream = new FileInputStream(fname);
-		    DataInputStream in = new DataInputStream(fstream);
-		
-		    BufferedReader br = new BufferedReader(new InputStreamReader(in));
-			
-		    String strLine;
-			
-		    
-		    while ((strLine = br.readLine()) != null)   
-		    {
-		    	curline++;
-		    	
-			    if ((strLine.startsWith("#")) || (strLine.length() == 0))
-			    {
-			    	// comment
-			    	// System.out.println(strLine);
-			    }
-			    else
-			    {
-			    	// process input
-			    	if (strLine.startsWith("c"))
-			    	{
-			    		if (curchar > -1)
-			    		{
-			    			// finish current char
-			    			charset.setCharacter(curchar, charbits, prop);
-			    			
-			    			
-			    			curpos = -1;
-			    			curchar = -1;
-			    			charbits = new int[12];
-			    		}
-		    		
-			    		//start new char
-			    		int tmpint = Integer.parseInt(strLine.substring(1));
-			    		
-			    		if ((tmpint < 0) || (tmpint > 255))
-			    		{
-			    			System.err.println("Error at line " + curline + ": invalid character number, must be 0-255 ");
-			    		}
-			    		else
-			    		{
-			    			curpos = 0;
-			    			prop = 12;
-			    			curchar = tmpint;
-			    		}
-			    	}
-			    	else if (strLine.startsWith("p"))
-			    	{
-			    		// set prop val
-			    		int tmpint  = Integer.parseInt(strLine.substring(1));
-			    		
-			    		if ((tmpint < 1) || (tmpint > 12))
-			    		{
-			    			System.err.println("Error at line " + curline + ": invalid proportional length, must be 1-12 ");	
-			    		}
-			    		else
-			    		{
-			    			prop = tmpint;
-			    		}
-			    		
-			    	}
-			    	else
-			    	{
-			    		// parse bits line
-			    		if (strLine.length() == 9)
-			    		{
-			    			// boolean bits
-			    			int tmpval = 0;
-			    			
-			    			for (int i = 0;i<9;i++)
-			    			{
-			    				char c = strLine.charAt(i);
-			    				if (c == '1')
-			    				{
-			    					tmpval += Math.pow(2,i);
-			    								    				}
-			    				else if (c != '0')
-			    				{
-			    					System.err.println("Error at line " + curline + " (in character " + curchar + "): boolean values must contain only 0 or 1");
-				    			}
-			    			}
-			    			
-			    			charbits[curpos] = tmpval;
-			    			curpos++;
-			    		}
-			    		else
-			    		{
-			    			// decimal value
-			    			int tmpval = Integer.parseInt(strLine);
-			    			if ((tmpval < 0) || (tmpval > 511))
-			    			{
-			    				tmpval = 0;
-			    				System.err.println("Error at line " + curline + " (in character " + curchar + "): decimal values must be 0-511");
-			    			}
-			    			charbits[curpos] = tmpval;
-			    			curpos++;
-			    		}
-			    	}
-			    	
-
-			    }
-			    
-		    	
-			}
-			
-		    in.close();
-			
-		    // finish last char
-		    charset.setCharacter(curchar, charbits, prop);
-		
-		}
-		/*catch (Exception e)
-		{
-			System.err.println("Error reading characters at line " + curline +" (in character " + curchar + "): " + e.getMessage());
-		}*/	
+		if (glyph != null)
+			glyph.blit(this.rPixels, this.rWidth, this.rHeight, (int) xpos, (int) ypos);
 	}
 
 
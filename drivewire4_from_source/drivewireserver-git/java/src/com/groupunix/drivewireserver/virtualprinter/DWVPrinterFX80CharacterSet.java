@@ -1,11 +1,27 @@
 package com.groupunix.drivewireserver.virtualprinter;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+
+import org.apache.log4j.Logger;
+
 
 public class DWVPrinterFX80CharacterSet 
 {
+		private static final Logger logger = Logger.getLogger("DWServer.DWVPrinterFX80CharacterSet");
+
+		// parsed sets by file, reloaded only when the file changes
+		private static HashMap<String,DWVPrinterFX80CharacterSet> loaded = new HashMap<String,DWVPrinterFX80CharacterSet>();
 
 		private DWVPrinterFX80Character[] characters = new DWVPrinterFX80Character[256];
 		
+		private long modified = -1;
+		private long length = -1;
+		
 
 		public void setCharacter(int charnum, int[] bits, int len)
 		{
@@ -16,4 +32,143 @@ public class DWVPrinterFX80CharacterSet
 		{
 			return(characters[charnum].getCol(colnum));
 		}
+		
+		public DWVPrinterFX80Character getCharacter(int charnum)
+		{
+			return(characters[charnum]);
+		}
+		
+		
+		public static synchronized DWVPrinterFX80CharacterSet getCharacterSet(String fname) throws NumberFormatException, IOException
+		{
+			File f = new File(fname);
+			String key = f.getAbsolutePath();
+			
+			DWVPrinterFX80CharacterSet set = loaded.get(key);
+			
+			if ((set == null) || (set.modified != f.lastModified()) || (set.length != f.length()))
+			{
+				set = new DWVPrinterFX80CharacterSet();
+				set.modified = f.lastModified();
+				set.length = f.length();
+				set.load(f);
+				
+				loaded.put(key, set);
+				
+				logger.debug("loaded character set from " + key);
+			}
+			
+			return(set);
+		}
+		
+		
+		private void load(File f) throws NumberFormatException, IOException 
+		{
+		    int curline = 0;
+		    int curchar = -1;
+		    int curpos = -1;
+		    int[] charbits = new int[12];
+		    int prop = 0;
+		    
+		    BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(f)));
+			
+		    try
+		    {
+			    String strLine;
+				
+			    while ((strLine = br.readLine()) != null)   
+			    {
+			    	curline++;
+			    	
+				    if ((strLine.startsWith("#")) || (strLine.length() == 0))
+				    {
+				    	// comment
+				    }
+				    else if (strLine.startsWith("c"))
+				    {
+				    	if (curchar > -1)
+				    	{
+				    		// finish current char
+				    		setCharacter(curchar, charbits, prop);
+				    		
+				    		curpos = -1;
+				    		curchar = -1;
+				    		charbits = new int[12];
+				    	}
+			    		
+				    	//start new char
+				    	int tmpint = Integer.parseInt(strLine.substring(1));
+				    	
+				    	if ((tmpint < 0) || (tmpint > 255))
+				    	{
+				    		logger.warn("Error at line " + curline + ": invalid character number, must be 0-255 ");
+				    	}
+				    	else
+				    	{
+				    		curpos = 0;
+				    		prop = 12;
+				    		curchar = tmpint;
+				    	}
+				    }
+				    else if (strLine.startsWith("p"))
+				    {
+				    	// set prop val
+				    	int tmpint  = Integer.parseInt(strLine.substring(1));
+				    	
+				    	if ((tmpint < 1) || (tmpint > 12))
+				    	{
+				    		logger.warn("Error at line " + curline + ": invalid proportional length, must be 1-12 ");	
+				    	}
+				    	else
+				    	{
+				    		prop = tmpint;
+				    	}
+				    }
+				    else
+				    {
+				    	int tmpval = 0;
+				    	
+				    	if (strLine.length() == 9)
+				    	{
+				    		// boolean bits
+				    		for (int i = 0;i<9;i++)
+				    		{
+				    			char c = strLine.charAt(i);
+				    			
+				    			if (c == '1')
+				    			{
+				    				tmpval |= (1 << i);
+				    			}
+				    			else if (c != '0')
+				    			{
+				    				logger.warn("Error at line " + curline + " (in character " + curchar + "): boolean values must contain only 0 or 1");
+				    			}
+				    		}
+				    	}
+				    	else
+				    	{
+				    		// decimal value
+				    		tmpval = Integer.parseInt(strLine);
+				    		
+				    		if ((tmpval < 0) || (tmpval > 511))
+				    		{
+				    			tmpval = 0;
+				    			logger.warn("Error at line " + curline + " (in character " + curchar + "): decimal values must be 0-511");
+				    		}
+				    	}
+				    	
+				    	charbits[curpos] = tmpval;
+				    	curpos++;
+				    }
+				}
+		    }
+		    finally
+		    {
+		    	br.close();
+		    }
+			
+		    // finish last char
+		    if (curchar > -1)
+		    	setCharacter(curchar, charbits, prop);
+		}
 	}
@@ -0,0 +1,181 @@
+package com.groupunix.drivewireserver.virtualprinter;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.apache.log4j.Logger;
+
+public class DWVPrinterFX80Encoder implements Runnable
+{
+	// finished pages are written out here so rasterizing the next page doesn't wait on the image encoder
+	private static final Logger logger = Logger.getLogger("DWServer.DWVPrinterFX80Encoder");
+	
+	// a page is several MB at 300 dpi, a full queue holds up the rasterizer instead of memory growing
+	private static final int MAX_PENDING = 2;
+	
+	// how long shutdown waits for queued pages to be written
+	private static final long SHUTDOWN_WAIT = 30000;
+	
+	private static DWVPrinterFX80Encoder instance = null;
+	
+	private ArrayBlockingQueue<Page> pages = new ArrayBlockingQueue<Page>(MAX_PENDING);
+	private Thread thread;
+	private volatile boolean stopping = false;
+	
+	// queued last by shutdown, everything before it gets written first
+	private static final Page STOP = new Page(null, null, null);
+	
+	
+	private static class Page
+	{
+		BufferedImage img;
+		String format;
+		File file;
+		
+		Page(BufferedImage img, String format, File file)
+		{
+			this.img = img;
+			this.format = format;
+			this.file = file;
+		}
+	}
+	
+	
+	public static synchronized DWVPrinterFX80Encoder getEncoder()
+	{
+		if (instance == null)
+		{
+			instance = new DWVPrinterFX80Encoder();
+			
+			instance.thread = new Thread(instance, "fx80encoder");
+			instance.thread.setDaemon(true);
+			instance.thread.setPriority(Thread.MIN_PRIORITY);
+			instance.thread.start();
+		}
+		
+		return instance;
+	}
+	
+	
+	// write out whatever is still queued, for server shutdown
+	public static void shutdown()
+	{
+		DWVPrinterFX80Encoder enc;
+		
+		synchronized(DWVPrinterFX80Encoder.class)
+		{
+			enc = instance;
+			instance = null;
+		}
+		
+		if (enc == null)
+			return;
+		
+		enc.stopping = true;
+		
+		try
+		{
+			if (enc.pages.offer(STOP, SHUTDOWN_WAIT, TimeUnit.MILLISECONDS))
+				enc.thread.join(SHUTDOWN_WAIT);
+		}
+		catch (InterruptedException e)
+		{
+			logger.warn("Interrupted waiting for print pages to be written");
+		}
+		
+		if (enc.thread.isAlive())
+		{
+			logger.warn("Print page encoder did not finish, " + enc.pages.size() + " page(s) may not be saved");
+			return;
+		}
+		
+		// anything that slipped in behind the stop
+		Page page;
+		
+		while ((page = enc.pages.poll()) != null)
+		{
+			if (page != STOP)
+				write(page);
+		}
+	}
+	
+	
+	// caller must not touch img again
+	public void submit(BufferedImage img, String format, File file) throws IOException
+	{
+		Page page = new Page(img, format, file);
+		boolean queued = false;
+		
+		try
+		{
+			// don't wait on a queue nobody is emptying any more, write it here instead
+			while (!queued && !this.stopping && this.thread.isAlive())
+				queued = this.pages.offer(page, 1, TimeUnit.SECONDS);
+			
+			if (!queued)
+				write(page);
+		}
+		catch (InterruptedException e)
+		{
+			throw new IOException("Interrupted while queueing print page");
+		}
+	}
+	
+	
+	@Override
+	public void run()
+	{
+		logger.debug("encoder thread started");
+		
+		while (true)
+		{
+			Page page;
+			
+			try
+			{
+				page = this.pages.take();
+			}
+			catch (InterruptedException e)
+			{
+				logger.debug("encoder thread interrupted");
+				return;
+			}
+			
+			if (page == STOP)
+			{
+				logger.debug("encoder thread finished");
+				return;
+			}
+			
+			write(page);
+		}
+	}
+	
+	
+	// one bad page is logged and skipped, it must not take the thread down with it
+	private static void write(Page page)
+	{
+		try
+		{
+			long start = System.currentTimeMillis();
+			
+			if (!ImageIO.write(page.img, page.format, page.file))
+				logger.warn("No image writer for format '" + page.format + "', page not saved to " + page.file.getAbsolutePath());
+			else
+				logger.debug("wrote print page image to " + page.file.getAbsolutePath() + " in " + (System.currentTimeMillis() - start) + "ms");
+		}
+		catch (IOException e)
+		{
+			logger.warn("Cannot save print image " + page.file.getAbsolutePath() + ": " + e.getMessage());
+		}
+		catch (RuntimeException e)
+		{
+			logger.error("Failed to encode print image " + page.file.getAbsolutePath() + ": " + e.toString());
+		}
+	}
+}
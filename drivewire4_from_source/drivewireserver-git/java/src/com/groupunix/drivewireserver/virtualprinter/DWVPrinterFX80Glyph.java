@@ -0,0 +1,41 @@
+package com.groupunix.drivewireserver.virtualprinter;
+
+public class DWVPrinterFX80Glyph 
+{
+	// one pre-rendered character: the non white pixels relative to the print head position
+
+	private int[] xs;
+	private int[] ys;
+	private byte[] shades;
+	
+	public DWVPrinterFX80Glyph(int[] xs, int[] ys, byte[] shades)
+	{
+		this.xs = xs;
+		this.ys = ys;
+		this.shades = shades;
+	}
+	
+	
+	// stamp into an 8 bit gray raster, darkest ink wins where dots overlap
+	public void blit(byte[] page, int width, int height, int x, int y)
+	{
+		for (int i = 0;i < this.xs.length;i++)
+		{
+			int px = x + this.xs[i];
+			int py = y + this.ys[i];
+			
+			if ((px < 0) || (px >= width) || (py < 0) || (py >= height))
+				continue;
+			
+			int idx = py * width + px;
+			
+			if ((this.shades[i] & 0xFF) < (page[idx] & 0xFF))
+				page[idx] = this.shades[i];
+		}
+	}
+	
+	public int getPixels()
+	{
+		return this.xs.length;
+	}
+}
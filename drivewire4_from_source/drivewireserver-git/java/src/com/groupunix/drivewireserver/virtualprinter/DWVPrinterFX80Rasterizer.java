@@ -0,0 +1,236 @@
+package com.groupunix.drivewireserver.virtualprinter;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+
+public class DWVPrinterFX80Rasterizer 
+{
+	// turns characters into glyphs once per character set and page geometry.
+	// a glyph is built with the same dot placement the old per dot drawing used,
+	// except the whole character starts on a whole pixel.
+
+	public static final int PITCH_PICA = 0;
+	public static final int PITCH_ELITE = 1;
+	public static final int PITCH_COMPRESSED = 2;
+	
+	public static final int MODE_DOUBLESTRIKE = 1;
+	public static final int MODE_EMPHASIZED = 2;
+	public static final int MODE_EXPANDED = 4;
+	
+	private static final int MODES = 3 * 8;
+	private static final int WHITE = 0xFF;
+	
+	// a single pin impact, rendered once
+	private static final int DOT_R = 2;
+	private static final int DOT_SIZE = DOT_R * 2 + 1;
+	private static byte[] dot = null;
+	
+	private DWVPrinterFX80CharacterSet charset;
+	private double[] pitches;
+	private double line_height;
+	private double strike_offset;
+	
+	private DWVPrinterFX80Glyph[][] glyphs = new DWVPrinterFX80Glyph[MODES][256];
+	
+	
+	public DWVPrinterFX80Rasterizer(DWVPrinterFX80CharacterSet charset, double pica, double elite, double compressed, double line_height, double strike_offset)
+	{
+		this.charset = charset;
+		this.pitches = new double[] { pica, elite, compressed };
+		this.line_height = line_height;
+		this.strike_offset = strike_offset;
+	}
+	
+	
+	public DWVPrinterFX80CharacterSet getCharacterSet()
+	{
+		return this.charset;
+	}
+	
+	
+	public static int getMode(int pitch, boolean expanded, boolean emphasized, boolean doublestrike)
+	{
+		int mode = pitch * 8;
+		
+		if (expanded)
+			mode |= MODE_EXPANDED;
+		
+		if (emphasized)
+			mode |= MODE_EMPHASIZED;
+		
+		if (doublestrike)
+			mode |= MODE_DOUBLESTRIKE;
+		
+		return mode;
+	}
+	
+	
+	// null for characters the set doesn't define
+	public DWVPrinterFX80Glyph getGlyph(int ch, int mode)
+	{
+		ch &= 0xFF;
+		
+		DWVPrinterFX80Glyph g = this.glyphs[mode][ch];
+		
+		if ((g == null) && (this.charset.getCharacter(ch) != null))
+		{
+			g = render(this.charset.getCharacter(ch), mode);
+			this.glyphs[mode][ch] = g;
+		}
+		
+		return g;
+	}
+	
+	
+	private DWVPrinterFX80Glyph render(DWVPrinterFX80Character chr, int mode)
+	{
+		double cw = this.pitches[mode / 8];
+		boolean expanded = (mode & MODE_EXPANDED) != 0;
+		boolean emphasized = (mode & MODE_EMPHASIZED) != 0;
+		boolean doublestrike = (mode & MODE_DOUBLESTRIKE) != 0;
+		
+		double step;
+		
+		if (expanded)
+			step = cw / 6;
+		else
+			step = cw / 12;
+		
+		// second strike one step right, expanded prints every column twice too
+		boolean twice = expanded || emphasized;
+		
+		int left = -DOT_R;
+		int right = (int) (12 * step) + DOT_R + 1;
+		int top = -(int) Math.ceil(8 * this.line_height / 10) - DOT_R - 1;
+		int bottom = (int) this.strike_offset + DOT_R + 1;
+		
+		int w = right - left + 1;
+		int h = bottom - top + 1;
+		
+		byte[] cell = new byte[w * h];
+		Arrays.fill(cell, (byte) WHITE);
+		
+		for (int col = 0;col < 12;col++)
+		{
+			int bits = chr.getCol(col);
+			
+			if (bits == 0)
+				continue;
+			
+			double x = col * step;
+			
+			stampColumn(cell, w, h, left, top, bits, x, 0);
+			
+			if (doublestrike)
+				stampColumn(cell, w, h, left, top, bits, x, this.strike_offset);
+			
+			if (twice)
+			{
+				stampColumn(cell, w, h, left, top, bits, x + step, 0);
+				
+				if (doublestrike)
+					stampColumn(cell, w, h, left, top, bits, x + step, this.strike_offset);
+			}
+		}
+		
+		// keep only what got inked
+		int n = 0;
+		
+		for (int i = 0;i < cell.length;i++)
+		{
+			if ((cell[i] & 0xFF) != WHITE)
+				n++;
+		}
+		
+		int[] xs = new int[n];
+		int[] ys = new int[n];
+		byte[] shades = new byte[n];
+		
+		n = 0;
+		
+		for (int i = 0;i < cell.length;i++)
+		{
+			if ((cell[i] & 0xFF) != WHITE)
+			{
+				xs[n] = (i % w) + left;
+				ys[n] = (i / w) + top;
+				shades[n] = cell[i];
+				n++;
+			}
+		}
+		
+		return new DWVPrinterFX80Glyph(xs, ys, shades);
+	}
+	
+	
+	private void stampColumn(byte[] cell, int w, int h, int left, int top, int bits, double x, double y)
+	{
+		byte[] d = getDot();
+		
+		for (int pin = 0;pin < 9;pin++)
+		{
+			if ((bits & (1 << pin)) == 0)
+				continue;
+			
+			int cx = (int) x - left - DOT_R;
+			int cy = (int) (y - pin * (this.line_height / 10)) - top - DOT_R;
+			
+			for (int dy = 0;dy < DOT_SIZE;dy++)
+			{
+				for (int dx = 0;dx < DOT_SIZE;dx++)
+				{
+					int px = cx + dx;
+					int py = cy + dy;
+					
+					if ((px < 0) || (px >= w) || (py < 0) || (py >= h))
+						continue;
+					
+					int s = d[dy * DOT_SIZE + dx] & 0xFF;
+					int idx = py * w + px;
+					
+					if (s < (cell[idx] & 0xFF))
+						cell[idx] = (byte) s;
+				}
+			}
+		}
+	}
+	
+	
+	private static synchronized byte[] getDot()
+	{
+		if (dot == null)
+		{
+			// same outline and fill the printer always used for one pin
+			BufferedImage img = new BufferedImage(DOT_SIZE, DOT_SIZE, BufferedImage.TYPE_BYTE_GRAY);
+			Graphics2D g = img.createGraphics();
+			
+			int c = DOT_R;
+			
+			g.setColor(Color.WHITE);
+			g.fillRect(0, 0, DOT_SIZE, DOT_SIZE);
+			
+			int[] pdx = { c - 2, c, c + 2, c };
+			int[] pdy = { c, c - 2, c, c + 2 };
+			int[] sdx = { c - 2, c - 1, c + 1, c + 2, c + 2, c + 1, c - 1, c - 2 };
+			int[] sdy = { c - 1, c - 2, c - 2, c - 1, c + 1, c + 2, c + 2, c + 1 };
+			
+			g.setColor(Color.GRAY);
+			g.drawPolygon(sdx, sdy, 8);
+			
+			g.setColor(Color.BLACK);
+			g.fillPolygon(pdx, pdy, 4);
+			
+			g.setColor(Color.DARK_GRAY);
+			g.drawPolygon(pdx, pdy, 4);
+			
+			g.dispose();
+			
+			dot = ((DataBufferByte) img.getRaster().getDataBuffer()).getData().clone();
+		}
+		
+		return dot;
+	}
+}
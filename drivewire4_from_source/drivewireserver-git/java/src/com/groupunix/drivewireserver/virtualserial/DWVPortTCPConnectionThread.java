@@ -143,8 +143,7 @@ public class DWVPortTCPConnectionThread implements Runnable {
 			logger.warn(e.getMessage());
 		}
 		
-		byte[] readbytes = new byte[256];
-		ByteBuffer readBuffer = ByteBuffer.wrap(readbytes);
+		ByteBuffer readBuffer = ByteBuffer.allocate(256);
 		
 		
 		while ((wanttodie == false) && (sktchan.isOpen()) && (dwVSerialPorts.isOpen(this.vport)))
@@ -162,7 +161,8 @@ public class DWVPortTCPConnectionThread implements Runnable {
 				{
 					
 					
-					dwVSerialPorts.writeToCoco(this.vport, readbytes, 0, readsize);
+					readBuffer.flip();
+					dwVSerialPorts.writeToCoco(this.vport, readBuffer);
 					readBuffer.clear();
 				}
 				
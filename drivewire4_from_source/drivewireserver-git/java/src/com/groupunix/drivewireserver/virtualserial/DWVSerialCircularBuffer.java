@@ -21,6 +21,9 @@ package com.groupunix.drivewireserver.virtualserial;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.log4j.Logger;
 
@@ -156,6 +159,24 @@ public class DWVSerialCircularBuffer {
 	 * @since ostermillerutils 1.00.00
 	 */
 	protected boolean outputStreamClosed = false;
+	/**
+	 * Guards all of the above.  Blocked readers wait on dataAvailable and
+	 * blocked writers on spaceAvailable instead of polling.
+	 */
+	protected final ReentrantLock lock = new ReentrantLock();
+	/**
+	 * Signalled when bytes are written or the OutputStream is closed.
+	 */
+	protected final Condition dataAvailable = lock.newCondition();
+	/**
+	 * Signalled when bytes are read or skipped, or the InputStream is closed.
+	 */
+	protected final Condition spaceAvailable = lock.newCondition();
+	/**
+	 * Run when the buffer goes from empty to holding data.  Called with the
+	 * lock held, so it must not block or take other locks.
+	 */
+	protected volatile Runnable readyListener = null;
 
 	/**
 	 * Make this buffer ready for reuse.  The contents of the buffer
@@ -165,12 +186,16 @@ public class DWVSerialCircularBuffer {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public void clear(){
-		synchronized (this){
+		lock.lock();
+		try {
 			readPosition = 0;
 			writePosition = 0;
 			markPosition = 0;
 			outputStreamClosed = false;
 			inputStreamClosed = false;
+			spaceAvailable.signalAll();
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -221,8 +246,11 @@ public class DWVSerialCircularBuffer {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public int getAvailable(){
-		synchronized (this){
+		lock.lock();
+		try {
 			return available();
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -240,8 +268,11 @@ public class DWVSerialCircularBuffer {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public int getSpaceLeft(){
-		synchronized (this){
+		lock.lock();
+		try {
 			return spaceLeft();
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -258,8 +289,11 @@ public class DWVSerialCircularBuffer {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public int getSize(){
-		synchronized (this){
+		lock.lock();
+		try {
 			return buffer.length;
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -486,7 +520,135 @@ public class DWVSerialCircularBuffer {
 		this.blockingWrite = blockingWrite;
 	}
 
+	/**
+	 * Write the remaining bytes of a ByteBuffer.  Blocks like the OutputStream
+	 * write methods, but copies straight out of the ByteBuffer without an
+	 * intermediate array.
+	 *
+	 * @param src bytes to write, its position is advanced past them
+	 * @throws IOException if either stream is closed, or the write is interrupted.
+	 */
+	public void write(ByteBuffer src) throws IOException {
+		lock.lock();
+		try {
+			while (src.hasRemaining()){
+				if (outputStreamClosed) throw new IOException("OutputStream has been closed; cannot write to a closed OutputStream.");
+				if (inputStreamClosed) throw new IOException("Buffer closed by InputStream; cannot write to a closed buffer.");
+				int len = src.remaining();
+				int spaceLeft = spaceLeft();
+				while (infinite && spaceLeft < len){
+					resize();
+					spaceLeft = spaceLeft();
+				}
+				if (!blockingWrite && spaceLeft < len) throw new BufferOverflowException("CircularByteBuffer is full; cannot write " + len + " bytes");
+				if (spaceLeft == 0){
+					awaitSpace();
+					continue;
+				}
+				boolean wasEmpty = (available() == 0);
+				int realLen = Math.min(len, spaceLeft);
+				int firstLen = Math.min(realLen, buffer.length - writePosition);
+				src.get(buffer, writePosition, firstLen);
+				if (realLen > firstLen){
+					src.get(buffer, 0, realLen - firstLen);
+					writePosition = realLen - firstLen;
+				} else {
+					writePosition += firstLen;
+					if (writePosition == buffer.length) {
+						writePosition = 0;
+					}
+				}
+				if (wasEmpty){
+					notifyReady();
+				}
+				dataAvailable.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Read available bytes into a ByteBuffer, blocking until at least one
+	 * byte is available or the OutputStream has been closed.
+	 *
+	 * @param dst destination, filled up to its limit at most
+	 * @return the number of bytes read, or -1 if the end of the stream has been reached
+	 * @throws IOException if the InputStream is closed, or the read is interrupted.
+	 */
+	public int read(ByteBuffer dst) throws IOException {
+		lock.lock();
+		try {
+			while (true){
+				if (inputStreamClosed) throw new IOException("InputStream has been closed; cannot read from a closed InputStream.");
+				int available = available();
+				if (available > 0){
+					int length = Math.min(dst.remaining(), available);
+					int firstLen = Math.min(length, buffer.length - readPosition);
+					dst.put(buffer, readPosition, firstLen);
+					if (length > firstLen){
+						dst.put(buffer, 0, length - firstLen);
+						readPosition = length - firstLen;
+					} else {
+						readPosition += length;
+						if (readPosition == buffer.length) {
+							readPosition = 0;
+						}
+					}
+					ensureMark();
+					spaceAvailable.signalAll();
+					return length;
+				} else if (outputStreamClosed){
+					return -1;
+				}
+				awaitData();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Wait for a writer, called with the lock held.
+	 */
+	private void awaitData() throws IOException {
+		try {
+			dataAvailable.await();
+		} catch (InterruptedException x){
+			Thread.currentThread().interrupt();
+			throw new IOException("Blocking read operation interrupted.");
+		}
+	}
+
+	/**
+	 * Wait for a reader to make room, called with the lock held.
+	 */
+	private void awaitSpace() throws IOException {
+		try {
+			spaceAvailable.await();
+		} catch (InterruptedException x){
+			Thread.currentThread().interrupt();
+			throw new IOException("Waiting for available space in buffer interrupted.");
+		}
+	}
+
+	/**
+	 * Tell the listener, if any, that the buffer is no longer empty.
+	 * Called with the lock held, after the write position has moved.
+	 */
+	private void notifyReady(){
+		Runnable l = readyListener;
+		if (l != null){
+			l.run();
+		}
+	}
+
 	// DW specific getter/setters
+
+	public void setReadyListener(Runnable readyListener) {
+		this.readyListener = readyListener;
+	}
+	
 	
 	public void setDW_PD_INT(byte dW_PD_INT) {
 		DW_PD_INT = dW_PD_INT;
@@ -522,9 +684,12 @@ public class DWVSerialCircularBuffer {
 		 * @since ostermillerutils 1.00.00
 		 */
 		@Override public int available() throws IOException {
-			synchronized (DWVSerialCircularBuffer.this){
+			lock.lock();
+			try {
 				if (inputStreamClosed) throw new IOException("InputStream has been closed, it is not ready.");
 				return (DWVSerialCircularBuffer.this.available());
+			} finally {
+				lock.unlock();
 			}
 		}
 
@@ -538,8 +703,13 @@ public class DWVSerialCircularBuffer {
 		 * @since ostermillerutils 1.00.00
 		 */
 		@Override public void close() throws IOException {
-			synchronized (DWVSerialCircularBuffer.this){
+			lock.lock();
+			try {
 				inputStreamClosed = true;
+				// blocked writers have to see the close
+				spaceAvailable.signalAll();
+			} finally {
+				lock.unlock();
 			}
 		}
 
@@ -557,12 +727,15 @@ public class DWVSerialCircularBuffer {
 		 * @since ostermillerutils 1.00.00
 		 */
 		@Override public void mark(int readAheadLimit) {
-			synchronized (DWVSerialCircularBuffer.this){
+			lock.lock();
+			try {
 				//if (inputStreamClosed) throw new IOException("InputStream has been closed; cannot mark a closed InputStream.");
 				if (buffer.length - 1 > readAheadLimit) {
 					markSize = readAheadLimit;
 					markPosition = readPosition;
 				}
+			} finally {
+				lock.unlock();
 			}
 		}
 
@@ -589,8 +762,9 @@ public class DWVSerialCircularBuffer {
 		 * @since ostermillerutils 1.00.00
 		 */
 		@Override public int read() throws IOException {
-			while (true){
-				synchronized (DWVSerialCircularBuffer.this){
+			lock.lock();
+			try {
+				while (true){
 					if (inputStreamClosed) throw new IOException("InputStream has been closed; cannot read from a closed InputStream.");
 					int available = DWVSerialCircularBuffer.this.available();
 					if (available > 0){
@@ -600,16 +774,15 @@ public class DWVSerialCircularBuffer {
 							readPosition = 0;
 						}
 						ensureMark();
+						spaceAvailable.signalAll();
 						return result;
 					} else if (outputStreamClosed){
 						return -1;
 					}
+					awaitData();
 				}
-				try {
-					Thread.sleep(100);
-				} catch(Exception x){
-					throw new IOException("Blocking read operation interrupted.");
-				}
+			} finally {
+				lock.unlock();
 			}
 		}
 
@@ -644,8 +817,9 @@ public class DWVSerialCircularBuffer {
 		 * @since ostermillerutils 1.00.00
 		 */
 		@Override public int read(byte[] cbuf, int off, int len) throws IOException {
-			while (true){
-				synchronized (DWVSerialCircularBuffer.this){
+			lock.lock();
+			try {
+				while (true){
 					if (inputStreamClosed) throw new IOException("InputStream has been closed; cannot read from a closed InputStream.");
 					int available = DWVSerialCircularBuffer.this.available();
 					if (available > 0){
@@ -663,16 +837,15 @@ public class DWVSerialCircularBuffer {
 							readPosition = 0;
 						}
 						ensureMark();
+						spaceAvailable.signalAll();
 						return length;
 					} else if (outputStreamClosed){
 						return -1;
 					}
+					awaitData();
 				}
-				try {
-					Thread.sleep(100);
-				} catch(Exception x){
-					throw new IOException("Blocking read operation interrupted.");
-				}
+			} finally {
+				lock.unlock();
 			}
 		}
 
@@ -687,9 +860,13 @@ public class DWVSerialCircularBuffer {
 		 * @since ostermillerutils 1.00.00
 		 */
 		@Override public void reset() throws IOException {
-			synchronized (DWVSerialCircularBuffer.this){
+			lock.lock();
+			try {
 				if (inputStreamClosed) throw new IOException("InputStream has been closed; cannot reset a closed InputStream.");
 				readPosition = markPosition;
+				dataAvailable.signalAll();
+			} finally {
+				lock.unlock();
 			}
 		}
 
@@ -706,8 +883,9 @@ public class DWVSerialCircularBuffer {
 		 * @since ostermillerutils 1.00.00
 		 */
 		@Override public long skip(long n) throws IOException, IllegalArgumentException {
-			while (true){
-				synchronized (DWVSerialCircularBuffer.this){
+			lock.lock();
+			try {
+				while (true){
 					if (inputStreamClosed) throw new IOException("InputStream has been closed; cannot skip bytes on a closed InputStream.");
 					int available = DWVSerialCircularBuffer.this.available();
 					if (available > 0){
@@ -723,16 +901,15 @@ public class DWVSerialCircularBuffer {
 							readPosition = 0;
 						}
 						ensureMark();
+						spaceAvailable.signalAll();
 						return length;
 					} else if (outputStreamClosed){
 						return 0;
 					}
+					awaitData();
 				}
-				try {
-					Thread.sleep(100);
-				} catch(Exception x){
-					throw new IOException("Blocking read operation interrupted.");
-				}
+			} finally {
+				lock.unlock();
 			}
 		}
 	}
@@ -760,11 +937,16 @@ public class DWVSerialCircularBuffer {
 		 * @since ostermillerutils 1.00.00
 		 */
 		@Override public void close() throws IOException {
-			synchronized (DWVSerialCircularBuffer.this){
+			lock.lock();
+			try {
 				if (!outputStreamClosed){
 					flush();
 				}
 				outputStreamClosed = true;
+				// let blocked readers see the end of the stream
+				dataAvailable.signalAll();
+			} finally {
+				lock.unlock();
 			}
 		}
 
@@ -814,8 +996,9 @@ public class DWVSerialCircularBuffer {
 		 * @since ostermillerutils 1.00.00
 		 */
 		@Override public void write(byte[] cbuf, int off, int len) throws IOException {
-			while (len > 0){
-				synchronized (DWVSerialCircularBuffer.this){
+			lock.lock();
+			try {
+				while (len > 0){
 					if (outputStreamClosed) throw new IOException("OutputStream has been closed; cannot write to a closed OutputStream.");
 					if (inputStreamClosed) throw new IOException("Buffer closed by InputStream; cannot write to a closed buffer.");
 					int spaceLeft = spaceLeft();
@@ -824,6 +1007,7 @@ public class DWVSerialCircularBuffer {
 						spaceLeft = spaceLeft();
 					}
 					if (!blockingWrite && spaceLeft < len) throw new BufferOverflowException("CircularByteBuffer is full; cannot write " + len + " bytes");
+					boolean wasEmpty = (DWVSerialCircularBuffer.this.available() == 0);
 					int realLen = Math.min(len, spaceLeft);
 					int firstLen = Math.min(realLen, buffer.length - writePosition);
 					int secondLen = Math.min(realLen - firstLen, buffer.length - markPosition - 1);
@@ -842,14 +1026,18 @@ public class DWVSerialCircularBuffer {
 					}
 					off += written;
 					len -= written;
-				}
-				if (len > 0){
-					try {
-						Thread.sleep(100);
-					} catch(Exception x){
-						throw new IOException("Waiting for available space in buffer interrupted.");
+					if (written > 0){
+						if (wasEmpty){
+							notifyReady();
+						}
+						dataAvailable.signalAll();
+					}
+					if (len > 0){
+						awaitSpace();
 					}
 				}
+			} finally {
+				lock.unlock();
 			}
 		}
 
@@ -868,9 +1056,9 @@ public class DWVSerialCircularBuffer {
 		 * @since ostermillerutils 1.00.00
 		 */
 		@Override public void write(int c) throws IOException {
-			boolean written = false;
-			while (!written){
-				synchronized (DWVSerialCircularBuffer.this){
+			lock.lock();
+			try {
+				while (true){
 					if (outputStreamClosed) throw new IOException("OutputStream has been closed; cannot write to a closed OutputStream.");
 					if (inputStreamClosed) throw new IOException("Buffer closed by InputStream; cannot write to a closed buffer.");
 					int spaceLeft = spaceLeft();
@@ -880,21 +1068,22 @@ public class DWVSerialCircularBuffer {
 					}
 					if (!blockingWrite && spaceLeft < 1) throw new BufferOverflowException("CircularByteBuffer is full; cannot write 1 byte");
 					if (spaceLeft > 0){
+						boolean wasEmpty = (DWVSerialCircularBuffer.this.available() == 0);
 						buffer[writePosition] = (byte)(c & 0xff);
 						writePosition++;
 						if (writePosition == buffer.length) {
 							writePosition = 0;
 						}
-						written = true;
-					}
-				}
-				if (!written){
-					try {
-						Thread.sleep(100);
-					} catch(Exception x){
-						throw new IOException("Waiting for available space in buffer interrupted.");
+						if (wasEmpty){
+							notifyReady();
+						}
+						dataAvailable.signalAll();
+						return;
 					}
+					awaitSpace();
 				}
+			} finally {
+				lock.unlock();
 			}
 		}
 	}
@@ -0,0 +1,293 @@
+package com.groupunix.drivewireserver.virtualserial;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class DWVSerialPollScheduler
+{
+	// decides which port answers the next OP_SERREAD poll.
+	// port buffers flag themselves when they go from empty to non empty, the poll thread
+	// moves flagged ports onto a FIFO per class (N/Z) so the longest waiting port goes first,
+	// same as the old dataWait counters but without scanning every port on every poll.
+
+	public static final int CLASS_N = 0;
+	public static final int CLASS_Z = 1;
+
+	private static final int NONE = -1;
+
+	private final int maxports;
+	private final int firstZ;
+
+	// set from any thread, lock free so it is safe to call with a buffer lock held
+	private final AtomicLongArray ready;
+	private final AtomicLongArray term;
+
+	// the rest belongs to the poll thread
+	private final int[] next;
+	private final int[] prev;
+	private final boolean[] queued;
+	private final long[] readySince;
+	private final long[] readyPoll;
+	private final int[] head = { NONE, NONE };
+	private final int[] tail = { NONE, NONE };
+
+	// metrics, single writer
+	private volatile long polls = 0;
+	private volatile long served = 0;
+	private volatile long stale = 0;
+	private volatile long latencyTotal = 0;
+	private volatile long latencyMax = 0;
+	private volatile long pollsWaitedMax = 0;
+	private volatile int depth = 0;
+	private volatile int depthMax = 0;
+
+
+	public DWVSerialPollScheduler(int maxNports, int maxports)
+	{
+		this.maxports = maxports;
+		this.firstZ = maxNports;
+
+		int words = (maxports + 63) >> 6;
+
+		this.ready = new AtomicLongArray(words);
+		this.term = new AtomicLongArray(words);
+
+		this.next = new int[maxports];
+		this.prev = new int[maxports];
+		this.queued = new boolean[maxports];
+		this.readySince = new long[maxports];
+		this.readyPoll = new long[maxports];
+	}
+
+
+	// port buffer went non empty
+	public void signalReady(int port)
+	{
+		setBit(this.ready, port);
+	}
+
+
+	// port was closed and the coco needs to hear about it
+	public void signalTerm(int port)
+	{
+		setBit(this.term, port);
+	}
+
+
+	// poll thread only, called once at the start of each poll
+	public void startPoll()
+	{
+		this.polls++;
+
+		for (int w = 0;w < this.ready.length();w++)
+		{
+			if (this.ready.get(w) == 0)
+				continue;
+
+			long bits = this.ready.getAndSet(w, 0);
+
+			// lowest port first, like the old scan when two ports became ready together
+			while (bits != 0)
+			{
+				int port = (w << 6) + Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+
+				enqueue(port);
+			}
+		}
+	}
+
+
+	// oldest waiting port of the class, or -1
+	public int first(int cls)
+	{
+		return this.head[cls];
+	}
+
+
+	public int next(int port)
+	{
+		return this.next[port];
+	}
+
+
+	// lowest flagged terminated port below limit, or -1.  clears the flag.
+	public int takeTerm(int limit)
+	{
+		for (int w = 0;w < this.term.length();w++)
+		{
+			long bits = this.term.get(w);
+
+			while (bits != 0)
+			{
+				int port = (w << 6) + Long.numberOfTrailingZeros(bits);
+
+				if (port >= limit)
+					return NONE;
+
+				long bit = 1L << port;
+
+				if (this.term.compareAndSet(w, bits, bits & ~bit))
+					return port;
+
+				bits = this.term.get(w);
+			}
+		}
+
+		return NONE;
+	}
+
+
+	// port turned out to have nothing waiting
+	public void dropStale(int port)
+	{
+		unlink(port);
+		this.stale++;
+	}
+
+
+	// port answered this poll.  if it still has data it goes to the back of the line,
+	// otherwise the next write will flag it again.
+	public void served(int port, boolean more)
+	{
+		long wait = System.nanoTime() - this.readySince[port];
+		long pollswaited = this.polls - this.readyPoll[port];
+
+		this.served++;
+		this.latencyTotal += wait;
+
+		if (wait > this.latencyMax)
+			this.latencyMax = wait;
+
+		if (pollswaited > this.pollsWaitedMax)
+			this.pollsWaitedMax = pollswaited;
+
+		unlink(port);
+
+		if (more)
+			enqueue(port);
+	}
+
+
+	private void enqueue(int port)
+	{
+		if ((port < 0) || (port >= this.maxports) || this.queued[port])
+			return;
+
+		int cls = classOf(port);
+
+		this.queued[port] = true;
+		this.readySince[port] = System.nanoTime();
+		this.readyPoll[port] = this.polls;
+		this.next[port] = NONE;
+		this.prev[port] = this.tail[cls];
+
+		if (this.tail[cls] == NONE)
+			this.head[cls] = port;
+		else
+			this.next[this.tail[cls]] = port;
+
+		this.tail[cls] = port;
+
+		this.depth++;
+		if (this.depth > this.depthMax)
+			this.depthMax = this.depth;
+	}
+
+
+	private void unlink(int port)
+	{
+		if (!this.queued[port])
+			return;
+
+		int cls = classOf(port);
+
+		if (this.prev[port] == NONE)
+			this.head[cls] = this.next[port];
+		else
+			this.next[this.prev[port]] = this.next[port];
+
+		if (this.next[port] == NONE)
+			this.tail[cls] = this.prev[port];
+		else
+			this.prev[this.next[port]] = this.prev[port];
+
+		this.queued[port] = false;
+		this.depth--;
+	}
+
+
+	private int classOf(int port)
+	{
+		if (port >= this.firstZ)
+			return CLASS_Z;
+
+		return CLASS_N;
+	}
+
+
+	private void setBit(AtomicLongArray map, int port)
+	{
+		if ((port < 0) || (port >= this.maxports))
+			return;
+
+		int w = port >> 6;
+		long bit = 1L << port;
+		long old;
+
+		do
+		{
+			old = map.get(w);
+
+			if ((old & bit) != 0)
+				return;
+		}
+		while (!map.compareAndSet(w, old, old | bit));
+	}
+
+
+	public long getPolls()
+	{
+		return this.polls;
+	}
+
+	public long getServed()
+	{
+		return this.served;
+	}
+
+	public long getStale()
+	{
+		return this.stale;
+	}
+
+	// average time from a port's buffer going non empty to it answering a poll
+	public long getLatencyAvg()
+	{
+		if (this.served == 0)
+			return 0;
+
+		return this.latencyTotal / this.served;
+	}
+
+	public long getLatencyMax()
+	{
+		return this.latencyMax;
+	}
+
+	// most polls any ready port had to sit through before being served
+	public long getPollsWaitedMax()
+	{
+		return this.pollsWaitedMax;
+	}
+
+	public int getDepth()
+	{
+		return this.depth;
+	}
+
+	public int getDepthMax()
+	{
+		return this.depthMax;
+	}
+
+}
@@ -82,6 +82,18 @@ public class DWVSerialPort {
 			
 		}
 		
+		// let serRead know when there is something to send
+		final DWVSerialPollScheduler scheduler = vps.getScheduler();
+		final int readyport = port;
+		
+		this.inputBuffer.setReadyListener(new Runnable()
+		{
+			public void run()
+			{
+				scheduler.signalReady(readyport);
+			}
+		});
+		
 
 	}
 	
@@ -375,6 +387,20 @@ public class DWVSerialPort {
 	
 	
 	
+	public void writeToCoco(ByteBuffer databytes) 
+	{
+		try 
+		{
+			inputBuffer.write(databytes);
+		} 
+		catch (IOException e) 
+		{
+			logger.warn(e.getMessage());
+		}
+	}
+	
+	
+	
 	public void writeToCoco(byte databyte)
 	{
 		try {
@@ -519,6 +545,9 @@ public class DWVSerialPort {
 			{
 				logger.debug("setting term on port " + this.port);
 				this.wanttodie = true;
+				
+				if (this.port < vports.getMaxNPorts())
+					vports.getScheduler().signalTerm(this.port);
 			
 				// close socket channel if connected
 				if ((this.sktchan != null) && (this.sktchan.isOpen()))
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
 import java.util.Iterator;
 import java.util.List;
@@ -43,7 +44,7 @@ public class DWVSerialPorts {
 	private DWVSerialPort[] vserialPorts;
 	private DWVPortListenerPool listenerpool = new DWVPortListenerPool();
 	
-	private int[] dataWait;
+	private DWVSerialPollScheduler scheduler;
 	
 	// midi stuff
 	private MidiDevice midiDevice;
@@ -75,7 +76,7 @@ public class DWVSerialPorts {
 		
 		maxports = maxNports + maxZports;
 		
-		dataWait = new int[maxports];
+		scheduler = new DWVSerialPollScheduler(maxNports, maxports);
 		vserialPorts = new DWVSerialPort[maxports];
 		
 		
@@ -214,142 +215,70 @@ public class DWVSerialPorts {
 		}
 			
 		
-		// Z devices go first...
+		scheduler.startPoll();
 		
-		for (int i = this.maxNports;i < this.maxNports+this.maxZports;i++)
-		{
-			if (vserialPorts[i] != null)
-			{
-				if (vserialPorts[i].bytesWaiting() > 0)
-				{
-					// increment wait count
-					dataWait[i]++;
-					
-					logger.debug("waiting Z " +i + ": " + vserialPorts[i].bytesWaiting());
-				}
-			}
-		}
-		
-		// second pass, look for oldest waiting ports
+		// Z devices go first...
 		
-		int oldestZ = 0;
-		int oldestZport = -1;
+		int port = nextReady(DWVSerialPollScheduler.CLASS_Z, false);
 		
-		for (int i = this.maxNports;i < this.maxNports+this.maxZports;i++)
+		if (port > -1)
 		{
-			if (vserialPorts[i] != null)
-			{
-				if (dataWait[i] > oldestZ)
-				{
-					oldestZ = dataWait[i];
-					oldestZport = i;
-					
-				}
-			}
-		}
-		
-		if (oldestZport > -1)
-		{
-			// if we have a small byte waiter, send serread for it
+			response[0] = (byte) (  (DWDefs.POLL_RESP_MODE_WINDOW << 6)  + (port) -  this.maxNports );
+			response[1] = vserialPorts[port].read1();
 			
-			dataWait[oldestZport] = 0;
-			response[0] = (byte) (  (DWDefs.POLL_RESP_MODE_WINDOW << 6)  + (oldestZport) -  this.maxNports );
-			response[1] = vserialPorts[oldestZport].read1();
-				
-			logger.debug("Z poll response " + response[0] + "," + response[1]);
+			scheduler.served(port, vserialPorts[port].bytesWaiting() > 0);
+			
+			if (bytelog)
+				logger.debug("Z poll response " + response[0] + "," + response[1]);
 			
 			return(response);
 		}
 		
 		
-		
-		
-		
 		// N devices
 		
-		
-		
-		
 		// first look for termed ports
-		for (int i = 0;i<this.maxNports;i++)
-		{
-			if (vserialPorts[i] != null)
-			{
-				if (vserialPorts[i].isTerm())
-				{
-					response[0] = (byte) 16;  // port status
-					response[1] = (byte) i;   // 000 portnumber
-					
-					logger.debug("sending terminated status to coco for port " + i);
-					
-					vserialPorts[i] = new DWVSerialPort(this,this.dwProto, i);
-					
-					return(response);
-				}
-			}
-		}
 		
-		// first data pass, increment data waiters
+		port = scheduler.takeTerm(this.maxNports);
 		
-		for (int i = 0;i<this.maxNports;i++)
+		while (port > -1)
 		{
-			if (vserialPorts[i] != null)
+			if ((vserialPorts[port] != null) && vserialPorts[port].isTerm())
 			{
-				if (vserialPorts[i].bytesWaiting() > 0)
-				{
-					// increment wait count
-					dataWait[i]++;
-				}
+				response[0] = (byte) 16;  // port status
+				response[1] = (byte) port;   // 000 portnumber
+				
+				logger.debug("sending terminated status to coco for port " + port);
+				
+				vserialPorts[port] = new DWVSerialPort(this,this.dwProto, port);
+				
+				return(response);
 			}
+			
+			port = scheduler.takeTerm(this.maxNports);
 		}
 		
-		// second pass, look for oldest waiting ports
+		// small byte waiters before bulk
 		
-		int oldest1 = 0;
-		int oldest1port = -1;
-		int oldestM = 0;
-		int oldestMport = -1;
+		port = nextReady(DWVSerialPollScheduler.CLASS_N, true);
 		
-		for (int i = 0;i<this.maxNports;i++)
+		if (port > -1)
 		{
-			if (vserialPorts[i] != null)
-			{
-				if (vserialPorts[i].bytesWaiting() < this.multiReadLimit)
-				{
-					if (dataWait[i] > oldest1)
-					{
-						oldest1 = dataWait[i];
-						oldest1port = i;
-					}
-				}
-				else
-				{
-					if (dataWait[i] > oldestM)
-					{
-						oldestM = dataWait[i];
-						oldestMport = i;
-					}
-				}
-			}
-		}
-		
-		if (oldest1port > -1)
-		{
-			// if we have a small byte waiter, send serread for it
+			response[0] = (byte) (port + 1);     // add one
+			response[1] = vserialPorts[port].read1();  // send data byte
 			
-			dataWait[oldest1port] = 0;
-			response[0] = (byte) (oldest1port + 1);     // add one
-			response[1] = vserialPorts[oldest1port].read1();  // send data byte
+			scheduler.served(port, vserialPorts[port].bytesWaiting() > 0);
 		}
-		else if (oldestMport > -1)
+		else if ((port = nextReady(DWVSerialPollScheduler.CLASS_N, false)) > -1)
 		{
 			// send serream for oldest bulk
 			
-			dataWait[oldestMport] = 0;
-			response[0] = (byte) (oldestMport + 16 + 1);     // add one and 16 for serreadm
-			response[1] = (byte) vserialPorts[oldestMport].bytesWaiting(); //send data size
+			response[0] = (byte) (port + 16 + 1);     // add one and 16 for serreadm
+			response[1] = (byte) vserialPorts[port].bytesWaiting(); //send data size
+			
+			// stays queued until the serreadm drains it
+			scheduler.served(port, true);
 			// logger.debug("SERREADM RESPONSE: " + Integer.toBinaryString(response[0]) + " " + Integer.toBinaryString(response[1]));
-
 		}
 		else
 		{
@@ -363,6 +292,42 @@ public class DWVSerialPorts {
 		
 		return(response);
 	}
+	
+	
+	// oldest ready port in the class, only ready ports are looked at.
+	// with small set, skip ports holding multiReadLimit or more bytes
+	private int nextReady(int cls, boolean small)
+	{
+		int port = scheduler.first(cls);
+		
+		while (port > -1)
+		{
+			int next = scheduler.next(port);
+			int waiting = 0;
+			
+			if (vserialPorts[port] != null)
+				waiting = vserialPorts[port].bytesWaiting();
+			
+			if (waiting == 0)
+			{
+				scheduler.dropStale(port);
+			}
+			else if (!small || (waiting < this.multiReadLimit))
+			{
+				return(port);
+			}
+			
+			port = next;
+		}
+		
+		return(-1);
+	}
+	
+	
+	public DWVSerialPollScheduler getScheduler()
+	{
+		return(this.scheduler);
+	}
 
 
 	public void serWriteM(int port, byte[] data) throws DWPortNotOpenException, DWPortNotValidException
@@ -752,6 +717,13 @@ public class DWVSerialPorts {
 	}
 
 
+	public void writeToCoco(int vport, ByteBuffer b) throws DWPortNotValidException 
+	{
+		validateport(vport);
+		vserialPorts[vport].writeToCoco(b);
+	}
+
+
 	
 	public boolean isNull(int vport)
 	{